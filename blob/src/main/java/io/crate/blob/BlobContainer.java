@@ -28,13 +28,11 @@ import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FilenameFilter;
-import java.io.RandomAccessFile;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class BlobContainer {
 
@@ -46,6 +44,19 @@ public class BlobContainer {
 
     private final File[] subDirs = new File[256];
 
+    private static final String STATS_FILE = "stats";
+    private static final int STATS_FILE_VERSION = 1;
+
+    /**
+     * number and total size of the blobs of every sub-directory.
+     * Updates of the counters of a sub-directory are guarded by its lock
+     * so that a recount can't interleave with adding or deleting a blob.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(256);
+    private final AtomicLongArray sizes = new AtomicLongArray(256);
+    private final Object[] statsLocks = new Object[256];
+    private final boolean statsLoaded;
+
     static {
         for (int i = 0; i < 256; i++) {
             SUB_DIRS[i] = String.format("%02x", i & 0xFFFFF);
@@ -65,6 +76,10 @@ public class BlobContainer {
         FileSystemUtils.mkdirs(this.tmpDirectory);
 
         createSubDirectories(this.varDirectory);
+        for (int i = 0; i < statsLocks.length; i++) {
+            statsLocks[i] = new Object();
+        }
+        this.statsLoaded = loadStats();
     }
 
     /**
@@ -140,6 +155,191 @@ public class BlobContainer {
         return newNames.toArray(new String[newNames.size()]);
     }
 
+    /**
+     * @return the index of the sub-directory the blob with the given digest is saved in
+     *         or -1 if the digest is invalid
+     */
+    private static int subDirIndex(String digest) {
+        if (digest.length() < 2) {
+            return -1;
+        }
+        int high = Character.digit(digest.charAt(0), 16);
+        int low = Character.digit(digest.charAt(1), 16);
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        return (high << 4) | low;
+    }
+
+    /**
+     * moves a completely written file to the location of the blob with the given digest
+     * and updates the blob counters.
+     *
+     * @return false if the file couldn't be moved
+     */
+    public boolean moveToBlob(File source, String digest) {
+        File target = getFile(digest);
+        int index = subDirIndex(digest);
+        if (index < 0) {
+            return source.renameTo(target);
+        }
+        synchronized (statsLocks[index]) {
+            boolean replaced = target.exists();
+            long sizeDiff = source.length() - (replaced ? target.length() : 0);
+            if (!source.renameTo(target)) {
+                return false;
+            }
+            if (!replaced) {
+                counts.incrementAndGet(index);
+            }
+            sizes.addAndGet(index, sizeDiff);
+        }
+        return true;
+    }
+
+    /**
+     * deletes the blob with the given digest and updates the blob counters.
+     *
+     * @return true if the blob existed and has been deleted
+     */
+    public boolean delete(String digest) {
+        File file = getFile(digest);
+        int index = subDirIndex(digest);
+        if (index < 0) {
+            return file.delete();
+        }
+        synchronized (statsLocks[index]) {
+            long size = file.length();
+            if (!file.delete()) {
+                return false;
+            }
+            counts.decrementAndGet(index);
+            sizes.addAndGet(index, -size);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of blobs in this container
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the total size of the blobs in this container in bytes
+     */
+    public long totalUsage() {
+        long size = 0;
+        for (int i = 0; i < sizes.length(); i++) {
+            size += sizes.get(i);
+        }
+        return size;
+    }
+
+    /**
+     * @return true if the blob counters have been restored from the stats file
+     *         written by {@link #persistStats()}, otherwise they must be recounted using
+     *         {@link #reconcileStats()}
+     */
+    public boolean statsLoaded() {
+        return statsLoaded;
+    }
+
+    /**
+     * recounts the blobs of every sub-directory one after another
+     * and corrects the counters if they are out of sync with the files on disk.
+     * Leftover files of an interrupted recovery (containing a <code>.</code>) aren't counted.
+     */
+    public void reconcileStats() {
+        for (int i = 0; i < subDirs.length; i++) {
+            synchronized (statsLocks[i]) {
+                File[] files = subDirs[i].listFiles();
+                long count = 0;
+                long size = 0;
+                if (files != null) {
+                    for (File file : files) {
+                        if (!file.getName().contains(".")) {
+                            count++;
+                            size += file.length();
+                        }
+                    }
+                }
+                counts.set(i, count);
+                sizes.set(i, size);
+            }
+        }
+    }
+
+    /**
+     * writes the blob counters to the stats file so that they don't need to be recounted
+     * when the container is opened the next time.
+     */
+    public void persistStats() {
+        File statsFile = new File(baseDirectory, STATS_FILE);
+        File tmpFile = new File(baseDirectory, STATS_FILE + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(STATS_FILE_VERSION);
+                for (int i = 0; i < subDirs.length; i++) {
+                    out.writeLong(counts.get(i));
+                    out.writeLong(sizes.get(i));
+                }
+            } finally {
+                out.close();
+            }
+            statsFile.delete();
+            if (!tmpFile.renameTo(statsFile)) {
+                logger.warn("Could not rename {} to {}", tmpFile, statsFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not write blob stats to {}", e, statsFile);
+        }
+    }
+
+    /**
+     * reads the counters from the stats file and deletes it.
+     * The file is only valid until the first blob is added or deleted,
+     * if the node stops without writing it again the blobs are recounted on the next start.
+     */
+    private boolean loadStats() {
+        File statsFile = new File(baseDirectory, STATS_FILE);
+        if (!statsFile.exists()) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(statsFile)));
+            try {
+                if (in.readInt() != STATS_FILE_VERSION) {
+                    return false;
+                }
+                for (int i = 0; i < subDirs.length; i++) {
+                    counts.set(i, in.readLong());
+                    sizes.set(i, in.readLong());
+                }
+                return true;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read blob stats from {}", e, statsFile);
+            for (int i = 0; i < subDirs.length; i++) {
+                counts.set(i, 0);
+                sizes.set(i, 0);
+            }
+            return false;
+        } finally {
+            if (!statsFile.delete()) {
+                logger.warn("Could not delete {}", statsFile);
+            }
+        }
+    }
+
     public File getBaseDirectory() {
         return baseDirectory;
     }
@@ -163,9 +163,8 @@ public class DigestBlob {
             file.delete();
             throw new DigestMismatchException(digest, contentDigest);
         }
-        File newFile = container.getFile(digest);
-        file.renameTo(newFile);
-        return newFile;
+        container.moveToBlob(file, digest);
+        return container.getFile(digest);
     }
 
     public void addContent(BytesReference content, boolean last){
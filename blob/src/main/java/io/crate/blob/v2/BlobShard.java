@@ -25,30 +25,87 @@ import io.crate.blob.BlobContainer;
 import io.crate.blob.BlobTransferTarget;
 import io.crate.blob.stats.BlobStats;
 import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.indices.IndicesLifecycle;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.File;
+import java.util.concurrent.ScheduledFuture;
 
 public class BlobShard extends AbstractIndexShardComponent {
 
+    /**
+     * interval in which the blob counters are compared with the files on disk
+     */
+    public static final String SETTING_STATS_RECONCILE_INTERVAL = "index.blobs.stats.reconcile_interval";
+
     private final BlobContainer blobContainer;
     private final IndexShard indexShard;
+    private final ThreadPool threadPool;
+    private final ScheduledFuture<?> reconcileFuture;
 
     @Inject
     protected BlobShard(ShardId shardId, Settings indexSettings,
             BlobTransferTarget transferTarget,
             NodeEnvironment nodeEnvironment,
-            IndexShard indexShard) {
+            IndexShard indexShard,
+            ThreadPool threadPool,
+            final IndicesLifecycle indicesLifecycle) {
         super(shardId, indexSettings);
         this.indexShard = indexShard;
+        this.threadPool = threadPool;
         File blobDir = new File(nodeEnvironment.shardLocations(shardId)[0], "blobs");
         logger.info("creating BlobContainer at {}", blobDir);
         this.blobContainer = new BlobContainer(blobDir);
+
+        if (!blobContainer.statsLoaded()) {
+            threadPool.generic().execute(new ReconcileStats());
+        }
+        TimeValue reconcileInterval = indexSettings.getAsTime(
+                SETTING_STATS_RECONCILE_INTERVAL, TimeValue.timeValueHours(1));
+        reconcileFuture = threadPool.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                BlobShard.this.threadPool.generic().execute(new ReconcileStats());
+            }
+        }, reconcileInterval);
+
+        indicesLifecycle.addListener(new IndicesLifecycle.Listener() {
+            @Override
+            public void beforeIndexShardClosed(ShardId closedShardId, @Nullable IndexShard indexShard) {
+                if (shardId().equals(closedShardId)) {
+                    indicesLifecycle.removeListener(this);
+                    close();
+                }
+            }
+        });
+    }
+
+    private class ReconcileStats implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                blobContainer.reconcileStats();
+            } catch (Exception e) {
+                logger.warn("failed to recount the blobs", e);
+            }
+        }
+    }
+
+    /**
+     * stops the background recount of the blobs and saves the blob counters
+     */
+    void close() {
+        reconcileFuture.cancel(false);
+        blobContainer.persistStats();
     }
 
     public byte[][] currentDigests(byte prefix) {
@@ -56,7 +113,7 @@ public class BlobShard extends AbstractIndexShardComponent {
     }
 
     public boolean delete(String digest) {
-        return blobContainer.getFile(digest).delete();
+        return blobContainer.delete(digest);
     }
 
     public BlobContainer blobContainer() {
@@ -72,14 +129,8 @@ public class BlobShard extends AbstractIndexShardComponent {
 
         stats.location(blobContainer().getBaseDirectory().getAbsolutePath());
         stats.availableSpace(blobContainer().getBaseDirectory().getFreeSpace());
-        blobContainer().walkFiles(null, new BlobContainer.FileVisitor() {
-            @Override
-            public boolean visit(File file) {
-                stats.totalUsage(stats.totalUsage() + file.length());
-                stats.count(stats.count() + 1);
-                return true;
-            }
-        });
+        stats.totalUsage(blobContainer().totalUsage());
+        stats.count(blobContainer().count());
 
         return stats;
     }
@@ -0,0 +1,165 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.http.netty;
+
+import org.elasticsearch.common.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * a satisfiable range of bytes requested using a <code>Range</code> header.
+ */
+public class ByteRange {
+
+    /**
+     * headers with more ranges are ignored
+     */
+    public static final int MAX_RANGES = 64;
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final Pattern SPEC_PATTERN = Pattern.compile("^(\\d*)-(\\d*)$");
+
+    private static final Comparator<ByteRange> START_ORDER = new Comparator<ByteRange>() {
+        @Override
+        public int compare(ByteRange o1, ByteRange o2) {
+            return Long.compare(o1.start, o2.start);
+        }
+    };
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * first byte of the range
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * last byte of the range, inclusive
+     */
+    public long end() {
+        return end;
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String contentRange(long fileLength) {
+        return "bytes " + start + "-" + end + "/" + fileLength;
+    }
+
+    /**
+     * parses the value of a <code>Range</code> header,
+     * e.g. <code>bytes=0-99</code>, <code>bytes=100-</code>, <code>bytes=-100</code> or
+     * <code>bytes=0-9,20-29</code>.
+     *
+     * @param header the value of the Range header
+     * @param fileLength the length of the requested file
+     * Overlapping and adjacent ranges are coalesced, so the returned ranges are sorted and disjoint.
+     *
+     * @return the satisfiable ranges, which are empty if none of the requested ranges is satisfiable,
+     *         or null if the header is invalid or contains more than {@link #MAX_RANGES} ranges
+     *         and should be ignored
+     */
+    @Nullable
+    public static List<ByteRange> parse(String header, long fileLength) {
+        if (!header.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            Matcher matcher = SPEC_PATTERN.matcher(spec.trim());
+            if (!matcher.matches()) {
+                return null;
+            }
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+            long start;
+            long end;
+            try {
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    // suffix range, the last n bytes
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, fileLength - suffixLength);
+                    end = fileLength - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? fileLength - 1 : Long.parseLong(last);
+                    if (end < start) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start >= fileLength) {
+                continue;
+            }
+            ranges.add(new ByteRange(start, Math.min(end, fileLength - 1)));
+        }
+        return coalesce(ranges);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        Collections.sort(ranges, START_ORDER);
+        List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                coalesced.add(current);
+                current = next;
+            }
+        }
+        coalesced.add(current);
+        return coalesced;
+    }
+}
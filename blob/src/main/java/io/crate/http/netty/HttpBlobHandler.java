@@ -37,6 +37,8 @@ import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.http.*;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.handler.stream.ChunkedNioFile;
 import org.jboss.netty.util.CharsetUtil;
 
 import java.io.IOException;
@@ -44,6 +46,8 @@ import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -69,7 +73,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     private final BlobIndices blobIndices;
     private HttpMessage currentMessage;
     private ChannelHandlerContext ctx;
-    private static final Pattern contentRangePattern = Pattern.compile("^bytes=(\\d+)-(\\d{0,})$");
+    private static final int CHUNK_SIZE = 8192;
 
     private RemoteDigestBlob digestBlob;
 
@@ -184,7 +188,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, HttpResponseStatus.TEMPORARY_REDIRECT);
         HttpHeaders.setContentLength(response, 0);
         response.addHeader(HttpHeaders.Names.LOCATION, newUri);
-        ChannelFuture cf = ctx.getChannel().write(response);
+        ChannelFuture cf = writeResponse(response);
         if (!HttpHeaders.isKeepAlive(request)) {
             cf.addListener(ChannelFutureListener.CLOSE);
         }
@@ -204,7 +208,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
             HttpHeaders.setContentLength(response, 0);
         }
         reset();
-        ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
+        writeResponse(response).addListener(ChannelFutureListener.CLOSE);
     }
 
     @Override
@@ -250,7 +254,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
         HttpHeaders.setContentLength(response, length);
         setDefaultGetHeaders(response);
-        ChannelFuture cf = ctx.getChannel().write(response);
+        ChannelFuture cf = writeResponse(response);
         if (!HttpHeaders.isKeepAlive(request)) {
             cf.addListener(ChannelFutureListener.CLOSE);
         }
@@ -273,42 +277,82 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         throws  IOException
     {
         assert(range != null);
-        Matcher matcher = contentRangePattern.matcher(range);
-        if (!matcher.matches()) {
+        BlobShard blobShard = localBlobShard(index, digest);
+        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
+        long fileLength = raf.length();
+        List<ByteRange> ranges = ByteRange.parse(range, fileLength);
+        if (ranges == null) {
+            raf.close();
             logger.warn("Invalid byte-range: {}; returning full content", range);
             fullContentResponse(request, index, digest);
             return;
         }
-        BlobShard blobShard = localBlobShard(index, digest);
+        if (ranges.isEmpty()) {
+            raf.close();
+            logger.warn("416 Requested Range not satisfiable");
+            simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
+            return;
+        }
+        if (ranges.size() > 1) {
+            multiRangeResponse(request, raf, digest, ranges, fileLength);
+            return;
+        }
 
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
-        long start;
-        long end;
-        try {
-            start = Long.parseLong(matcher.group(1));
-            if (start > raf.length()) {
-                logger.warn("416 Requested Range not satisfiable");
-                simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
-                raf.close();
-                return;
-            }
-            end = raf.length() - 1 ;
-            if (!matcher.group(2).equals("")) {
-                end = Long.parseLong(matcher.group(2));
-            }
-        } catch (NumberFormatException ex) {
-            logger.error("Couldn't parse Range Header", ex);
-            start = 0;
-            end = raf.length();
+        ByteRange byteRange = ranges.get(0);
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
+        HttpHeaders.setContentLength(response, byteRange.length());
+        response.setHeader(CONTENT_RANGE, byteRange.contentRange(fileLength));
+        setDefaultGetHeaders(response);
+
+        writeResponse(response);
+        ChannelFuture writeFuture = transferFile(digest, raf, byteRange.start(), byteRange.length());
+        if (!HttpHeaders.isKeepAlive(request)) {
+            writeFuture.addListener(ChannelFutureListener.CLOSE);
         }
+    }
+
+    /**
+     * responds to a request for several ranges with a <code>multipart/byteranges</code> body,
+     * each part is sent like a single range. All parts are read from the same file,
+     * which is closed once the last part has been written.
+     */
+    private void multiRangeResponse(HttpRequest request,
+                                    final RandomAccessFile raf,
+                                    String digest,
+                                    List<ByteRange> ranges,
+                                    long fileLength) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        ChannelBuffer[] partHeaders = new ChannelBuffer[ranges.size()];
+        long contentLength = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange byteRange = ranges.get(i);
+            partHeaders[i] = ChannelBuffers.copiedBuffer(
+                    "\r\n--" + boundary + "\r\n" +
+                    CONTENT_RANGE + ": " + byteRange.contentRange(fileLength) + "\r\n\r\n",
+                    CharsetUtil.US_ASCII);
+            contentLength += partHeaders[i].readableBytes() + byteRange.length();
+        }
+        ChannelBuffer end = ChannelBuffers.copiedBuffer("\r\n--" + boundary + "--\r\n", CharsetUtil.US_ASCII);
+        contentLength += end.readableBytes();
 
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
-        HttpHeaders.setContentLength(response, end - start + 1);
-        response.setHeader(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + raf.length());
+        HttpHeaders.setContentLength(response, contentLength);
+        response.setHeader(CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
         setDefaultGetHeaders(response);
+        writeResponse(response);
 
-        ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, start, end - start + 1);
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange byteRange = ranges.get(i);
+            writeResponse(partHeaders[i]);
+            transferFile(digest, raf, byteRange.start(), byteRange.length(), false);
+        }
+        ChannelFuture writeFuture = writeResponse(end);
+        writeFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                raf.close();
+            }
+        });
         if (!HttpHeaders.isKeepAlive(request)) {
             writeFuture.addListener(ChannelFutureListener.CLOSE);
         }
@@ -321,7 +365,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         HttpHeaders.setContentLength(response, raf.length());
         setDefaultGetHeaders(response);
         logger.trace("HttpResponse: {}", response);
-        ctx.getChannel().write(response);
+        writeResponse(response);
         ChannelFuture writeFuture = transferFile(digest, raf, 0, raf.length());
         if (!HttpHeaders.isKeepAlive(request)) {
             writeFuture.addListener(ChannelFutureListener.CLOSE);
@@ -331,8 +375,36 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     private ChannelFuture transferFile(final String digest, RandomAccessFile raf, long position, long count)
         throws IOException
     {
-        final FileRegion region = new DefaultFileRegion(raf.getChannel(), position, count);
-        ChannelFuture writeFuture = ctx.getChannel().write(region);
+        return transferFile(digest, raf, position, count, true);
+    }
+
+    /**
+     * sends a section of the file and closes it afterwards if <code>closeFile</code> is set.
+     *
+     * The file is sent as a {@link FileRegion} so that it is transferred by the kernel (sendfile)
+     * without being copied into the heap. If the data has to be encrypted by a {@link SslHandler}
+     * that isn't possible and the file is read in chunks which are written
+     * by the {@link org.jboss.netty.handler.stream.ChunkedWriteHandler} of the pipeline.
+     */
+    private ChannelFuture transferFile(final String digest,
+                                       RandomAccessFile raf,
+                                       long position,
+                                       long count,
+                                       boolean closeFile) throws IOException {
+        if (ctx.getPipeline().get(SslHandler.class) != null) {
+            if (closeFile) {
+                return writeResponse(new ChunkedNioFile(raf.getChannel(), position, count, CHUNK_SIZE));
+            }
+            return writeResponse(new ChunkedNioFile(raf.getChannel(), position, count, CHUNK_SIZE) {
+                @Override
+                public void close() throws Exception {
+                    // the file is shared by several parts and closed by the caller
+                }
+            });
+        }
+        final boolean releaseRegion = closeFile;
+        final FileRegion region = new DefaultFileRegion(raf.getChannel(), position, count, closeFile);
+        ChannelFuture writeFuture = writeResponse(region);
         writeFuture.addListener(new ChannelFutureProgressListener() {
             @Override
             public void operationProgressed(ChannelFuture future, long amount, long current, long total) throws Exception {
@@ -341,13 +413,30 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
 
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
-                region.releaseExternalResources();
+                if (releaseRegion) {
+                    region.releaseExternalResources();
+                }
                 logger.trace("file transfer completed");
             }
         });
         return writeFuture;
     }
 
+    /**
+     * writes a message downstream, bypassing a {@link HttpContentCompressor} if the pipeline contains one.
+     * The compressor only sees the requests which aren't handled by this handler,
+     * so it can't encode responses to blob requests, and it couldn't compress file regions anyway.
+     */
+    private ChannelFuture writeResponse(Object message) {
+        ChannelHandlerContext compressorCtx = ctx.getPipeline().getContext(HttpContentCompressor.class);
+        if (compressorCtx == null) {
+            return ctx.getChannel().write(message);
+        }
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        Channels.write(compressorCtx, future, message);
+        return future;
+    }
+
     private void setDefaultGetHeaders(HttpResponse response) {
         response.setHeader(ACCEPT_RANGES, "bytes");
         response.setHeader(EXPIRES, EXPIRES_VALUE);
@@ -422,7 +511,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         logger.trace("writeToFile exit status http:{} blob: {}", exitStatus, status);
         HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, exitStatus);
         HttpHeaders.setContentLength(response, 0);
-        ChannelFuture cf = ctx.getChannel().write(response);
+        ChannelFuture cf = writeResponse(response);
         if (currentMessage == null || !HttpHeaders.isKeepAlive(currentMessage)) {
             cf.addListener(ChannelFutureListener.CLOSE);
         }
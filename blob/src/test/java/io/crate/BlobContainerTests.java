@@ -0,0 +1,117 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate;
+
+import io.crate.blob.BlobContainer;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlobContainerTests {
+
+    private static final String DIGEST_A = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+    private static final String DIGEST_B = "ff7de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private File tmpDir;
+
+    @Before
+    public void prepare() throws Exception {
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    private File tmpFile(BlobContainer container, String name, int size) throws IOException {
+        File file = new File(container.getTmpDirectory(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[size]);
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void testCountersFollowMoveAndDelete() throws Exception {
+        BlobContainer container = new BlobContainer(tmpDir);
+        assertFalse(container.statsLoaded());
+
+        assertTrue(container.moveToBlob(tmpFile(container, "a", 10), DIGEST_A));
+        assertTrue(container.moveToBlob(tmpFile(container, "b", 5), DIGEST_B));
+        assertEquals(2L, container.count());
+        assertEquals(15L, container.totalUsage());
+
+        // replacing an existing blob doesn't change the count
+        assertTrue(container.moveToBlob(tmpFile(container, "a2", 10), DIGEST_A));
+        assertEquals(2L, container.count());
+        assertEquals(15L, container.totalUsage());
+
+        assertTrue(container.delete(DIGEST_B));
+        assertFalse(container.delete(DIGEST_B));
+        assertEquals(1L, container.count());
+        assertEquals(10L, container.totalUsage());
+    }
+
+    @Test
+    public void testReconcileStats() throws Exception {
+        BlobContainer container = new BlobContainer(tmpDir);
+        assertTrue(container.moveToBlob(tmpFile(container, "a", 10), DIGEST_A));
+
+        // files changed behind the back of the container
+        assertTrue(tmpFile(container, "b", 7).renameTo(container.getFile(DIGEST_B)));
+        assertTrue(tmpFile(container, "c", 3).renameTo(new File(container.getFile(DIGEST_B).getPath() + ".1")));
+        assertEquals(1L, container.count());
+
+        container.reconcileStats();
+        assertEquals(2L, container.count());
+        assertEquals(17L, container.totalUsage());
+    }
+
+    @Test
+    public void testPersistAndLoadStats() throws Exception {
+        BlobContainer container = new BlobContainer(tmpDir);
+        assertTrue(container.moveToBlob(tmpFile(container, "a", 10), DIGEST_A));
+        container.persistStats();
+
+        container = new BlobContainer(tmpDir);
+        assertTrue(container.statsLoaded());
+        assertEquals(1L, container.count());
+        assertEquals(10L, container.totalUsage());
+
+        // the stats file is consumed, without persisting again the blobs have to be recounted
+        container = new BlobContainer(tmpDir);
+        assertFalse(container.statsLoaded());
+        assertEquals(0L, container.count());
+    }
+}
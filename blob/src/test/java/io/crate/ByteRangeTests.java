@@ -0,0 +1,105 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate;
+
+import io.crate.http.netty.ByteRange;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteRangeTests {
+
+    private static void assertRange(ByteRange range, long start, long end) {
+        assertEquals(start, range.start());
+        assertEquals(end, range.end());
+    }
+
+    @Test
+    public void testParseSingleRange() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=8-", 26);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 8, 25);
+        assertEquals("bytes 8-25/26", ranges.get(0).contentRange(26));
+
+        assertRange(ByteRange.parse("bytes=0-1", 26).get(0), 0, 1);
+        assertRange(ByteRange.parse("bytes=20-100", 26).get(0), 20, 25);
+        assertRange(ByteRange.parse("bytes=-4", 26).get(0), 22, 25);
+        assertRange(ByteRange.parse("bytes=-100", 26).get(0), 0, 25);
+    }
+
+    @Test
+    public void testParseMultipleRanges() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-1, 5-9,-2", 26);
+        assertEquals(3, ranges.size());
+        assertRange(ranges.get(0), 0, 1);
+        assertRange(ranges.get(1), 5, 9);
+        assertRange(ranges.get(2), 24, 25);
+        assertEquals(5L, ranges.get(1).length());
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() throws Exception {
+        assertTrue(ByteRange.parse("bytes=40-58", 26).isEmpty());
+        assertTrue(ByteRange.parse("bytes=26-", 26).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 26).isEmpty());
+        assertEquals(1, ByteRange.parse("bytes=40-58,0-0", 26).size());
+    }
+
+    @Test
+    public void testInvalidRanges() throws Exception {
+        assertNull(ByteRange.parse("items=0-1", 26));
+        assertNull(ByteRange.parse("bytes=-", 26));
+        assertNull(ByteRange.parse("bytes=5-1", 26));
+        assertNull(ByteRange.parse("bytes=a-b", 26));
+        assertNull(ByteRange.parse("bytes=0-1,,2-3", 26));
+        assertNull(ByteRange.parse("bytes=99999999999999999999-", 26));
+    }
+
+    @Test
+    public void testOverlappingRangesAreCoalesced() throws Exception {
+        List<ByteRange> ranges = ByteRange.parse("bytes=10-15,0-4,3-7,8-9,20-", 26);
+        assertEquals(2, ranges.size());
+        assertRange(ranges.get(0), 0, 15);
+        assertRange(ranges.get(1), 20, 25);
+
+        ranges = ByteRange.parse("bytes=-5,0-", 26);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 25);
+    }
+
+    @Test
+    public void testTooManyRangesAreIgnored() throws Exception {
+        StringBuilder spec = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < ByteRange.MAX_RANGES; i++) {
+            spec.append(",").append(i * 2).append("-").append(i * 2);
+        }
+        assertEquals(ByteRange.MAX_RANGES, ByteRange.parse(spec.toString(), 1000).size());
+
+        spec.append(",999-999");
+        assertNull(ByteRange.parse(spec.toString(), 1000));
+    }
+}
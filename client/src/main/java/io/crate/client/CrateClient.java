@@ -21,6 +21,7 @@
 
 package io.crate.client;
 
+import io.crate.action.sql.SQLFetchRequest;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import org.elasticsearch.ElasticsearchException;
@@ -107,5 +108,13 @@ public class CrateClient {
         return internalClient.sql(request);
     }
 
+    /**
+     * fetch the next page of a result requested with a fetch size
+     * or close its cursor if {@link io.crate.action.sql.SQLFetchRequest#close()} is set.
+     */
+    public ActionFuture<SQLResponse> sqlFetch(SQLFetchRequest request) {
+        return internalClient.sqlFetch(request);
+    }
+
 
 }
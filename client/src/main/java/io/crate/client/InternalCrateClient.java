@@ -23,6 +23,8 @@ package io.crate.client;
 
 import com.google.common.collect.ImmutableMap;
 import io.crate.action.sql.SQLAction;
+import io.crate.action.sql.SQLFetchAction;
+import io.crate.action.sql.SQLFetchRequest;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import org.elasticsearch.ElasticsearchException;
@@ -48,11 +50,13 @@ public class InternalCrateClient {
 
         this.nodesService = nodesService;
 
-        // Currently we only support the sql action, so this gets registered directly
+        // Currently we only support the sql actions, so these get registered directly
         MapBuilder<Action, TransportActionNodeProxy> actionsBuilder = new MapBuilder<Action,
                 TransportActionNodeProxy>();
         actionsBuilder.put((Action) SQLAction.INSTANCE,
                 new TransportActionNodeProxy(settings, SQLAction.INSTANCE, transportService));
+        actionsBuilder.put((Action) SQLFetchAction.INSTANCE,
+                new TransportActionNodeProxy(settings, SQLFetchAction.INSTANCE, transportService));
         this.actions = actionsBuilder.immutableMap();
     }
 
@@ -60,6 +64,10 @@ public class InternalCrateClient {
         return execute(SQLAction.INSTANCE, request);
     }
 
+    public ActionFuture<SQLResponse> sqlFetch(final SQLFetchRequest request) {
+        return execute(SQLFetchAction.INSTANCE, request);
+    }
+
 
     protected <Request extends ActionRequest, Response extends ActionResponse,
             RequestBuilder extends ActionRequestBuilder<Request, Response,
@@ -0,0 +1,408 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.DataType;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * streams the rows of a {@link SQLResponse} column by column.
+ *
+ * Every column is written with an encoding derived from its {@link DataType}:
+ * a bit-packed null mask followed by the non-null values as primitives,
+ * strings are dictionary-encoded if they repeat often enough.
+ * Columns whose values don't have the java type the {@link DataType} implies
+ * (objects, arrays, sets or values coming from the source) are written value by value
+ * using {@link StreamOutput#writeGenericValue(Object)}.
+ */
+class ColumnStreamer {
+
+    static final byte GENERIC = 0;
+    static final byte ALL_NULL = 1;
+    static final byte BYTE = 2;
+    static final byte SHORT = 3;
+    static final byte INTEGER = 4;
+    static final byte LONG = 5;
+    static final byte FLOAT = 6;
+    static final byte DOUBLE = 7;
+    static final byte BOOLEAN = 8;
+    static final byte STRING = 9;
+    static final byte STRING_DICTIONARY = 10;
+
+    private ColumnStreamer() {
+    }
+
+    public static void writeColumns(StreamOutput out, DataType[] columnTypes, Object[][] rows) throws IOException {
+        for (int c = 0; c < columnTypes.length; c++) {
+            writeColumn(out, columnTypes[c], rows, c);
+        }
+    }
+
+    public static void readColumns(StreamInput in, Object[][] rows, int numColumns) throws IOException {
+        for (int c = 0; c < numColumns; c++) {
+            readColumn(in, rows, c);
+        }
+    }
+
+    static byte encoding(DataType dataType, Object[][] rows, int column) {
+        Class<?> expectedClass = valueClass(dataType);
+        boolean allNull = true;
+        for (Object[] row : rows) {
+            Object value = row[column];
+            if (value == null) {
+                continue;
+            }
+            allNull = false;
+            if (expectedClass == null || value.getClass() != expectedClass) {
+                return GENERIC;
+            }
+        }
+        if (allNull && rows.length > 0) {
+            return ALL_NULL;
+        }
+        if (expectedClass == null) {
+            return GENERIC;
+        }
+        switch (dataType) {
+            case BYTE:
+                return BYTE;
+            case SHORT:
+                return SHORT;
+            case INTEGER:
+                return INTEGER;
+            case LONG:
+            case TIMESTAMP:
+                return LONG;
+            case FLOAT:
+                return FLOAT;
+            case DOUBLE:
+                return DOUBLE;
+            case BOOLEAN:
+                return BOOLEAN;
+            default:
+                return useDictionary(rows, column) ? STRING_DICTIONARY : STRING;
+        }
+    }
+
+    private static Class<?> valueClass(DataType dataType) {
+        switch (dataType) {
+            case BYTE:
+                return Byte.class;
+            case SHORT:
+                return Short.class;
+            case INTEGER:
+                return Integer.class;
+            case LONG:
+            case TIMESTAMP:
+                return Long.class;
+            case FLOAT:
+                return Float.class;
+            case DOUBLE:
+                return Double.class;
+            case BOOLEAN:
+                return Boolean.class;
+            case STRING:
+            case IP:
+                return String.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * use a dictionary if at most half of the values are distinct
+     */
+    private static boolean useDictionary(Object[][] rows, int column) {
+        Map<Object, Boolean> distinct = new HashMap<>();
+        int numValues = 0;
+        for (Object[] row : rows) {
+            if (row[column] != null) {
+                numValues++;
+                distinct.put(row[column], Boolean.TRUE);
+            }
+        }
+        return distinct.size() * 2 <= numValues;
+    }
+
+    private static void writeColumn(StreamOutput out, DataType dataType, Object[][] rows, int column) throws IOException {
+        byte encoding = encoding(dataType, rows, column);
+        out.writeByte(encoding);
+        if (encoding == ALL_NULL) {
+            return;
+        }
+        if (encoding == GENERIC) {
+            for (Object[] row : rows) {
+                out.writeGenericValue(row[column]);
+            }
+            return;
+        }
+        writeNullMask(out, rows, column);
+        switch (encoding) {
+            case BYTE:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeByte((Byte) row[column]);
+                    }
+                }
+                break;
+            case SHORT:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeShort((Short) row[column]);
+                    }
+                }
+                break;
+            case INTEGER:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeInt((Integer) row[column]);
+                    }
+                }
+                break;
+            case LONG:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeLong((Long) row[column]);
+                    }
+                }
+                break;
+            case FLOAT:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeFloat((Float) row[column]);
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeDouble((Double) row[column]);
+                    }
+                }
+                break;
+            case BOOLEAN:
+                writeBooleans(out, rows, column);
+                break;
+            case STRING:
+                for (Object[] row : rows) {
+                    if (row[column] != null) {
+                        out.writeString((String) row[column]);
+                    }
+                }
+                break;
+            case STRING_DICTIONARY:
+                writeDictionary(out, rows, column);
+                break;
+            default:
+                throw new IllegalStateException("Unknown column encoding " + encoding);
+        }
+    }
+
+    private static void readColumn(StreamInput in, Object[][] rows, int column) throws IOException {
+        byte encoding = in.readByte();
+        if (encoding == ALL_NULL) {
+            return;
+        }
+        if (encoding == GENERIC) {
+            for (Object[] row : rows) {
+                row[column] = in.readGenericValue();
+            }
+            return;
+        }
+        byte[] nullMask = readNullMask(in, rows.length);
+        switch (encoding) {
+            case BYTE:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readByte();
+                    }
+                }
+                break;
+            case SHORT:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readShort();
+                    }
+                }
+                break;
+            case INTEGER:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readInt();
+                    }
+                }
+                break;
+            case LONG:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readLong();
+                    }
+                }
+                break;
+            case FLOAT:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readFloat();
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readDouble();
+                    }
+                }
+                break;
+            case BOOLEAN:
+                readBooleans(in, nullMask, rows, column);
+                break;
+            case STRING:
+                for (int r = 0; r < rows.length; r++) {
+                    if (!isNull(nullMask, r)) {
+                        rows[r][column] = in.readString();
+                    }
+                }
+                break;
+            case STRING_DICTIONARY:
+                readDictionary(in, nullMask, rows, column);
+                break;
+            default:
+                throw new IllegalStateException("Unknown column encoding " + encoding);
+        }
+    }
+
+    /**
+     * writes a flag and, if the column contains nulls, one bit per row which is set for null values
+     */
+    private static void writeNullMask(StreamOutput out, Object[][] rows, int column) throws IOException {
+        byte[] mask = null;
+        for (int r = 0; r < rows.length; r++) {
+            if (rows[r][column] == null) {
+                if (mask == null) {
+                    mask = new byte[(rows.length + 7) / 8];
+                }
+                mask[r >> 3] |= 1 << (r & 7);
+            }
+        }
+        out.writeBoolean(mask != null);
+        if (mask != null) {
+            out.writeBytes(mask);
+        }
+    }
+
+    private static byte[] readNullMask(StreamInput in, int numRows) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] mask = new byte[(numRows + 7) / 8];
+        in.readBytes(mask, 0, mask.length);
+        return mask;
+    }
+
+    private static boolean isNull(byte[] nullMask, int row) {
+        return nullMask != null && (nullMask[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    private static void writeBooleans(StreamOutput out, Object[][] rows, int column) throws IOException {
+        byte bits = 0;
+        int numBits = 0;
+        for (Object[] row : rows) {
+            if (row[column] == null) {
+                continue;
+            }
+            if ((Boolean) row[column]) {
+                bits |= 1 << numBits;
+            }
+            if (++numBits == 8) {
+                out.writeByte(bits);
+                bits = 0;
+                numBits = 0;
+            }
+        }
+        if (numBits > 0) {
+            out.writeByte(bits);
+        }
+    }
+
+    private static void readBooleans(StreamInput in, byte[] nullMask, Object[][] rows, int column) throws IOException {
+        byte bits = 0;
+        int numBits = 0;
+        for (int r = 0; r < rows.length; r++) {
+            if (isNull(nullMask, r)) {
+                continue;
+            }
+            if (numBits == 0) {
+                bits = in.readByte();
+            }
+            rows[r][column] = (bits & (1 << numBits)) != 0;
+            numBits = (numBits + 1) & 7;
+        }
+    }
+
+    private static void writeDictionary(StreamOutput out, Object[][] rows, int column) throws IOException {
+        Map<String, Integer> ordinals = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] valueOrdinals = new int[rows.length];
+        for (int r = 0; r < rows.length; r++) {
+            String value = (String) rows[r][column];
+            if (value == null) {
+                continue;
+            }
+            Integer ordinal = ordinals.get(value);
+            if (ordinal == null) {
+                ordinal = dictionary.size();
+                ordinals.put(value, ordinal);
+                dictionary.add(value);
+            }
+            valueOrdinals[r] = ordinal;
+        }
+        out.writeVInt(dictionary.size());
+        for (String value : dictionary) {
+            out.writeString(value);
+        }
+        for (int r = 0; r < rows.length; r++) {
+            if (rows[r][column] != null) {
+                out.writeVInt(valueOrdinals[r]);
+            }
+        }
+    }
+
+    private static void readDictionary(StreamInput in, byte[] nullMask, Object[][] rows, int column) throws IOException {
+        String[] dictionary = new String[in.readVInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readString();
+        }
+        for (int r = 0; r < rows.length; r++) {
+            if (!isNull(nullMask, r)) {
+                rows[r][column] = dictionary[in.readVInt()];
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.crate.DataType;
+import io.crate.exceptions.CrateException;
+import io.crate.exceptions.CursorUnknownException;
+import io.crate.exceptions.ExceptionHelper;
+import io.crate.executor.Pageable;
+import io.crate.executor.ResponseBuilder;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.unit.TimeValue;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A cursor over the result of a SQL statement which delivers the rows in pages of
+ * <code>fetchSize</code> rows.
+ * <p/>
+ * Pages are pulled from a {@link Pageable} when they are fetched, so rows are only produced
+ * as fast as they are consumed and no thread waits for the client.
+ * If the result can be built page by page, at most one page is held in memory.
+ * <p/>
+ * Every response but the last one contains the id of the cursor which is used to fetch the next page.
+ */
+public class SQLCursor {
+
+    private final String id;
+    private final SQLCursors cursors;
+    private final ResponseBuilder responseBuilder;
+    private final DataType[] outputTypes;
+    private final String[] outputNames;
+    private final int fetchSize;
+    private final long requestStartedTime;
+    private final Pageable pages;
+    private final TimeValue keepAlive;
+
+    private int position = 0;
+    private boolean fetching = false;
+    private boolean closed = false;
+    private volatile long lastAccessTime;
+
+    SQLCursor(String id,
+              SQLCursors cursors,
+              ResponseBuilder responseBuilder,
+              DataType[] outputTypes,
+              String[] outputNames,
+              int fetchSize,
+              long requestStartedTime,
+              Pageable pages,
+              TimeValue keepAlive) {
+        assert fetchSize > 0;
+        this.id = id;
+        this.cursors = cursors;
+        this.responseBuilder = responseBuilder;
+        this.outputTypes = outputTypes;
+        this.outputNames = outputNames;
+        this.fetchSize = fetchSize;
+        this.requestStartedTime = requestStartedTime;
+        this.pages = pages;
+        this.keepAlive = keepAlive;
+        this.lastAccessTime = System.currentTimeMillis();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * fetch the next page.
+     * One row more than the page size is requested to know if the page is the last one.
+     */
+    public void fetch(final ActionListener<SQLResponse> listener) {
+        final int pagePosition;
+        synchronized (this) {
+            lastAccessTime = System.currentTimeMillis();
+            if (closed) {
+                listener.onFailure(new CursorUnknownException(id));
+                return;
+            }
+            if (fetching) {
+                listener.onFailure(new CrateException(
+                        String.format(Locale.ENGLISH, "Cursor '%s' has a pending fetch", id)));
+                return;
+            }
+            fetching = true;
+            pagePosition = position;
+        }
+        ListenableFuture<Object[][]> page;
+        try {
+            page = pages.fetch(pagePosition, fetchSize + 1, keepAlive);
+        } catch (Throwable t) {
+            failed(listener, t);
+            return;
+        }
+        Futures.addCallback(page, new FutureCallback<Object[][]>() {
+            @Override
+            public void onSuccess(@Nullable Object[][] rows) {
+                deliver(listener, rows == null ? new Object[0][] : rows);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failed(listener, t);
+            }
+        });
+    }
+
+    private void deliver(ActionListener<SQLResponse> listener, Object[][] rows) {
+        boolean last = rows.length <= fetchSize;
+        if (!last) {
+            rows = Arrays.copyOf(rows, fetchSize);
+        }
+        synchronized (this) {
+            fetching = false;
+            if (closed) {
+                listener.onFailure(new CursorUnknownException(id));
+                return;
+            }
+            position += rows.length;
+            lastAccessTime = System.currentTimeMillis();
+        }
+        if (last) {
+            close();
+        }
+        SQLResponse response;
+        try {
+            response = responseBuilder.buildResponse(outputTypes, outputNames, rows, requestStartedTime);
+        } catch (Throwable t) {
+            close();
+            listener.onFailure(ExceptionHelper.transformToCrateException(t));
+            return;
+        }
+        response.cursorId(last ? null : id);
+        listener.onResponse(response);
+    }
+
+    private void failed(ActionListener<SQLResponse> listener, Throwable t) {
+        synchronized (this) {
+            fetching = false;
+        }
+        close();
+        listener.onFailure(ExceptionHelper.transformToCrateException(t));
+    }
+
+    /**
+     * close the cursor, fetching from a closed cursor fails
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        cursors.remove(id);
+        pages.close();
+    }
+
+    /**
+     * true if no fetch is running and the cursor hasn't been used for <code>keepAlive</code> milliseconds
+     */
+    synchronized boolean expired(long now, long keepAlive) {
+        return !fetching && lastAccessTime + keepAlive < now;
+    }
+
+    /**
+     * pages of a result which is built at once
+     */
+    static class ResultPages implements Pageable {
+
+        private final ListenableFuture<Object[][]> result;
+
+        ResultPages(ListenableFuture<Object[][]> result) {
+            this.result = result;
+        }
+
+        @Override
+        public ListenableFuture<Object[][]> fetch(final int position, final int size, TimeValue keepAlive) {
+            return Futures.transform(result, new Function<Object[][], Object[][]>() {
+                @Nullable
+                @Override
+                public Object[][] apply(@Nullable Object[][] rows) {
+                    if (rows == null || position >= rows.length) {
+                        return new Object[0][];
+                    }
+                    return Arrays.copyOfRange(rows, position, Math.min(rows.length, position + size));
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.DataType;
+import io.crate.executor.Pageable;
+import io.crate.executor.ResponseBuilder;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * registry of the open {@link io.crate.action.sql.SQLCursor}s of this node.
+ * <p/>
+ * Cursors which haven't been fetched from for <code>crate.sql.cursor.keep_alive</code>
+ * are closed periodically.
+ */
+public class SQLCursors extends AbstractComponent {
+
+    public static final String SETTING_KEEP_ALIVE = "crate.sql.cursor.keep_alive";
+    private static final char ID_SEPARATOR = ':';
+
+    private final ClusterService clusterService;
+    private final ConcurrentMap<String, SQLCursor> cursors = ConcurrentCollections.newConcurrentMap();
+    private final TimeValue keepAlive;
+
+    @Inject
+    public SQLCursors(Settings settings, ClusterService clusterService, ThreadPool threadPool) {
+        super(settings);
+        this.clusterService = clusterService;
+        TimeValue keepAlive = settings.getAsTime(SETTING_KEEP_ALIVE, TimeValue.timeValueMinutes(5));
+        this.keepAlive = keepAlive;
+        threadPool.scheduleWithFixedDelay(new Reaper(), keepAlive);
+    }
+
+    public SQLCursor open(ResponseBuilder responseBuilder,
+                          DataType[] outputTypes,
+                          String[] outputNames,
+                          int fetchSize,
+                          long requestStartedTime,
+                          Pageable pages) {
+        String id = clusterService.localNode().id() + ID_SEPARATOR + UUID.randomUUID().toString();
+        SQLCursor cursor = new SQLCursor(id, this, responseBuilder, outputTypes, outputNames,
+                fetchSize, requestStartedTime, pages, keepAlive);
+        cursors.put(id, cursor);
+        return cursor;
+    }
+
+    @Nullable
+    public SQLCursor get(String cursorId) {
+        return cursors.get(cursorId);
+    }
+
+    void remove(String cursorId) {
+        cursors.remove(cursorId);
+    }
+
+    /**
+     * the id of the node the cursor with the given id was opened on
+     * or null if the id is malformed
+     */
+    @Nullable
+    public static String nodeId(String cursorId) {
+        int idx = cursorId.indexOf(ID_SEPARATOR);
+        if (idx <= 0) {
+            return null;
+        }
+        return cursorId.substring(0, idx);
+    }
+
+    private class Reaper implements Runnable {
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            for (SQLCursor cursor : cursors.values()) {
+                if (cursor.expired(now, keepAlive.millis())) {
+                    logger.debug("closing expired cursor [{}]", cursor.id());
+                    cursor.close();
+                }
+            }
+        }
+    }
+}
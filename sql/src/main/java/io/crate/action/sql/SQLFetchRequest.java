@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * request to fetch the next page of a {@link io.crate.action.sql.SQLCursor}
+ * or to close it if the remaining rows aren't needed.
+ */
+public class SQLFetchRequest extends ActionRequest<SQLFetchRequest> {
+
+    private String cursorId;
+    private boolean close = false;
+
+    public SQLFetchRequest() {
+    }
+
+    public SQLFetchRequest(String cursorId) {
+        this.cursorId = cursorId;
+    }
+
+    public String cursorId() {
+        return cursorId;
+    }
+
+    public SQLFetchRequest cursorId(String cursorId) {
+        this.cursorId = cursorId;
+        return this;
+    }
+
+    public boolean close() {
+        return close;
+    }
+
+    public SQLFetchRequest close(boolean close) {
+        this.close = close;
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        if (cursorId == null) {
+            return addValidationError("cursor is missing", null);
+        }
+        return null;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        cursorId = in.readString();
+        close = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(cursorId);
+        out.writeBoolean(close);
+    }
+}
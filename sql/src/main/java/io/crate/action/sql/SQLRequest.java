@@ -34,6 +34,7 @@ public class SQLRequest extends ActionRequest<SQLRequest> {
     private String stmt;
     private Object[] args;
     private long creationTime;
+    private int fetchSize = 0;
 
     public SQLRequest(String stmt, Object[] args) {
         this.stmt = stmt;
@@ -76,6 +77,19 @@ public class SQLRequest extends ActionRequest<SQLRequest> {
         return creationTime;
     }
 
+    /**
+     * the maximum number of rows of a response.
+     * If greater than 0 the result is delivered in pages which are fetched using the cursor of the response.
+     */
+    public int fetchSize() {
+        return fetchSize;
+    }
+
+    public SQLRequest fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
     @Override
     public ActionRequestValidationException validate() {
         return null;
@@ -91,6 +105,7 @@ public class SQLRequest extends ActionRequest<SQLRequest> {
             args[i] = in.readGenericValue();
         }
         creationTime = in.readVLong();
+        fetchSize = in.readVInt();
     }
 
     @Override
@@ -102,6 +117,7 @@ public class SQLRequest extends ActionRequest<SQLRequest> {
             out.writeGenericValue(args[i]);
         }
         out.writeVLong(creationTime);
+        out.writeVInt(fetchSize);
     }
 
 }
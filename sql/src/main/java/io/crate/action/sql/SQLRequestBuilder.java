@@ -53,6 +53,12 @@ public class SQLRequestBuilder extends ActionRequestBuilder<SQLRequest, SQLRespo
         parser.parseSource(source);
         request.stmt(context.stmt());
         request.args(context.args());
+        request.fetchSize(context.fetchSize());
+        return this;
+    }
+
+    public SQLRequestBuilder fetchSize(int fetchSize) {
+        request.fetchSize(fetchSize);
         return this;
     }
 
@@ -21,6 +21,7 @@
 
 package io.crate.action.sql;
 
+import io.crate.DataType;
 import io.crate.action.SQLResult;
 import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -29,6 +30,7 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -39,19 +41,31 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
         static final XContentBuilderString ROWS = new XContentBuilderString("rows");
         static final XContentBuilderString ROWCOUNT = new XContentBuilderString("rowcount");
         static final XContentBuilderString DURATION = new XContentBuilderString("duration");
+        static final XContentBuilderString CURSOR = new XContentBuilderString("cursor");
     }
     public static final long NO_ROW_COUNT = -1L;
 
     private Object[][] rows;
     private String[] cols;
+    private DataType[] colTypes;
     private long rowCount = NO_ROW_COUNT;
     private long requestStartedTime = 0L;
+    private String cursorId;
 
     public SQLResponse() {
     }
 
     public SQLResponse(String[] cols, Object[][] rows, long rowCount, long requestStartedTime) {
+        this(cols, null, rows, rowCount, requestStartedTime);
+    }
+
+    public SQLResponse(String[] cols,
+                       @Nullable DataType[] colTypes,
+                       Object[][] rows,
+                       long rowCount,
+                       long requestStartedTime) {
         this.cols = cols;
+        this.colTypes = colTypes;
         this.rows = rows;
         this.rowCount = rowCount;
         this.requestStartedTime = requestStartedTime;
@@ -76,6 +90,9 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
             builder.field(Fields.ROWCOUNT, rowCount());
         }
         builder.field(Fields.DURATION, duration());
+        if (cursorId != null) {
+            builder.field(Fields.CURSOR, cursorId);
+        }
 
         return builder;
     }
@@ -88,6 +105,19 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
         this.cols = cols;
     }
 
+    /**
+     * the types of the columns if known.
+     * If they are, the rows are streamed column by column using an encoding per type.
+     */
+    @Nullable
+    public DataType[] colTypes() {
+        return colTypes;
+    }
+
+    public void colTypes(@Nullable DataType[] colTypes) {
+        this.colTypes = colTypes;
+    }
+
     public Object[][] rows(){
         return rows;
     }
@@ -119,6 +149,19 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
         this.requestStartedTime = requestStartedTime;
     }
 
+    /**
+     * the id of the cursor used to fetch the next page of the result
+     * or null if this response contains the last page.
+     */
+    @Nullable
+    public String cursorId() {
+        return cursorId;
+    }
+
+    public void cursorId(@Nullable String cursorId) {
+        this.cursorId = cursorId;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -130,12 +173,21 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
         cols = in.readStringArray();
         int numRows = in.readInt();
         rows = new Object[numRows][cols.length];
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < cols.length; j++) {
-                rows[i][j] = in.readGenericValue();
+        if (in.readBoolean()) {
+            colTypes = new DataType[cols.length];
+            for (int i = 0; i < cols.length; i++) {
+                colTypes[i] = DataType.fromStream(in);
+            }
+            ColumnStreamer.readColumns(in, rows, cols.length);
+        } else {
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < cols.length; j++) {
+                    rows[i][j] = in.readGenericValue();
+                }
             }
         }
         requestStartedTime = in.readVLong();
+        cursorId = in.readOptionalString();
     }
 
     @Override
@@ -145,12 +197,22 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
         out.writeVLong(Math.abs(rowCount));
         out.writeStringArray(cols);
         out.writeInt(rows.length);
-        for (int i = 0; i < rows.length ; i++) {
-            for (int j = 0; j < cols.length; j++) {
-                out.writeGenericValue(rows[i][j]);
+        boolean columnar = colTypes != null && colTypes.length == cols.length;
+        out.writeBoolean(columnar);
+        if (columnar) {
+            for (DataType colType : colTypes) {
+                DataType.toStream(colType, out);
+            }
+            ColumnStreamer.writeColumns(out, colTypes, rows);
+        } else {
+            for (int i = 0; i < rows.length ; i++) {
+                for (int j = 0; j < cols.length; j++) {
+                    out.writeGenericValue(rows[i][j]);
+                }
             }
         }
         out.writeVLong(requestStartedTime);
+        out.writeOptionalString(cursorId);
     }
 
     @Override
@@ -160,6 +222,7 @@ public class SQLResponse extends ActionResponse implements ToXContent, SQLResult
                 ", rows=" + ((rows!=null) ? rows.length: -1)  +
                 ", rowCount=" + rowCount  +
                 ", duration=" + duration()  +
+                ", cursor=" + cursorId  +
                 '}';
     }
 }
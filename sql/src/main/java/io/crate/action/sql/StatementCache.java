@@ -0,0 +1,104 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Statement;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * bounded cache of parsed statements keyed by the statement text.
+ * <p/>
+ * Parsed statements don't contain parameter values or any table metadata,
+ * the arguments are bound and the tables are resolved by the analyzer on every request,
+ * so cached statements never need to be invalidated.
+ * <p/>
+ * The cache is bounded by the summed up length of the cached statements, as the size of a
+ * parsed statement grows with its text. Statements longer than
+ * <code>crate.sql.statement_cache.max_statement_length</code>, like inserts with many
+ * literal values, are parsed without being cached.
+ */
+public class StatementCache extends AbstractComponent {
+
+    public static final String SETTING_MAX_LENGTH = "crate.sql.statement_cache.max_length";
+    public static final String SETTING_MAX_STATEMENT_LENGTH = "crate.sql.statement_cache.max_statement_length";
+    public static final int DEFAULT_MAX_LENGTH = 1000000;
+    public static final int DEFAULT_MAX_STATEMENT_LENGTH = 10000;
+
+    private final LoadingCache<String, Statement> statements;
+    private final int maxStatementLength;
+
+    @Inject
+    public StatementCache(Settings settings) {
+        super(settings);
+        maxStatementLength = settings.getAsInt(SETTING_MAX_STATEMENT_LENGTH, DEFAULT_MAX_STATEMENT_LENGTH);
+        statements = CacheBuilder.newBuilder()
+                .maximumWeight(settings.getAsInt(SETTING_MAX_LENGTH, DEFAULT_MAX_LENGTH))
+                .weigher(new Weigher<String, Statement>() {
+                    @Override
+                    public int weigh(String stmt, Statement statement) {
+                        return stmt.length();
+                    }
+                })
+                .recordStats()
+                .build(new CacheLoader<String, Statement>() {
+                    @Override
+                    public Statement load(String stmt) throws Exception {
+                        return SqlParser.createStatement(stmt);
+                    }
+                });
+    }
+
+    /**
+     * returns the parsed statement, parsing it only if it isn't cached.
+     * Statements which are too long to be cached are always parsed.
+     *
+     * @throws com.google.common.util.concurrent.UncheckedExecutionException wrapping the parse error
+     */
+    public Statement get(String stmt) {
+        if (stmt.length() > maxStatementLength) {
+            try {
+                return SqlParser.createStatement(stmt);
+            } catch (RuntimeException e) {
+                throw new UncheckedExecutionException(e);
+            }
+        }
+        return statements.getUnchecked(stmt);
+    }
+
+    public CacheStats stats() {
+        return statements.stats();
+    }
+
+    public long size() {
+        return statements.size();
+    }
+}
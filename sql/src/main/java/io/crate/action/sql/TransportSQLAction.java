@@ -21,6 +21,7 @@
 
 package io.crate.action.sql;
 
+import com.google.common.base.Function;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -30,10 +31,10 @@ import io.crate.analyze.Analysis;
 import io.crate.analyze.Analyzer;
 import io.crate.exceptions.ExceptionHelper;
 import io.crate.executor.*;
+import io.crate.executor.task.LocalMergeTask;
 import io.crate.planner.Plan;
 import io.crate.planner.PlanPrinter;
 import io.crate.planner.Planner;
-import io.crate.sql.parser.SqlParser;
 import io.crate.sql.tree.Statement;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.support.TransportAction;
@@ -54,6 +55,8 @@ public class TransportSQLAction extends TransportAction<SQLRequest, SQLResponse>
     private final Planner planner;
     private final Executor executor;
     private final DDLAnalysisDispatcher dispatcher;
+    private final SQLCursors cursors;
+    private final StatementCache statementCache;
 
     @Inject
     protected TransportSQLAction(Settings settings, ThreadPool threadPool,
@@ -61,12 +64,16 @@ public class TransportSQLAction extends TransportAction<SQLRequest, SQLResponse>
             Planner planner,
             Executor executor,
             DDLAnalysisDispatcher dispatcher,
+            SQLCursors cursors,
+            StatementCache statementCache,
             TransportService transportService) {
         super(settings, threadPool);
         this.analyzer = analyzer;
         this.planner = planner;
         this.executor = executor;
         this.dispatcher = dispatcher;
+        this.cursors = cursors;
+        this.statementCache = statementCache;
         transportService.registerHandler(SQLAction.NAME, new TransportHandler());
     }
 
@@ -75,7 +82,7 @@ public class TransportSQLAction extends TransportAction<SQLRequest, SQLResponse>
         logger.trace("doExecute: " + request);
 
         try {
-            Statement statement = SqlParser.createStatement(request.stmt());
+            Statement statement = statementCache.get(request.stmt());
             Analysis analysis = analyzer.analyze(statement, request.args());
 
             if (analysis.isData()) {
@@ -124,11 +131,60 @@ public class TransportSQLAction extends TransportAction<SQLRequest, SQLResponse>
         }
         final ResponseBuilder responseBuilder = getResponseBuilder(plan);
         final Job job = executor.newJob(plan);
+        if (request.fetchSize() > 0 && !plan.expectsAffectedRows()) {
+            processWithCursor(request, listener, outputNames, plan, responseBuilder, job);
+            return;
+        }
         final ListenableFuture<List<Object[][]>> resultFuture = Futures.allAsList(executor.execute(job));
 
         addResultCallback(request, listener, outputNames, plan, responseBuilder, resultFuture);
     }
 
+    /**
+     * deliver the result in pages using a {@link io.crate.action.sql.SQLCursor}.
+     * If the job consists of a single {@link Pageable} task, every page is produced when it is fetched.
+     * This is also the case if the pages of such a task only need to be projected by a local merge.
+     * Otherwise the job is executed and the cursor pages its result.
+     */
+    private void processWithCursor(SQLRequest request,
+                                   ActionListener<SQLResponse> listener,
+                                   String[] outputNames,
+                                   Plan plan,
+                                   ResponseBuilder responseBuilder,
+                                   Job job) {
+        Pageable pages;
+        List<Task> tasks = job.tasks();
+        if (tasks.size() == 1 && tasks.get(0) instanceof Pageable) {
+            pages = (Pageable) tasks.get(0);
+        } else if (tasks.size() == 2 && tasks.get(0) instanceof Pageable
+                && tasks.get(1) instanceof LocalMergeTask
+                && ((LocalMergeTask) tasks.get(1)).canProjectPages()) {
+            pages = ((LocalMergeTask) tasks.get(1)).pages((Pageable) tasks.get(0));
+        } else {
+            ListenableFuture<Object[][]> result = Futures.transform(Futures.allAsList(executor.execute(job)),
+                    new Function<List<Object[][]>, Object[][]>() {
+                        @Nullable
+                        @Override
+                        public Object[][] apply(@Nullable List<Object[][]> result) {
+                            if (result == null) {
+                                return Constants.EMPTY_RESULT;
+                            }
+                            assert result.size() == 1;
+                            return result.get(0);
+                        }
+                    });
+            pages = new SQLCursor.ResultPages(result);
+        }
+        SQLCursor cursor = cursors.open(
+                responseBuilder,
+                plan.outputTypes().toArray(new DataType[plan.outputTypes().size()]),
+                outputNames,
+                request.fetchSize(),
+                request.creationTime(),
+                pages);
+        cursor.fetch(listener);
+    }
+
     private static void emptyResponse(SQLRequest request,
                                       Analysis analysis,
                                       final ActionListener<SQLResponse> listener) {
@@ -0,0 +1,144 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.Constants;
+import io.crate.exceptions.CursorUnknownException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.TransportAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.*;
+
+/**
+ * fetches the next page of a {@link io.crate.action.sql.SQLCursor}.
+ * Requests for cursors of other nodes are forwarded to the node which opened the cursor.
+ */
+public class TransportSQLFetchAction extends TransportAction<SQLFetchRequest, SQLResponse> {
+
+    private final SQLCursors cursors;
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+
+    @Inject
+    protected TransportSQLFetchAction(Settings settings,
+                                      ThreadPool threadPool,
+                                      SQLCursors cursors,
+                                      ClusterService clusterService,
+                                      TransportService transportService) {
+        super(settings, threadPool);
+        this.cursors = cursors;
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        transportService.registerHandler(SQLFetchAction.NAME, new TransportHandler());
+    }
+
+    @Override
+    protected void doExecute(SQLFetchRequest request, final ActionListener<SQLResponse> listener) {
+        String nodeId = SQLCursors.nodeId(request.cursorId());
+        if (nodeId == null) {
+            listener.onFailure(new CursorUnknownException(request.cursorId()));
+            return;
+        }
+        if (nodeId.equals(clusterService.localNode().id())) {
+            SQLCursor cursor = cursors.get(request.cursorId());
+            if (cursor == null) {
+                listener.onFailure(new CursorUnknownException(request.cursorId()));
+            } else if (request.close()) {
+                cursor.close();
+                listener.onResponse(new SQLResponse(new String[0], Constants.EMPTY_RESULT, SQLResponse.NO_ROW_COUNT, 0L));
+            } else {
+                cursor.fetch(listener);
+            }
+            return;
+        }
+
+        DiscoveryNode node = clusterService.state().nodes().get(nodeId);
+        if (node == null) {
+            listener.onFailure(new CursorUnknownException(request.cursorId()));
+            return;
+        }
+        transportService.sendRequest(node, SQLFetchAction.NAME, request, new BaseTransportResponseHandler<SQLResponse>() {
+            @Override
+            public SQLResponse newInstance() {
+                return new SQLResponse();
+            }
+
+            @Override
+            public void handleResponse(SQLResponse response) {
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void handleException(TransportException exp) {
+                listener.onFailure(exp.unwrapCause());
+            }
+
+            @Override
+            public String executor() {
+                return ThreadPool.Names.SAME;
+            }
+        });
+    }
+
+    private class TransportHandler extends BaseTransportRequestHandler<SQLFetchRequest> {
+
+        @Override
+        public SQLFetchRequest newInstance() {
+            return new SQLFetchRequest();
+        }
+
+        @Override
+        public void messageReceived(SQLFetchRequest request, final TransportChannel channel) throws Exception {
+            // no need for a threaded listener
+            request.listenerThreaded(false);
+            execute(request, new ActionListener<SQLResponse>() {
+                @Override
+                public void onResponse(SQLResponse result) {
+                    try {
+                        channel.sendResponse(result);
+                    } catch (Throwable e) {
+                        onFailure(e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    try {
+                        channel.sendResponse(e);
+                    } catch (Exception e1) {
+                        logger.error("Failed to send response for sql fetch", e1);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class SQLXContentSourceContext {
 
     private String stmt;
     private Object[] args;
+    private int fetchSize = 0;
 
     public String stmt() {
         return stmt;
@@ -44,4 +45,12 @@ public class SQLXContentSourceContext {
     public void args(Object[] args) {
         this.args = args;
     }
+
+    public int fetchSize() {
+        return fetchSize;
+    }
+
+    public void fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
 }
@@ -29,6 +29,10 @@ public class VersionConflictException extends CrateException {
         super(e);
     }
 
+    public VersionConflictException(String msg) {
+        super(msg);
+    }
+
     @Override
     public int errorCode() {
         return 4092;
@@ -0,0 +1,49 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * a result which can be fetched page by page instead of being built at once.
+ */
+public interface Pageable {
+
+    /**
+     * fetch the rows of the result starting at <code>position</code>.
+     * Less than <code>size</code> rows are returned only if the result is exhausted.
+     * <p/>
+     * Pages are fetched in order, a page may start before the end of the previous one
+     * but never before its start.
+     *
+     * @param keepAlive how long resources needed for the next page are kept
+     *                  if no further page is fetched
+     */
+    public ListenableFuture<Object[][]> fetch(int position, int size, TimeValue keepAlive);
+
+    /**
+     * release the resources of the result, no more pages are fetched
+     */
+    public void close();
+}
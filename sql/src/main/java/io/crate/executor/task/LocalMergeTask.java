@@ -24,19 +24,25 @@ package io.crate.executor.task;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Collections2;
+import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.Constants;
+import io.crate.executor.Pageable;
 import io.crate.executor.Task;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.merge.MergeOperation;
+import io.crate.operation.projectors.TopN;
 import io.crate.planner.node.dql.MergeNode;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
@@ -134,6 +140,61 @@ public class LocalMergeTask implements Task<Object[][]> {
         }
     }
 
+    /**
+     * true if the projections of this merge can be applied to every page of the
+     * upstream on its own, which is the case for a single unordered topN projection without offset,
+     * as it only evaluates the outputs of each row.
+     */
+    public boolean canProjectPages() {
+        if (mergeNode.projections().size() != 1
+                || !(mergeNode.projections().get(0) instanceof TopNProjection)) {
+            return false;
+        }
+        TopNProjection projection = (TopNProjection) mergeNode.projections().get(0);
+        return !projection.isOrdered() && projection.offset() == TopN.NO_OFFSET;
+    }
+
+    /**
+     * pages of the given upstream with the projections of this merge applied to every page.
+     * The upstream is responsible for limit and offset, see {@link #canProjectPages()}.
+     */
+    public Pageable pages(final Pageable upstream) {
+        assert canProjectPages();
+        return new Pageable() {
+            @Override
+            public ListenableFuture<Object[][]> fetch(int position, int size, TimeValue keepAlive) {
+                return Futures.transform(upstream.fetch(position, size, keepAlive), new AsyncFunction<Object[][], Object[][]>() {
+                    @Override
+                    public ListenableFuture<Object[][]> apply(Object[][] rows) throws Exception {
+                        return projectPage(rows);
+                    }
+                });
+            }
+
+            @Override
+            public void close() {
+                upstream.close();
+            }
+        };
+    }
+
+    private ListenableFuture<Object[][]> projectPage(Object[][] rows) throws Exception {
+        if (rows.length == 0) {
+            return Futures.immediateFuture(Constants.EMPTY_RESULT);
+        }
+        // the limit of the planned projection applies to the whole result, not to a single page
+        TopNProjection projection = (TopNProjection) mergeNode.projections().get(0);
+        TopNProjection pageProjection = new TopNProjection(rows.length, TopN.NO_OFFSET);
+        pageProjection.outputs(projection.outputs());
+        MergeNode pageNode = new MergeNode(mergeNode.id(), 1);
+        pageNode.projections(Arrays.<Projection>asList(pageProjection));
+
+        MergeOperation mergeOperation = new MergeOperation(clientProvider, symbolVisitor, pageNode);
+        mergeOperation.addRows(rows);
+        mergeOperation.finished();
+        return mergeOperation.result();
+    }
+
     private void traceLogResult(Object[][] rows) {
         if (logger.isTraceEnabled()) {
             String result = Joiner.on(", ").join(Collections2.transform(Arrays.asList(rows),
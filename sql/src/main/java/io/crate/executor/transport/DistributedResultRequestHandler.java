@@ -51,8 +51,12 @@ public class DistributedResultRequestHandler extends BaseTransportRequestHandler
         }
     }
 
+    /**
+     * collectors block their search thread while too many pages are pending,
+     * so the pages must not be handled in the search thread pool.
+     */
     @Override
     public String executor() {
-        return ThreadPool.Names.SEARCH;
+        return ThreadPool.Names.GENERIC;
     }
 }
@@ -32,6 +32,8 @@ public class NodeCollectResponse extends TransportResponse {
 
     private Object[][] rows;
     private final Streamer<?>[] streamers;
+    private int searchQueueSize = 0;
+    private long[] bucketRowCounts = new long[0];
 
 
     public NodeCollectResponse(Streamer<?>[] streamers) {
@@ -46,9 +48,37 @@ public class NodeCollectResponse extends TransportResponse {
         return rows;
     }
 
+    /**
+     * the number of queued and active tasks of the search thread pool of the responding node
+     */
+    public void searchQueueSize(int searchQueueSize) {
+        this.searchQueueSize = searchQueueSize;
+    }
+
+    public int searchQueueSize() {
+        return searchQueueSize;
+    }
+
+    /**
+     * the number of rows a distributing collect sent to each downstream node,
+     * in the order of {@link io.crate.planner.node.dql.CollectNode#downStreamNodes()}
+     */
+    public void bucketRowCounts(long[] bucketRowCounts) {
+        this.bucketRowCounts = bucketRowCounts;
+    }
+
+    public long[] bucketRowCounts() {
+        return bucketRowCounts;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
+        searchQueueSize = in.readVInt();
+        bucketRowCounts = new long[in.readVInt()];
+        for (int i = 0; i < bucketRowCounts.length; i++) {
+            bucketRowCounts[i] = in.readVLong();
+        }
         rows = new Object[in.readVInt()][];
         for (int r = 0; r < rows.length; r++) {
             rows[r] = new Object[streamers.length];
@@ -61,6 +91,11 @@ public class NodeCollectResponse extends TransportResponse {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
+        out.writeVInt(searchQueueSize);
+        out.writeVInt(bucketRowCounts.length);
+        for (long count : bucketRowCounts) {
+            out.writeVLong(count);
+        }
         out.writeVInt(rows.length);
         for (Object[] row : rows) {
             for (int c = 0; c < streamers.length; c++) {
@@ -27,6 +27,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.Streamer;
 import io.crate.exceptions.CrateException;
+import io.crate.metadata.ShardCopySelector;
 import io.crate.operation.collect.DistributingCollectOperation;
 import io.crate.operation.collect.MapSideDataCollectOperation;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
@@ -45,6 +46,8 @@ import org.elasticsearch.transport.*;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class TransportCollectNodeAction {
 
@@ -58,6 +61,7 @@ public class TransportCollectNodeAction {
     private final PlanNodeStreamerVisitor planNodeStreamerVisitor;
     private final String executor = ThreadPool.Names.SEARCH;
     private final DistributingCollectOperation distributingCollectOperation;
+    private final ShardCopySelector shardCopySelector;
 
     @Inject
     public TransportCollectNodeAction(ThreadPool threadPool,
@@ -65,8 +69,10 @@ public class TransportCollectNodeAction {
                                       TransportService transportService,
                                       MapSideDataCollectOperation localDataCollector,
                                       DistributingCollectOperation distributingCollectOperation,
-                                      PlanNodeStreamerVisitor planNodeStreamerVisitor) {
+                                      PlanNodeStreamerVisitor planNodeStreamerVisitor,
+                                      ShardCopySelector shardCopySelector) {
         this.threadPool = threadPool;
+        this.shardCopySelector = shardCopySelector;
         this.transportService = transportService;
         this.clusterService = clusterService;
         this.localDataCollector = localDataCollector;
@@ -111,6 +117,11 @@ public class TransportCollectNodeAction {
                 PlanNodeStreamerVisitor.Context streamerContext = planNodeStreamerVisitor.process(node);
                 NodeCollectResponse response = new NodeCollectResponse(streamerContext.outputStreamers());
                 response.rows(result);
+                response.searchQueueSize(searchQueueSize());
+                if (collectResult instanceof DistributingCollectOperation.DistributingShardCollectFuture) {
+                    response.bucketRowCounts(
+                            ((DistributingCollectOperation.DistributingShardCollectFuture) collectResult).bucketRowCounts());
+                }
                 collectResponse.onResponse(response);
             }
 
@@ -122,6 +133,15 @@ public class TransportCollectNodeAction {
         return collectResponse;
     }
 
+    private int searchQueueSize() {
+        Executor searchExecutor = threadPool.executor(ThreadPool.Names.SEARCH);
+        if (searchExecutor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) searchExecutor;
+            return threadPoolExecutor.getQueue().size() + threadPoolExecutor.getActiveCount();
+        }
+        return 0;
+    }
+
     private class AsyncAction {
 
         private final NodeCollectRequest request;
@@ -139,7 +159,7 @@ public class TransportCollectNodeAction {
 
             this.nodeId = nodeId;
             this.request = request;
-            this.listener = listener;
+            this.listener = new LoadRecordingListener(node.id(), listener);
             PlanNodeStreamerVisitor.Context streamerContext = planNodeStreamerVisitor.process(request.collectNode());
             this.streamers = streamerContext.outputStreamers();
         }
@@ -200,6 +220,36 @@ public class TransportCollectNodeAction {
 
     }
 
+    /**
+     * records the latency of the request and the load of the node it was sent to
+     * which is used to choose the shard copies of the next queries
+     */
+    private class LoadRecordingListener implements ActionListener<NodeCollectResponse> {
+
+        private final String nodeId;
+        private final ActionListener<NodeCollectResponse> delegate;
+        private final long startNanos;
+
+        private LoadRecordingListener(String nodeId, ActionListener<NodeCollectResponse> delegate) {
+            this.nodeId = nodeId;
+            this.delegate = delegate;
+            shardCopySelector.requestStarted(nodeId);
+            this.startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void onResponse(NodeCollectResponse response) {
+            shardCopySelector.requestFinished(nodeId, System.nanoTime() - startNanos, response.searchQueueSize());
+            delegate.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            shardCopySelector.requestFailed(nodeId);
+            delegate.onFailure(e);
+        }
+    }
+
     private class TransportHandler extends BaseTransportRequestHandler<NodeCollectRequest> {
 
         @Override
@@ -58,7 +58,9 @@ import org.elasticsearch.action.deletebyquery.TransportDeleteByQueryAction;
 import org.elasticsearch.action.get.TransportGetAction;
 import org.elasticsearch.action.get.TransportMultiGetAction;
 import org.elasticsearch.action.index.TransportIndexAction;
+import org.elasticsearch.action.search.TransportClearScrollAction;
 import org.elasticsearch.action.search.TransportSearchAction;
+import org.elasticsearch.action.search.TransportSearchScrollAction;
 import org.elasticsearch.action.update.TransportUpdateAction;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
@@ -75,6 +77,8 @@ public class TransportExecutor implements Executor {
     private final ThreadPool threadPool;
 
     private final TransportSearchAction transportSearchAction;
+    private final TransportSearchScrollAction transportSearchScrollAction;
+    private final TransportClearScrollAction transportClearScrollAction;
     private final TransportCollectNodeAction transportCollectNodeAction;
     private final TransportMergeNodeAction transportMergeNodeAction;
     private final TransportGetAction transportGetAction;
@@ -98,6 +102,8 @@ public class TransportExecutor implements Executor {
     @Inject
     public TransportExecutor(Provider<Client> clientProvider,
                              TransportSearchAction transportSearchAction,
+                             TransportSearchScrollAction transportSearchScrollAction,
+                             TransportClearScrollAction transportClearScrollAction,
                              TransportCollectNodeAction transportCollectNodeAction,
                              TransportMergeNodeAction transportMergeNodeAction,
                              TransportGetAction transportGetAction,
@@ -123,6 +129,8 @@ public class TransportExecutor implements Executor {
         this.transportCollectNodeAction = transportCollectNodeAction;
         this.transportMergeNodeAction = transportMergeNodeAction;
         this.transportSearchAction = transportSearchAction;
+        this.transportSearchScrollAction = transportSearchScrollAction;
+        this.transportClearScrollAction = transportClearScrollAction;
         this.transportDeleteByQueryAction = transportDeleteByQueryAction;
         this.transportDeleteAction = transportDeleteAction;
         this.transportCreateIndexAction = transportCreateIndexAction;
@@ -205,7 +213,8 @@ public class TransportExecutor implements Executor {
 
         @Override
         public Void visitESSearchNode(ESSearchNode node, Job context) {
-            context.addTask(new ESSearchTask(node, transportSearchAction));
+            context.addTask(new ESSearchTask(node, transportSearchAction,
+                    transportSearchScrollAction, transportClearScrollAction));
             return null;
         }
 
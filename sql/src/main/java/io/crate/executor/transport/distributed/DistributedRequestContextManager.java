@@ -62,7 +62,7 @@ public class DistributedRequestContextManager {
     private final ESLogger logger = Loggers.getLogger(getClass());
 
     private final Map<UUID, DownstreamOperationContext> activeMergeOperations = new HashMap<>();
-    private final Map<UUID, List<BytesReference>> unreadStreams = new HashMap<>();
+    private final Map<UUID, List<DistributedResultRequest>> unreadRequests = new HashMap<>();
     private final Set<UUID> unreadFailures = new HashSet<>();
     private final Object lock = new Object();
     private final DownstreamOperationFactory downstreamOperationFactory;
@@ -128,7 +128,7 @@ public class DistributedRequestContextManager {
             if (request.failure()) {
                 operationContext.addFailure(null);
             } else {
-                operationContext.add(request.rows());
+                operationContext.add(request.rows(), request.last());
             }
             logger.trace("addToContext rowsRead succes");
             return;
@@ -144,12 +144,12 @@ public class DistributedRequestContextManager {
                     logger.error("adding unread failure from distributed result for context: ", request.contextId());
                 } else {
                     assert request.memoryStream() != null;
-                    List<BytesReference> bytesStreamOutputs = unreadStreams.get(request.contextId());
-                    if (bytesStreamOutputs == null) {
-                        bytesStreamOutputs = new ArrayList<>();
-                        unreadStreams.put(request.contextId(), bytesStreamOutputs);
+                    List<DistributedResultRequest> requests = unreadRequests.get(request.contextId());
+                    if (requests == null) {
+                        requests = new ArrayList<>();
+                        unreadRequests.put(request.contextId(), requests);
                     }
-                    bytesStreamOutputs.add(request.memoryStream().bytes());
+                    requests.add(request);
                 }
             } else {
                 logger.trace("addToContext: with context norows failure: {}", request.failure());
@@ -159,7 +159,7 @@ public class DistributedRequestContextManager {
                     return;
                 }
                 logger.trace("addToContext: using memory stream: ", request.memoryStream());
-                addFromBytesReference(request.memoryStream().bytes(), operationContext);
+                addFromBytesReference(request.memoryStream().bytes(), request.last(), operationContext);
             }
         }
         logger.trace("addToContext: finished");
@@ -183,24 +183,24 @@ public class DistributedRequestContextManager {
     }
 
     private void put(UUID contextId, DownstreamOperationContext downstreamOperationContext) {
-        List<BytesReference> bytesReferences;
+        List<DistributedResultRequest> requests;
         synchronized (lock) {
             logger.trace("put: {} {}", contextId, downstreamOperationContext);
             activeMergeOperations.put(contextId, downstreamOperationContext);
-            bytesReferences = unreadStreams.remove(contextId);
+            requests = unreadRequests.remove(contextId);
             if (unreadFailures.contains(contextId)) {
                 unreadFailures.remove(contextId);
                 downstreamOperationContext.addFailure(null);
             }
         }
-        if (bytesReferences != null) {
-            for (BytesReference bytes : bytesReferences) {
-                addFromBytesReference(bytes, downstreamOperationContext);
+        if (requests != null) {
+            for (DistributedResultRequest request : requests) {
+                addFromBytesReference(request.memoryStream().bytes(), request.last(), downstreamOperationContext);
             }
         }
     }
 
-    private void addFromBytesReference(BytesReference bytesReference, DownstreamOperationContext ctx) {
+    private void addFromBytesReference(BytesReference bytesReference, boolean last, DownstreamOperationContext ctx) {
         // bytesReference must be wrapped into HandlesStreamInput because it has a different readString()
         // implementation than BytesStreamInput alone.
         // and the memoryOutputStream originates from a HandlesStreamOutput.
@@ -214,7 +214,7 @@ public class DistributedRequestContextManager {
             return;
         }
         assert rows != null;
-        ctx.add(rows);
+        ctx.add(rows, last);
     }
 
     public interface DoneCallback {
@@ -44,6 +44,9 @@ public class DistributedResultRequest extends TransportRequest {
     // exception and the error handling in the DistributedMergeTask can be simplified.
     private boolean failure = false;
 
+    // rows of one upstream may be sent in multiple requests, only the last one finishes the upstream
+    private boolean last = true;
+
     public DistributedResultRequest(DistributedRequestContextManager contextManager) {
         this.contextManager = contextManager;
     }
@@ -69,6 +72,14 @@ public class DistributedResultRequest extends TransportRequest {
         this.rows = rows;
     }
 
+    public boolean last() {
+        return last;
+    }
+
+    public void last(boolean last) {
+        this.last = last;
+    }
+
     public boolean rowsRead() {
         return memoryStream == null;
     }
@@ -82,6 +93,7 @@ public class DistributedResultRequest extends TransportRequest {
             failure= true;
             return;
         }
+        last = in.readBoolean();
 
         final Optional<Streamer<?>[]> optStreamer = contextManager.getStreamer(contextId);
         if (optStreamer.isPresent()) {
@@ -125,6 +137,7 @@ public class DistributedResultRequest extends TransportRequest {
             return;
         }
         out.writeBoolean(false);
+        out.writeBoolean(last);
 
         assert streamers != null;
         final int numColumns = streamers.length;
@@ -86,6 +86,13 @@ public class DownstreamOperationContext {
     }
 
     public void add(Object[][] rows) {
+        add(rows, true);
+    }
+
+    /**
+     * @param last true if these are the last rows of an upstream
+     */
+    public void add(Object[][] rows, boolean last) {
         assert rows != null;
         logger.trace("add rows.size: {}", rows.length);
         synchronized (lock) {
@@ -99,7 +106,7 @@ public class DownstreamOperationContext {
             }
         }
 
-        if (mergeOperationsLeft.decrementAndGet() == 0) {
+        if (last && mergeOperationsLeft.decrementAndGet() == 0) {
             doneCallback.finished();
             downstreamOperation.finished();
         }
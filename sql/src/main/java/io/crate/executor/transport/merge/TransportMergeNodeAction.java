@@ -32,6 +32,7 @@ import io.crate.operation.DownstreamOperation;
 import io.crate.operation.DownstreamOperationFactory;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.merge.MergeOperation;
+import io.crate.operation.projectors.groupby.GroupByMemory;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.MergeNode;
@@ -67,7 +68,8 @@ public class TransportMergeNodeAction {
                                     ClusterService clusterService,
                                     ReferenceResolver referenceResolver,
                                     Functions functions,
-                                    ThreadPool threadPool) {
+                                    ThreadPool threadPool,
+                                    final GroupByMemory groupByMemory) {
         this.transportService = transportService;
         this.clusterService = clusterService;
         this.threadPool = threadPool;
@@ -80,7 +82,7 @@ public class TransportMergeNodeAction {
         this.contextManager = new DistributedRequestContextManager(new DownstreamOperationFactory<MergeNode>() {
             @Override
             public DownstreamOperation create(MergeNode node) {
-                return new MergeOperation(clientProvider, implementationSymbolVisitor, node);
+                return new MergeOperation(clientProvider, implementationSymbolVisitor, node, groupByMemory);
             }
         }, functions);
 
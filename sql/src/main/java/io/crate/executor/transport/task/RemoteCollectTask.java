@@ -33,18 +33,24 @@ import io.crate.executor.transport.TransportCollectNodeAction;
 import io.crate.operation.collect.HandlerSideDataCollectOperation;
 import io.crate.planner.node.dql.CollectNode;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RemoteCollectTask implements Task<Object[][]> {
 
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
     private final CollectNode collectNode;
     private final List<ListenableFuture<Object[][]>> result;
     private final String[] nodeIds;
     private final TransportCollectNodeAction transportCollectNodeAction;
     private final HandlerSideDataCollectOperation handlerSideDataCollectOperation;
+    private final AtomicInteger pendingResponses = new AtomicInteger();
+    private long[] bucketRowCounts = new long[0];
 
     public RemoteCollectTask(CollectNode collectNode,
                              TransportCollectNodeAction transportCollectNodeAction,
@@ -71,6 +77,11 @@ public class RemoteCollectTask implements Task<Object[][]> {
     @Override
     public void start() {
         NodeCollectRequest request = new NodeCollectRequest(collectNode);
+        for (String nodeId : nodeIds) {
+            if (nodeId != null) {
+                pendingResponses.incrementAndGet();
+            }
+        }
         for (int i = 0; i < nodeIds.length; i++) {
             final int resultIdx = i;
 
@@ -85,11 +96,14 @@ public class RemoteCollectTask implements Task<Object[][]> {
                     new ActionListener<NodeCollectResponse>() {
                         @Override
                         public void onResponse(NodeCollectResponse response) {
+                            addBucketRowCounts(response.bucketRowCounts());
+                            responseReceived();
                             ((SettableFuture<Object[][]>)result.get(resultIdx)).set(response.rows());
                         }
 
                         @Override
                         public void onFailure(Throwable e) {
+                            responseReceived();
                             ((SettableFuture<Object[][]>)result.get(resultIdx)).setException(e);
                         }
                     }
@@ -112,6 +126,69 @@ public class RemoteCollectTask implements Task<Object[][]> {
         });
     }
 
+    synchronized void addBucketRowCounts(long[] counts) {
+        if (counts.length > bucketRowCounts.length) {
+            bucketRowCounts = Arrays.copyOf(bucketRowCounts, counts.length);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            bucketRowCounts[i] += counts[i];
+        }
+    }
+
+    private void responseReceived() {
+        if (pendingResponses.decrementAndGet() == 0) {
+            logBucketRowCounts();
+        }
+    }
+
+    /**
+     * log how many rows were sent to each downstream node once all nodes responded,
+     * on info level if one node received more than twice the average.
+     */
+    private void logBucketRowCounts() {
+        long[] counts = bucketRowCounts();
+        if (counts.length == 0) {
+            return;
+        }
+        long total = 0;
+        long max = 0;
+        for (long count : counts) {
+            total += count;
+            max = Math.max(max, count);
+        }
+        if (max > 2 * total / counts.length) {
+            logger.info("[{}] rows are unevenly distributed to the downstream nodes: {}",
+                    collectNode.id(), rowsPerDownstreamNode());
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("[{}] rows distributed to the downstream nodes: {}",
+                    collectNode.id(), rowsPerDownstreamNode());
+        }
+    }
+
+    /**
+     * @return the number of rows all nodes sent to each downstream node so far by downstream node id,
+     * empty if the collect isn't distributed
+     */
+    public Map<String, Long> rowsPerDownstreamNode() {
+        long[] counts = bucketRowCounts();
+        Map<String, Long> rows = new LinkedHashMap<>(counts.length);
+        if (collectNode.hasDownstreams()) {
+            List<String> downstreamNodes = collectNode.downStreamNodes();
+            for (int i = 0; i < counts.length && i < downstreamNodes.size(); i++) {
+                rows.put(downstreamNodes.get(i), counts[i]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the number of rows all nodes sent to each downstream node of a distributing collect
+     * so far, in the order of {@link CollectNode#downStreamNodes()}. Shows how evenly the rows are distributed.
+     */
+    public synchronized long[] bucketRowCounts() {
+        return bucketRowCounts.clone();
+    }
+
     @Override
     public List<ListenableFuture<Object[][]>> result() {
         return result;
@@ -46,7 +46,7 @@ public class ESDeleteByQueryTask implements Task<Object[][]> {
                                TransportDeleteByQueryAction transportDeleteByQueryAction) {
         this.deleteByQueryNode = deleteByQueryNode;
         this.transportDeleteByQueryAction = transportDeleteByQueryAction;
-        this.queryBuilder = new ESQueryBuilder();
+        this.queryBuilder = new ESQueryBuilder(true);
 
         result = SettableFuture.create();
         results = Arrays.<ListenableFuture<Object[][]>>asList(result);
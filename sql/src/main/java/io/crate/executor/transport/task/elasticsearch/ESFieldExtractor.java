@@ -21,18 +21,21 @@
 
 package io.crate.executor.transport.task.elasticsearch;
 
+import io.crate.DataType;
 import io.crate.PartitionName;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.ReferenceInfo;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.StringLiteral;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class ESFieldExtractor {
 
@@ -102,6 +105,89 @@ public abstract class ESFieldExtractor {
         }
     }
 
+    /**
+     * Extracts the value of a column from the field data of the hit,
+     * requested using the <code>fielddata_fields</code> of the search request.
+     * The <code>_source</code> doesn't have to be loaded and parsed for these columns.
+     */
+    public static class FieldData extends ESFieldExtractor {
+
+        private final String fieldName;
+        private final DataType type;
+
+        public FieldData(ReferenceInfo info) {
+            assert supportsType(info.type());
+            this.fieldName = info.ident().columnIdent().fqn();
+            this.type = info.type();
+        }
+
+        /**
+         * Only top level columns of numeric types have a single value in the field data
+         * which matches the source value. Strings might be analyzed and nested columns
+         * might be part of an object array, so these are read from the source.
+         * The column also has to be mapped with doc values, columns with
+         * <code>index: no</code> have no field data and dynamically added columns
+         * would have to be loaded from the inverted index.
+         *
+         * @param docValuesColumns the columns of the table which are mapped with doc values
+         * @return true if the column can be read from the field data
+         */
+        public static boolean supports(ReferenceInfo info, Set<ColumnIdent> docValuesColumns) {
+            ColumnIdent ident = info.ident().columnIdent();
+            if (!ident.isColumn() || ident.isSystemColumn() || !docValuesColumns.contains(ident)) {
+                return false;
+            }
+            return supportsType(info.type());
+        }
+
+        private static boolean supportsType(DataType type) {
+            switch (type) {
+                case BYTE:
+                case SHORT:
+                case INTEGER:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                case TIMESTAMP:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public Object extract(SearchHit hit) {
+            SearchHitField field = hit.field(fieldName);
+            if (field == null) {
+                return null;
+            }
+            return toValue((Number) field.getValue());
+        }
+
+        /**
+         * the field data contains longs or doubles, convert them to the type of the column
+         */
+        Object toValue(@Nullable Number value) {
+            if (value == null) {
+                return null;
+            }
+            switch (type) {
+                case BYTE:
+                    return value.byteValue();
+                case SHORT:
+                    return value.shortValue();
+                case INTEGER:
+                    return value.intValue();
+                case FLOAT:
+                    return value.floatValue();
+                case DOUBLE:
+                    return value.doubleValue();
+                default:
+                    return value.longValue();
+            }
+        }
+    }
+
     public static class PartitionedByColumnExtractor extends ESFieldExtractor {
 
         private final Reference reference;
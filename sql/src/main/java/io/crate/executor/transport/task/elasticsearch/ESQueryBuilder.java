@@ -29,6 +29,8 @@ import io.crate.analyze.WhereClause;
 import io.crate.executor.transport.task.elasticsearch.facet.UpdateFacet;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.operation.collect.LuceneQueryBuilder;
+import io.crate.operation.collect.WhereClauseQueryParser;
 import io.crate.operation.operator.*;
 import io.crate.operation.predicate.IsNullPredicate;
 import io.crate.operation.predicate.NotPredicate;
@@ -40,6 +42,7 @@ import io.crate.planner.symbol.*;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 
@@ -53,6 +56,22 @@ public class ESQueryBuilder {
 
     private final static Visitor visitor = new Visitor();
 
+    private final boolean luceneQueries;
+
+    public ESQueryBuilder() {
+        this(false);
+    }
+
+    /**
+     * @param luceneQueries if true the where clause of search, delete-by-query and update statements
+     *                      is sent as {@link WhereClauseQueryParser} query if it is supported by the
+     *                      {@link LuceneQueryBuilder}, which builds the lucene query on the shard
+     *                      without generating and parsing the query DSL
+     */
+    public ESQueryBuilder(boolean luceneQueries) {
+        this.luceneQueries = luceneQueries;
+    }
+
     /**
      * adds the "query" part to the XContentBuilder
      */
@@ -69,6 +88,23 @@ public class ESQueryBuilder {
 
     }
 
+    /**
+     * adds the "query" part as streamed where clause if lucene queries are enabled and supported
+     */
+    private void luceneWhereClause(Context context, WhereClause whereClause) throws IOException {
+        if (!luceneQueries || !whereClause.hasQuery() || !LuceneQueryBuilder.supports(whereClause.query())) {
+            whereClause(context, whereClause);
+            return;
+        }
+        BytesStreamOutput out = new BytesStreamOutput();
+        Symbol.toStream(whereClause.query(), out);
+        context.builder.startObject("query")
+                .startObject(WhereClauseQueryParser.NAME)
+                .field(WhereClauseQueryParser.WHERE_FIELD, out.bytes())
+                .endObject()
+                .endObject();
+    }
+
     /**
      * use to generate the "query" xcontent
      */
@@ -114,6 +150,7 @@ public class ESQueryBuilder {
         XContentBuilder builder = context.builder;
 
         List<String> fields = new ArrayList<>(outputs.size());
+        List<String> fieldDataFields = new ArrayList<>();
         boolean needWholeSource = false;
         for (Reference output : outputs) {
             ColumnIdent columnIdent = output.info().ident().columnIdent();
@@ -124,7 +161,11 @@ public class ESQueryBuilder {
                     needWholeSource = true;
                 }
             } else if (node.partitionBy().indexOf(output.info()) < 0) { // do not include partitioned by columns
-                fields.add(columnIdent.fqn());
+                if (ESFieldExtractor.FieldData.supports(output.info(), node.docValuesColumns())) {
+                    fieldDataFields.add(columnIdent.fqn());
+                } else {
+                    fields.add(columnIdent.fqn());
+                }
             }
         }
 
@@ -137,7 +178,10 @@ public class ESQueryBuilder {
                 builder.field("_source", false);
             }
         }
-        whereClause(context, node.whereClause());
+        if (fieldDataFields.size() > 0) {
+            builder.field("fielddata_fields", fieldDataFields);
+        }
+        luceneWhereClause(context, node.whereClause());
 
         if (context.ignoredFields.containsKey("_score")) {
             builder.field("min_score", ((Number) context.ignoredFields.get("_score")).doubleValue());
@@ -162,7 +206,7 @@ public class ESQueryBuilder {
         context.builder = XContentFactory.jsonBuilder().startObject();
         XContentBuilder builder = context.builder;
 
-        whereClause(context, node.whereClause());
+        luceneWhereClause(context, node.whereClause());
 
         builder.endObject();
         return builder.bytes();
@@ -176,7 +220,7 @@ public class ESQueryBuilder {
         context.builder = XContentFactory.jsonBuilder().startObject();
         XContentBuilder builder = context.builder;
 
-        whereClause(context, node.whereClause());
+        luceneWhereClause(context, node.whereClause());
 
         if (node.version().isPresent()) {
             builder.field("version", true);
@@ -240,6 +284,19 @@ public class ESQueryBuilder {
                 .build();
     }
 
+    public static String convertWildcard(String wildcardString) {
+        // lucene uses * and ? as wildcard characters
+        // but via SQL they are used as % and _
+        // here they are converted back.
+        wildcardString = wildcardString.replaceAll("(?<!\\\\)\\*", "\\\\*");
+        wildcardString = wildcardString.replaceAll("(?<!\\\\)%", "*");
+        wildcardString = wildcardString.replaceAll("\\\\%", "%");
+
+        wildcardString = wildcardString.replaceAll("(?<!\\\\)\\?", "\\\\?");
+        wildcardString = wildcardString.replaceAll("(?<!\\\\)_", "?");
+        return wildcardString.replaceAll("\\\\_", "_");
+    }
+
     static class Visitor extends SymbolVisitor<Context, Void> {
 
         static abstract class Converter<T extends Symbol> {
@@ -312,19 +369,6 @@ public class ESQueryBuilder {
             }
         }
 
-        public static String convertWildcard(String wildcardString) {
-            // lucene uses * and ? as wildcard characters
-            // but via SQL they are used as % and _
-            // here they are converted back.
-            wildcardString = wildcardString.replaceAll("(?<!\\\\)\\*", "\\\\*");
-            wildcardString = wildcardString.replaceAll("(?<!\\\\)%", "*");
-            wildcardString = wildcardString.replaceAll("\\\\%", "%");
-
-            wildcardString = wildcardString.replaceAll("(?<!\\\\)\\?", "\\\\?");
-            wildcardString = wildcardString.replaceAll("(?<!\\\\)_", "?");
-            return wildcardString.replaceAll("\\\\_", "_");
-        }
-
         class LikeConverter extends CmpConverter {
 
             @Override
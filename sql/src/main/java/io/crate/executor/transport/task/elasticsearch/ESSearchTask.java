@@ -21,38 +21,67 @@
 
 package io.crate.executor.transport.task.elasticsearch;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Constants;
+import io.crate.analyze.WhereClause;
 import io.crate.exceptions.ExceptionHelper;
+import io.crate.executor.Pageable;
 import io.crate.executor.Task;
 import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.operation.collect.LuceneQueryBuilder;
 import io.crate.planner.node.dql.ESSearchNode;
 import io.crate.planner.symbol.Reference;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.ActionListener;
-import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.action.search.TransportSearchAction;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
-public class ESSearchTask implements Task<Object[][]> {
+public class ESSearchTask implements Task<Object[][]>, Pageable {
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
 
     private final ESSearchNode searchNode;
     private final TransportSearchAction transportSearchAction;
+    private final TransportSearchScrollAction transportSearchScrollAction;
+    private final TransportClearScrollAction transportClearScrollAction;
     private final SettableFuture<Object[][]> result;
     private final List<ListenableFuture<Object[][]>> results;
     private final ESQueryBuilder queryBuilder;
+    private final ESFieldExtractor[] extractors;
+
+    // the scroll used by fetch, rows of the current page are buffered from bufferPosition on
+    private String scrollId;
+    private boolean scan;
+    private boolean exhausted = false;
+    private boolean closed = false;
+    private int skip;
+    private int bufferPosition = 0;
+    private final List<Object[]> buffer = new ArrayList<>();
 
     public ESSearchTask(ESSearchNode searchNode,
-                        TransportSearchAction transportSearchAction) {
+                        TransportSearchAction transportSearchAction,
+                        TransportSearchScrollAction transportSearchScrollAction,
+                        TransportClearScrollAction transportClearScrollAction) {
         this.searchNode = searchNode;
         this.transportSearchAction = transportSearchAction;
-        this.queryBuilder = new ESQueryBuilder();
+        this.transportSearchScrollAction = transportSearchScrollAction;
+        this.transportClearScrollAction = transportClearScrollAction;
+        this.queryBuilder = new ESQueryBuilder(true);
+        this.extractors = buildExtractor(searchNode.outputs());
+        this.skip = searchNode.offset();
 
         result = SettableFuture.create();
         results = Arrays.<ListenableFuture<Object[][]>>asList(result);
@@ -60,47 +89,210 @@ public class ESSearchTask implements Task<Object[][]> {
 
     @Override
     public void start() {
-        final SearchRequest request = new SearchRequest();
+        SearchRequest request;
+        try {
+            request = searchRequest();
+        } catch (IOException e) {
+            result.setException(e);
+            return;
+        }
+        transportSearchAction.execute(request, new SearchResponseListener(result) {
+            @Override
+            protected void onRows(SearchResponse response, Object[][] rows) {
+                result.set(rows);
+            }
+        });
+    }
 
-        final ESFieldExtractor[] extractor = buildExtractor(searchNode.outputs());
-        final int numColumns = searchNode.outputs().size();
+    private SearchRequest searchRequest() throws IOException {
+        SearchRequest request = new SearchRequest();
+        request.source(queryBuilder.convert(searchNode), false);
+        request.indices(searchNode.indices());
+        request.routing(searchNode.whereClause().clusteredBy().orNull());
+        return request;
+    }
 
-        try {
-            request.source(queryBuilder.convert(searchNode), false);
-            request.indices(searchNode.indices());
-            request.routing(searchNode.whereClause().clusteredBy().orNull());
-
-            transportSearchAction.execute(request, new ActionListener<SearchResponse>() {
-                @Override
-                public void onResponse(SearchResponse searchResponse) {
-                    if (searchResponse.getFailedShards() > 0) {
-                        try {
-                            ExceptionHelper.exceptionOnSearchShardFailures(searchResponse.getShardFailures());
-                        } catch (Exception e) {
-                            onFailure(e);
-                        }
+    /**
+     * fetch a page of the result instead of {@link #start() starting} the task.
+     * <p/>
+     * The rows are read using a scroll which is kept open for <code>keepAlive</code> between
+     * the pages, so the shards only collect the rows of the next page and all pages are read
+     * from the same snapshot. Unsorted queries use a scan search.
+     * Only the limit of the query applies to the pages, not the default limit.
+     */
+    @Override
+    public ListenableFuture<Object[][]> fetch(int position, int size, TimeValue keepAlive) {
+        if (searchNode.hasLimit()) {
+            size = Math.min(size, searchNode.limit() - position);
+        }
+        if (size <= 0) {
+            return Futures.immediateFuture(Constants.EMPTY_RESULT);
+        }
+        SettableFuture<Object[][]> page = SettableFuture.create();
+        synchronized (this) {
+            if (closed) {
+                page.setException(new IllegalStateException("The search has already been closed"));
+                return page;
+            }
+            if (position < bufferPosition || position > bufferPosition + buffer.size()) {
+                page.setException(new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Can't fetch rows from position %d, the search is at position %d",
+                        position, bufferPosition)));
+                return page;
+            }
+            // rows before the position have been delivered
+            buffer.subList(0, position - bufferPosition).clear();
+            bufferPosition = position;
+        }
+        fill(page, size, keepAlive);
+        return page;
+    }
+
+    /**
+     * scroll until <code>size</code> rows are buffered or all rows are read
+     */
+    private void fill(final SettableFuture<Object[][]> page, final int size, final TimeValue keepAlive) {
+        final String currentScrollId;
+        synchronized (this) {
+            if (buffer.size() >= size || exhausted) {
+                int numRows = Math.min(size, buffer.size());
+                page.set(buffer.subList(0, numRows).toArray(new Object[numRows][]));
+                return;
+            }
+            currentScrollId = scrollId;
+        }
+        SearchResponseListener listener = new SearchResponseListener(page) {
+            @Override
+            protected void onRows(SearchResponse response, Object[][] rows) {
+                synchronized (ESSearchTask.this) {
+                    if (currentScrollId == null && scan) {
+                        // the initial response of a scan search contains no hits
+                        exhausted = response.getHits().getTotalHits() == 0;
                     } else {
-                        final SearchHit[] hits = searchResponse.getHits().getHits();
-                        final Object[][] rows = new Object[hits.length][numColumns];
+                        exhausted = rows.length == 0;
+                    }
+                    scrollId = response.getScrollId();
+                    int skipped = Math.min(skip, rows.length);
+                    skip -= skipped;
+                    buffer.addAll(Arrays.asList(rows).subList(skipped, rows.length));
+                }
+                fill(page, size, keepAlive);
+            }
+        };
+        if (currentScrollId == null) {
+            SearchRequest request;
+            try {
+                request = searchRequest();
+            } catch (IOException e) {
+                page.setException(e);
+                return;
+            }
+            // the offset is skipped while scrolling, a scan search doesn't support from
+            request.extraSource(new SearchSourceBuilder().from(0).size(size));
+            request.scroll(keepAlive);
+            synchronized (this) {
+                scan = canScan();
+                if (scan) {
+                    request.searchType(SearchType.SCAN);
+                }
+            }
+            transportSearchAction.execute(request, listener);
+        } else {
+            SearchScrollRequest request = new SearchScrollRequest(currentScrollId);
+            request.scroll(keepAlive);
+            transportSearchScrollAction.execute(request, listener);
+        }
+    }
 
-                        for (int r = 0; r < hits.length; r++) {
-                            rows[r] = new Object[numColumns];
-                            for (int c = 0; c < numColumns; c++) {
-                                rows[r][c] = extractor[c].extract(hits[r]);
-                            }
-                        }
+    /**
+     * a scan search doesn't sort the hits and doesn't score them,
+     * so it can't be used if the query is sorted or uses the score.
+     * Where clauses on the score or other clauses the {@link LuceneQueryBuilder}
+     * doesn't support are not scanned to be on the safe side.
+     */
+    private boolean canScan() {
+        if (!searchNode.orderBy().isEmpty()) {
+            return false;
+        }
+        for (Reference output : searchNode.outputs()) {
+            if (DocSysColumns.SCORE.equals(output.info().ident().columnIdent())) {
+                return false;
+            }
+        }
+        WhereClause whereClause = searchNode.whereClause();
+        return !whereClause.hasQuery() || LuceneQueryBuilder.supports(whereClause.query());
+    }
 
-                        result.set(rows);
-                    }
+    /**
+     * clear the scroll of {@link #fetch(int, int, TimeValue)}
+     */
+    @Override
+    public void close() {
+        String currentScrollId;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+            currentScrollId = scrollId;
+        }
+        if (currentScrollId == null) {
+            return;
+        }
+        ClearScrollRequest request = new ClearScrollRequest();
+        request.addScrollId(currentScrollId);
+        transportClearScrollAction.execute(request, new ActionListener<ClearScrollResponse>() {
+            @Override
+            public void onResponse(ClearScrollResponse response) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                logger.warn("failed to clear the scroll of the search", e);
+            }
+        });
+    }
+
+    /**
+     * converts the hits of a successful search response to rows
+     */
+    private abstract class SearchResponseListener implements ActionListener<SearchResponse> {
+
+        private final SettableFuture<Object[][]> future;
+
+        SearchResponseListener(SettableFuture<Object[][]> future) {
+            this.future = future;
+        }
+
+        protected abstract void onRows(SearchResponse response, Object[][] rows);
+
+        @Override
+        public void onResponse(SearchResponse searchResponse) {
+            if (searchResponse.getFailedShards() > 0) {
+                try {
+                    ExceptionHelper.exceptionOnSearchShardFailures(searchResponse.getShardFailures());
+                } catch (Exception e) {
+                    onFailure(e);
                 }
+            } else {
+                final SearchHit[] hits = searchResponse.getHits().getHits();
+                final int numColumns = extractors.length;
+                final Object[][] rows = new Object[hits.length][numColumns];
 
-                @Override
-                public void onFailure(Throwable e) {
-                    result.setException(e);
+                for (int r = 0; r < hits.length; r++) {
+                    rows[r] = new Object[numColumns];
+                    for (int c = 0; c < numColumns; c++) {
+                        rows[r][c] = extractors[c].extract(hits[r]);
+                    }
                 }
-            });
-        } catch (IOException e) {
-            result.setException(e);
+                onRows(searchResponse, rows);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            future.setException(e);
         }
     }
 
@@ -148,6 +340,8 @@ public class ESSearchTask implements Task<Object[][]> {
                 extractors[i] = new ESFieldExtractor.PartitionedByColumnExtractor(
                         reference, searchNode.partitionBy()
                 );
+            } else if (ESFieldExtractor.FieldData.supports(reference.info(), searchNode.docValuesColumns())) {
+                extractors[i] = new ESFieldExtractor.FieldData(reference.info());
             } else {
                 extractors[i] = new ESFieldExtractor.Source(columnIdent);
             }
@@ -64,7 +64,7 @@ public class ESUpdateByQueryTask extends AbstractESUpdateTask {
     public ESUpdateByQueryTask(TransportSearchAction transport, ESUpdateNode node) {
         super(node);
         this.transport = transport;
-        this.queryBuilder = new ESQueryBuilder();
+        this.queryBuilder = new ESQueryBuilder(true);
 
         this.request = buildRequest(node);
         this.listener = new UpdateByQueryResponseListener(result);
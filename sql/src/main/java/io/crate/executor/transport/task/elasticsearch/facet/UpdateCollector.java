@@ -22,102 +22,151 @@
 package io.crate.executor.transport.task.elasticsearch.facet;
 
 import io.crate.Constants;
+import io.crate.exceptions.CrateException;
+import io.crate.exceptions.VersionConflictException;
 import org.apache.lucene.index.AtomicReaderContext;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Scorer;
-import org.elasticsearch.action.update.TransportUpdateAction;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.TransportBulkAction;
 import org.elasticsearch.action.update.UpdateRequest;
-import org.elasticsearch.action.update.UpdateResponse;
-import org.elasticsearch.common.lucene.uid.Versions;
-import org.elasticsearch.index.fielddata.ScriptDocValues;
+import org.elasticsearch.index.fieldvisitor.UidAndRoutingFieldsVisitor;
 import org.elasticsearch.index.mapper.Uid;
-import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.facet.FacetExecutor;
 import org.elasticsearch.search.internal.SearchContext;
-import org.elasticsearch.search.lookup.SearchLookup;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * A Collector which generates elasticsearch update requests for every document it collects
+ * A Collector which generates elasticsearch update requests for every document it collects.
+ *
+ * The update requests are sent in bulks of {@link #BULK_SIZE} documents, at most {@link #MAX_PENDING_BULKS}
+ * bulks are executed concurrently while collecting continues.
+ * If a version is required it is checked by the bulk, documents with another version are skipped.
  */
 public class UpdateCollector extends FacetExecutor.Collector {
 
-    private final SearchLookup lookup;
-    private final TransportUpdateAction updateAction;
+    static final int BULK_SIZE = 1000;
+    static final int MAX_PENDING_BULKS = 2;
+
+    private final TransportBulkAction bulkAction;
     private final Map<String, Object> updateDoc;
     private final ShardId shardId;
-    private long rowCount;
-    private Long requiredVersion;
+    private final Long requiredVersion;
+    private final Semaphore pendingBulks = new Semaphore(MAX_PENDING_BULKS);
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
     private AtomicReaderContext currentReaderContext;
+    private BulkRequest bulkRequest = new BulkRequest();
 
     public long rowCount() {
-        return rowCount;
-    }
-
-    class CollectorUpdateRequest extends UpdateRequest {
-
-        CollectorUpdateRequest(ShardId shardId, Uid uid) {
-            super(shardId.getIndex(), uid.type(), uid.id());
-            this.shardId = shardId.id();
-            retryOnConflict(Constants.UPDATE_RETRY_ON_CONFLICT);
-            paths(updateDoc);
-        }
+        return rowCount.get();
     }
 
     public UpdateCollector(
             Map<String, Object> doc,
             Long requiredVersion,
-            TransportUpdateAction updateAction,
+            TransportBulkAction bulkAction,
             SearchContext context
             ) {
         this.shardId = context.indexShard().shardId();
-        this.updateAction = updateAction;
-        this.lookup = context.lookup();
+        this.bulkAction = bulkAction;
         this.updateDoc = doc;
-        this.rowCount = 0;
         this.requiredVersion = requiredVersion;
     }
 
     @Override
     public void setScorer(Scorer scorer) {
-        lookup.setScorer(scorer);
     }
 
     @Override
     public void setNextReader(AtomicReaderContext context) {
         this.currentReaderContext = context;
-        lookup.setNextReader(context);
     }
 
-
     @Override
     public void postCollection() {
-        // nothing to do here
+        if (bulkRequest.numberOfActions() > 0) {
+            executeBulk();
+        }
+        // wait for all pending bulks
+        pendingBulks.acquireUninterruptibly(MAX_PENDING_BULKS);
+        pendingBulks.release(MAX_PENDING_BULKS);
+        Throwable t = failure.get();
+        if (t != null) {
+            throw ExceptionsHelper.convertToRuntime(t);
+        }
     }
 
     @Override
     public void collect(int doc) throws IOException {
-        lookup.setNextDocId(doc);
-        Uid uid = Uid.createUid(((ScriptDocValues.Strings) lookup.doc().get("_uid")).getValue());
+        UidAndRoutingFieldsVisitor fieldsVisitor = new UidAndRoutingFieldsVisitor();
+        currentReaderContext.reader().document(doc, fieldsVisitor);
+        collect(fieldsVisitor.uid(), fieldsVisitor.routing());
+    }
+
+    void collect(Uid uid, String routing) {
+        UpdateRequest request = new UpdateRequest(shardId.getIndex(), uid.type(), uid.id());
+        request.routing(routing);
         if (requiredVersion != null) {
-            Long currentVersion = Versions.loadVersion(
-                    currentReaderContext.reader(),
-                    new Term(UidFieldMapper.NAME, uid.toBytesRef())
-            );
-            if (!currentVersion.equals(requiredVersion)) {
-                return;
-            }
+            request.version(requiredVersion);
+        } else {
+            request.retryOnConflict(Constants.UPDATE_RETRY_ON_CONFLICT);
+        }
+        request.paths(updateDoc);
+        bulkRequest.add(request);
+        if (bulkRequest.numberOfActions() >= BULK_SIZE) {
+            executeBulk();
+        }
+    }
+
+    /**
+     * a conflicting update is reported as {@link VersionConflictException}, which keeps the status of the failure
+     */
+    static CrateException itemFailure(BulkItemResponse.Failure failure) {
+        if (failure.getStatus() == RestStatus.CONFLICT) {
+            return new VersionConflictException(failure.getMessage());
         }
-        collect(uid);
+        return new CrateException(failure.getMessage());
     }
 
-    private void collect(Uid uid) {
-        UpdateRequest request = new CollectorUpdateRequest(shardId, uid);
-        // Since we are sequential here, it should be ok to reuse the same request instance
-        UpdateResponse response = updateAction.execute(request).actionGet();
-        rowCount++;
+    private void executeBulk() {
+        Throwable t = failure.get();
+        if (t != null) {
+            throw ExceptionsHelper.convertToRuntime(t);
+        }
+        pendingBulks.acquireUninterruptibly();
+        BulkRequest request = bulkRequest;
+        bulkRequest = new BulkRequest();
+        bulkAction.execute(request, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                for (BulkItemResponse item : response.getItems()) {
+                    if (!item.isFailed()) {
+                        rowCount.incrementAndGet();
+                    } else if (requiredVersion == null || item.getFailure().getStatus() != RestStatus.CONFLICT) {
+                        // version conflicts are expected if a version is required,
+                        // the document is skipped in that case
+                        failure.compareAndSet(null, itemFailure(item.getFailure()));
+                    }
+                }
+                pendingBulks.release();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                failure.compareAndSet(null, e);
+                pendingBulks.release();
+            }
+        });
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata;
+
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the copy of a shard a query is routed to.
+ *
+ * Every node is ranked by the average latency of recent collect requests sent to it from this node,
+ * multiplied by the number of its pending requests and the queue size of its search thread pool.
+ * The copy on the node with the lowest rank wins, taking into account how many shards of the same
+ * routing were already assigned to that node, so the shards of one query are spread across the copies.
+ *
+ * Nodes without recent samples are ranked as if they had the default latency, so they are tried again.
+ */
+@Singleton
+public class ShardCopySelector {
+
+    /**
+     * weight of a new sample in the moving average of the latency
+     */
+    private static final double ALPHA = 0.3;
+    private static final double DEFAULT_LATENCY_MILLIS = 1.0;
+    private static final long SAMPLE_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final ConcurrentMap<String, NodeLoad> loads = new ConcurrentHashMap<>();
+
+    static class NodeLoad {
+        final AtomicInteger pendingRequests = new AtomicInteger();
+        private double avgLatencyMillis = -1;
+        private int queueSize = 0;
+        private long lastSampleNanos;
+
+        synchronized void sample(double latencyMillis, int queueSize, long nowNanos) {
+            if (avgLatencyMillis < 0) {
+                avgLatencyMillis = latencyMillis;
+            } else {
+                avgLatencyMillis = ALPHA * latencyMillis + (1 - ALPHA) * avgLatencyMillis;
+            }
+            if (queueSize >= 0) {
+                this.queueSize = queueSize;
+            }
+            lastSampleNanos = nowNanos;
+        }
+
+        synchronized double rank(long nowNanos) {
+            double latency = avgLatencyMillis;
+            int queue = queueSize;
+            if (latency < 0 || nowNanos - lastSampleNanos > SAMPLE_TTL_NANOS) {
+                latency = DEFAULT_LATENCY_MILLIS;
+                queue = 0;
+            }
+            return latency * (1 + Math.max(0, pendingRequests.get()) + queue);
+        }
+    }
+
+    private NodeLoad load(String nodeId) {
+        NodeLoad load = loads.get(nodeId);
+        if (load == null) {
+            load = new NodeLoad();
+            NodeLoad existing = loads.putIfAbsent(nodeId, load);
+            if (existing != null) {
+                load = existing;
+            }
+        }
+        return load;
+    }
+
+    public void requestStarted(String nodeId) {
+        load(nodeId).pendingRequests.incrementAndGet();
+    }
+
+    /**
+     * @param queueSize the number of queued and active search tasks on the node, -1 if unknown
+     */
+    public void requestFinished(String nodeId, long tookNanos, int queueSize) {
+        NodeLoad load = load(nodeId);
+        load.pendingRequests.decrementAndGet();
+        load.sample(tookNanos / 1000000.0, queueSize, System.nanoTime());
+    }
+
+    public void requestFailed(String nodeId) {
+        load(nodeId).pendingRequests.decrementAndGet();
+    }
+
+    double rank(String nodeId) {
+        NodeLoad load = loads.get(nodeId);
+        if (load == null) {
+            return DEFAULT_LATENCY_MILLIS;
+        }
+        return load.rank(System.nanoTime());
+    }
+
+    /**
+     * select the active copy of a shard on the node with the lowest rank.
+     * The iterator is expected to be shuffled, so copies with the same rank are chosen randomly.
+     *
+     * @param assignedShards the number of shards already assigned to each node by the routing which is built,
+     *                       updated with the selected copy
+     * @return the selected copy, the first copy if none of them is active or null if there are no copies
+     */
+    @Nullable
+    public ShardRouting select(ShardIterator shardIterator, Map<String, Integer> assignedShards) {
+        ShardRouting selected = null;
+        double selectedRank = Double.MAX_VALUE;
+        ShardRouting shardRouting;
+        while ((shardRouting = shardIterator.nextOrNull()) != null) {
+            if (!shardRouting.active()) {
+                continue;
+            }
+            Integer assigned = assignedShards.get(shardRouting.currentNodeId());
+            double rank = rank(shardRouting.currentNodeId()) * (1 + (assigned == null ? 0 : assigned));
+            if (rank < selectedRank) {
+                selected = shardRouting;
+                selectedRank = rank;
+            }
+        }
+        if (selected == null) {
+            shardIterator.reset();
+            return shardIterator.firstOrNull();
+        }
+        Integer assigned = assignedShards.get(selected.currentNodeId());
+        assignedShards.put(selected.currentNodeId(), assigned == null ? 1 : assigned + 1);
+        return selected;
+    }
+}
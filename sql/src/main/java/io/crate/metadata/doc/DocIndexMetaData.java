@@ -67,6 +67,7 @@ public class DocIndexMetaData {
     // columns should be ordered
     private final ImmutableMap.Builder<ColumnIdent, ReferenceInfo> referencesBuilder = ImmutableSortedMap.naturalOrder();
     private final ImmutableList.Builder<ReferenceInfo> partitionedByColumnsBuilder = ImmutableList.builder();
+    private final ImmutableSet.Builder<ColumnIdent> docValuesColumnsBuilder = ImmutableSet.builder();
 
     private final TableIdent ident;
     private final int numberOfShards;
@@ -78,6 +79,7 @@ public class DocIndexMetaData {
     private ImmutableList<ReferenceInfo> columns;
     private ImmutableList<ReferenceInfo> partitionedByColumns;
     private ImmutableMap<ColumnIdent, ReferenceInfo> references;
+    private ImmutableSet<ColumnIdent> docValuesColumns;
     private ImmutableList<String> primaryKey;
     private String routingCol;
     private ImmutableList<String> partitionedBy;
@@ -317,10 +319,22 @@ public class DocIndexMetaData {
             } else if (columnDataType != DataType.NOT_SUPPORTED) {
                 ColumnIdent newIdent = childIdent(columnIdent, columnEntry.getKey());
                 add(newIdent, columnDataType);
+                if (hasDocValues(columnProperties)) {
+                    docValuesColumnsBuilder.add(newIdent);
+                }
             }
         }
     }
 
+    /**
+     * only columns explicitly mapped with <code>doc_values: true</code> have doc values,
+     * columns with <code>index: no</code> and dynamically added columns don't.
+     */
+    private static boolean hasDocValues(Map<String, Object> columnProperties) {
+        Object docValues = columnProperties.get("doc_values");
+        return docValues != null && Booleans.isExplicitTrue(docValues.toString());
+    }
+
     @SuppressWarnings("unchecked")
     private ImmutableList<String> getPrimaryKey() {
         Map<String, Object> metaMap = (Map<String, Object>) defaultMappingMap.get("_meta");
@@ -397,6 +411,7 @@ public class DocIndexMetaData {
         createColumnDefinitions();
         columns = ImmutableList.copyOf(columnsBuilder.build());
         partitionedByColumns = partitionedByColumnsBuilder.build();
+        docValuesColumns = docValuesColumnsBuilder.build();
 
         for (Tuple<ColumnIdent, ReferenceInfo> sysColumns : DocSysColumns.forTable(ident)) {
             referencesBuilder.put(sysColumns.v1(), sysColumns.v2());
@@ -408,6 +423,13 @@ public class DocIndexMetaData {
         return this;
     }
 
+    /**
+     * @return true if this was built for <code>ident</code> from the given index meta data
+     */
+    boolean isBuiltFrom(IndexMetaData indexMetaData, TableIdent ident) {
+        return DocIndexMetaDataCache.isSame(metaData, indexMetaData) && this.ident.equals(ident);
+    }
+
     public ImmutableMap<ColumnIdent, ReferenceInfo> references() {
         return references;
     }
@@ -420,6 +442,13 @@ public class DocIndexMetaData {
         return partitionedByColumns;
     }
 
+    /**
+     * @return the columns which are mapped with <code>doc_values: true</code>
+     */
+    public ImmutableSet<ColumnIdent> docValuesColumns() {
+        return docValuesColumns;
+    }
+
     public ImmutableList<String> primaryKey() {
         return primaryKey;
     }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata.doc;
+
+import io.crate.metadata.TableIdent;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the {@link DocIndexMetaData} of concrete indices.
+ *
+ * An entry is reused as long as the {@link IndexMetaData} of its index is unchanged,
+ * so a partitioned table is rebuilt from its template plus the meta data of new or changed
+ * partitions only, instead of parsing the mappings of all its partitions again.
+ */
+class DocIndexMetaDataCache {
+
+    private final ConcurrentMap<String, DocIndexMetaData> cache = new ConcurrentHashMap<>();
+
+    public DocIndexMetaData get(IndexMetaData indexMetaData, TableIdent ident) throws IOException {
+        DocIndexMetaData docIndexMetaData = cache.get(indexMetaData.index());
+        if (docIndexMetaData == null || !docIndexMetaData.isBuiltFrom(indexMetaData, ident)) {
+            docIndexMetaData = new DocIndexMetaData(indexMetaData, ident).build();
+            cache.put(indexMetaData.index(), docIndexMetaData);
+        }
+        return docIndexMetaData;
+    }
+
+    /**
+     * index meta data is immutable and every change increments its version.
+     * Nodes which receive the cluster state from the master might get equal copies of unchanged index meta data,
+     * so these are compared by version and uuid.
+     */
+    static boolean isSame(@Nullable IndexMetaData indexMetaData, IndexMetaData other) {
+        if (indexMetaData == other) {
+            return true;
+        }
+        return indexMetaData != null
+                && indexMetaData.version() == other.version()
+                && indexMetaData.uuid().equals(other.uuid());
+    }
+
+    public void remove(String index) {
+        cache.remove(index);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
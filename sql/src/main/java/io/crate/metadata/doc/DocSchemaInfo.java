@@ -32,6 +32,7 @@ import com.google.common.collect.UnmodifiableIterator;
 import io.crate.PartitionName;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.exceptions.CrateException;
+import io.crate.metadata.ShardCopySelector;
 import io.crate.metadata.TableIdent;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
@@ -39,6 +40,8 @@ import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemp
 import org.elasticsearch.cluster.ClusterChangedEvent;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.inject.Inject;
 
 import javax.annotation.Nullable;
@@ -50,6 +53,7 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
     public static final String NAME = "doc";
     private final ClusterService clusterService;
     private final TransportPutIndexTemplateAction transportPutIndexTemplateAction;
+    private final ShardCopySelector shardCopySelector;
 
     private static final Predicate<String> tablesFilter = new Predicate<String>() {
         @Override
@@ -68,12 +72,15 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
                         }
                     }
             );
+    private final DocIndexMetaDataCache docIndexMetaDataCache = new DocIndexMetaDataCache();
     private final Function<String, TableInfo> tableInfoFunction;
 
     @Inject
     public DocSchemaInfo(ClusterService clusterService,
-                         TransportPutIndexTemplateAction transportPutIndexTemplateAction) {
+                         TransportPutIndexTemplateAction transportPutIndexTemplateAction,
+                         ShardCopySelector shardCopySelector) {
         this.clusterService = clusterService;
+        this.shardCopySelector = shardCopySelector;
         clusterService.add(this);
         this.transportPutIndexTemplateAction = transportPutIndexTemplateAction;
         this.tableInfoFunction = new Function<String, TableInfo>() {
@@ -89,7 +96,7 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
         boolean checkAliasSchema = clusterService.state().metaData().settings().getAsBoolean("crate.table_alias.schema_check", true);
         DocTableInfoBuilder builder = new DocTableInfoBuilder(
                 new TableIdent(NAME, name), clusterService,
-                transportPutIndexTemplateAction, checkAliasSchema);
+                transportPutIndexTemplateAction, checkAliasSchema, docIndexMetaDataCache, shardCopySelector);
         return builder.build();
     }
 
@@ -133,8 +140,72 @@ public class DocSchemaInfo implements SchemaInfo, ClusterStateListener {
 
     @Override
     public void clusterChanged(ClusterChangedEvent event) {
-        if (event.metaDataChanged()) {
+        if (!event.metaDataChanged()) {
+            return;
+        }
+        MetaData previousMetaData = event.previousState().metaData();
+        MetaData metaData = event.state().metaData();
+        if (!previousMetaData.settings().equals(metaData.settings())) {
+            // the settings may change how tables are built
             cache.invalidateAll();
+            docIndexMetaDataCache.clear();
+            return;
+        }
+        cache.invalidateAll(changedTables(previousMetaData, metaData));
+    }
+
+    /**
+     * @return the names of all tables whose indices, aliases or templates changed
+     */
+    private Set<String> changedTables(MetaData previousMetaData, MetaData metaData) {
+        Set<String> tables = new HashSet<>();
+        for (IndexMetaData indexMetaData : metaData) {
+            IndexMetaData previousIndexMetaData = previousMetaData.index(indexMetaData.index());
+            if (!DocIndexMetaDataCache.isSame(previousIndexMetaData, indexMetaData)) {
+                addTables(indexMetaData, tables);
+                if (previousIndexMetaData != null) {
+                    addTables(previousIndexMetaData, tables);
+                }
+            }
+        }
+        for (IndexMetaData previousIndexMetaData : previousMetaData) {
+            if (!metaData.hasIndex(previousIndexMetaData.index())) {
+                addTables(previousIndexMetaData, tables);
+                docIndexMetaDataCache.remove(previousIndexMetaData.index());
+            }
+        }
+        addChangedTemplates(previousMetaData, metaData, tables);
+        addChangedTemplates(metaData, previousMetaData, tables);
+        return tables;
+    }
+
+    private static void addTables(IndexMetaData indexMetaData, Set<String> tables) {
+        String index = indexMetaData.index();
+        if (PartitionName.isPartition(index)) {
+            tables.add(PartitionName.tableName(index));
+        } else {
+            tables.add(index);
+        }
+        Iterator<String> aliases = indexMetaData.aliases().keysIt();
+        while (aliases.hasNext()) {
+            tables.add(aliases.next());
+        }
+    }
+
+    /**
+     * add the tables of all templates of <code>metaData</code> which differ in <code>otherMetaData</code>
+     */
+    private static void addChangedTemplates(MetaData metaData, MetaData otherMetaData, Set<String> tables) {
+        UnmodifiableIterator<String> templates = metaData.getTemplates().keysIt();
+        while (templates.hasNext()) {
+            String templateName = templates.next();
+            if (!metaData.getTemplates().get(templateName).equals(otherMetaData.getTemplates().get(templateName))) {
+                try {
+                    tables.add(PartitionName.tableName(templateName));
+                } catch (IllegalArgumentException e) {
+                    // no partitioned table template
+                }
+            }
         }
     }
 
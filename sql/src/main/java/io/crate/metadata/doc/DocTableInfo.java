@@ -22,6 +22,7 @@
 package io.crate.metadata.doc;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.crate.PartitionName;
 import io.crate.analyze.WhereClause;
 import io.crate.exceptions.ColumnUnknownException;
@@ -56,9 +57,12 @@ public class DocTableInfo implements TableInfo {
     private final int numberOfShards;
     private final BytesRef numberOfReplicas;
     private final ClusterService clusterService;
+    @Nullable
+    private final ShardCopySelector shardCopySelector;
 
     private final String[] indices;
     private final List<PartitionName> partitions;
+    private final Set<ColumnIdent> docValuesColumns;
 
     private final boolean isAlias;
     private final boolean hasAutoGeneratedPrimaryKey;
@@ -78,7 +82,34 @@ public class DocTableInfo implements TableInfo {
                         BytesRef numberOfReplicas,
                         List<String> partitionedBy,
                         List<PartitionName> partitions) {
+        this(ident, columns, partitionedByColumns, references, primaryKeys, clusteredBy, isAlias,
+                hasAutoGeneratedPrimaryKey, concreteIndices, clusterService, null, numberOfShards,
+                numberOfReplicas, partitionedBy, partitions, ImmutableSet.<ColumnIdent>of());
+    }
+
+    /**
+     * @param shardCopySelector used to choose the copies of the shards in {@link #getRouting(WhereClause)}.
+     *                          If null the first copy of the shuffled copies is used.
+     * @param docValuesColumns the columns which are mapped with <code>doc_values: true</code>
+     */
+    public DocTableInfo(TableIdent ident,
+                        List<ReferenceInfo> columns,
+                        List<ReferenceInfo> partitionedByColumns,
+                        ImmutableMap<ColumnIdent, ReferenceInfo> references,
+                        List<String> primaryKeys,
+                        String clusteredBy,
+                        boolean isAlias,
+                        boolean hasAutoGeneratedPrimaryKey,
+                        String[] concreteIndices,
+                        ClusterService clusterService,
+                        @Nullable ShardCopySelector shardCopySelector,
+                        int numberOfShards,
+                        BytesRef numberOfReplicas,
+                        List<String> partitionedBy,
+                        List<PartitionName> partitions,
+                        Set<ColumnIdent> docValuesColumns) {
         this.clusterService = clusterService;
+        this.shardCopySelector = shardCopySelector;
         this.columns = columns;
         this.partitionedByColumns = partitionedByColumns;
         this.references = references;
@@ -94,6 +125,7 @@ public class DocTableInfo implements TableInfo {
         this.isPartitioned = !partitionedByColumns.isEmpty();
         this.partitionedBy = partitionedBy;
         this.partitions = partitions;
+        this.docValuesColumns = docValuesColumns;
     }
 
     /**
@@ -211,8 +243,13 @@ public class DocTableInfo implements TableInfo {
             return new Routing();
         }
         ShardRouting shardRouting;
+        Map<String, Integer> assignedShards = new HashMap<>();
         for (ShardIterator shardIterator : shardIterators.iterators()) {
-            shardRouting = shardIterator.firstOrNull();
+            if (shardCopySelector == null) {
+                shardRouting = shardIterator.firstOrNull();
+            } else {
+                shardRouting = shardCopySelector.select(shardIterator, assignedShards);
+            }
             processShardRouting(locations, shardRouting, shardIterator.shardId());
         }
 
@@ -288,6 +325,15 @@ public class DocTableInfo implements TableInfo {
         return isPartitioned;
     }
 
+    /**
+     * columns which are mapped with <code>doc_values: true</code> and can be read
+     * without loading the source of a document.
+     * @return always a set, never null
+     */
+    public Set<ColumnIdent> docValuesColumns() {
+        return docValuesColumns;
+    }
+
     @Override
     public Iterator<ReferenceInfo> iterator() {
         return references.values().iterator();
@@ -25,6 +25,7 @@ import io.crate.Constants;
 import io.crate.PartitionName;
 import io.crate.exceptions.CrateException;
 import io.crate.exceptions.TableUnknownException;
+import io.crate.metadata.ShardCopySelector;
 import io.crate.metadata.TableIdent;
 import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemplateAction;
 import org.elasticsearch.action.support.IndicesOptions;
@@ -38,6 +39,7 @@ import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.indices.IndexMissingException;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -53,14 +55,32 @@ public class DocTableInfoBuilder {
     private final boolean checkAliasSchema;
     private final ClusterService clusterService;
     private final TransportPutIndexTemplateAction transportPutIndexTemplateAction;
+    @Nullable
+    private final DocIndexMetaDataCache docIndexMetaDataCache;
+    @Nullable
+    private final ShardCopySelector shardCopySelector;
     private String[] concreteIndices;
     ESLogger logger = ESLoggerFactory.getLogger(FileSystemUtils.class.getName());
 
     public DocTableInfoBuilder(TableIdent ident, ClusterService clusterService,
                                TransportPutIndexTemplateAction transportPutIndexTemplateAction,
                                boolean checkAliasSchema) {
+        this(ident, clusterService, transportPutIndexTemplateAction, checkAliasSchema, null, null);
+    }
+
+    /**
+     * @param docIndexMetaDataCache if given the meta data of the concrete indices is looked up in this cache
+     * @param shardCopySelector used by the table info to choose the copies of the shards it is routed to
+     */
+    DocTableInfoBuilder(TableIdent ident, ClusterService clusterService,
+                        TransportPutIndexTemplateAction transportPutIndexTemplateAction,
+                        boolean checkAliasSchema,
+                        @Nullable DocIndexMetaDataCache docIndexMetaDataCache,
+                        @Nullable ShardCopySelector shardCopySelector) {
         this.clusterService = clusterService;
         this.transportPutIndexTemplateAction = transportPutIndexTemplateAction;
+        this.docIndexMetaDataCache = docIndexMetaDataCache;
+        this.shardCopySelector = shardCopySelector;
         this.metaData = clusterService.state().metaData();
         this.ident = ident;
         this.checkAliasSchema = checkAliasSchema;
@@ -105,13 +125,14 @@ public class DocTableInfoBuilder {
     }
 
     private DocIndexMetaData buildDocIndexMetaData(String index) {
-        DocIndexMetaData docIndexMetaData;
         try {
-            docIndexMetaData = new DocIndexMetaData(metaData.index(index), ident);
+            if (docIndexMetaDataCache != null) {
+                return docIndexMetaDataCache.get(metaData.index(index), ident);
+            }
+            return new DocIndexMetaData(metaData.index(index), ident).build();
         } catch (IOException e) {
             throw new CrateException("Unable to build DocIndexMetaData", e);
         }
-        return docIndexMetaData.build();
     }
 
     private DocIndexMetaData buildDocIndexMetaDataFromTemplate(String index, String templateName) {
@@ -154,10 +175,11 @@ public class DocTableInfoBuilder {
         return new DocTableInfo(ident, md.columns(), md.partitionedByColumns(),
                 md.references(), md.primaryKey(), md.routingCol(),
                 md.isAlias(), md.hasAutoGeneratedPrimaryKey(),
-                concreteIndices, clusterService,
+                concreteIndices, clusterService, shardCopySelector,
                 md.numberOfShards(), md.numberOfReplicas(),
                 md.partitionedBy(),
-                partitions);
+                partitions,
+                md.docValuesColumns());
     }
 
 }
@@ -70,6 +70,10 @@ public class SysNodesTableInfo extends SysTableInfo {
         register("fs", DataType.LONG, ImmutableList.of("used"));
         register("fs", DataType.DOUBLE, ImmutableList.of("free_percent"));
         register("fs", DataType.DOUBLE, ImmutableList.of("used_percent"));
+        register("statement_cache", DataType.OBJECT, null);
+        register("statement_cache", DataType.LONG, ImmutableList.of("hits"));
+        register("statement_cache", DataType.LONG, ImmutableList.of("misses"));
+        register("statement_cache", DataType.LONG, ImmutableList.of("size"));
     }
 
     private final ClusterService clusterService;
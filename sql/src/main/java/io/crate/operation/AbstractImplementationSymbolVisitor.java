@@ -21,6 +21,7 @@
 
 package io.crate.operation;
 
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.Functions;
 import io.crate.metadata.Scalar;
@@ -90,6 +91,10 @@ public abstract class AbstractImplementationSymbolVisitor<C extends AbstractImpl
     public Input<?> visitFunction(Function function, C context) {
         final FunctionImplementation functionImplementation = functions.get(function.info().ident());
         if (functionImplementation != null && functionImplementation instanceof Scalar<?, ?>) {
+            Scalar<?, ?> scalar = (Scalar<?, ?>) functionImplementation;
+            if (scalar instanceof CompilableScalar<?, ?>) {
+                scalar = ((CompilableScalar<?, ?>) scalar).compile(function.arguments());
+            }
 
             List<Symbol> arguments = function.arguments();
             Input[] argumentInputs = new Input[arguments.size()];
@@ -97,7 +102,7 @@ public abstract class AbstractImplementationSymbolVisitor<C extends AbstractImpl
             for (Symbol argument : function.arguments()) {
                 argumentInputs[i++] = process(argument, context);
             }
-            return new FunctionExpression<>((Scalar<?, ?>) functionImplementation, argumentInputs);
+            return new FunctionExpression<>(scalar, argumentInputs);
         } else {
             throw new IllegalArgumentException(
                     SymbolFormatter.format("Cannot find implementation for function %s", function));
@@ -22,6 +22,8 @@
 package io.crate.operation.aggregation;
 
 import io.crate.operation.Input;
+import io.crate.operation.batch.RowBatch;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.operation.collect.RowCollector;
 import io.crate.planner.symbol.Aggregation;
 
@@ -31,6 +33,10 @@ public class AggregationCollector implements RowCollector {
     private final AggregationFunction aggregationFunction;
     private final FromImpl fromImpl;
     private final ToImpl toImpl;
+    private final int inputColumn;
+
+    private static final int NO_INPUTS = -1;
+    private static final int NO_COLUMNS = -2;
 
     private AggregationState aggregationState;
 
@@ -67,6 +73,37 @@ public class AggregationCollector implements RowCollector {
 
         this.inputs = inputs;
         this.aggregationFunction = aggregationFunction;
+
+        if (a.fromStep() != Aggregation.Step.ITER) {
+            inputColumn = NO_COLUMNS;
+        } else if (inputs.length == 0) {
+            inputColumn = NO_INPUTS;
+        } else if (inputs.length == 1 && inputs[0] instanceof InputCollectExpression) {
+            inputColumn = ((InputCollectExpression) inputs[0]).position();
+        } else {
+            inputColumn = NO_COLUMNS;
+        }
+    }
+
+    /**
+     * @return true if the aggregation reads its argument directly from a column of the incoming rows,
+     * see {@link #processRow(RowBatch, int)}
+     */
+    public boolean readsColumns() {
+        return inputColumn != NO_COLUMNS;
+    }
+
+    /**
+     * process one row of a batch reading the argument from its column vector,
+     * only allowed if {@link #readsColumns()} returns true.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean processRow(RowBatch batch, int row) {
+        assert readsColumns() : "aggregation doesn't read columns";
+        if (inputColumn == NO_INPUTS) {
+            return aggregationFunction.iterate(aggregationState, inputs);
+        }
+        return aggregationFunction.iterate(aggregationState, batch.column(inputColumn), row);
     }
 
 
@@ -23,6 +23,7 @@ package io.crate.operation.aggregation;
 
 import io.crate.metadata.FunctionImplementation;
 import io.crate.operation.Input;
+import io.crate.operation.batch.ColumnVector;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Symbol;
 
@@ -38,6 +39,24 @@ public abstract class AggregationFunction<T extends AggregationState> implements
      */
     public abstract boolean iterate(T state, Input... args);
 
+    /**
+     * Apply the value of one row of a column vector to the state, used for aggregations with a single argument
+     * which is read from the incoming rows.
+     *
+     * The default implementation boxes the value, implementations should read primitive vectors directly.
+     *
+     * @return false if we do not need any further iteration for this state
+     */
+    public boolean iterate(T state, ColumnVector column, int row) {
+        final Object value = column.value(row);
+        return iterate(state, new Input<Object>() {
+            @Override
+            public Object value() {
+                return value;
+            }
+        });
+    }
+
 
     /**
      * Creates a new state for this aggregation
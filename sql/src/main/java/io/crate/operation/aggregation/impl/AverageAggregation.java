@@ -29,6 +29,9 @@ import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
@@ -77,11 +80,15 @@ public class AverageAggregation extends AggregationFunction<AverageAggregation.A
 
         void add(Object otherValue) {
             if (otherValue != null) {
-                sum += ((Number) otherValue).doubleValue();
-                count++;
+                add(((Number) otherValue).doubleValue());
             }
         }
 
+        void add(double value) {
+            sum += value;
+            count++;
+        }
+
         @Override
         public void readFrom(StreamInput in) throws IOException {
             sum = in.readDouble();
@@ -119,6 +126,21 @@ public class AverageAggregation extends AggregationFunction<AverageAggregation.A
         return true;
     }
 
+    @Override
+    public boolean iterate(AverageAggState state, ColumnVector column, int row) {
+        if (column.isNull(row)) {
+            return true;
+        }
+        if (column instanceof LongColumnVector) {
+            state.add((double) ((LongColumnVector) column).getLong(row));
+        } else if (column instanceof DoubleColumnVector) {
+            state.add(((DoubleColumnVector) column).getDouble(row));
+        } else {
+            state.add(column.value(row));
+        }
+        return true;
+    }
+
     @Override
     public AverageAggState newState() {
         return new AverageAggState();
@@ -27,6 +27,7 @@ import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.batch.ColumnVector;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.LongLiteral;
@@ -106,6 +107,14 @@ public class CountAggregation extends AggregationFunction<CountAggregation.Count
         return true;
     }
 
+    @Override
+    public boolean iterate(CountAggState state, ColumnVector column, int row) {
+        if (!column.isNull(row)) {
+            state.value++;
+        }
+        return true;
+    }
+
     @Override
     public CountAggState newState() {
         return new CountAggState();
@@ -27,6 +27,9 @@ import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
 import org.apache.lucene.util.BytesRef;
 import io.crate.DataType;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -225,6 +228,31 @@ public abstract class MaximumAggregation<T extends Comparable<T>> extends Aggreg
         return true;
     }
 
+    /**
+     * primitive values are compared with the current max first and only boxed if they replace it
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean iterate(MaximumAggState<T> state, ColumnVector column, int row) {
+        if (column.isNull(row)) {
+            return true;
+        }
+        Object current = state.value();
+        if (current instanceof Number) {
+            if (column instanceof LongColumnVector) {
+                if (Long.compare(((LongColumnVector) column).getLong(row), ((Number) current).longValue()) <= 0) {
+                    return true;
+                }
+            } else if (column instanceof DoubleColumnVector) {
+                if (Double.compare(((DoubleColumnVector) column).getDouble(row), ((Number) current).doubleValue()) <= 0) {
+                    return true;
+                }
+            }
+        }
+        state.add((T) column.value(row));
+        return true;
+    }
+
     public static abstract class MaximumAggState<T extends Comparable<T>> extends AggregationState<MaximumAggState<T>> {
 
         private T value = null;
@@ -27,6 +27,9 @@ import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
 import io.crate.DataType;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -54,46 +57,55 @@ public class SumAggregation extends AggregationFunction<SumAggregation.SumAggSta
 
     public static class SumAggState extends AggregationState<SumAggState> {
 
-        private Double value = null; // sum that aggregates nothing returns null, not 0.0
+        private double sum = 0.0;
+        private boolean hasValue = false; // sum that aggregates nothing returns null, not 0.0
 
         @Override
         public Object value() {
-            return value;
+            return hasValue ? sum : null;
         }
 
         @Override
         public void reduce(SumAggState other) {
-            add(other.value);
+            if (other.hasValue) {
+                add(other.sum);
+            }
         }
 
         public void add(Object value) {
             if (value != null) {
-                this.value = (this.value == null ? 0.0 : this.value) + ((Number)value).doubleValue();
+                add(((Number) value).doubleValue());
             }
         }
 
+        public void add(double value) {
+            sum += value;
+            hasValue = true;
+        }
+
         @Override
         public int compareTo(SumAggState o) {
             if (o == null) return 1;
-            if (value == null) return o.value == null ? 0 : -1;
-            if (o.value == null) return 1;
+            if (!hasValue) return o.hasValue ? -1 : 0;
+            if (!o.hasValue) return 1;
 
-            return Double.compare(value, o.value);
+            return Double.compare(sum, o.sum);
         }
 
         @Override
         @SuppressWarnings("unchecked")
         public void readFrom(StreamInput in) throws IOException {
-            if (!in.readBoolean()) {
-                value = in.readDouble();
+            hasValue = !in.readBoolean();
+            if (hasValue) {
+                sum = in.readDouble();
             }
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
-            out.writeBoolean(value == null);
-            if (value != null) {
-                out.writeDouble(value);
+            out.writeBoolean(!hasValue);
+            if (hasValue) {
+                out.writeDouble(sum);
             }
         }
     }
@@ -105,6 +117,21 @@ public class SumAggregation extends AggregationFunction<SumAggregation.SumAggSta
         return true;
     }
 
+    @Override
+    public boolean iterate(SumAggState state, ColumnVector column, int row) {
+        if (column.isNull(row)) {
+            return true;
+        }
+        if (column instanceof LongColumnVector) {
+            state.add((double) ((LongColumnVector) column).getLong(row));
+        } else if (column instanceof DoubleColumnVector) {
+            state.add(((DoubleColumnVector) column).getDouble(row));
+        } else {
+            state.add(column.value(row));
+        }
+        return true;
+    }
+
     @Override
     public SumAggState newState() {
         return new SumAggState();
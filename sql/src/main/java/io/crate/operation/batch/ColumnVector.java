@@ -0,0 +1,63 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.batch;
+
+import java.util.Arrays;
+
+/**
+ * the values of one column for all rows of a {@link RowBatch}
+ */
+public abstract class ColumnVector {
+
+    private final long[] nulls;
+
+    protected ColumnVector(int capacity) {
+        nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public void setNull(int row) {
+        nulls[row >>> 6] |= 1L << row;
+    }
+
+    protected void clearNull(int row) {
+        nulls[row >>> 6] &= ~(1L << row);
+    }
+
+    /**
+     * @return the value of the given row, boxed if the vector is backed by a primitive array
+     */
+    public abstract Object value(int row);
+
+    /**
+     * set a value which might be null
+     */
+    public abstract void setValue(int row, Object value);
+
+    public void clear() {
+        Arrays.fill(nulls, 0L);
+    }
+}
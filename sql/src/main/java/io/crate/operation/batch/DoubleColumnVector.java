@@ -0,0 +1,74 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.batch;
+
+import io.crate.DataType;
+
+/**
+ * {@link ColumnVector} for float and double backed by a primitive double array.
+ */
+public class DoubleColumnVector extends ColumnVector {
+
+    private final DataType type;
+    private final double[] values;
+
+    public DoubleColumnVector(int capacity, DataType type) {
+        super(capacity);
+        assert DataType.DECIMAL_TYPES.contains(type) : "invalid type";
+        this.type = type;
+        this.values = new double[capacity];
+    }
+
+    public DataType type() {
+        return type;
+    }
+
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    public void setDouble(int row, double value) {
+        values[row] = value;
+        clearNull(row);
+    }
+
+    @Override
+    public Object value(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        if (type == DataType.FLOAT) {
+            return (float) values[row];
+        }
+        return values[row];
+    }
+
+    @Override
+    public void setValue(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+        } else {
+            setDouble(row, ((Number) value).doubleValue());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.batch;
+
+import io.crate.DataType;
+
+/**
+ * {@link ColumnVector} for integer types (byte, short, integer, long and timestamp)
+ * backed by a primitive long array.
+ */
+public class LongColumnVector extends ColumnVector {
+
+    private final DataType type;
+    private final long[] values;
+
+    public LongColumnVector(int capacity, DataType type) {
+        super(capacity);
+        assert DataType.INTEGER_TYPES.contains(type) || type == DataType.TIMESTAMP : "invalid type";
+        this.type = type;
+        this.values = new long[capacity];
+    }
+
+    public DataType type() {
+        return type;
+    }
+
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    public void setLong(int row, long value) {
+        values[row] = value;
+        clearNull(row);
+    }
+
+    @Override
+    public Object value(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        long value = values[row];
+        switch (type) {
+            case BYTE:
+                return (byte) value;
+            case SHORT:
+                return (short) value;
+            case INTEGER:
+                return (int) value;
+            default:
+                return value;
+        }
+    }
+
+    @Override
+    public void setValue(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+        } else {
+            setLong(row, ((Number) value).longValue());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.batch;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.util.Locale;
+
+/**
+ * {@link ColumnVector} for string columns holding ordinals instead of the actual values.
+ *
+ * The ordinals are resolved using the {@link OrdinalLookup} of the vector,
+ * consumers which are able to work on the ordinals may read them using {@link #getOrd(int)}
+ * and resolve only the values they need.
+ */
+public class OrdinalColumnVector extends ColumnVector {
+
+    private final OrdinalLookup lookup;
+    private final long[] ords;
+
+    public OrdinalColumnVector(int capacity, OrdinalLookup lookup) {
+        super(capacity);
+        this.lookup = lookup;
+        this.ords = new long[capacity];
+    }
+
+    public OrdinalLookup lookup() {
+        return lookup;
+    }
+
+    public long getOrd(int row) {
+        return ords[row];
+    }
+
+    public void setOrd(int row, long ord) {
+        ords[row] = ord;
+        clearNull(row);
+    }
+
+    @Override
+    public Object value(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        return BytesRef.deepCopyOf(lookup.lookupOrd(ords[row]));
+    }
+
+    /**
+     * set the value by its ordinal
+     *
+     * @throws IllegalArgumentException if the value has no ordinal in the lookup of this vector
+     */
+    @Override
+    public void setValue(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+            return;
+        }
+        BytesRef bytesRef = value instanceof BytesRef ? (BytesRef) value : new BytesRef(value.toString());
+        long ord = lookup.lookupTerm(bytesRef);
+        if (ord < 0) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "value '%s' has no ordinal", bytesRef.utf8ToString()));
+        }
+        setOrd(row, ord);
+    }
+}
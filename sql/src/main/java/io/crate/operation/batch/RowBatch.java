@@ -0,0 +1,132 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.batch;
+
+import io.crate.DataType;
+import io.crate.operation.projectors.BatchProjector;
+import io.crate.operation.projectors.Projector;
+
+/**
+ * a batch of rows stored column wise.
+ *
+ * Batches are reused by their producer, so consumers must not keep a reference
+ * to a batch or its vectors after {@link BatchProjector#setNextBatch(RowBatch)} returned.
+ */
+public class RowBatch {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final ColumnVector[] columns;
+    private final int capacity;
+    private int size = 0;
+
+    public RowBatch(ColumnVector[] columns, int capacity) {
+        this.columns = columns;
+        this.capacity = capacity;
+    }
+
+    /**
+     * create a batch with a vector fitting each of the given column types.
+     * If a type is null an {@link ObjectColumnVector} is used.
+     */
+    public static RowBatch forTypes(DataType[] types, int capacity) {
+        ColumnVector[] columns = new ColumnVector[types.length];
+        for (int i = 0; i < types.length; i++) {
+            DataType type = types[i];
+            if (type == null) {
+                columns[i] = new ObjectColumnVector(capacity);
+            } else if (DataType.INTEGER_TYPES.contains(type) || type == DataType.TIMESTAMP) {
+                columns[i] = new LongColumnVector(capacity, type);
+            } else if (DataType.DECIMAL_TYPES.contains(type)) {
+                columns[i] = new DoubleColumnVector(capacity, type);
+            } else {
+                columns[i] = new ObjectColumnVector(capacity);
+            }
+        }
+        return new RowBatch(columns, capacity);
+    }
+
+    public ColumnVector column(int idx) {
+        return columns[idx];
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @return the index of the added row, its values must be set on the column vectors
+     */
+    public int addRow() {
+        assert size < capacity : "batch is full";
+        return size++;
+    }
+
+    /**
+     * write the values of a row into the given array
+     */
+    public Object[] row(int row, Object[] dest) {
+        for (int i = 0; i < columns.length; i++) {
+            dest[i] = columns[i].value(row);
+        }
+        return dest;
+    }
+
+    public void clear() {
+        for (ColumnVector column : columns) {
+            column.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * send all rows of this batch to a projector.
+     *
+     * {@link BatchProjector}s get the whole batch, other projectors get one new array per row.
+     *
+     * @return false if the projector doesn't need any more rows
+     */
+    public boolean sendTo(Projector projector) {
+        if (projector instanceof BatchProjector) {
+            return ((BatchProjector) projector).setNextBatch(this);
+        }
+        for (int i = 0; i < size; i++) {
+            if (!projector.setNextRow(row(i, new Object[columns.length]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
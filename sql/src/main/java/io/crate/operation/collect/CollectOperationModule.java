@@ -21,11 +21,17 @@
 
 package io.crate.operation.collect;
 
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.writer.S3Uploads;
+import io.crate.operation.reference.doc.GlobalOrdinalsCache;
 import org.elasticsearch.common.inject.AbstractModule;
 
 public class CollectOperationModule extends AbstractModule {
     @Override
     protected void configure() {
+        bind(GroupByMemory.class).asEagerSingleton();
+        bind(GlobalOrdinalsCache.class).asEagerSingleton();
+        bind(S3Uploads.class).asEagerSingleton();
         bind(MapSideDataCollectOperation.class).asEagerSingleton();
         bind(HandlerSideDataCollectOperation.class).asEagerSingleton();
         bind(InformationSchemaCollectService.class).asEagerSingleton();
@@ -22,33 +22,33 @@
 package io.crate.operation.collect;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.Constants;
 import io.crate.Streamer;
-import io.crate.executor.transport.distributed.DistributedResultRequest;
-import io.crate.executor.transport.distributed.DistributedResultResponse;
-import io.crate.executor.transport.merge.TransportMergeNodeAction;
 import io.crate.metadata.Functions;
 import io.crate.metadata.ReferenceResolver;
+import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.writer.S3Uploads;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.ProjectionType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Provider;
-import org.elasticsearch.common.logging.ESLogger;
-import org.elasticsearch.common.logging.Loggers;
-import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
-import org.elasticsearch.transport.BaseTransportResponseHandler;
-import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportService;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * handling distributing collect requests
@@ -58,110 +58,47 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
 
     public static class DistributingShardCollectFuture extends ShardCollectFuture {
 
-        private final ESLogger logger = Loggers.getLogger(getClass());
+        private final DistributingProjector distributingProjector;
 
-        private final TransportService transportService;
-        private final DistributedResultRequest[] requests;
-        private final List<DiscoveryNode> downStreams;
-        private final int numDownStreams;
-        private final UUID jobId;
-
-
-        public DistributingShardCollectFuture(UUID jobId,
-                                              int numShards,
+        public DistributingShardCollectFuture(int numShards,
                                               ShardProjectorChain projectorChain,
-                                              List<DiscoveryNode> downStreams,
-                                              TransportService transportService,
-                                              Streamer<?>[] streamers) {
+                                              DistributingProjector distributingProjector) {
             super(numShards, projectorChain);
-            Preconditions.checkNotNull(downStreams);
-            Preconditions.checkNotNull(jobId);
-            this.jobId = jobId;
-            this.transportService = transportService;
-            this.downStreams = downStreams;
-            this.numDownStreams = this.downStreams.size();
-
-            this.requests = new DistributedResultRequest[numDownStreams];
-            for (int i=0, length = this.downStreams.size(); i<length; i++) {
-                this.requests[i] = new DistributedResultRequest(jobId, streamers);
-            }
+            Preconditions.checkNotNull(distributingProjector);
+            this.distributingProjector = distributingProjector;
         }
 
+        /**
+         * @return the number of rows sent to each downstream node, see {@link DistributingProjector#rowCounts()}
+         */
+        public long[] bucketRowCounts() {
+            return distributingProjector.rowCounts();
+        }
+
+        /**
+         * all rows have already been sent to the {@link DistributingProjector} which
+         * sent them to the downstreams page by page, only the last pages are missing.
+         */
         @Override
         protected void onAllShardsFinished() {
             Throwable throwable = lastException.get();
             if (throwable != null) {
                 setException(throwable);
-                forwardFailures();
+                distributingProjector.fail(throwable);
                 return;
             }
-            super.set(Constants.EMPTY_RESULT);
-
-            BucketingIterator bucketingIterator = new ModuloBucketingIterator(
-                    this.numDownStreams,
-                    projectorChain.lastProjector()
-            );
-
-            // send requests
-            int i = 0;
-            for (List<Object[]> bucket : bucketingIterator) {
-                DistributedResultRequest request = this.requests[i];
-                request.rows(bucket.toArray(new Object[bucket.size()][]));
-                final DiscoveryNode node = downStreams.get(i);
-                if (logger.isTraceEnabled()) {
-                    logger.trace("[{}] sending distributing collect request to {} ...",
-                            jobId.toString(),
-                            node.id());
+            distributingProjector.finish();
+            Futures.addCallback(distributingProjector.result(), new FutureCallback<Object[][]>() {
+                @Override
+                public void onSuccess(@Nullable Object[][] result) {
+                    set(Constants.EMPTY_RESULT);
                 }
-                sendRequest(request, node);
-                i++;
-            }
-        }
-
-        private void forwardFailures() {
-            int idx = 0;
-            for (DistributedResultRequest request : requests) {
-                request.failure(true);
-                sendRequest(request, downStreams.get(idx));
-                idx++;
-            }
-        }
 
-        private void sendRequest(DistributedResultRequest request, final DiscoveryNode node) {
-            transportService.submitRequest(
-                node,
-                TransportMergeNodeAction.mergeRowsAction, // NOTICE: hard coded transport action, should be delivered by collectNode
-                request,
-                new BaseTransportResponseHandler<DistributedResultResponse>() {
-                    @Override
-                    public DistributedResultResponse newInstance() {
-                        return new DistributedResultResponse();
-                    }
-
-                    @Override
-                    public void handleResponse(DistributedResultResponse response) {
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("[{}] successfully sent distributing collect request to {}",
-                                    jobId.toString(),
-                                    node.id());
-                        }
-                    }
-
-                    @Override
-                    public void handleException(TransportException exp) {
-                        logger.error("[{}] Exception sending distributing collect request to {}",
-                                exp,
-                                jobId.toString(),
-                                node.id());
-                        setException(exp.getCause());
-                    }
-
-                    @Override
-                    public String executor() {
-                        return ThreadPool.Names.SEARCH;
-                    }
+                @Override
+                public void onFailure(Throwable t) {
+                    setException(t);
                 }
-            );
+            });
         }
     }
 
@@ -176,8 +113,11 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
                                         IndicesService indicesService,
                                         ThreadPool threadPool,
                                         TransportService transportService,
-                                        PlanNodeStreamerVisitor streamerVisitor) {
-        super(clientProvider, clusterService, functions, referenceResolver, indicesService, threadPool);
+                                        PlanNodeStreamerVisitor streamerVisitor,
+                                        GroupByMemory groupByMemory,
+                                        S3Uploads s3Uploads) {
+        super(clientProvider, clusterService, functions, referenceResolver, indicesService, threadPool, groupByMemory,
+                s3Uploads);
         this.transportService = transportService;
         this.streamerVisitor = streamerVisitor;
     }
@@ -195,7 +135,9 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
     }
 
     @Override
-    protected ShardCollectFuture getShardCollectFuture(int numShards, ShardProjectorChain projectorChain, CollectNode collectNode) {
+    protected ShardProjectorChain getShardProjectorChain(int numShards,
+                                                         CollectNode collectNode,
+                                                         ProjectionToProjectorVisitor projectorVisitor) {
         List<DiscoveryNode> downStreams = new ArrayList<>(collectNode.downStreamNodes().size());
         for (String nodeId : collectNode.downStreamNodes()) {
             DiscoveryNode node = clusterService.state().nodes().get(nodeId);
@@ -203,13 +145,34 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
         }
         assert collectNode.jobId().isPresent();
         Streamer<?>[] streamers = streamerVisitor.process(collectNode).outputStreamers();
-        return new DistributingShardCollectFuture(
+        DistributingProjector distributingProjector = new DistributingProjector(
                 collectNode.jobId().get(),
-                numShards,
-                projectorChain,
                 downStreams,
                 transportService,
-                streamers
-                );
+                streamers,
+                new Murmur3RowPartitioner(numKeyColumns(collectNode, streamers.length)),
+                DistributingProjector.DEFAULT_PAGE_SIZE
+        );
+        return new ShardProjectorChain(numShards, collectNode.projections(), projectorVisitor, distributingProjector);
+    }
+
+    /**
+     * the rows of a group projection start with the group keys, all other rows are partitioned by all columns.
+     */
+    private static int numKeyColumns(CollectNode collectNode, int numColumns) {
+        List<Projection> projections = collectNode.projections();
+        if (projections.size() > 0 && projections.get(0).projectionType() == ProjectionType.GROUP) {
+            return ((GroupProjection) projections.get(0)).keys().size();
+        }
+        return numColumns;
+    }
+
+    @Override
+    protected ShardCollectFuture getShardCollectFuture(int numShards, ShardProjectorChain projectorChain, CollectNode collectNode) {
+        return new DistributingShardCollectFuture(
+                numShards,
+                projectorChain,
+                (DistributingProjector) projectorChain.lastProjector()
+        );
     }
 }
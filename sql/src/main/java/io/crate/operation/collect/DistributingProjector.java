@@ -0,0 +1,372 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Constants;
+import io.crate.Streamer;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.ResultProvider;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportResponseHandler;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Projector that buckets the rows it receives by the downstream node they belong to
+ * and sends them in pages of <code>pageSize</code> rows to the downstream nodes
+ * while the upstreams are still producing rows.
+ *
+ * If <code>MAX_PENDING_PAGES</code> pages to a downstream node are not yet acknowledged
+ * further pages are queued and sent once a pending page is acknowledged.
+ * If <code>MAX_QUEUED_PAGES</code> pages are queued for a node the collecting thread
+ * is throttled: {@link #setNextRow(Object...)} waits until a queued page was sent or the
+ * projector is closed. A slow downstream node only slows down the collectors, it doesn't
+ * fail the query. The collectors run in the search thread pool, the pages are acknowledged
+ * on the network threads and handled in the generic thread pool
+ * (see {@link io.crate.executor.transport.DistributedResultRequestHandler}), so waiting
+ * collectors can't block the acknowledgements they are waiting for.
+ *
+ * The last page to every downstream node is sent by {@link #finish()} or replaced by a failure
+ * by {@link #fail(Throwable)}, both are called by the
+ * {@link io.crate.operation.collect.DistributingCollectOperation.DistributingShardCollectFuture}
+ * because it knows if all shards succeeded. The last page is only sent after all previous pages
+ * to that node are acknowledged, so the downstream node won't receive rows after it finished.
+ *
+ * The result is an empty result which is set after all downstream nodes received their last page.
+ */
+public class DistributingProjector implements Projector, ResultProvider {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    static final int MAX_PENDING_PAGES = 2;
+    static final int MAX_QUEUED_PAGES = 16;
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final UUID jobId;
+    private final Streamer<?>[] streamers;
+    private final TransportService transportService;
+    private final int pageSize;
+    private final RowPartitioner partitioner;
+    private final Target[] targets;
+    private final AtomicInteger remainingTargets;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final SettableFuture<Object[][]> result = SettableFuture.create();
+
+    private class Target {
+
+        private final DiscoveryNode node;
+        private List<Object[]> rows;
+        private final Deque<Object[][]> queuedPages = new ArrayDeque<>();
+        private long numRows = 0;
+        private int pendingPages = 0;
+        private boolean closing = false;
+        private boolean lastSent = false;
+
+        Target(DiscoveryNode node) {
+            this.node = node;
+            this.rows = new ArrayList<>(pageSize);
+        }
+
+        private Object[][] drain() {
+            Object[][] page = rows.toArray(new Object[rows.size()][]);
+            rows = new ArrayList<>(pageSize);
+            return page;
+        }
+    }
+
+    public DistributingProjector(UUID jobId,
+                                 List<DiscoveryNode> downStreams,
+                                 TransportService transportService,
+                                 Streamer<?>[] streamers,
+                                 RowPartitioner partitioner,
+                                 int pageSize) {
+        this.jobId = jobId;
+        this.transportService = transportService;
+        this.streamers = streamers;
+        this.pageSize = pageSize;
+        this.partitioner = partitioner;
+        this.targets = new Target[downStreams.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = new Target(downStreams.get(i));
+        }
+        this.remainingTargets = new AtomicInteger(targets.length);
+        if (targets.length == 0) {
+            result.set(Constants.EMPTY_RESULT);
+        }
+    }
+
+    @Override
+    public void startProjection() {
+    }
+
+    @Override
+    public boolean setNextRow(Object... row) {
+        if (closed.get()) {
+            return false;
+        }
+        Target target = targets[partitioner.bucket(row, targets.length)];
+        Object[][] page;
+        InterruptedException interrupted = null;
+        synchronized (target) {
+            target.rows.add(row);
+            target.numRows++;
+            if (target.rows.size() < pageSize) {
+                return true;
+            }
+            page = target.drain();
+            if (target.pendingPages < MAX_PENDING_PAGES) {
+                target.pendingPages++;
+            } else {
+                try {
+                    // throttle the upstream until requestDone sent one of the queued pages
+                    while (target.queuedPages.size() >= MAX_QUEUED_PAGES && !target.closing) {
+                        target.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    interrupted = e;
+                }
+                if (interrupted == null) {
+                    if (target.closing) {
+                        return false;
+                    }
+                    // sent by requestDone once a pending page is acknowledged
+                    target.queuedPages.add(page);
+                    return true;
+                }
+            }
+        }
+        if (interrupted != null) {
+            // the job was killed while this upstream was throttled
+            fail(interrupted);
+            return false;
+        }
+        sendPage(target, page);
+        return !closed.get();
+    }
+
+    /**
+     * send the remaining rows as last page to every downstream node
+     */
+    public void finish() {
+        close();
+    }
+
+    /**
+     * send a failure instead of the last page to every downstream node
+     */
+    public void fail(Throwable throwable) {
+        failure.compareAndSet(null, throwable);
+        close();
+    }
+
+    private void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("[{}] rows sent to downstream nodes: {}", jobId.toString(), Arrays.toString(rowCounts()));
+        }
+        for (Target target : targets) {
+            synchronized (target) {
+                target.closing = true;
+                target.notifyAll();
+                if (failure.get() != null) {
+                    // the failure is sent instead of the remaining rows
+                    target.queuedPages.clear();
+                }
+            }
+            sendLastIfDone(target);
+        }
+    }
+
+    private void sendLastIfDone(Target target) {
+        Object[][] page;
+        synchronized (target) {
+            if (!target.closing || target.pendingPages > 0 || !target.queuedPages.isEmpty() || target.lastSent) {
+                return;
+            }
+            target.lastSent = true;
+            page = target.drain();
+        }
+        DistributedResultRequest request = new DistributedResultRequest(jobId, streamers);
+        if (failure.get() != null) {
+            request.failure(true);
+        } else {
+            request.rows(page);
+        }
+        sendRequest(target, request);
+    }
+
+    private void sendPage(Target target, Object[][] page) {
+        DistributedResultRequest request = new DistributedResultRequest(jobId, streamers);
+        request.rows(page);
+        request.last(false);
+        sendRequest(target, request);
+    }
+
+    private void sendRequest(final Target target, final DistributedResultRequest request) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("[{}] sending distributing collect request to {} ...",
+                    jobId.toString(),
+                    target.node.id());
+        }
+        transportService.submitRequest(
+                target.node,
+                TransportMergeNodeAction.mergeRowsAction, // NOTICE: hard coded transport action, should be delivered by collectNode
+                request,
+                new BaseTransportResponseHandler<DistributedResultResponse>() {
+                    @Override
+                    public DistributedResultResponse newInstance() {
+                        return new DistributedResultResponse();
+                    }
+
+                    @Override
+                    public void handleResponse(DistributedResultResponse response) {
+                        if (logger.isTraceEnabled()) {
+                            logger.trace("[{}] successfully sent distributing collect request to {}",
+                                    jobId.toString(),
+                                    target.node.id());
+                        }
+                        requestDone(target, request);
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        logger.error("[{}] Exception sending distributing collect request to {}",
+                                exp,
+                                jobId.toString(),
+                                target.node.id());
+                        failure.compareAndSet(null, exp.getCause());
+                        requestDone(target, request);
+                        close();
+                    }
+
+                    @Override
+                    public String executor() {
+                        return ThreadPool.Names.SAME;
+                    }
+                }
+        );
+    }
+
+    private void requestDone(Target target, DistributedResultRequest request) {
+        if (request.last() || request.failure()) {
+            if (remainingTargets.decrementAndGet() == 0) {
+                Throwable throwable = failure.get();
+                if (throwable == null) {
+                    result.set(Constants.EMPTY_RESULT);
+                } else {
+                    result.setException(throwable);
+                }
+            }
+            return;
+        }
+        Object[][] page;
+        synchronized (target) {
+            page = target.queuedPages.poll();
+            if (page == null) {
+                target.pendingPages--;
+            } else {
+                target.notifyAll();
+            }
+        }
+        if (page != null) {
+            sendPage(target, page);
+        } else {
+            sendLastIfDone(target);
+        }
+    }
+
+    /**
+     * @return the number of rows sent to each downstream node so far,
+     * in the order of the downstream nodes. Shows how evenly the rows are distributed.
+     */
+    public long[] rowCounts() {
+        long[] counts = new long[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            synchronized (targets[i]) {
+                counts[i] = targets[i].numRows;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void registerUpstream(ProjectorUpstream upstream) {
+    }
+
+    /**
+     * finishing is triggered by {@link #finish()}
+     */
+    @Override
+    public void upstreamFinished() {
+    }
+
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void downstream(Projector downstream) {
+        throw new UnsupportedOperationException("DistributingProjector doesn't support downstreams");
+    }
+
+    @Override
+    public Projector downstream() {
+        return null;
+    }
+
+    @Override
+    public ListenableFuture<Object[][]> result() {
+        return result;
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() throws IllegalStateException {
+        return Collections.emptyIterator();
+    }
+}
@@ -31,6 +31,7 @@ import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.writer.S3Uploads;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import org.apache.lucene.search.CollectionTerminatedException;
@@ -58,13 +59,16 @@ public class HandlerSideDataCollectOperation implements CollectOperation<Object[
                                            Functions functions,
                                            ReferenceResolver referenceResolver,
                                            InformationSchemaCollectService informationSchemaCollectService,
-                                           UnassignedShardsCollectService unassignedShardsCollectService) {
+                                           UnassignedShardsCollectService unassignedShardsCollectService,
+                                           S3Uploads s3Uploads) {
         this.informationSchemaCollectService = informationSchemaCollectService;
         this.unassignedShardsCollectService = unassignedShardsCollectService;
         this.clusterNormalizer = new EvaluatingNormalizer(functions, RowGranularity.CLUSTER, referenceResolver);
         this.implementationVisitor = new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.CLUSTER);
-        this.projectorVisitor = new ProjectionToProjectorVisitor(
-                clientProvider, implementationVisitor, clusterNormalizer);
+        this.projectorVisitor = ProjectionToProjectorVisitor.builder(clientProvider, implementationVisitor)
+                .normalizer(clusterNormalizer)
+                .s3Uploads(s3Uploads)
+                .build();
     }
 
     @Override
@@ -30,6 +30,13 @@ public class InputCollectExpression<ReturnType> extends CollectExpression<Return
         this.position = position;
     }
 
+    /**
+     * @return the column of the incoming rows this expression reads
+     */
+    public int position() {
+        return position;
+    }
+
     @Override
     public boolean setNextRow(Object... args) {
         value = (ReturnType) args[position];
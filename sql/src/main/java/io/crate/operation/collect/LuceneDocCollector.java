@@ -21,10 +21,15 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
 import io.crate.operation.Input;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
+import io.crate.operation.batch.RowBatch;
+import io.crate.operation.projectors.OrdinalBatchProjector;
 import io.crate.operation.projectors.Projector;
-import io.crate.operation.reference.doc.CollectorContext;
-import io.crate.operation.reference.doc.LuceneCollectorExpression;
+import io.crate.operation.reference.doc.*;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.FieldInfo;
@@ -38,6 +43,7 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
 import org.elasticsearch.index.mapper.internal.SourceFieldMapper;
+import org.elasticsearch.index.query.ParsedQuery;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
@@ -47,6 +53,7 @@ import org.elasticsearch.search.internal.DefaultSearchContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.ShardSearchRequest;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
@@ -92,9 +99,13 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
     }
 
     private final SearchContext searchContext;
+    private final GlobalOrdinalsCache globalOrdinalsCache;
     private Projector downstream;
-    private final List<Input<?>> topLevelInputs;
+    private final Input<?>[] topLevelInputs;
     private final List<LuceneCollectorExpression<?>> collectorExpressions;
+    private final DataType[] columnTypes;
+    private RowBatch batch;
+    private boolean downstreamFinished = false;
 
     public LuceneDocCollector(ClusterService clusterService,
                               ShardId shardId,
@@ -104,15 +115,26 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
                               PageCacheRecycler pageCacheRecycler,
                               BigArrays bigArrays,
                               SQLXContentQueryParser sqlxContentQueryParser,
+                              GlobalOrdinalsCache globalOrdinalsCache,
                               List<Input<?>> inputs,
                               List<LuceneCollectorExpression<?>> collectorExpressions,
-                              BytesReference querySource,
+                              @Nullable Query query,
+                              @Nullable BytesReference querySource,
                               Projector downStreamProjector) throws Exception {
         downstream(downStreamProjector);
+        this.globalOrdinalsCache = globalOrdinalsCache;
         SearchShardTarget searchShardTarget = new SearchShardTarget(
                 clusterService.localNode().id(), shardId.getIndex(), shardId.id());
-        this.topLevelInputs = inputs;
+        this.topLevelInputs = inputs.toArray(new Input<?>[inputs.size()]);
         this.collectorExpressions = collectorExpressions;
+        // only field data backed values are guaranteed to match their type,
+        // values extracted from the source get an object vector
+        this.columnTypes = new DataType[topLevelInputs.length];
+        for (int i = 0; i < topLevelInputs.length; i++) {
+            if (topLevelInputs[i] instanceof FieldCacheExpression) {
+                columnTypes[i] = ((FieldCacheExpression<?, ?>) topLevelInputs[i]).returnType();
+            }
+        }
         this.fieldsVisitor = new CollectorFieldsVisitor(collectorExpressions.size());
 
         ShardSearchRequest shardSearchRequest = new ShardSearchRequest();
@@ -129,7 +151,11 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
                 pageCacheRecycler,
                 bigArrays
         );
-        sqlxContentQueryParser.parse(searchContext, querySource);
+        if (query != null) {
+            searchContext.parsedQuery(new ParsedQuery(query, ImmutableMap.<String, Filter>of()));
+        } else {
+            sqlxContentQueryParser.parse(searchContext, querySource);
+        }
     }
 
     @Override
@@ -148,7 +174,6 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
     @Override
     public void collect(int doc) throws IOException {
-        Object[] newRow = new Object[topLevelInputs.size()];
         if (visitorEnabled){
             fieldsVisitor.reset();
             currentReader.document(doc, fieldsVisitor);
@@ -156,11 +181,29 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         for (LuceneCollectorExpression e : collectorExpressions) {
             e.setNextDocId(doc);
         }
-        int i = 0;
-        for (Input<?> input : topLevelInputs) {
-            newRow[i++] = input.value();
+        int row = batch.addRow();
+        for (int i = 0; i < topLevelInputs.length; i++) {
+            Input<?> input = topLevelInputs[i];
+            if (input instanceof LuceneCollectorExpression) {
+                ((LuceneCollectorExpression<?>) input).writeTo(batch.column(i), row);
+            } else {
+                batch.column(i).setValue(row, input.value());
+            }
+        }
+        if (batch.isFull()) {
+            sendBatch();
         }
-        if (!downstream.setNextRow(newRow)) {
+    }
+
+    /**
+     * send the collected rows to the downstream and clear the batch
+     */
+    private void sendBatch() {
+        if (!batch.sendTo(downstream)) {
+            downstreamFinished = true;
+        }
+        batch.clear();
+        if (downstreamFinished) {
             // no more rows required, we can stop here
             throw new CollectionTerminatedException();
         }
@@ -168,12 +211,42 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
     @Override
     public void setNextReader(AtomicReaderContext context) throws IOException {
+        if (downstreamFinished) {
+            // skip remaining segments
+            throw new CollectionTerminatedException();
+        }
         this.currentReader = context.reader();
         for (LuceneCollectorExpression expr : collectorExpressions) {
             expr.setNextReader(context);
         }
     }
 
+    /**
+     * create the batch for the collected rows.
+     * String columns which the downstream accepts as ordinals are sent as {@link OrdinalColumnVector}
+     * if they have global ordinals, so their values are only resolved by the downstream if needed.
+     */
+    private RowBatch createBatch() {
+        RowBatch batch = RowBatch.forTypes(columnTypes, RowBatch.DEFAULT_CAPACITY);
+        if (!(downstream instanceof OrdinalBatchProjector)) {
+            return batch;
+        }
+        OrdinalBatchProjector ordinalProjector = (OrdinalBatchProjector) downstream;
+        ColumnVector[] columns = new ColumnVector[topLevelInputs.length];
+        boolean hasOrdinals = false;
+        for (int i = 0; i < topLevelInputs.length; i++) {
+            columns[i] = batch.column(i);
+            if (topLevelInputs[i] instanceof BytesRefColumnReference && ordinalProjector.acceptsOrdinals(i)) {
+                GlobalOrdinals ordinals = ((BytesRefColumnReference) topLevelInputs[i]).globalOrdinals(globalOrdinalsCache);
+                if (ordinals != null) {
+                    columns[i] = new OrdinalColumnVector(RowBatch.DEFAULT_CAPACITY, ordinals);
+                    hasOrdinals = true;
+                }
+            }
+        }
+        return hasOrdinals ? new RowBatch(columns, RowBatch.DEFAULT_CAPACITY) : batch;
+    }
+
     @Override
     public boolean acceptsDocsOutOfOrder() {
         return true;
@@ -197,11 +270,20 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
         // do the lucene search
         try {
+            batch = createBatch();
             searchContext.searcher().search(query, this);
+            if (batch.size() > 0 && !downstreamFinished) {
+                batch.sendTo(downstream);
+                batch.clear();
+            }
         } finally {
-            searchContext.release();
-            SearchContext.removeCurrent();
-            downstream.upstreamFinished();
+            try {
+                // the downstream might resolve global ordinals while finishing, so the searcher is still needed
+                downstream.upstreamFinished();
+            } finally {
+                searchContext.release();
+                SearchContext.removeCurrent();
+            }
         }
     }
 }
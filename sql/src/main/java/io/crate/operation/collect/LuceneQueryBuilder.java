@@ -0,0 +1,302 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
+import io.crate.analyze.WhereClause;
+import io.crate.executor.transport.task.elasticsearch.ESQueryBuilder;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.planner.symbol.*;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.BytesRefs;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MapperService;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * Builds a lucene {@link Query} from a {@link WhereClause} on the shard,
+ * without generating a XContent query with the {@link ESQueryBuilder} which is parsed again.
+ *
+ * The queries are equal to those the elasticsearch query parsers build from the XContent query
+ * of the {@link ESQueryBuilder}: term, terms, range, wildcard and bool queries using the field mappers of the index.
+ * If the where clause contains a function which isn't supported here, e.g. match or is null,
+ * no query is built and the XContent query has to be used.
+ */
+public class LuceneQueryBuilder {
+
+    private static final Visitor VISITOR = new Visitor();
+
+    /**
+     * @param mapperService the mapper service of the index, used to look up the field mappers
+     * @return the query or null if the where clause can't be converted
+     */
+    @Nullable
+    public Query convert(WhereClause whereClause, @Nullable MapperService mapperService) {
+        if (!whereClause.hasQuery()) {
+            return new MatchAllDocsQuery();
+        }
+        return convert(whereClause.query(), mapperService);
+    }
+
+    /**
+     * @return the query of the given where clause symbol or null if it can't be converted
+     */
+    @Nullable
+    public Query convert(Symbol query, @Nullable MapperService mapperService) {
+        return VISITOR.process(query, mapperService);
+    }
+
+    /**
+     * whether the given where clause symbol can be converted.
+     * The conversion doesn't depend on the mappings, so this can be decided without the index.
+     */
+    public static boolean supports(Symbol query) {
+        return VISITOR.process(query, null) != null;
+    }
+
+    static class Visitor extends SymbolVisitor<MapperService, Query> {
+
+        static abstract class Converter {
+            @Nullable
+            public abstract Query convert(Function function, @Nullable MapperService mapperService);
+        }
+
+        class AndConverter extends Converter {
+            @Override
+            public Query convert(Function function, @Nullable MapperService mapperService) {
+                BooleanQuery query = new BooleanQuery();
+                for (Symbol symbol : function.arguments()) {
+                    Query clause = process(symbol, mapperService);
+                    if (clause == null) {
+                        return null;
+                    }
+                    query.add(clause, BooleanClause.Occur.MUST);
+                }
+                return query;
+            }
+        }
+
+        class OrConverter extends Converter {
+            @Override
+            public Query convert(Function function, @Nullable MapperService mapperService) {
+                BooleanQuery query = new BooleanQuery();
+                for (Symbol symbol : function.arguments()) {
+                    Query clause = process(symbol, mapperService);
+                    if (clause == null) {
+                        return null;
+                    }
+                    query.add(clause, BooleanClause.Occur.SHOULD);
+                }
+                query.setMinimumNumberShouldMatch(1);
+                return query;
+            }
+        }
+
+        class NotConverter extends Converter {
+            @Override
+            public Query convert(Function function, @Nullable MapperService mapperService) {
+                if (function.arguments().size() != 1) {
+                    return null;
+                }
+                Query clause = process(function.arguments().get(0), mapperService);
+                if (clause == null) {
+                    return null;
+                }
+                BooleanQuery query = new BooleanQuery();
+                query.add(clause, BooleanClause.Occur.MUST_NOT);
+                // a pure negative query matches nothing
+                query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+                return query;
+            }
+        }
+
+        static abstract class CmpConverter extends Converter {
+
+            @Override
+            public Query convert(Function function, @Nullable MapperService mapperService) {
+                if (function.arguments().size() != 2) {
+                    return null;
+                }
+                Symbol left = function.arguments().get(0);
+                Symbol right = function.arguments().get(1);
+                if (!(left instanceof Reference) || !right.symbolType().isLiteral()) {
+                    return null;
+                }
+                Object value;
+                if (right.symbolType() == SymbolType.STRING_LITERAL) {
+                    value = ((StringLiteral) right).value().utf8ToString();
+                } else {
+                    value = ((Literal) right).value();
+                }
+                if (value == null) {
+                    return null;
+                }
+                String fieldName = ((Reference) left).info().ident().columnIdent().fqn();
+                return convert(fieldName, value,
+                        mapperService == null ? null : mapperService.smartNameFieldMapper(fieldName));
+            }
+
+            @Nullable
+            protected abstract Query convert(String fieldName, Object value, @Nullable FieldMapper mapper);
+        }
+
+        static class EqConverter extends CmpConverter {
+            @Override
+            protected Query convert(String fieldName, Object value, @Nullable FieldMapper mapper) {
+                return termQuery(fieldName, value, mapper);
+            }
+        }
+
+        static class RangeConverter extends CmpConverter {
+
+            private final boolean lowerThan;
+            private final boolean inclusive;
+
+            /**
+             * @param lowerThan if true the value is the upper bound of the range, otherwise the lower bound
+             */
+            RangeConverter(boolean lowerThan, boolean inclusive) {
+                this.lowerThan = lowerThan;
+                this.inclusive = inclusive;
+            }
+
+            @Override
+            protected Query convert(String fieldName, Object value, @Nullable FieldMapper mapper) {
+                Object from = lowerThan ? null : value;
+                Object to = lowerThan ? value : null;
+                boolean includeLower = lowerThan || inclusive;
+                boolean includeUpper = !lowerThan || inclusive;
+                if (mapper != null) {
+                    return mapper.rangeQuery(from, to, includeLower, includeUpper, null);
+                }
+                return new TermRangeQuery(fieldName,
+                        from == null ? null : BytesRefs.toBytesRef(from),
+                        to == null ? null : BytesRefs.toBytesRef(to),
+                        includeLower, includeUpper);
+            }
+        }
+
+        static class LikeConverter extends CmpConverter {
+            @Override
+            protected Query convert(String fieldName, Object value, @Nullable FieldMapper mapper) {
+                String wildcard = ESQueryBuilder.convertWildcard(value.toString());
+                BytesRef valueBytes;
+                if (mapper != null) {
+                    fieldName = mapper.names().indexName();
+                    valueBytes = mapper.indexedValueForSearch(wildcard);
+                } else {
+                    valueBytes = new BytesRef(wildcard);
+                }
+                return new WildcardQuery(new Term(fieldName, valueBytes));
+            }
+        }
+
+        static class InConverter extends Converter {
+            @Override
+            public Query convert(Function function, @Nullable MapperService mapperService) {
+                if (function.arguments().size() != 2
+                        || !(function.arguments().get(0) instanceof Reference)
+                        || !(function.arguments().get(1) instanceof SetLiteral)) {
+                    return null;
+                }
+                String fieldName = ((Reference) function.arguments().get(0)).info().ident().columnIdent().fqn();
+                SetLiteral setLiteral = (SetLiteral) function.arguments().get(1);
+                boolean convertBytesRef = setLiteral.valueType() == DataType.STRING_SET;
+                FieldMapper mapper = mapperService == null ? null : mapperService.smartNameFieldMapper(fieldName);
+
+                BooleanQuery query = new BooleanQuery();
+                for (Object value : (Set<?>) setLiteral.value()) {
+                    if (value == null) {
+                        // a comparison with null never matches
+                        continue;
+                    }
+                    if (convertBytesRef) {
+                        value = ((BytesRef) value).utf8ToString();
+                    }
+                    query.add(termQuery(fieldName, value, mapper), BooleanClause.Occur.SHOULD);
+                }
+                return query;
+            }
+        }
+
+        static Query termQuery(String fieldName, Object value, @Nullable FieldMapper mapper) {
+            if (mapper != null) {
+                return mapper.termQuery(value, null);
+            }
+            return new TermQuery(new Term(fieldName, BytesRefs.toBytesRef(value)));
+        }
+
+        private final ImmutableMap<String, Converter> functions =
+                ImmutableMap.<String, Converter>builder()
+                        .put(AndOperator.NAME, new AndConverter())
+                        .put(OrOperator.NAME, new OrConverter())
+                        .put(NotPredicate.NAME, new NotConverter())
+                        .put(EqOperator.NAME, new EqConverter())
+                        .put(LtOperator.NAME, new RangeConverter(true, false))
+                        .put(LteOperator.NAME, new RangeConverter(true, true))
+                        .put(GtOperator.NAME, new RangeConverter(false, false))
+                        .put(GteOperator.NAME, new RangeConverter(false, true))
+                        .put(LikeOperator.NAME, new LikeConverter())
+                        .put(InOperator.NAME, new InConverter())
+                        .build();
+
+        @Override
+        public Query visitFunction(Function function, @Nullable MapperService mapperService) {
+            if (function.arguments().size() == 2
+                    && function.arguments().get(0).symbolType() == SymbolType.REFERENCE
+                    && function.arguments().get(1).symbolType().isLiteral()) {
+                String columnName = ((Reference) function.arguments().get(0)).info().ident().columnIdent().name();
+                if (columnName.equals("_score") || columnName.equals("_version")) {
+                    // _score is converted to min_score and _version raises an error by the ESQueryBuilder
+                    return null;
+                }
+            }
+            Converter converter = functions.get(function.info().ident().name());
+            if (converter == null) {
+                return null;
+            }
+            return converter.convert(function, mapperService);
+        }
+
+        @Override
+        public Query visitReference(Reference reference, @Nullable MapperService mapperService) {
+            if (reference.valueType() != DataType.BOOLEAN) {
+                return null;
+            }
+            String fieldName = reference.info().ident().columnIdent().fqn();
+            return termQuery(fieldName, true,
+                    mapperService == null ? null : mapperService.smartNameFieldMapper(fieldName));
+        }
+
+        @Override
+        protected Query visitSymbol(Symbol symbol, @Nullable MapperService mapperService) {
+            return null;
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -37,6 +38,8 @@ import io.crate.operation.collect.files.FileInputFactory;
 import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.writer.S3Uploads;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
@@ -51,6 +54,7 @@ import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.IndexShardMissingException;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.indices.IndexMissingException;
@@ -98,13 +102,25 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
     protected final ClusterService clusterService;
     private final ImplementationSymbolVisitor nodeImplementationSymbolVisitor;
 
-    @Inject
     public MapSideDataCollectOperation(Provider<Client> clientProvider,
                                        ClusterService clusterService,
                                        Functions functions,
                                        ReferenceResolver referenceResolver,
                                        IndicesService indicesService,
                                        ThreadPool threadPool) {
+        this(clientProvider, clusterService, functions, referenceResolver, indicesService, threadPool,
+                GroupByMemory.UNLIMITED, null);
+    }
+
+    @Inject
+    public MapSideDataCollectOperation(Provider<Client> clientProvider,
+                                       ClusterService clusterService,
+                                       Functions functions,
+                                       ReferenceResolver referenceResolver,
+                                       IndicesService indicesService,
+                                       ThreadPool threadPool,
+                                       GroupByMemory groupByMemory,
+                                       @Nullable S3Uploads s3Uploads) {
         this.clusterService = clusterService;
         this.indicesService = indicesService;
         this.nodeNormalizer = new EvaluatingNormalizer(functions, RowGranularity.NODE, referenceResolver);
@@ -116,7 +132,9 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         );
         this.fileInputSymbolVisitor =
                 new FileCollectInputSymbolVisitor(functions, FileLineReferenceResolver.INSTANCE);
-        this.projectorVisitor = new ProjectionToProjectorVisitor(clientProvider, nodeImplementationSymbolVisitor);
+        this.projectorVisitor = new ProjectionToProjectorVisitor(clientProvider, clusterService,
+                nodeImplementationSymbolVisitor, nodeNormalizer, BigArrays.NON_RECYCLING_INSTANCE, groupByMemory,
+                s3Uploads);
     }
 
 
@@ -161,7 +179,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         assert collectNode.toCollect().size() > 0;
 
         FlatProjectorChain projectorChain = new FlatProjectorChain(
-                collectNode.projections(), projectorVisitor);
+                collectNode.projections(), queryProjectorVisitor());
         CrateCollector collector;
         try {
             collector = getCollector(collectNode, projectorChain);
@@ -177,26 +195,43 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         return projectorChain.result();
     }
 
+    /**
+     * @return a projector visitor whose grouping projectors share the memory budget of one query
+     */
+    private ProjectionToProjectorVisitor queryProjectorVisitor() {
+        return projectorVisitor.withGroupByMemory(projectorVisitor.groupByMemory().newQuery());
+    }
+
     private CrateCollector getCollector(CollectNode collectNode,
                                         FlatProjectorChain projectorChain) throws Exception {
         if (collectNode instanceof FileUriCollectNode) {
-            FileCollectInputSymbolVisitor.Context context = fileInputSymbolVisitor.process(collectNode);
-            FileUriCollectNode fileUriCollectNode = (FileUriCollectNode)collectNode;
+            final FileUriCollectNode fileUriCollectNode = (FileUriCollectNode)collectNode;
+            // every reader of the collector needs its own inputs
+            Supplier<FileCollectInputSymbolVisitor.Context> inputsSupplier =
+                    new Supplier<FileCollectInputSymbolVisitor.Context>() {
+                        @Override
+                        public FileCollectInputSymbolVisitor.Context get() {
+                            return fileInputSymbolVisitor.process(fileUriCollectNode);
+                        }
+                    };
 
             String[] readers = fileUriCollectNode.executionNodes().toArray(
                     new String[fileUriCollectNode.executionNodes().size()]);
             Arrays.sort(readers);
             return new FileReadingCollector(
                     StringValueSymbolVisitor.INSTANCE.process(fileUriCollectNode.targetUri()),
-                    context.topLevelInputs(),
-                    context.expressions(),
+                    inputsSupplier,
                     projectorChain.firstProjector(),
                     fileUriCollectNode.fileFormat(),
+                    fileUriCollectNode.columnTypes(),
                     fileUriCollectNode.compression(),
                     ImmutableMap.<String, FileInputFactory>of(),
                     fileUriCollectNode.sharedStorage(),
                     readers.length,
-                    Arrays.binarySearch(readers, clusterService.localNode().id())
+                    Arrays.binarySearch(readers, clusterService.localNode().id()),
+                    threadPool.executor(ThreadPool.Names.GENERIC),
+                    Runtime.getRuntime().availableProcessors(),
+                    FileReadingCollector.DEFAULT_SPLIT_SIZE
             );
         } else {
             ImplementationSymbolVisitor.Context ctx = nodeImplementationSymbolVisitor.process(collectNode);
@@ -221,7 +256,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         final int numShards = collectNode.routing().numShards(localNodeId);
 
         collectNode = collectNode.normalize(nodeNormalizer);
-        ShardProjectorChain projectorChain = new ShardProjectorChain(numShards, collectNode.projections(), projectorVisitor);
+        ShardProjectorChain projectorChain = getShardProjectorChain(numShards, collectNode, queryProjectorVisitor());
 
         final ShardCollectFuture result = getShardCollectFuture(numShards, projectorChain, collectNode);
 
@@ -291,6 +326,15 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         return result;
     }
 
+    /**
+     * create the projector chain the shard collectors feed their rows into
+     */
+    protected ShardProjectorChain getShardProjectorChain(int numShards,
+                                                         CollectNode collectNode,
+                                                         ProjectionToProjectorVisitor projectorVisitor) {
+        return new ShardProjectorChain(numShards, collectNode.projections(), projectorVisitor);
+    }
+
     /**
      * chose the right ShardCollectFuture for this class
      *
@@ -23,21 +23,24 @@ package io.crate.operation.collect;
 
 import javax.annotation.Nullable;
 
+/**
+ * buckets rows using a {@link RowPartitioner}, by default all columns of a row are hashed
+ */
 public class ModuloBucketingIterator extends BucketingIterator {
 
+    private final RowPartitioner partitioner;
+
     public ModuloBucketingIterator(int numBuckets, Iterable<Object[]> rowIterable) {
+        this(numBuckets, rowIterable, new Murmur3RowPartitioner(Integer.MAX_VALUE));
+    }
+
+    public ModuloBucketingIterator(int numBuckets, Iterable<Object[]> rowIterable, RowPartitioner partitioner) {
         super(numBuckets, rowIterable);
+        this.partitioner = partitioner;
     }
 
-    /**
-     * get bucket number by doing modulo hashcode of first row-element
-     */
     @Override
     protected int getBucket(@Nullable Object[] row) {
-        if (row == null || row.length == 0 || row[0] == null) {
-            return 0;
-        } else {
-            return Math.abs(row[0].hashCode()) % this.numBuckets;
-        }
+        return partitioner.bucket(row, this.numBuckets);
     }
 }
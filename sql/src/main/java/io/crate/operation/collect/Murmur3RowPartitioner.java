@@ -0,0 +1,82 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.core.MurmurHash3;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+import javax.annotation.Nullable;
+
+/**
+ * partitions rows by a murmur3 hash of their first <code>numKeyColumns</code> columns.
+ *
+ * The hash of a value doesn't depend on {@link Object#hashCode()} for the types used as group keys,
+ * so it is the same on every node and well distributed for all of them.
+ */
+public class Murmur3RowPartitioner implements RowPartitioner {
+
+    private static final int NULL_HASH = 0x9e3779b9;
+
+    private final int numKeyColumns;
+
+    public Murmur3RowPartitioner(int numKeyColumns) {
+        this.numKeyColumns = numKeyColumns;
+    }
+
+    @Override
+    public int bucket(@Nullable Object[] row, int numBuckets) {
+        if (numBuckets == 1 || row == null) {
+            return 0;
+        }
+        int hash = 0;
+        for (int i = 0, length = Math.min(numKeyColumns, row.length); i < length; i++) {
+            hash = 31 * hash + hash(row[i]);
+        }
+        return (MurmurHash3.fmix32(hash) & Integer.MAX_VALUE) % numBuckets;
+    }
+
+    static int hash(@Nullable Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        } else if (value instanceof BytesRef) {
+            BytesRef bytesRef = (BytesRef) value;
+            return StringHelper.murmurhash3_x86_32(bytesRef, 0);
+        } else if (value instanceof String) {
+            // same hash as the BytesRef of the string
+            return hash(new BytesRef((String) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            return hash(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            return hash(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return hash((Boolean) value ? 1L : 0L);
+        }
+        return MurmurHash3.fmix32(value.hashCode());
+    }
+
+    private static int hash(long value) {
+        long hash = MurmurHash3.fmix64(value);
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -31,11 +31,15 @@ import io.crate.metadata.shard.ShardReferenceResolver;
 import io.crate.metadata.shard.blob.BlobShardReferenceResolver;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.groupby.GroupByMemory;
 import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.writer.S3Uploads;
+import io.crate.operation.reference.doc.GlobalOrdinalsCache;
 import io.crate.operation.reference.doc.LuceneCollectorExpression;
 import io.crate.operation.reference.doc.LuceneDocLevelReferenceResolver;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.cache.recycler.CacheRecycler;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.client.Client;
@@ -59,7 +63,9 @@ public class ShardCollectService {
     private final PageCacheRecycler pageCacheRecycler;
     private final BigArrays bigArrays;
     private final SQLXContentQueryParser sqlxContentQueryParser;
+    private final GlobalOrdinalsCache globalOrdinalsCache;
     private final ESQueryBuilder queryBuilder;
+    private final LuceneQueryBuilder luceneQueryBuilder;
     private final ImplementationSymbolVisitor shardImplementationSymbolVisitor;
     private final EvaluatingNormalizer shardNormalizer;
     private final ProjectionToProjectorVisitor projectorVisitor;
@@ -73,7 +79,10 @@ public class ShardCollectService {
                                CacheRecycler cacheRecycler,
                                PageCacheRecycler pageCacheRecycler,
                                BigArrays bigArrays,
+                               GroupByMemory groupByMemory,
                                SQLXContentQueryParser sqlxContentQueryParser,
+                               GlobalOrdinalsCache globalOrdinalsCache,
+                               S3Uploads s3Uploads,
                                Functions functions,
                                ShardReferenceResolver referenceResolver,
                                BlobShardReferenceResolver blobShardReferenceResolver) {
@@ -86,10 +95,12 @@ public class ShardCollectService {
         this.pageCacheRecycler = pageCacheRecycler;
         this.bigArrays = bigArrays;
         this.sqlxContentQueryParser = sqlxContentQueryParser;
+        this.globalOrdinalsCache = globalOrdinalsCache;
 
         this.docInputSymbolVisitor = new CollectInputSymbolVisitor<>(
                 functions, LuceneDocLevelReferenceResolver.INSTANCE);
         this.queryBuilder = new ESQueryBuilder();
+        this.luceneQueryBuilder = new LuceneQueryBuilder();
 
         boolean isBlobShard = BlobIndices.isBlobShard(this.shardId);
         this.shardImplementationSymbolVisitor = new ImplementationSymbolVisitor(
@@ -102,8 +113,8 @@ public class ShardCollectService {
                 RowGranularity.SHARD,
                 (isBlobShard ? blobShardReferenceResolver : referenceResolver)
         );
-        this.projectorVisitor = new ProjectionToProjectorVisitor(clientProvider,
-                shardImplementationSymbolVisitor, shardNormalizer);
+        this.projectorVisitor = new ProjectionToProjectorVisitor(clientProvider, clusterService,
+                shardImplementationSymbolVisitor, shardNormalizer, bigArrays, groupByMemory, s3Uploads);
     }
 
     /**
@@ -125,12 +136,19 @@ public class ShardCollectService {
             RowGranularity granularity = normalizedCollectNode.maxRowGranularity();
             if (granularity == RowGranularity.DOC) {
                 CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.process(normalizedCollectNode);
-                BytesReference querySource = queryBuilder.convert(normalizedCollectNode.whereClause());
+                Query query = luceneQueryBuilder.convert(
+                        normalizedCollectNode.whereClause(), indexService.mapperService());
+                BytesReference querySource = null;
+                if (query == null) {
+                    querySource = queryBuilder.convert(normalizedCollectNode.whereClause());
+                }
                 return new LuceneDocCollector(clusterService, shardId, indexService,
                         scriptService, cacheRecycler, pageCacheRecycler, bigArrays,
                         sqlxContentQueryParser,
+                        globalOrdinalsCache,
                         docCtx.topLevelInputs(),
                         docCtx.docLevelExpressions(),
+                        query,
                         querySource,
                         downstream);
 
@@ -21,15 +21,27 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.crate.Constants;
 import io.crate.operation.projectors.CollectingProjector;
 import io.crate.operation.projectors.ResultProvider;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.TopN;
+import io.crate.operation.projectors.groupby.GroupByMemory;
 import io.crate.planner.RowGranularity;
+import io.crate.planner.projection.GroupProjection;
 import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.ProjectionType;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Symbol;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,14 +53,39 @@ public class ShardProjectorChain {
     private Projector firstNodeProjector;
     private ResultProvider lastProjector;
     private int shardProjectionsIndex = -1;
+    private final GroupByMemory groupByMemory;
 
 
     public ShardProjectorChain(int numShards, List<Projection> projections, ProjectionToProjectorVisitor nodeProjectorVisitor) {
+        this(numShards, projections, nodeProjectorVisitor, null);
+    }
+
+    /**
+     * @param nodeProjectorVisitor creates the node level projectors, the shard level projectors share
+     *                             its {@link GroupByMemory} as the memory of the query
+     * @param finalProjector if given, the rows of the chain are sent to this projector
+     *                       instead of being collected on this node. It must be a {@link ResultProvider}.
+     */
+    public ShardProjectorChain(int numShards,
+                               List<Projection> projections,
+                               ProjectionToProjectorVisitor nodeProjectorVisitor,
+                               @Nullable Projector finalProjector) {
+        Preconditions.checkArgument(finalProjector == null || finalProjector instanceof ResultProvider,
+                "finalProjector must be a ResultProvider");
+        if (numShards <= 1 && finalProjector != null && isPartialGroupProjection(projections)) {
+            projections = shardGroupProjection(projections);
+        } else if (numShards > 1 && projections.size() > 0
+                && projections.get(0).projectionType() == ProjectionType.GROUP) {
+            projections = splitGroupProjection(projections);
+        } else if (numShards > 1 && isOrderedTopNProjection(projections)) {
+            projections = splitTopNProjection(projections);
+        }
         this.projections = projections;
+        this.groupByMemory = nodeProjectorVisitor.groupByMemory();
         nodeProjectors = new ArrayList<>();
 
         if (projections.size() == 0) {
-            firstNodeProjector = new CollectingProjector();
+            firstNodeProjector = finalProjector == null ? new CollectingProjector() : finalProjector;
             lastProjector = (ResultProvider) firstNodeProjector;
             nodeProjectors.add(firstNodeProjector);
             shardProjectors = null;
@@ -61,6 +98,7 @@ public class ShardProjectorChain {
                 shardProjectionsIndex = idx;
                 break;
             }
+            idx++;
         }
 
         Projector previousProjector = null;
@@ -75,9 +113,18 @@ public class ShardProjectorChain {
             }
             previousProjector = projector;
         }
+        if (finalProjector != null) {
+            nodeProjectors.add(finalProjector);
+            if (previousProjector != null) {
+                previousProjector.downstream(finalProjector);
+            } else {
+                firstNodeProjector = finalProjector;
+            }
+            previousProjector = finalProjector;
+        }
         if (shardProjectionsIndex >= 0) {
             shardProjectors = new ArrayList<>((shardProjectionsIndex + 1) * numShards);
-            if (shardProjectionsIndex == 0) {
+            if (previousProjector == null) {
                 // no node projectors
                 previousProjector = firstNodeProjector = new CollectingProjector();
             }
@@ -94,21 +141,130 @@ public class ShardProjectorChain {
     }
 
 
+    private static boolean isPartialGroupProjection(List<Projection> projections) {
+        if (projections.size() != 1 || projections.get(0).projectionType() != ProjectionType.GROUP) {
+            return false;
+        }
+        for (Aggregation aggregation : ((GroupProjection) projections.get(0)).values()) {
+            if (aggregation.toStep() != Aggregation.Step.PARTIAL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * if the group projection only produces partial states which are sent to other nodes
+     * and there is only one shard on this node, its groups are already the groups of this node.
+     * With more shards the group projection is split by {@link #splitGroupProjection(List)}
+     * so the partial groups of all shards are merged on this node before they are distributed.
+     */
+    private static List<Projection> shardGroupProjection(List<Projection> projections) {
+        GroupProjection groupProjection = (GroupProjection) projections.get(0);
+        GroupProjection shardGroupProjection = new GroupProjection(groupProjection.keys(), groupProjection.values());
+        shardGroupProjection.requiredGranularity(RowGranularity.SHARD);
+        return ImmutableList.<Projection>of(shardGroupProjection);
+    }
+
+    /**
+     * split the group projection into a shard level group projection which aggregates into partial states
+     * and a node level group projection which merges the partial states of all shards.
+     *
+     * This way every shard collector groups into its own table without any synchronization
+     * instead of all shard collectors contending for one node level group projector.
+     */
+    private static List<Projection> splitGroupProjection(List<Projection> projections) {
+        GroupProjection groupProjection = (GroupProjection) projections.get(0);
+        int numKeys = groupProjection.keys().size();
+        List<Aggregation> aggregations = groupProjection.values();
+
+        List<Aggregation> shardAggregations = new ArrayList<>(aggregations.size());
+        List<Aggregation> mergeAggregations = new ArrayList<>(aggregations.size());
+        for (int i = 0; i < aggregations.size(); i++) {
+            Aggregation aggregation = aggregations.get(i);
+            shardAggregations.add(new Aggregation(aggregation.functionInfo(), aggregation.inputs(),
+                    aggregation.fromStep(), Aggregation.Step.PARTIAL));
+            mergeAggregations.add(new Aggregation(aggregation.functionInfo(),
+                    ImmutableList.<Symbol>of(new InputColumn(numKeys + i)),
+                    Aggregation.Step.PARTIAL, aggregation.toStep()));
+        }
+        List<Symbol> mergeKeys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            mergeKeys.add(new InputColumn(i));
+        }
+
+        GroupProjection shardGroupProjection = new GroupProjection(groupProjection.keys(), shardAggregations);
+        shardGroupProjection.requiredGranularity(RowGranularity.SHARD);
+
+        return ImmutableList.<Projection>builder()
+                .add(shardGroupProjection)
+                .add(new GroupProjection(mergeKeys, mergeAggregations))
+                .addAll(projections.subList(1, projections.size()))
+                .build();
+    }
+
+    private static boolean isOrderedTopNProjection(List<Projection> projections) {
+        return projections.size() > 0
+                && projections.get(0).projectionType() == ProjectionType.TOPN
+                && ((TopNProjection) projections.get(0)).isOrdered();
+    }
+
+    /**
+     * split the ordered top-n projection into a shard level top-n projection which produces a sorted run
+     * per shard and a node level top-n projection which merges these runs.
+     *
+     * The shard level projection also outputs the order by values so the node level projection
+     * can merge the runs without evaluating the order by symbols again.
+     */
+    private static List<Projection> splitTopNProjection(List<Projection> projections) {
+        TopNProjection topN = (TopNProjection) projections.get(0);
+        int limit = topN.limit() == TopN.NO_LIMIT ? Constants.DEFAULT_SELECT_LIMIT : topN.limit();
+        int numOutputs = topN.outputs().size();
+        int numOrderBy = topN.orderBy().size();
+
+        List<Symbol> shardOutputs = new ArrayList<>(numOutputs + numOrderBy);
+        shardOutputs.addAll(topN.outputs());
+        shardOutputs.addAll(topN.orderBy());
+        TopNProjection shardTopN = new TopNProjection(
+                topN.offset() + limit, TopN.NO_OFFSET, topN.orderBy(), topN.reverseFlags());
+        shardTopN.outputs(shardOutputs);
+        shardTopN.requiredGranularity(RowGranularity.SHARD);
+
+        List<Symbol> mergeOutputs = new ArrayList<>(numOutputs);
+        for (int i = 0; i < numOutputs; i++) {
+            mergeOutputs.add(new InputColumn(i));
+        }
+        List<Symbol> mergeOrderBy = new ArrayList<>(numOrderBy);
+        for (int i = 0; i < numOrderBy; i++) {
+            mergeOrderBy.add(new InputColumn(numOutputs + i));
+        }
+        TopNProjection mergeTopN = new TopNProjection(limit, topN.offset(), mergeOrderBy, topN.reverseFlags());
+        mergeTopN.outputs(mergeOutputs);
+
+        return ImmutableList.<Projection>builder()
+                .add(shardTopN)
+                .add(mergeTopN)
+                .addAll(projections.subList(1, projections.size()))
+                .build();
+    }
+
     /**
      * Creates a new shard downstream chain if needed and returns a projector to be used as downstream
      * this method also calls startProjection on newly created shard level projectors.
      *
-     * @param projectorVisitor the visitor to create projections out of a projection
+     * @param projectorVisitor the visitor to create projections out of a projection,
+     *                         its grouping projectors account their memory on the memory of the query
      * @return a new projector connected to the internal chain
      */
     public Projector newShardDownstreamProjector(ProjectionToProjectorVisitor projectorVisitor) {
         if (shardProjectionsIndex < 0) {
             return firstNodeProjector;
         }
+        ProjectionToProjectorVisitor shardVisitor = projectorVisitor.withGroupByMemory(groupByMemory);
         Projector previousProjector = firstNodeProjector;
         Projector projector = null;
         for (int i = shardProjectionsIndex; i >= 0; i--) {
-            projector = projectorVisitor.process(projections.get(i));
+            projector = shardVisitor.process(projections.get(i));
             projector.downstream(previousProjector);
             shardProjectors.add(projector);
             previousProjector = projector;
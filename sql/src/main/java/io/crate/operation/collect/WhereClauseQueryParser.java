@@ -0,0 +1,88 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.executor.transport.task.elasticsearch.ESQueryBuilder;
+import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.query.QueryParseContext;
+import org.elasticsearch.index.query.QueryParser;
+import org.elasticsearch.index.query.QueryParsingException;
+
+import java.io.IOException;
+
+/**
+ * Parses the <code>crate_where</code> query written by the {@link ESQueryBuilder}.
+ *
+ * The query contains the streamed where clause symbol, which is converted to a lucene query
+ * by the {@link LuceneQueryBuilder} on the shard, using the field mappers of the index:
+ * <pre>
+ *     {"crate_where": {"where": "&lt;base64 encoded symbol&gt;"}}
+ * </pre>
+ */
+public class WhereClauseQueryParser implements QueryParser {
+
+    public static final String NAME = "crate_where";
+    public static final String WHERE_FIELD = "where";
+
+    private final LuceneQueryBuilder queryBuilder = new LuceneQueryBuilder();
+
+    @Inject
+    public WhereClauseQueryParser() {
+    }
+
+    @Override
+    public String[] names() {
+        return new String[]{NAME};
+    }
+
+    @Override
+    public Query parse(QueryParseContext parseContext) throws IOException, QueryParsingException {
+        XContentParser parser = parseContext.parser();
+        Symbol where = null;
+        String currentFieldName = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (WHERE_FIELD.equals(currentFieldName)) {
+                where = Symbol.fromStream(new BytesStreamInput(parser.binaryValue(), false));
+            } else {
+                throw new QueryParsingException(parseContext.index(),
+                        "[" + NAME + "] query does not support [" + currentFieldName + "]");
+            }
+        }
+        if (where == null) {
+            throw new QueryParsingException(parseContext.index(), "[" + NAME + "] query requires a where clause");
+        }
+        Query query = queryBuilder.convert(where, parseContext.mapperService());
+        if (query == null) {
+            throw new QueryParsingException(parseContext.index(),
+                    "[" + NAME + "] query can't convert the where clause");
+        }
+        return query;
+    }
+}
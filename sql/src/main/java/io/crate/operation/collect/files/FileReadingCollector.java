@@ -23,29 +23,55 @@ package io.crate.operation.collect.files;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CrateCollector;
+import io.crate.operation.fileformat.Compression;
+import io.crate.operation.fileformat.CsvFormat;
 import io.crate.operation.projectors.Projector;
 import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.util.IOUtils;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 
+/**
+ * reads the records of one or more files and emits a row per record.
+ * JSON files contain a record per line, CSV files a header line followed by a record per line
+ * and binary files rows in the {@link io.crate.operation.fileformat.BinaryRowFormat}.
+ *
+ * Uncompressed local JSON and CSV files are split into ranges of <code>splitSize</code> bytes.
+ * A line belongs to the range its first byte is in, so a range reader skips the partial
+ * line at its start and reads the line which overlaps its end.
+ * Files and ranges are read by up to <code>concurrency</code> readers in parallel,
+ * every reader has its own inputs and feeds the rows directly to the downstream.
+ */
 public class FileReadingCollector implements CrateCollector {
 
+    public static final long DEFAULT_SPLIT_SIZE = 64 * 1024 * 1024;
+
     private final Map<String, FileInputFactory> fileInputFactoryMap;
     private final URI fileUri;
     private final Predicate<URI> globPredicate;
@@ -54,9 +80,13 @@ public class FileReadingCollector implements CrateCollector {
     private final int readerNumber;
     private URI preGlobUri;
     private Projector downstream;
-    private final boolean compressed;
-    private final List<Input<?>> inputs;
-    private final List<LineCollectorExpression<?>> collectorExpressions;
+    private final Compression compression;
+    private final FileFormat format;
+    private final Map<String, DataType> columnTypes;
+    private final Supplier<FileCollectInputSymbolVisitor.Context> inputsSupplier;
+    private final Executor executor;
+    private final int concurrency;
+    private final long splitSize;
 
     private static final Pattern HAS_GLOBS_PATTERN = Pattern.compile("(.*)[^\\\\]\\*.*");
     private static final Predicate<URI> MATCH_ALL_PREDICATE = new Predicate<URI>() {
@@ -84,7 +114,34 @@ public class FileReadingCollector implements CrateCollector {
     );
 
     public enum FileFormat {
-        JSON
+        JSON("json"),
+        CSV("csv"),
+        BINARY("bin");
+
+        private final String extension;
+
+        private FileFormat(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * @param format the name of the format, JSON if null
+         * @throws IllegalArgumentException if the format is unknown
+         */
+        public static FileFormat of(@Nullable String format) {
+            if (format == null) {
+                return JSON;
+            }
+            try {
+                return valueOf(format.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Unknown format '%s'", format));
+            }
+        }
     }
 
     public FileReadingCollector(String fileUri,
@@ -97,6 +154,32 @@ public class FileReadingCollector implements CrateCollector {
                                 Boolean shared,
                                 int numReaders,
                                 int readerNumber) {
+        this(fileUri, Suppliers.ofInstance(context(inputs, collectorExpressions)), downstream, format,
+                ImmutableMap.<String, DataType>of(), compression, additionalFileInputFactories, shared,
+                numReaders, readerNumber, null, 1, DEFAULT_SPLIT_SIZE);
+    }
+
+    /**
+     * @param inputsSupplier creates the inputs of a reader, called once per reader
+     * @param columnTypes the types of the top level columns of the table, used to convert CSV values
+     * @param executor used to run readers in parallel to the collecting thread, if null all files are read
+     *                 by the thread calling {@link #doCollect()}
+     * @param concurrency maximum number of readers
+     * @param splitSize uncompressed local files are split into ranges of this size
+     */
+    public FileReadingCollector(String fileUri,
+                                Supplier<FileCollectInputSymbolVisitor.Context> inputsSupplier,
+                                Projector downstream,
+                                FileFormat format,
+                                Map<String, DataType> columnTypes,
+                                String compression,
+                                Map<String, FileInputFactory> additionalFileInputFactories,
+                                Boolean shared,
+                                int numReaders,
+                                int readerNumber,
+                                @Nullable Executor executor,
+                                int concurrency,
+                                long splitSize) {
         if (fileUri.startsWith("/")) {
             this.fileUri = URI.create("file://" + fileUri);
         } else {
@@ -109,9 +192,13 @@ public class FileReadingCollector implements CrateCollector {
             }
         }
         downstream(downstream);
-        this.compressed = compression != null && compression.equalsIgnoreCase("gzip");
-        this.inputs = inputs;
-        this.collectorExpressions = collectorExpressions;
+        this.compression = Compression.of(compression);
+        this.format = format;
+        this.columnTypes = columnTypes;
+        this.inputsSupplier = inputsSupplier;
+        this.executor = executor;
+        this.concurrency = executor == null ? 1 : Math.max(1, concurrency);
+        this.splitSize = splitSize;
         this.fileInputFactoryMap = new HashMap<>(builtInFileInputFactories);
         this.fileInputFactoryMap.putAll(additionalFileInputFactories);
         this.shared = shared;
@@ -149,66 +236,236 @@ public class FileReadingCollector implements CrateCollector {
         return null;
     }
 
+    private static FileCollectInputSymbolVisitor.Context context(List<Input<?>> inputs,
+                                                                  List<LineCollectorExpression<?>> expressions) {
+        FileCollectInputSymbolVisitor.Context context = new FileCollectInputSymbolVisitor.Context();
+        context.topLevelInputs().addAll(inputs);
+        context.expressions().addAll(expressions);
+        return context;
+    }
+
+    /**
+     * a file or, if <code>end</code> isn't -1, the records of a file starting in the range [start, end)
+     */
+    static class FileSplit {
+
+        final URI uri;
+        final long start;
+        final long end;
+
+        FileSplit(URI uri, long start, long end) {
+            this.uri = uri;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
     @Override
     public void doCollect() throws IOException, CollectionTerminatedException {
-        FileInput fileInput = getFileInput();
+        final FileInput fileInput = getFileInput();
         if (fileInput == null) {
             if (downstream != null) {
                 downstream.upstreamFinished();
             }
             return;
         }
-        Predicate<URI> uriPredicate = generateUriPredicate(fileInput);
+        try {
+            final ConcurrentLinkedQueue<FileSplit> splits = new ConcurrentLinkedQueue<>(getSplits(fileInput));
+            final AtomicBoolean terminated = new AtomicBoolean(false);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            int numThreads = Math.min(concurrency, splits.size());
+            final CountDownLatch readersDone = new CountDownLatch(Math.max(0, numThreads - 1));
+            for (int i = 1; i < numThreads; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            read(fileInput, splits, terminated);
+                        } catch (Throwable t) {
+                            terminated.set(true);
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            readersDone.countDown();
+                        }
+                    }
+                });
+            }
+            try {
+                read(fileInput, splits, terminated);
+            } catch (Throwable t) {
+                terminated.set(true);
+                failure.compareAndSet(null, t);
+            }
+            try {
+                readersDone.await();
+            } catch (InterruptedException e) {
+                terminated.set(true);
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            }
+            Throwable t = failure.get();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            } else if (t != null) {
+                throw new IOException(t);
+            }
+            if (terminated.get()) {
+                throw new CollectionTerminatedException();
+            }
+        } finally {
+            downstream.upstreamFinished();
+        }
+    }
 
+    /**
+     * reads splits until none is left or the collection has been terminated
+     */
+    private void read(FileInput fileInput,
+                      ConcurrentLinkedQueue<FileSplit> splits,
+                      AtomicBoolean terminated) throws IOException {
+        FileCollectInputSymbolVisitor.Context context = inputsSupplier.get();
+        List<Input<?>> inputs = context.topLevelInputs();
+        List<LineCollectorExpression<?>> collectorExpressions = context.expressions();
         CollectorContext collectorContext = new CollectorContext();
         for (LineCollectorExpression<?> collectorExpression : collectorExpressions) {
             collectorExpression.startCollect(collectorContext);
         }
-        Object[] newRow;
-        String line;
-        List<URI> uris;
-        uris = getUris(fileInput, uriPredicate);
-        try {
-            for (URI uri : uris) {
-                InputStream inputStream = fileInput.getStream(uri);
-                if (inputStream == null) {
-                    continue;
-                }
-                BufferedReader reader;
-                reader = createReader(inputStream);
-
-                try {
-                    while ((line = reader.readLine()) != null) {
-                        collectorContext.lineContext().rawSource(line.getBytes());
-                        newRow = new Object[inputs.size()];
-                        for (LineCollectorExpression expression : collectorExpressions) {
-                            expression.setNextLine(line);
-                        }
-                        int i = 0;
-                        for (Input<?> input : inputs) {
-                            newRow[i++] = input.value();
-                        }
-                        if (!downstream.setNextRow(newRow)) {
-                            throw new CollectionTerminatedException();
-                        }
+
+        FileSplit split;
+        while (!terminated.get() && (split = splits.poll()) != null) {
+            RecordReader reader = createReader(fileInput, split);
+            if (reader == null) {
+                continue;
+            }
+            try {
+                while (!terminated.get() && reader.next(collectorContext.lineContext())) {
+                    Object[] newRow = new Object[inputs.size()];
+                    int i = 0;
+                    for (Input<?> input : inputs) {
+                        newRow[i++] = input.value();
+                    }
+                    if (!downstream.setNextRow(newRow)) {
+                        terminated.set(true);
                     }
-                } finally {
-                    reader.close();
                 }
+            } finally {
+                reader.close();
             }
-        } finally {
-            downstream.upstreamFinished();
         }
     }
 
-    private BufferedReader createReader(InputStream inputStream) throws IOException {
-        BufferedReader reader;
-        if (compressed) {
-            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream)));
-        } else {
-            reader = new BufferedReader(new InputStreamReader(inputStream));
+    /**
+     * the stream or file of the split is closed if the reader can't be created
+     */
+    @Nullable
+    private RecordReader createReader(FileInput fileInput, FileSplit split) throws IOException {
+        if (split.end < 0) {
+            InputStream inputStream = openStream(fileInput, split.uri);
+            if (inputStream == null) {
+                return null;
+            }
+            try {
+                if (format == FileFormat.BINARY) {
+                    return new RecordReader.Binary(inputStream);
+                }
+                return lineRecordReader(new LineReader(inputStream, 0), -1);
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeWhileHandlingException(inputStream);
+                throw e;
+            }
+        }
+
+        // closing the channel closes the file as well
+        FileChannel channel = new RandomAccessFile(new File(split.uri), "r").getChannel();
+        try {
+            if (split.start == 0) {
+                return lineRecordReader(new LineReader(Channels.newInputStream(channel), 0), split.end);
+            }
+            // start at the byte before the range to find out if the range starts with a new line
+            channel.position(split.start - 1);
+            LineReader reader = new LineReader(Channels.newInputStream(channel), split.start - 1);
+            reader.skipLine();
+            return lineRecordReader(reader, split.end);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeWhileHandlingException(channel);
+            throw e;
+        }
+    }
+
+    @Nullable
+    private InputStream openStream(FileInput fileInput, URI uri) throws IOException {
+        InputStream inputStream = fileInput.getStream(uri);
+        if (inputStream != null && compression != null) {
+            try {
+                inputStream = compression.wrap(inputStream);
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeWhileHandlingException(inputStream);
+                throw e;
+            }
+        }
+        return inputStream;
+    }
+
+    private RecordReader lineRecordReader(LineReader reader, long end) throws IOException {
+        if (format != FileFormat.CSV) {
+            return new RecordReader.Json(reader, end);
+        }
+        byte[] line = reader.readLine();
+        if (line == null) {
+            // empty file
+            return new RecordReader.Json(reader, end);
+        }
+        return new RecordReader.Csv(reader, end, parseCsvHeader(line), columnTypes);
+    }
+
+    private static List<String> parseCsvHeader(byte[] line) {
+        List<String> header = CsvFormat.parseRecord(line);
+        if (header == null) {
+            throw new IllegalArgumentException("CSV file has no valid header");
+        }
+        return header;
+    }
+
+    /**
+     * only uncompressed local JSON files are split.
+     * A CSV record may contain quoted line breaks, so a range start can't be aligned
+     * to a record without reading the file from its beginning.
+     */
+    private boolean isSplittable(URI uri) {
+        return compression == null && format == FileFormat.JSON && "file".equals(uri.getScheme());
+    }
+
+    /**
+     * the files and ranges of files this collector has to read.
+     *
+     * If the storage is shared every file would be visible to all readers,
+     * so a file is read by the reader selected by the hash of its uri
+     * and the ranges of a split file are assigned to the readers round-robin starting from that reader.
+     */
+    List<FileSplit> getSplits(FileInput fileInput) throws IOException {
+        boolean sharedStorage = Objects.firstNonNull(shared, fileInput.sharedStorageDefault());
+        List<FileSplit> splits = new ArrayList<>();
+        for (URI uri : getUris(fileInput, Objects.firstNonNull(globPredicate, MATCH_ALL_PREDICATE))) {
+            int firstReader = Math.abs(uri.hashCode()) % numReaders;
+            long length = isSplittable(uri) ? new File(uri).length() : 0L;
+            if (length <= splitSize) {
+                if (!sharedStorage || firstReader == readerNumber) {
+                    splits.add(new FileSplit(uri, 0, -1));
+                }
+                continue;
+            }
+            int splitNumber = 0;
+            for (long start = 0; start < length; start += splitSize, splitNumber++) {
+                if (!sharedStorage || (firstReader + splitNumber) % numReaders == readerNumber) {
+                    splits.add(new FileSplit(uri, start, Math.min(start + splitSize, length)));
+                }
+            }
         }
-        return reader;
+        return splits;
     }
 
     private List<URI> getUris(FileInput fileInput, Predicate<URI> uriPredicate) throws IOException {
@@ -223,26 +480,6 @@ public class FileReadingCollector implements CrateCollector {
         return uris;
     }
 
-    private Predicate<URI> generateUriPredicate(FileInput fileInput) {
-        Predicate<URI> moduloPredicate;
-        boolean sharedStorage = Objects.firstNonNull(shared, fileInput.sharedStorageDefault());
-        if (sharedStorage) {
-            moduloPredicate = new Predicate<URI>() {
-                @Override
-                public boolean apply(URI input) {
-                    return Math.abs(input.hashCode()) % numReaders == readerNumber;
-                }
-            };
-        } else {
-            moduloPredicate = MATCH_ALL_PREDICATE;
-        }
-
-        if (globPredicate != null) {
-            return Predicates.and(moduloPredicate, globPredicate);
-        }
-        return moduloPredicate;
-    }
-
     @Override
     public void downstream(Projector downstream) {
         this.downstream = downstream;
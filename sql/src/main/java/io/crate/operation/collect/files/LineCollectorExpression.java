@@ -25,7 +25,5 @@ import io.crate.operation.Input;
 
 public abstract class LineCollectorExpression<ReturnType> implements Input<ReturnType> {
 
-    public abstract void setNextLine(String line);
-
     public abstract void startCollect(CollectorContext context);
 }
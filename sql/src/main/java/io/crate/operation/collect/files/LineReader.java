@@ -0,0 +1,156 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * reads lines as raw bytes, without decoding them into Strings.
+ *
+ * Lines are terminated by <code>\n</code>, a <code>\r</code> in front of it is removed.
+ * The reader keeps track of the position in the file so that it can be used to read
+ * the lines starting inside a byte range of a file.
+ */
+public class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int pos = 0;
+    private int limit = 0;
+    private long bufferStart;
+
+    private byte[] scratch = new byte[256];
+    private int scratchLength = 0;
+
+    /**
+     * @param in the stream to read from
+     * @param position the position of the first byte of the stream inside the file
+     */
+    public LineReader(InputStream in, long position) {
+        this(in, position, BUFFER_SIZE);
+    }
+
+    LineReader(InputStream in, long position, int bufferSize) {
+        this.in = in;
+        this.bufferStart = position;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * the position of the next byte to read, which is the start of the next line
+     * after {@link #readLine()} or {@link #skipLine()}.
+     */
+    public long position() {
+        return bufferStart + pos;
+    }
+
+    private boolean fill() throws IOException {
+        bufferStart += limit;
+        pos = 0;
+        limit = 0;
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    /**
+     * @return the next line without the line terminator or null if the end of the stream is reached
+     */
+    @Nullable
+    public byte[] readLine() throws IOException {
+        scratchLength = 0;
+        boolean started = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                return started ? line(scratch, 0, scratchLength) : null;
+            }
+            started = true;
+            int start = pos;
+            while (pos < limit && buffer[pos] != '\n') {
+                pos++;
+            }
+            if (pos < limit) {
+                int end = pos;
+                pos++;
+                if (scratchLength == 0) {
+                    // the line is completely inside the buffer
+                    return line(buffer, start, end);
+                }
+                appendToScratch(start, end);
+                return line(scratch, 0, scratchLength);
+            }
+            appendToScratch(start, pos);
+        }
+    }
+
+    /**
+     * skips the bytes up to and including the next line terminator
+     *
+     * @return false if the end of the stream is reached
+     */
+    public boolean skipLine() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return false;
+            }
+            while (pos < limit) {
+                if (buffer[pos++] == '\n') {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private void appendToScratch(int start, int end) {
+        int length = end - start;
+        if (scratchLength + length > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + length));
+        }
+        System.arraycopy(buffer, start, scratch, scratchLength, length);
+        scratchLength += length;
+    }
+
+    private static byte[] line(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        return Arrays.copyOfRange(bytes, start, end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import io.crate.DataType;
+import io.crate.operation.fileformat.BinaryRowFormat;
+import io.crate.operation.fileformat.CsvFormat;
+import io.crate.operation.reference.file.LineContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * reads the records of a file or of a range of a file and passes them to the {@link LineContext}
+ */
+abstract class RecordReader implements Closeable {
+
+    /**
+     * @return false if there are no more records to read
+     */
+    abstract boolean next(LineContext lineContext) throws IOException;
+
+    /**
+     * JSON records, one per line. Lines are passed as raw source.
+     */
+    static class Json extends RecordReader {
+
+        final LineReader reader;
+        private final long end;
+
+        /**
+         * @param end stop after the line overlapping this position, -1 to read all lines
+         */
+        Json(LineReader reader, long end) {
+            this.reader = reader;
+            this.end = end;
+        }
+
+        @Override
+        boolean next(LineContext lineContext) throws IOException {
+            byte[] line = readLine();
+            if (line == null) {
+                return false;
+            }
+            lineContext.rawSource(line);
+            return true;
+        }
+
+        byte[] readLine() throws IOException {
+            if (end >= 0 && reader.position() >= end) {
+                return null;
+            }
+            return reader.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * CSV records with a header line containing the column names.
+     * Values are converted to the type of their column,
+     * column names containing dots are written to nested objects.
+     */
+    static class Csv extends Json {
+
+        private final String[][] columns;
+        private final DataType[] types;
+
+        Csv(LineReader reader, long end, List<String> header, Map<String, DataType> columnTypes) {
+            super(reader, end);
+            columns = new String[header.size()][];
+            types = new DataType[header.size()];
+            for (int i = 0; i < columns.length; i++) {
+                String name = header.get(i);
+                if (name == null) {
+                    throw new IllegalArgumentException("CSV header contains an empty column name");
+                }
+                columns[i] = name.split("\\.");
+                if (columns[i].length == 1) {
+                    types[i] = columnTypes.get(name);
+                }
+            }
+        }
+
+        @Override
+        boolean next(LineContext lineContext) throws IOException {
+            byte[] line;
+            do {
+                line = readLine();
+                if (line == null) {
+                    return false;
+                }
+            } while (line.length == 0);
+            String record = new String(line, StandardCharsets.UTF_8);
+            List<String> values;
+            while ((values = CsvFormat.parseRecord(record)) == null) {
+                // quoted value contains a line break
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IllegalArgumentException("CSV record ends within a quoted value");
+                }
+                record = record + '\n' + new String(line, StandardCharsets.UTF_8);
+            }
+            if (values.size() != columns.length) {
+                throw new IllegalArgumentException(String.format(
+                        "CSV record has %d values but the header has %d columns", values.size(), columns.length));
+            }
+            Map<String, Object> source = new HashMap<>(columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                put(source, columns[i], CsvFormat.convert(values.get(i), types[i]));
+            }
+            lineContext.source(source);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static void put(Map<String, Object> source, String[] path, Object value) {
+            Map<String, Object> map = source;
+            for (int i = 0; i < path.length - 1; i++) {
+                Object child = map.get(path[i]);
+                if (!(child instanceof Map)) {
+                    child = new HashMap<String, Object>();
+                    map.put(path[i], child);
+                }
+                map = (Map<String, Object>) child;
+            }
+            map.put(path[path.length - 1], value);
+        }
+    }
+
+    /**
+     * rows in the {@link BinaryRowFormat}
+     */
+    static class Binary extends RecordReader {
+
+        private final InputStream inputStream;
+        private final BinaryRowFormat.Reader reader;
+
+        Binary(InputStream inputStream) throws IOException {
+            this.inputStream = inputStream;
+            this.reader = new BinaryRowFormat.Reader(inputStream);
+        }
+
+        @Override
+        boolean next(LineContext lineContext) throws IOException {
+            Map<String, Object> row = reader.next();
+            if (row == null) {
+                return false;
+            }
+            lineContext.source(row);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fileformat;
+
+import io.crate.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary row format.
+ *
+ * A file starts with a header containing a magic number, the version, the number of columns
+ * and for each column its name and type. Each row is written as a row marker followed by the values.
+ * Values of primitive types are written using the {@link io.crate.Streamer} of their type,
+ * all other values are written as generic values. A file ends with an end marker.
+ *
+ * Rows aren't delimited by new lines, so files in this format are never split and are read as a whole.
+ */
+public final class BinaryRowFormat {
+
+    private static final byte[] MAGIC = new byte[]{'C', 'R', 'B', 'R'};
+    private static final byte VERSION = 1;
+    private static final byte ROW = 1;
+    private static final byte END = 0;
+
+    private BinaryRowFormat() {
+    }
+
+    public static class Writer {
+
+        private final StreamOutput out;
+        private final DataType[] types;
+
+        /**
+         * writes the header to the given stream
+         *
+         * @param types the types of the columns, null for values that are written as generic values
+         */
+        public Writer(OutputStream outputStream, List<String> names, List<DataType> types) throws IOException {
+            assert names.size() == types.size();
+            this.out = new OutputStreamStreamOutput(outputStream);
+            this.types = new DataType[types.size()];
+            out.writeBytes(MAGIC);
+            out.writeByte(VERSION);
+            out.writeVInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                out.writeString(names.get(i));
+                DataType type = types.get(i);
+                if (type != null && DataType.PRIMITIVE_TYPES.contains(type)) {
+                    this.types[i] = type;
+                    out.writeBoolean(true);
+                    DataType.toStream(type, out);
+                } else {
+                    out.writeBoolean(false);
+                }
+            }
+        }
+
+        public void write(Object[] values) throws IOException {
+            out.writeByte(ROW);
+            for (int i = 0; i < types.length; i++) {
+                DataType type = types[i];
+                if (type == null) {
+                    out.writeGenericValue(SourceValues.toSourceValue(values[i]));
+                } else {
+                    type.streamer().writeTo(out, streamableValue(type, values[i]));
+                }
+            }
+        }
+
+        /**
+         * writes the end marker, doesn't close the underlying stream
+         */
+        public void finish() throws IOException {
+            out.writeByte(END);
+            out.flush();
+        }
+
+        @Nullable
+        private static Object streamableValue(DataType type, @Nullable Object value) {
+            if (value == null) {
+                return null;
+            }
+            switch (type) {
+                case STRING:
+                case IP:
+                    if (value instanceof String) {
+                        return new BytesRef((String) value);
+                    }
+                    return value;
+                case TIMESTAMP:
+                    return ((Number) value).longValue();
+                default:
+                    return value;
+            }
+        }
+    }
+
+    public static class Reader {
+
+        private final StreamInput in;
+        private final String[] names;
+        private final DataType[] types;
+        private boolean finished = false;
+
+        /**
+         * reads the header from the given stream
+         */
+        public Reader(InputStream inputStream) throws IOException {
+            this.in = new InputStreamStreamInput(inputStream);
+            byte[] magic = new byte[MAGIC.length];
+            in.readBytes(magic, 0, magic.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Input is not in the binary row format");
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(
+                        String.format("Unsupported binary row format version %d", version));
+            }
+            int numColumns = in.readVInt();
+            names = new String[numColumns];
+            types = new DataType[numColumns];
+            for (int i = 0; i < numColumns; i++) {
+                names[i] = in.readString();
+                if (in.readBoolean()) {
+                    types[i] = DataType.fromStream(in);
+                }
+            }
+        }
+
+        public String[] names() {
+            return names;
+        }
+
+        /**
+         * @return the next row as map from column name to value or null if all rows have been read
+         */
+        @Nullable
+        public Map<String, Object> next() throws IOException {
+            if (finished || in.readByte() != ROW) {
+                finished = true;
+                return null;
+            }
+            Map<String, Object> row = new LinkedHashMap<>(names.length);
+            for (int i = 0; i < names.length; i++) {
+                Object value;
+                if (types[i] == null) {
+                    value = in.readGenericValue();
+                } else {
+                    value = types[i].streamer().readFrom(in);
+                }
+                row.put(names[i], SourceValues.toSourceValue(value));
+            }
+            return row;
+        }
+    }
+}
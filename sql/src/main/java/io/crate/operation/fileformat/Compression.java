@@ -0,0 +1,100 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fileformat;
+
+import com.ning.compress.lzf.LZFInputStream;
+import com.ning.compress.lzf.LZFOutputStream;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression codecs supported by COPY FROM and COPY TO.
+ *
+ * LZF compresses a lot faster than gzip at the cost of a lower compression ratio,
+ * which makes it the better choice if the export is limited by cpu instead of disk or network.
+ */
+public enum Compression {
+
+    GZIP("gz") {
+        @Override
+        public OutputStream wrap(OutputStream outputStream) throws IOException {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream wrap(InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+    },
+    LZF("lzf") {
+        @Override
+        public OutputStream wrap(OutputStream outputStream) throws IOException {
+            return new LZFOutputStream(outputStream);
+        }
+
+        @Override
+        public InputStream wrap(InputStream inputStream) throws IOException {
+            return new LZFInputStream(inputStream);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    private Compression(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public abstract OutputStream wrap(OutputStream outputStream) throws IOException;
+
+    public abstract InputStream wrap(InputStream inputStream) throws IOException;
+
+    /**
+     * @param compression the name of the compression, null if no compression is used
+     * @return the compression or null if <code>compression</code> is null
+     * @throws IllegalArgumentException if the compression is unknown
+     */
+    @Nullable
+    public static Compression of(@Nullable String compression) {
+        if (compression == null) {
+            return null;
+        }
+        try {
+            return valueOf(compression.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    String.format("Unsupported compression type: '%s'", compression));
+        }
+    }
+}
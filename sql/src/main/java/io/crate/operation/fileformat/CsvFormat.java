@@ -0,0 +1,215 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fileformat;
+
+import io.crate.DataType;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes comma separated values as described in RFC 4180.
+ *
+ * An empty unquoted value is read as null, an empty quoted value as empty string.
+ * Objects and arrays are written as JSON.
+ */
+public final class CsvFormat {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private CsvFormat() {
+    }
+
+    /**
+     * parse the values of a record
+     *
+     * @return the values or null if the record ends within a quoted value,
+     *         in which case the value continues on the next line
+     */
+    @Nullable
+    public static List<String> parseRecord(String record) {
+        List<String> values = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (inQuotes) {
+                if (c != QUOTE) {
+                    sb.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == QUOTE) {
+                    sb.append(QUOTE);
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == QUOTE) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == SEPARATOR) {
+                values.add(value(sb, quoted));
+                sb.setLength(0);
+                quoted = false;
+            } else {
+                sb.append(c);
+            }
+        }
+        if (inQuotes) {
+            return null;
+        }
+        values.add(value(sb, quoted));
+        return values;
+    }
+
+    @Nullable
+    public static List<String> parseRecord(byte[] record) {
+        return parseRecord(new String(record, StandardCharsets.UTF_8));
+    }
+
+    @Nullable
+    private static String value(StringBuilder sb, boolean quoted) {
+        if (!quoted && sb.length() == 0) {
+            return null;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * convert a value read from a CSV file to the given type.
+     * Objects and arrays are parsed from JSON, timestamps are only converted if they are numeric.
+     */
+    @Nullable
+    public static Object convert(@Nullable String value, @Nullable DataType type) {
+        if (value == null || type == null) {
+            return value;
+        }
+        try {
+            switch (type) {
+                case BYTE:
+                    return Byte.parseByte(value.trim());
+                case SHORT:
+                    return Short.parseShort(value.trim());
+                case INTEGER:
+                    return Integer.parseInt(value.trim());
+                case LONG:
+                    return Long.parseLong(value.trim());
+                case FLOAT:
+                    return Float.parseFloat(value.trim());
+                case DOUBLE:
+                    return Double.parseDouble(value.trim());
+                case BOOLEAN:
+                    return parseBoolean(value);
+                case TIMESTAMP:
+                    try {
+                        return Long.parseLong(value.trim());
+                    } catch (NumberFormatException e) {
+                        // date strings are parsed by the mapping
+                        return value;
+                    }
+                case OBJECT:
+                    return XContentHelper.convertToMap(value.getBytes(StandardCharsets.UTF_8), false).v2();
+                default:
+                    if (DataType.ARRAY_TYPES.contains(type) || DataType.SET_TYPES.contains(type)) {
+                        byte[] wrapped = ("{\"v\": " + value + "}").getBytes(StandardCharsets.UTF_8);
+                        return XContentHelper.convertToMap(wrapped, false).v2().get("v");
+                    }
+                    return value;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot convert CSV value '%s' to type %s", value, type.getName()), e);
+        }
+    }
+
+    private static Boolean parseBoolean(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("true")) {
+            return Boolean.TRUE;
+        }
+        if (trimmed.equalsIgnoreCase("false")) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException(
+                String.format("Cannot convert CSV value '%s' to type %s", value, DataType.BOOLEAN.getName()));
+    }
+
+    /**
+     * append a record to the given StringBuilder, terminated by a new line
+     */
+    public static void appendRecord(StringBuilder sb, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            appendValue(sb, values[i]);
+        }
+        sb.append('\n');
+    }
+
+    private static void appendValue(StringBuilder sb, @Nullable Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        value = SourceValues.toSourceValue(value);
+        String string;
+        if (value instanceof Map || value instanceof List) {
+            string = XContentFactory.jsonBuilder().value(value).string();
+        } else {
+            string = value.toString();
+        }
+        if (!needsQuotes(string)) {
+            sb.append(string);
+            return;
+        }
+        sb.append(QUOTE);
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == QUOTE) {
+                sb.append(QUOTE);
+            }
+            sb.append(c);
+        }
+        sb.append(QUOTE);
+    }
+
+    private static boolean needsQuotes(String string) {
+        // empty strings are quoted to tell them apart from null
+        if (string.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
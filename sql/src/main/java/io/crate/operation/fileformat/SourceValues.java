@@ -0,0 +1,65 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fileformat;
+
+import org.apache.lucene.util.BytesRef;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+class SourceValues {
+
+    /**
+     * converts a value as returned by inputs or streamers into a value that can be used in a source map
+     * and written as JSON: BytesRefs become Strings, sets and arrays become lists.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static Object toSourceValue(@Nullable Object value) {
+        if (value instanceof BytesRef) {
+            return ((BytesRef) value).utf8ToString();
+        } else if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            Map<String, Object> result = new LinkedHashMap<>(map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                result.put(entry.getKey(), toSourceValue(entry.getValue()));
+            }
+            return result;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            List<Object> result = new ArrayList<>(collection.size());
+            for (Object o : collection) {
+                result.add(toSourceValue(o));
+            }
+            return result;
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            List<Object> result = new ArrayList<>(array.length);
+            for (Object o : array) {
+                result.add(toSourceValue(o));
+            }
+            return result;
+        }
+        return value;
+    }
+}
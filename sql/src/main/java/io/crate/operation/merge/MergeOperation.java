@@ -27,6 +27,8 @@ import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.SortedRunProjector;
+import io.crate.operation.projectors.groupby.GroupByMemory;
 import io.crate.planner.node.dql.MergeNode;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Provider;
@@ -45,14 +47,33 @@ public class MergeOperation implements DownstreamOperation {
     private AtomicBoolean wantMore = new AtomicBoolean(true);
 
     public MergeOperation(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor, MergeNode mergeNode) {
+        this(clientProvider, symbolVisitor, mergeNode, GroupByMemory.UNLIMITED);
+    }
+
+    public MergeOperation(Provider<Client> clientProvider,
+                          ImplementationSymbolVisitor symbolVisitor,
+                          MergeNode mergeNode,
+                          GroupByMemory groupByMemory) {
         projectorChain = new FlatProjectorChain(mergeNode.projections(),
-                new ProjectionToProjectorVisitor(clientProvider, symbolVisitor));
+                ProjectionToProjectorVisitor.builder(clientProvider, symbolVisitor)
+                        .groupByMemory(groupByMemory.newQuery())
+                        .build());
         downstream(projectorChain.firstProjector());
         this.numUpstreams = mergeNode.numUpstreams();
         projectorChain.startProjections();
     }
 
+    /**
+     * the rows of one upstream are handed over as one run to projectors which merge sorted runs,
+     * as the results of the upstreams are usually sorted already.
+     */
     public boolean addRows(Object[][] rows) throws Exception {
+        if (downstream instanceof SortedRunProjector) {
+            if (wantMore.get() && !((SortedRunProjector) downstream).setNextRun(rows)) {
+                wantMore.set(false);
+            }
+            return wantMore.get();
+        }
         for (int i = 0, length = rows.length; i < length && wantMore.get(); i++) {
             // assume that all projectors .setNextRow(...) methods are threadsafe
             if (!downstream.setNextRow(rows[i])) {
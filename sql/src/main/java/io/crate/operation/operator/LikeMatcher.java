@@ -0,0 +1,221 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.operator;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.BasicAutomata;
+import org.apache.lucene.util.automaton.BasicOperations;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a compiled LIKE pattern which matches UTF-8 encoded values without decoding them.
+ * <p/>
+ * Patterns consisting of a literal with wildcards <code>%</code> only at the start and/or the end
+ * are matched by comparing the bytes directly, any other pattern is matched
+ * using an automaton running on the UTF-8 bytes.
+ */
+public abstract class LikeMatcher {
+
+    public abstract boolean matches(BytesRef value);
+
+    public static LikeMatcher compile(String pattern) {
+        return compile(pattern, LikeOperator.DEFAULT_ESCAPE);
+    }
+
+    public static LikeMatcher compile(String pattern, char escapeChar) {
+        List<Object> tokens = tokenize(pattern, escapeChar);
+
+        boolean leadingWildcard = !tokens.isEmpty() && tokens.get(0) == Wildcard.ANY_STRING;
+        boolean trailingWildcard = tokens.size() > 1 && tokens.get(tokens.size() - 1) == Wildcard.ANY_STRING;
+        int literalCount = tokens.size() - (leadingWildcard ? 1 : 0) - (trailingWildcard ? 1 : 0);
+
+        if (literalCount == 0 && leadingWildcard) {
+            return new AnyMatcher();
+        }
+        if (literalCount == 0) {
+            return new ExactMatcher(new BytesRef(""));
+        }
+        if (literalCount == 1) {
+            Object token = tokens.get(leadingWildcard ? 1 : 0);
+            if (token instanceof String) {
+                BytesRef literal = new BytesRef((String) token);
+                if (leadingWildcard && trailingWildcard) {
+                    return new ContainsMatcher(literal);
+                } else if (leadingWildcard) {
+                    return new SuffixMatcher(literal);
+                } else if (trailingWildcard) {
+                    return new PrefixMatcher(literal);
+                }
+                return new ExactMatcher(literal);
+            }
+        }
+        return new AutomatonMatcher(tokens);
+    }
+
+    private enum Wildcard {
+        ANY_STRING,
+        ANY_CHAR
+    }
+
+    /**
+     * splits the pattern into literal strings and wildcards, consecutive <code>%</code> are merged.
+     */
+    private static List<Object> tokenize(String pattern, char escapeChar) {
+        List<Object> tokens = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean escaped = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (!escaped && c == escapeChar) {
+                escaped = true;
+                continue;
+            }
+            if (!escaped && (c == '%' || c == '_')) {
+                if (literal.length() > 0) {
+                    tokens.add(literal.toString());
+                    literal.setLength(0);
+                }
+                if (c == '_') {
+                    tokens.add(Wildcard.ANY_CHAR);
+                } else if (tokens.isEmpty() || tokens.get(tokens.size() - 1) != Wildcard.ANY_STRING) {
+                    tokens.add(Wildcard.ANY_STRING);
+                }
+            } else {
+                literal.append(c);
+            }
+            escaped = false;
+        }
+        if (literal.length() > 0) {
+            tokens.add(literal.toString());
+        }
+        return tokens;
+    }
+
+    static class AnyMatcher extends LikeMatcher {
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return true;
+        }
+    }
+
+    static class ExactMatcher extends LikeMatcher {
+
+        private final BytesRef literal;
+
+        ExactMatcher(BytesRef literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return literal.bytesEquals(value);
+        }
+    }
+
+    static class PrefixMatcher extends LikeMatcher {
+
+        private final BytesRef prefix;
+
+        PrefixMatcher(BytesRef prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return StringHelper.startsWith(value, prefix);
+        }
+    }
+
+    static class SuffixMatcher extends LikeMatcher {
+
+        private final BytesRef suffix;
+
+        SuffixMatcher(BytesRef suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return StringHelper.endsWith(value, suffix);
+        }
+    }
+
+    /**
+     * searches the bytes of the literal, as UTF-8 is self-synchronizing
+     * a match of the bytes is always a match of the characters.
+     */
+    static class ContainsMatcher extends LikeMatcher {
+
+        private final byte[] literal;
+
+        ContainsMatcher(BytesRef literal) {
+            this.literal = BytesRef.deepCopyOf(literal).bytes;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            byte[] bytes = value.bytes;
+            int last = value.offset + value.length - literal.length;
+            outer:
+            for (int start = value.offset; start <= last; start++) {
+                for (int i = 0; i < literal.length; i++) {
+                    if (bytes[start + i] != literal[i]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static class AutomatonMatcher extends LikeMatcher {
+
+        private final ByteRunAutomaton automaton;
+
+        AutomatonMatcher(List<Object> tokens) {
+            List<Automaton> automata = new ArrayList<>(tokens.size());
+            for (Object token : tokens) {
+                if (token == Wildcard.ANY_STRING) {
+                    automata.add(BasicAutomata.makeAnyString());
+                } else if (token == Wildcard.ANY_CHAR) {
+                    automata.add(BasicAutomata.makeAnyChar());
+                } else {
+                    automata.add(BasicAutomata.makeString((String) token));
+                }
+            }
+            automaton = new ByteRunAutomaton(BasicOperations.concatenate(automata));
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return automaton.run(value.bytes, value.offset, value.length);
+        }
+    }
+}
@@ -21,18 +21,20 @@
 
 package io.crate.operation.operator;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
-import io.crate.planner.symbol.BooleanLiteral;
-import io.crate.planner.symbol.Function;
-import io.crate.planner.symbol.StringLiteral;
-import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.*;
 import org.apache.lucene.util.BytesRef;
 import io.crate.DataType;
 
-import java.util.regex.Pattern;
+import java.util.List;
 
-public class LikeOperator extends Operator<BytesRef> {
+public class LikeOperator extends Operator<BytesRef> implements CompilableScalar<Boolean, BytesRef> {
 
     public static final String NAME = "op_like";
 
@@ -40,6 +42,18 @@ public class LikeOperator extends Operator<BytesRef> {
 
     public static final char DEFAULT_ESCAPE = '\\';
 
+    /**
+     * compiled patterns of arguments which aren't literals
+     */
+    private final LoadingCache<String, LikeMatcher> matchers = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .build(new CacheLoader<String, LikeMatcher>() {
+                @Override
+                public LikeMatcher load(String pattern) throws Exception {
+                    return LikeMatcher.compile(pattern);
+                }
+            });
+
     public static void register(OperatorModule module) {
         module.registerOperatorFunction(new LikeOperator(generateInfo(NAME, DataType.STRING)));
     }
@@ -82,14 +96,50 @@ public class LikeOperator extends Operator<BytesRef> {
             return null;
         }
 
-        return matches(expression.utf8ToString(), pattern.utf8ToString());
+        return matchers.getUnchecked(pattern.utf8ToString()).matches(expression);
     }
 
-    private boolean matches(String expression, String pattern) {
-        return Pattern.matches(
-                patternToRegex(pattern, DEFAULT_ESCAPE, true),
-                expression
-        );
+    /**
+     * compiles the pattern once if it is a literal
+     */
+    @Override
+    public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+        assert (arguments.size() == 2);
+        Symbol pattern = arguments.get(1);
+        if (pattern.symbolType() != SymbolType.STRING_LITERAL) {
+            return this;
+        }
+        return new CompiledLikeOperator(info, LikeMatcher.compile(((StringLiteral) pattern).valueAsString()));
+    }
+
+    static class CompiledLikeOperator extends Operator<BytesRef> {
+
+        private final FunctionInfo info;
+        private final LikeMatcher matcher;
+
+        CompiledLikeOperator(FunctionInfo info, LikeMatcher matcher) {
+            this.info = info;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public FunctionInfo info() {
+            return info;
+        }
+
+        @Override
+        public Symbol normalizeSymbol(Function symbol) {
+            return symbol;
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            BytesRef expression = args[0].value();
+            if (expression == null) {
+                return null;
+            }
+            return matcher.matches(expression);
+        }
     }
 
     protected static String patternToRegex(String patternString, char escapeChar, boolean shouldEscape) {
@@ -24,17 +24,19 @@ package io.crate.operation.projectors;
 import io.crate.operation.AggregationContext;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.aggregation.AggregationCollector;
+import io.crate.operation.batch.RowBatch;
 import io.crate.operation.collect.CollectExpression;
 
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class AggregationProjector implements Projector {
+public class AggregationProjector implements BatchProjector {
 
     private final AggregationCollector[] aggregationCollectors;
     private final Set<CollectExpression<?>> collectExpressions;
     private final Object[] row;
+    private Object[] batchRow;
     private Projector downstream;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final AtomicReference<Throwable> upstreamFailure = new AtomicReference<>(null);
@@ -81,13 +83,53 @@ public class AggregationProjector implements Projector {
 
     @Override
     public synchronized boolean setNextRow(Object... row) {
+        processRow(row);
+        return upstreamFailure.get() == null;
+    }
+
+    /**
+     * aggregations reading a column of the rows consume the column vectors directly,
+     * only if another aggregation needs evaluated inputs the rows are materialized.
+     */
+    @Override
+    public synchronized boolean setNextBatch(RowBatch batch) {
+        int size = batch.size();
+        boolean allReadColumns = true;
+        for (AggregationCollector aggregationCollector : aggregationCollectors) {
+            if (aggregationCollector.readsColumns()) {
+                for (int i = 0; i < size; i++) {
+                    aggregationCollector.processRow(batch, i);
+                }
+            } else {
+                allReadColumns = false;
+            }
+        }
+        if (!allReadColumns) {
+            if (batchRow == null || batchRow.length != batch.numColumns()) {
+                batchRow = new Object[batch.numColumns()];
+            }
+            for (int i = 0; i < size; i++) {
+                batch.row(i, batchRow);
+                for (CollectExpression<?> collectExpression : collectExpressions) {
+                    collectExpression.setNextRow(batchRow);
+                }
+                for (AggregationCollector aggregationCollector : aggregationCollectors) {
+                    if (!aggregationCollector.readsColumns()) {
+                        aggregationCollector.processRow();
+                    }
+                }
+            }
+        }
+        return upstreamFailure.get() == null;
+    }
+
+    private void processRow(Object[] row) {
         for (CollectExpression<?> collectExpression : collectExpressions) {
             collectExpression.setNextRow(row);
         }
         for (AggregationCollector aggregationCollector : aggregationCollectors) {
             aggregationCollector.processRow();
         }
-        return upstreamFailure.get() == null;
     }
 
     @Override
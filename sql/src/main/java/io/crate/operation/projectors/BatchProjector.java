@@ -0,0 +1,44 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import io.crate.operation.batch.RowBatch;
+
+/**
+ * a {@link Projector} which can consume a whole {@link RowBatch} at once.
+ *
+ * Upstreams should use {@link RowBatch#sendTo(Projector)} which falls back to
+ * {@link #setNextRow(Object...)} for projectors not implementing this interface.
+ */
+public interface BatchProjector extends Projector {
+
+    /**
+     * feed this projector with the next batch of rows.
+     * The batch is reused by the caller after this method returned.
+     *
+     * This method must be thread safe.
+     *
+     * @return false if this projection does not need any more rows, true otherwise.
+     */
+    public boolean setNextBatch(RowBatch batch);
+}
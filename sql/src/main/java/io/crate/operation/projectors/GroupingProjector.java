@@ -19,26 +19,81 @@
  * software solely pursuant to the terms of the relevant commercial agreement.
  */
 
+
 package io.crate.operation.projectors;
 
+import io.crate.Streamer;
+import io.crate.exceptions.CrateException;
 import io.crate.operation.AggregationContext;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.aggregation.AggregationCollector;
 import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
+import io.crate.operation.batch.OrdinalLookup;
+import io.crate.operation.batch.RowBatch;
 import io.crate.operation.collect.CollectExpression;
-
-import java.util.*;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.groupby.GroupKeyTable;
+import io.crate.operation.projectors.groupby.GroupKeyTables;
+import io.crate.operation.projectors.groupby.SpilledGroups;
+import io.crate.planner.node.AggregationStateStreamer;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ObjectArray;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class GroupingProjector implements Projector {
+/**
+ * groups the incoming rows by the keyInputs and aggregates the rows of every group.
+ *
+ * The keys are mapped to dense group ids by a {@link GroupKeyTable}, the aggregation states
+ * of all groups are kept in one {@link ObjectArray} indexed by <code>groupId * numAggregations + i</code>.
+ * Both are allocated using {@link BigArrays} and released once the result has been emitted.
+ *
+ * The estimated memory of the groups is accounted by the {@link GroupByMemory} of the query.
+ * If the budget of the query is exceeded or the circuit breaker would trip, the groups are spilled to disk as {@link SpilledGroups}
+ * and grouping starts over with an empty table. The spilled runs are merged in {@link #finish()}.
+ *
+ * String keys which are only used as key may be received as {@link OrdinalColumnVector}s.
+ * Those keys are grouped by their ordinal and only resolved to their value once the groups are emitted.
+ *
+ * If all keys and aggregation arguments are plain columns of the incoming rows, batches are grouped
+ * by reading the column vectors directly, without materializing the rows.
+ */
+public class GroupingProjector implements OrdinalBatchProjector {
 
-    private final List<CollectExpression<?>> collectExpressions;
+    // rough estimates of the memory used by a group besides its key values
+    private static final long GROUP_OVERHEAD = 32;
+    private static final long STATE_SIZE = 64;
+    private static final long MEMORY_CHUNK_SIZE = 1024 * 1024;
 
-    private final Grouper grouper;
+    private final List<CollectExpression<?>> collectExpressions;
+    private final Input<?>[] keyInputs;
+    private final AggregationCollector[] aggregationCollectors;
+    private final BigArrays bigArrays;
+    private final GroupByMemory memory;
+    private final Streamer<?>[] stateStreamers;
+    private final Object[] key;
+    private final Object lock;
+    private Object[] batchRow;
+    private boolean[] ordinalColumns;
+    private final int[] ordinalKeyColumns;
+    private final OrdinalLookup[] keyLookups;
+    private final int[] keyColumns;
+
+    private GroupKeyTable keyTable;
+    private ObjectArray<AggregationState> states;
+    private long estimatedBytes = 0;
+    private long reservedBytes = 0;
+    private SpilledGroups spilledGroups;
 
-    private Object[][] rows;
     private Projector downstream;
     private AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final AtomicReference<Throwable> failure = new AtomicReference<>(null);
@@ -46,21 +101,91 @@ public class GroupingProjector implements Projector {
     public GroupingProjector(List<Input<?>> keyInputs,
                              List<CollectExpression<?>> collectExpressions,
                              AggregationContext[] aggregations) {
+        this(keyInputs, collectExpressions, aggregations, BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    public GroupingProjector(List<Input<?>> keyInputs,
+                             List<CollectExpression<?>> collectExpressions,
+                             AggregationContext[] aggregations,
+                             BigArrays bigArrays) {
+        this(keyInputs, collectExpressions, aggregations, bigArrays, true);
+    }
+
+    /**
+     * @param concurrentUpstreams if false the projector doesn't synchronize {@link #setNextRow(Object...)}.
+     *                            Only allowed if all rows are sent from the same thread,
+     *                            e.g. if the only upstream is a single shard collector.
+     */
+    public GroupingProjector(List<Input<?>> keyInputs,
+                             List<CollectExpression<?>> collectExpressions,
+                             AggregationContext[] aggregations,
+                             BigArrays bigArrays,
+                             boolean concurrentUpstreams) {
+        this(keyInputs, collectExpressions, aggregations, bigArrays, GroupByMemory.UNLIMITED, concurrentUpstreams);
+    }
+
+    public GroupingProjector(List<Input<?>> keyInputs,
+                             List<CollectExpression<?>> collectExpressions,
+                             AggregationContext[] aggregations,
+                             BigArrays bigArrays,
+                             GroupByMemory memory,
+                             boolean concurrentUpstreams) {
+        this(keyInputs, collectExpressions, aggregations, bigArrays, memory, concurrentUpstreams, null);
+    }
+
+    /**
+     * @param ordinalKeyColumns for every key the column of the incoming rows which may be grouped by its ordinals
+     *                          or -1 if the key must be grouped by its value.
+     *                          Ordinals are only accepted if <code>concurrentUpstreams</code> is false.
+     */
+    public GroupingProjector(List<Input<?>> keyInputs,
+                             List<CollectExpression<?>> collectExpressions,
+                             AggregationContext[] aggregations,
+                             BigArrays bigArrays,
+                             GroupByMemory memory,
+                             boolean concurrentUpstreams,
+                             @Nullable int[] ordinalKeyColumns) {
+        assert ordinalKeyColumns == null || ordinalKeyColumns.length == keyInputs.size();
+        this.memory = memory;
+        this.ordinalKeyColumns = concurrentUpstreams ? null : ordinalKeyColumns;
+        this.keyLookups = new OrdinalLookup[keyInputs.size()];
+        this.lock = concurrentUpstreams ? new Object() : null;
         this.collectExpressions = collectExpressions;
+        this.keyInputs = keyInputs.toArray(new Input<?>[keyInputs.size()]);
+        this.key = new Object[keyInputs.size()];
+        this.bigArrays = bigArrays;
 
-        AggregationCollector[] aggregationCollectors = new AggregationCollector[aggregations.length];
+        aggregationCollectors = new AggregationCollector[aggregations.length];
+        stateStreamers = new Streamer<?>[aggregations.length];
         for (int i = 0; i < aggregations.length; i++) {
             aggregationCollectors[i] = new AggregationCollector(
                     aggregations[i].symbol(),
                     aggregations[i].function(),
                     aggregations[i].inputs()
             );
+            stateStreamers[i] = new AggregationStateStreamer(aggregations[i].function());
         }
-        if (keyInputs.size() == 1) {
-            grouper = new SingleKeyGrouper(keyInputs.get(0), collectExpressions, aggregationCollectors);
-        } else {
-            grouper = new ManyKeyGrouper(keyInputs, collectExpressions, aggregationCollectors);
+        this.keyColumns = keyColumns(this.keyInputs, aggregationCollectors);
+    }
+
+    /**
+     * @return the columns of the keys if batches can be grouped reading the column vectors directly, otherwise null
+     */
+    @Nullable
+    private static int[] keyColumns(Input<?>[] keyInputs, AggregationCollector[] aggregationCollectors) {
+        for (AggregationCollector aggregationCollector : aggregationCollectors) {
+            if (!aggregationCollector.readsColumns()) {
+                return null;
+            }
+        }
+        int[] keyColumns = new int[keyInputs.length];
+        for (int i = 0; i < keyInputs.length; i++) {
+            if (!(keyInputs[i] instanceof InputCollectExpression)) {
+                return null;
+            }
+            keyColumns[i] = ((InputCollectExpression) keyInputs[i]).position();
         }
+        return keyColumns;
     }
 
     @Override
@@ -86,291 +211,351 @@ public class GroupingProjector implements Projector {
     }
 
     @Override
-    public synchronized boolean setNextRow(final Object... row) {
-        return grouper.setNextRow(row);
+    public boolean setNextRow(final Object... row) {
+        if (lock == null) {
+            return groupRow(row);
+        }
+        synchronized (lock) {
+            return groupRow(row);
+        }
     }
 
     @Override
-    public void registerUpstream(ProjectorUpstream upstream) {
-        remainingUpstreams.incrementAndGet();
+    public boolean setNextBatch(RowBatch batch) {
+        if (lock == null) {
+            return groupBatch(batch);
+        }
+        synchronized (lock) {
+            return groupBatch(batch);
+        }
     }
 
     @Override
-    public void upstreamFinished() {
-        if (remainingUpstreams.decrementAndGet() <= 0) {
-            rows = grouper.finish();
+    public boolean acceptsOrdinals(int column) {
+        if (ordinalKeyColumns == null) {
+            return false;
+        }
+        for (int keyColumn : ordinalKeyColumns) {
+            if (keyColumn == column) {
+                return true;
+            }
         }
+        return false;
     }
 
-    @Override
-    public void upstreamFailed(Throwable throwable) {
-        if (remainingUpstreams.decrementAndGet() <= 0) {
-            if (downstream != null) {
-                downstream.upstreamFailed(throwable);
+    private boolean groupBatch(RowBatch batch) {
+        if (batchRow == null || batchRow.length != batch.numColumns()) {
+            batchRow = new Object[batch.numColumns()];
+            ordinalColumns = new boolean[batch.numColumns()];
+        }
+        boolean hasOrdinals = hasOrdinals(batch);
+        if (keyColumns != null) {
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                groupRow(batch, i);
             }
-            return;
+            return true;
         }
-        failure.set(throwable);
+        if (!hasOrdinals) {
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                groupRow(batch.row(i, batchRow));
+            }
+            return true;
+        }
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            for (int c = 0; c < batchRow.length; c++) {
+                ColumnVector column = batch.column(c);
+                if (ordinalColumns[c]) {
+                    // only the key reads this column, so it is grouped by the ordinal
+                    batchRow[c] = column.isNull(i) ? null : ((OrdinalColumnVector) column).getOrd(i);
+                } else {
+                    batchRow[c] = column.value(i);
+                }
+            }
+            groupRow(batchRow);
+        }
+        return true;
     }
 
     /**
-     * transform map entry into pre-allocated object array.
-     * @param entry
-     * @param row
-     * @param aggregationCollectors
+     * remember the lookups of the ordinal key columns of the batch,
+     * which are needed to resolve the keys once the groups are emitted.
      */
-    private static void transformToRow(Map.Entry<List<Object>, AggregationState[]> entry,
-                                       Object[] row,
-                                       AggregationCollector[] aggregationCollectors) {
-        int c = 0;
-
-        for (Object o : entry.getKey()) {
-            row[c] = o;
-            c++;
+    private boolean hasOrdinals(RowBatch batch) {
+        if (ordinalKeyColumns == null) {
+            return false;
         }
-
-        AggregationState[] aggregationStates = entry.getValue();
-        for (int i = 0; i < aggregationStates.length; i++) {
-            aggregationCollectors[i].state(aggregationStates[i]);
-            row[c] = aggregationCollectors[i].finishCollect();
-            c++;
+        boolean hasOrdinals = false;
+        for (int i = 0; i < ordinalKeyColumns.length; i++) {
+            if (ordinalKeyColumns[i] < 0) {
+                continue;
+            }
+            ColumnVector column = batch.column(ordinalKeyColumns[i]);
+            ordinalColumns[ordinalKeyColumns[i]] = column instanceof OrdinalColumnVector;
+            if (column instanceof OrdinalColumnVector) {
+                OrdinalLookup lookup = ((OrdinalColumnVector) column).lookup();
+                assert keyLookups[i] == null || keyLookups[i] == lookup : "ordinals of different lookups";
+                keyLookups[i] = lookup;
+                hasOrdinals = true;
+            } else {
+                assert keyLookups[i] == null : "ordinals mixed with values";
+            }
         }
+        return hasOrdinals;
     }
 
-    private static void singleTransformToRow(Map.Entry<Object, AggregationState[]> entry,
-                                       Object[] row,
-                                       AggregationCollector[] aggregationCollectors) {
-        int c = 0;
-        row[c] = entry.getKey();
-        c++;
-        AggregationState[] aggregationStates = entry.getValue();
-        for (int i = 0; i < aggregationStates.length; i++) {
-            aggregationCollectors[i].state(aggregationStates[i]);
-            row[c] = aggregationCollectors[i].finishCollect();
-            c++;
+    /**
+     * replace the ordinals of the key in <code>row</code> by their values
+     */
+    private void resolveOrdinals(Object[] row) {
+        for (int i = 0; i < keyLookups.length; i++) {
+            if (keyLookups[i] != null && row[i] != null) {
+                row[i] = BytesRef.deepCopyOf(keyLookups[i].lookupOrd((Long) row[i]));
+            }
         }
     }
 
-    private interface Grouper {
-        boolean setNextRow(final Object... row);
-        Object[][] finish();
-        Iterator<Object[]> iterator();
-    }
-
-    private class SingleKeyGrouper implements Grouper {
-
-        private final Map<Object, AggregationState[]> result;
-        private final List<CollectExpression<?>> collectExpressions;
-        private final AggregationCollector[] aggregationCollectors;
-        private final Input keyInput;
-
-        public SingleKeyGrouper(Input keyInput,
-                                List<CollectExpression<?>> collectExpressions,
-                                AggregationCollector[] aggregationCollectors) {
-            this.result = new HashMap<>();
-            this.keyInput = keyInput;
-            this.collectExpressions = collectExpressions;
-            this.aggregationCollectors = aggregationCollectors;
+    private boolean groupRow(Object[] row) {
+        for (CollectExpression collectExpression : collectExpressions) {
+            collectExpression.setNextRow(row);
         }
-
-        @Override
-        public boolean setNextRow(Object... row) {
-            for (CollectExpression collectExpression : collectExpressions) {
-                collectExpression.setNextRow(row);
-            }
-
-            Object key = keyInput.value();
-            AggregationState[] states = result.get(key);
-            if (states == null) {
-                states = new AggregationState[aggregationCollectors.length];
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].startCollect();
-                    aggregationCollectors[i].processRow();
-                    states[i] = aggregationCollectors[i].state();
-                }
-                result.put(key, states);
-            } else {
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].state(states[i]);
-                    aggregationCollectors[i].processRow();
-                }
-            }
-
-            return true;
+        for (int i = 0; i < keyInputs.length; i++) {
+            key[i] = keyInputs[i].value();
+        }
+        if (keyTable == null) {
+            keyTable = GroupKeyTables.forKey(key, bigArrays);
+            states = bigArrays.newObjectArray(
+                    GroupKeyTables.DEFAULT_EXPECTED_SIZE * Math.max(aggregationCollectors.length, 1));
         }
 
-        @Override
-        public Object[][] finish() {
-            Throwable throwable = failure.get();
-            if (throwable != null && downstream != null) {
-                downstream.upstreamFailed(throwable);
-            }
-
-            Object[][] rows = new Object[result.size()][1 + aggregationCollectors.length];
-            boolean sendToDownStream = downstream != null;
-            int r = 0;
-            for (Map.Entry<Object, AggregationState[]> entry : result.entrySet()) {
-                Object[] row = rows[r];
-                singleTransformToRow(entry, row, aggregationCollectors);
-                if (sendToDownStream) {
-                    sendToDownStream = downstream.setNextRow(row);
-                }
-                r++;
-            }
-            if (downstream != null) {
-                downstream.upstreamFinished();
-            }
-            return rows;
+        long id = keyTable.add(key);
+        if (id == GroupKeyTable.UNSUPPORTED_KEY) {
+            keyTable = GroupKeyTables.toObjectKeyTable(keyTable, key.length);
+            id = keyTable.add(key);
         }
 
-        @Override
-        public Iterator<Object[]> iterator() {
-            return new SingleEntryToRowIterator(
-                    result.entrySet().iterator(), aggregationCollectors.length + 1, aggregationCollectors);
+        long offset = startGroup(id);
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].processRow();
+        }
+        if (id >= 0) {
+            addedGroup(offset, key);
         }
+        return true;
     }
 
-    private class ManyKeyGrouper implements Grouper {
+    /**
+     * group a row of a batch reading the key and the aggregation arguments from the column vectors,
+     * only used if {@link #keyColumns} is set.
+     */
+    private void groupRow(RowBatch batch, int row) {
+        if (keyTable == null) {
+            keyTable = GroupKeyTables.forKey(GroupKeyTables.readKey(batch, keyColumns, row, key), bigArrays);
+            states = bigArrays.newObjectArray(
+                    GroupKeyTables.DEFAULT_EXPECTED_SIZE * Math.max(aggregationCollectors.length, 1));
+        }
 
-        private final AggregationCollector[] aggregationCollectors;
-        private final Map<List<Object>, AggregationState[]> result;
-        private final List<CollectExpression<?>> collectExpressions;
-        private final List<Input<?>> keyInputs;
+        long id = keyTable.add(batch, keyColumns, row);
+        if (id == GroupKeyTable.UNSUPPORTED_KEY) {
+            keyTable = GroupKeyTables.toObjectKeyTable(keyTable, key.length);
+            id = keyTable.add(batch, keyColumns, row);
+        }
 
-        public ManyKeyGrouper(List<Input<?>> keyInputs,
-                              List<CollectExpression<?>> collectExpressions,
-                              AggregationCollector[] aggregationCollectors) {
-            this.result = new HashMap<>();
-            this.collectExpressions = collectExpressions;
-            this.keyInputs = keyInputs;
-            this.aggregationCollectors = aggregationCollectors;
+        long offset = startGroup(id);
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].processRow(batch, row);
+        }
+        if (id >= 0) {
+            // the key values are only boxed once per group to estimate its size
+            addedGroup(offset, GroupKeyTables.readKey(batch, keyColumns, row, key));
         }
+    }
 
-        @Override
-        public boolean setNextRow(Object... row) {
-            for (CollectExpression collectExpression : collectExpressions) {
-                collectExpression.setNextRow(row);
+    /**
+     * set the aggregation states of the group returned by {@link GroupKeyTable#add(Object[])},
+     * new states are started for a new group.
+     *
+     * @return the offset of the states of the group
+     */
+    private long startGroup(long id) {
+        if (id >= 0) {
+            long offset = id * aggregationCollectors.length;
+            states = bigArrays.grow(states, offset + aggregationCollectors.length);
+            for (AggregationCollector aggregationCollector : aggregationCollectors) {
+                aggregationCollector.startCollect();
             }
+            return offset;
+        }
+        long offset = (-1 - id) * aggregationCollectors.length;
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].state(states.get(offset + i));
+        }
+        return offset;
+    }
 
-            // TODO: use something with better equals() performance for the keys
-            List<Object> key = new ArrayList<>(keyInputs.size());
-            for (Input keyInput : keyInputs) {
-                key.add(keyInput.value());
-            }
+    /**
+     * store the states of a new group and account its memory,
+     * which may spill the groups.
+     */
+    private void addedGroup(long offset, Object[] key) {
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            states.set(offset + i, aggregationCollectors[i].state());
+        }
+        estimatedBytes += estimateGroupSize(key);
+        if (estimatedBytes > reservedBytes) {
+            reserveMemory();
+        }
+    }
 
-            AggregationState[] states = result.get(key);
-            if (states == null) {
-                states = new AggregationState[aggregationCollectors.length];
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].startCollect();
-                    aggregationCollectors[i].processRow();
-                    states[i] = aggregationCollectors[i].state();
-                }
-                result.put(key, states);
+    private long estimateGroupSize(Object[] key) {
+        long size = GROUP_OVERHEAD + aggregationCollectors.length * STATE_SIZE;
+        for (Object value : key) {
+            if (value instanceof BytesRef) {
+                size += ((BytesRef) value).length + 16;
             } else {
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].state(states[i]);
-                    aggregationCollectors[i].processRow();
-                }
+                size += 8;
             }
-
-            return true;
         }
+        return size;
+    }
 
-        @Override
-        public Object[][] finish() {
-            Throwable throwable = failure.get();
-            if (throwable != null && downstream != null) {
-                downstream.upstreamFailed(throwable);
-            }
-            Object[][] rows = new Object[result.size()][keyInputs.size() + aggregationCollectors.length];
-            boolean sendToDownStream = downstream != null;
-            int r = 0;
-            for (Map.Entry<List<Object>, AggregationState[]> entry : result.entrySet()) {
-                Object[] row = rows[r];
-                transformToRow(entry, row, aggregationCollectors);
-                if (sendToDownStream) {
-                    sendToDownStream = downstream.setNextRow(row);
-                }
-                r++;
-            }
-            if (downstream != null) {
-                downstream.upstreamFinished();
+    /**
+     * reserve memory for the groups in chunks or spill the groups if the memory can't be reserved.
+     * If the groups can't be spilled the circuit breaker exception is thrown.
+     */
+    private void reserveMemory() {
+        boolean canSpill = memory.canSpill() && SpilledGroups.canSpill(keyTable);
+        long bytes = Math.max(MEMORY_CHUNK_SIZE, estimatedBytes - reservedBytes);
+        if (canSpill) {
+            if (!memory.tryReserve(bytes)) {
+                spill();
+                return;
             }
-            return rows;
+        } else {
+            memory.reserve(bytes);
         }
+        reservedBytes += bytes;
+    }
 
-        @Override
-        public Iterator<Object[]> iterator() {
-            return new MultiEntryToRowIterator(
-                    result.entrySet().iterator(),
-                    keyInputs.size() + aggregationCollectors.length,
-                    aggregationCollectors);
+    private void spill() {
+        if (spilledGroups == null) {
+            spilledGroups = new SpilledGroups(memory, bigArrays, stateStreamers, keyInputs.length);
+        }
+        try {
+            spilledGroups.spill(keyTable, states, aggregationCollectors.length);
+        } catch (IOException e) {
+            throw new CrateException("failed to spill groups to disk", e);
+        } finally {
+            releaseTable();
         }
     }
 
+    @Override
+    public void registerUpstream(ProjectorUpstream upstream) {
+        remainingUpstreams.incrementAndGet();
+    }
 
-    private static class SingleEntryToRowIterator implements Iterator<Object[]> {
-
-        private final Iterator<Map.Entry<Object, AggregationState[]>> iter;
-        private final int rowLength;
-        private final AggregationCollector[] aggregationCollectors;
-
-        private SingleEntryToRowIterator(Iterator<Map.Entry<Object, AggregationState[]>> iter,
-                                   int rowLength, AggregationCollector[] aggregationCollectors) {
-            this.iter = iter;
-            this.rowLength = rowLength;
-            this.aggregationCollectors = aggregationCollectors;
+    @Override
+    public void upstreamFinished() {
+        if (remainingUpstreams.decrementAndGet() <= 0) {
+            finish();
         }
+    }
 
-        @Override
-        public boolean hasNext() {
-            return iter.hasNext();
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+        if (remainingUpstreams.decrementAndGet() <= 0) {
+            release();
+            if (downstream != null) {
+                downstream.upstreamFailed(throwable);
+            }
+            return;
         }
+        failure.set(throwable);
+    }
 
-        @Override
-        public Object[] next() {
-            Map.Entry<Object, AggregationState[]> entry = iter.next();
-            Object[] row = new Object[rowLength];
-            singleTransformToRow(entry, row, aggregationCollectors);
-            return row;
+    private void finish() {
+        Throwable throwable = failure.get();
+        if (throwable != null && downstream != null) {
+            downstream.upstreamFailed(throwable);
         }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("remove not supported");
+        try {
+            if (downstream != null && spilledGroups != null) {
+                if (keyTable != null) {
+                    spill();
+                }
+                emitSpilledRows();
+            } else if (downstream != null && keyTable != null) {
+                emitRows();
+            }
+        } finally {
+            release();
+        }
+        if (downstream != null) {
+            downstream.upstreamFinished();
         }
     }
 
-    private static class MultiEntryToRowIterator implements Iterator<Object[]> {
-
-        private final Iterator<Map.Entry<List<Object>, AggregationState[]>> iter;
-        private final int rowLength;
-        private final AggregationCollector[] aggregationCollectors;
-
-        private MultiEntryToRowIterator(Iterator<Map.Entry<List<Object>, AggregationState[]>> iter,
-                                   int rowLength, AggregationCollector[] aggregationCollectors) {
-            this.iter = iter;
-            this.rowLength = rowLength;
-            this.aggregationCollectors = aggregationCollectors;
+    private void emitRows() {
+        int rowLength = keyInputs.length + aggregationCollectors.length;
+        for (long id = 0, size = keyTable.size(); id < size; id++) {
+            Object[] row = new Object[rowLength];
+            keyTable.readKey(id, row);
+            resolveOrdinals(row);
+            long offset = id * aggregationCollectors.length;
+            for (int i = 0; i < aggregationCollectors.length; i++) {
+                aggregationCollectors[i].state(states.get(offset + i));
+                row[keyInputs.length + i] = aggregationCollectors[i].finishCollect();
+            }
+            if (!downstream.setNextRow(row)) {
+                break;
+            }
         }
+    }
 
-        @Override
-        public boolean hasNext() {
-            return iter.hasNext();
+    private void emitSpilledRows() {
+        final int rowLength = keyInputs.length + aggregationCollectors.length;
+        try {
+            spilledGroups.merge(new SpilledGroups.GroupConsumer() {
+                @Override
+                public boolean accept(Object[] key, AggregationState[] states) {
+                    Object[] row = new Object[rowLength];
+                    System.arraycopy(key, 0, row, 0, key.length);
+                    resolveOrdinals(row);
+                    for (int i = 0; i < aggregationCollectors.length; i++) {
+                        aggregationCollectors[i].state(states[i]);
+                        row[keyInputs.length + i] = aggregationCollectors[i].finishCollect();
+                    }
+                    return downstream.setNextRow(row);
+                }
+            });
+        } catch (IOException e) {
+            throw new CrateException("failed to read spilled groups", e);
         }
+    }
 
-        @Override
-        public Object[] next() {
-            Map.Entry<List<Object>, AggregationState[]> entry = iter.next();
-            Object[] row = new Object[rowLength];
-            transformToRow(entry, row, aggregationCollectors);
-            return row;
+    private synchronized void release() {
+        try {
+            releaseTable();
+        } finally {
+            if (spilledGroups != null) {
+                spilledGroups.close();
+                spilledGroups = null;
+            }
         }
+    }
 
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("remove not supported");
+    private void releaseTable() {
+        if (keyTable != null) {
+            try {
+                keyTable.release();
+            } finally {
+                states.release();
+                keyTable = null;
+                states = null;
+                memory.release(reservedBytes);
+                reservedBytes = 0;
+                estimatedBytes = 0;
+            }
         }
     }
 }
@@ -21,8 +21,6 @@
 
 package io.crate.operation.projectors;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
 import io.crate.Constants;
 import io.crate.Id;
 import io.crate.PartitionName;
@@ -37,11 +35,15 @@ import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -49,17 +51,15 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class IndexWriterProjector implements Projector {
 
-    private final BulkProcessor bulkProcessor;
+    private static final int DEFAULT_BULK_SIZE = 1000;
+
+    private final ShardingBulkProcessor bulkProcessor;
     private final Listener listener;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
-    private final CollectExpression<?>[] collectExpressions;
-    private final List<Input<?>> idInputs;
-    private final Input<?> sourceInput;
-    private final Input<?> routingInput;
+    private final RowInputs.Factory inputsFactory;
+    private final Queue<RowInputs> idleInputs = new ConcurrentLinkedQueue<>();
     private final String tableName;
-    private final Object lock = new Object();
     private final List<String> primaryKeys;
-    private final List<Input<?>> partitionedByInputs;
     private final String[] includes;
     private final String[] excludes;
     private Projector downstream;
@@ -67,11 +67,25 @@ public class IndexWriterProjector implements Projector {
     public IndexWriterProjector(Client client,
                                 String tableName,
                                 List<String> primaryKeys,
-                                List<Input<?>> idInputs,
-                                List<Input<?>> partitionedByInputs,
-                                Input<?> routingInput,
-                                Input<?> sourceInput,
-                                CollectExpression<?>[] collectExpressions,
+                                RowInputs.Factory inputsFactory,
+                                @Nullable Integer bulkActions,
+                                @Nullable Integer concurrency,
+                                @Nullable String[] includes,
+                                @Nullable String[] excludes) {
+        this(client, null, tableName, primaryKeys, inputsFactory, bulkActions, concurrency, includes, excludes);
+    }
+
+    /**
+     * @param clusterService used to group the requests by their target shard,
+     *                       if null the requests are only grouped by index
+     * @param inputsFactory creates the inputs for every registered upstream,
+     *                      so that concurrent upstreams don't share the evaluated expressions
+     */
+    public IndexWriterProjector(Client client,
+                                @Nullable ClusterService clusterService,
+                                String tableName,
+                                List<String> primaryKeys,
+                                RowInputs.Factory inputsFactory,
                                 @Nullable Integer bulkActions,
                                 @Nullable Integer concurrency,
                                 @Nullable String[] includes,
@@ -79,21 +93,15 @@ public class IndexWriterProjector implements Projector {
         listener = new Listener();
         this.tableName = tableName;
         this.primaryKeys = primaryKeys;
-        this.collectExpressions = collectExpressions;
-        this.idInputs = idInputs;
-        this.routingInput = routingInput;
-        this.sourceInput = sourceInput;
-        this.partitionedByInputs = partitionedByInputs;
+        this.inputsFactory = inputsFactory;
         this.includes = includes;
         this.excludes = excludes;
-        BulkProcessor.Builder builder = BulkProcessor.builder(client, listener);
-        if (bulkActions != null) {
-            builder.setBulkActions(bulkActions);
-        }
-        if (concurrency != null) {
-            builder.setConcurrentRequests(concurrency);
-        }
-        bulkProcessor = builder.build();
+        bulkProcessor = new ShardingBulkProcessor(
+                client,
+                clusterService,
+                bulkActions == null ? DEFAULT_BULK_SIZE : bulkActions,
+                concurrency == null ? Runtime.getRuntime().availableProcessors() : concurrency,
+                listener);
     }
 
     @Override
@@ -103,22 +111,35 @@ public class IndexWriterProjector implements Projector {
 
     @Override
     public boolean setNextRow(Object... row) {
+        // every registered upstream adds its own inputs, more are only created
+        // if there are more concurrent callers than upstreams
+        RowInputs inputs = idleInputs.poll();
+        if (inputs == null) {
+            inputs = inputsFactory.create();
+        }
         IndexRequest indexRequest;
-        synchronized (lock) {
-            for (CollectExpression<?> collectExpression : collectExpressions) {
-                collectExpression.setNextRow(row);
+        try {
+            inputs.setNextRow(row);
+            Object source = inputs.sourceInput.value();
+            if (source == null) {
+                return true;
             }
-            indexRequest = buildRequest();
-        }
-        if (indexRequest != null) {
-            bulkProcessor.add(indexRequest);
+            indexRequest = buildRequest(
+                    source,
+                    stringValues(inputs.idInputs),
+                    stringValues(inputs.partitionedByInputs),
+                    inputs.routingInput.value());
+        } finally {
+            idleInputs.offer(inputs);
         }
+        bulkProcessor.add(indexRequest);
         return true;
     }
 
     @Override
     public void registerUpstream(ProjectorUpstream upstream) {
         remainingUpstreams.incrementAndGet();
+        idleInputs.offer(inputsFactory.create());
     }
 
     @Override
@@ -127,16 +148,16 @@ public class IndexWriterProjector implements Projector {
             bulkProcessor.close();
             listener.allRowsAdded.set(true);
             if (listener.inProgress.get() == 0) {
-                downstream.setNextRow(listener.rowsImported.get());
-                downstream.upstreamFinished();
+                listener.finish();
             }
         }
     }
 
     @Override
     public void upstreamFailed(Throwable throwable) {
+        // the result is a failure anyway, stop indexing and release upstreams waiting for a bulk request
+        bulkProcessor.kill();
         if (remainingUpstreams.decrementAndGet() <= 0) {
-            bulkProcessor.close();
             if (downstream != null) {
                 downstream.setNextRow(listener.rowsImported.get());
                 downstream.upstreamFailed(throwable);
@@ -146,61 +167,49 @@ public class IndexWriterProjector implements Projector {
         listener.failure.set(throwable);
     }
 
-    private IndexRequest buildRequest() {
+    private static String[] stringValues(List<Input<?>> inputs) {
+        String[] values = new String[inputs.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = inputs.get(i).value();
+            if (value != null) {
+                values[i] = value.toString();
+            }
+        }
+        return values;
+    }
+
+    private IndexRequest buildRequest(Object source,
+                                      String[] primaryKeyValues,
+                                      String[] partitionValues,
+                                      @Nullable Object routing) {
         // TODO: reuse logic that is currently  in AbstractESIndexTask
         IndexRequest indexRequest = new IndexRequest();
-        Object value = sourceInput.value();
-        if (value == null) {
-            return null;
-        }
         indexRequest.type(Constants.DEFAULT_MAPPING_TYPE);
 
-        if (partitionedByInputs.size() > 0) {
-            List<String> partitionedByValues = Lists.transform(partitionedByInputs, new Function<Input<?>, String>() {
-                @Nullable
-                @Override
-                public String apply(Input<?> input) {
-                    Object value = input.value();
-                    if (value == null) {
-                        return null;
-                    }
-                    return value.toString();
-                }
-            });
-
-            String partition = new PartitionName(tableName, partitionedByValues).stringValue();
+        if (partitionValues.length > 0) {
+            String partition = new PartitionName(tableName, Arrays.asList(partitionValues)).stringValue();
             indexRequest.index(partition);
-
         } else {
             indexRequest.index(tableName);
         }
 
         if (includes != null || excludes != null) {
-            assert value instanceof Map;
+            assert source instanceof Map;
             // exclude partitioned columns from source
-            Map<String, Object> sourceAsMap = XContentMapValues.filter((Map) value, includes, excludes);
+            Map<String, Object> sourceAsMap = XContentMapValues.filter((Map) source, includes, excludes);
             indexRequest.source(sourceAsMap);
         } else {
-            assert value instanceof BytesRef;
-            indexRequest.source(((BytesRef) value).bytes);
+            assert source instanceof BytesRef;
+            BytesRef bytesRef = (BytesRef) source;
+            indexRequest.source(bytesRef.bytes, bytesRef.offset, bytesRef.length);
         }
 
-        List<String> primaryKeyValues = Lists.transform(idInputs, new Function<Input<?>, String>() {
-            @Override
-            public String apply(Input<?> input) {
-                if (input.value() == null)
-                    return null;
-                return input.value().toString();
-            }
-        });
-
-        Object routing = routingInput.value();
         String clusteredBy = null;
         if (routing != null) {
             clusteredBy = routing.toString();
             indexRequest.routing(clusteredBy);
         }
-        Id id = new Id(primaryKeys, primaryKeyValues, clusteredBy, true);
+        Id id = new Id(primaryKeys, Arrays.asList(primaryKeyValues), clusteredBy, true);
         indexRequest.id(id.stringValue());
         return indexRequest;
     }
@@ -221,6 +230,7 @@ public class IndexWriterProjector implements Projector {
         final AtomicBoolean allRowsAdded;
         final AtomicReference<Throwable> failure = new AtomicReference<>();
         final AtomicLong rowsImported = new AtomicLong(0);
+        final AtomicBoolean finished = new AtomicBoolean(false);
         Projector downstream;
 
         Listener() {
@@ -251,13 +261,24 @@ public class IndexWriterProjector implements Projector {
             }
 
             if (inProgress.decrementAndGet() == 0 && allRowsAdded.get() && downstream != null) {
-                Throwable throwable = failure.get();
-                if (throwable != null) {
-                    downstream.upstreamFailed(throwable);
-                } else {
-                    downstream.setNextRow(rowsImported.get());
-                    downstream.upstreamFinished();
-                }
+                finish();
+            }
+        }
+
+        /**
+         * called by either the last upstream or the last bulk response, whichever comes last,
+         * but might be called by both if they race.
+         */
+        void finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            Throwable throwable = failure.get();
+            if (throwable != null) {
+                downstream.upstreamFailed(throwable);
+            } else {
+                downstream.setNextRow(rowsImported.get());
+                downstream.upstreamFinished();
             }
         }
 
@@ -265,8 +286,44 @@ public class IndexWriterProjector implements Projector {
         public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
             this.failure.set(failure);
             if (inProgress.decrementAndGet() == 0 && allRowsAdded.get() && downstream != null) {
-                downstream.setNextRow(rowsImported.get());
-                downstream.upstreamFailed(failure);
+                finish();
+            }
+        }
+    }
+
+    /**
+     * the inputs of one upstream, evaluated for every row it feeds into the projector.
+     */
+    public static class RowInputs {
+
+        /**
+         * creates a new set of inputs with its own expressions on every call
+         */
+        public interface Factory {
+            RowInputs create();
+        }
+
+        private final List<Input<?>> idInputs;
+        private final List<Input<?>> partitionedByInputs;
+        private final Input<?> routingInput;
+        private final Input<?> sourceInput;
+        private final CollectExpression<?>[] collectExpressions;
+
+        public RowInputs(List<Input<?>> idInputs,
+                         List<Input<?>> partitionedByInputs,
+                         Input<?> routingInput,
+                         Input<?> sourceInput,
+                         CollectExpression<?>[] collectExpressions) {
+            this.idInputs = idInputs;
+            this.partitionedByInputs = partitionedByInputs;
+            this.routingInput = routingInput;
+            this.sourceInput = sourceInput;
+            this.collectExpressions = collectExpressions;
+        }
+
+        void setNextRow(Object[] row) {
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
             }
         }
     }
@@ -0,0 +1,39 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import io.crate.operation.batch.OrdinalColumnVector;
+
+/**
+ * a {@link BatchProjector} which is able to work on the ordinals of string columns.
+ *
+ * Upstreams may send the accepted columns as {@link OrdinalColumnVector}s,
+ * as long as all ordinals sent to this projector come from the same lookup.
+ */
+public interface OrdinalBatchProjector extends BatchProjector {
+
+    /**
+     * @return true if the values of the given column may be sent as ordinals
+     */
+    public boolean acceptsOrdinals(int column);
+}
@@ -26,37 +26,119 @@ import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.files.FileReadingCollector;
+import io.crate.operation.fileformat.Compression;
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.writer.S3Uploads;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.projection.*;
-import io.crate.planner.symbol.Aggregation;
-import io.crate.planner.symbol.StringLiteral;
-import io.crate.planner.symbol.StringValueSymbolVisitor;
-import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.*;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.common.util.BigArrays;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projector> {
 
     private final ImplementationSymbolVisitor symbolVisitor;
     private final EvaluatingNormalizer normalizer;
     private final Provider<Client> clientProvider;
+    private final ClusterService clusterService;
+    private final BigArrays bigArrays;
+    private final GroupByMemory groupByMemory;
+    private final S3Uploads s3Uploads;
 
     public Projector process(Projection projection) {
         return process(projection, null);
     }
 
-    public ProjectionToProjectorVisitor(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor,
-            EvaluatingNormalizer normalizer) {
+    /**
+     * builds a visitor for the given client and symbol visitor,
+     * the other arguments default to the ones for the node/handler level.
+     */
+    public static Builder builder(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor) {
+        return new Builder(clientProvider, symbolVisitor);
+    }
+
+    public static class Builder {
+        private final Provider<Client> clientProvider;
+        private final ImplementationSymbolVisitor symbolVisitor;
+        private ClusterService clusterService;
+        private EvaluatingNormalizer normalizer;
+        private BigArrays bigArrays = BigArrays.NON_RECYCLING_INSTANCE;
+        private GroupByMemory groupByMemory = GroupByMemory.UNLIMITED;
+        private S3Uploads s3Uploads;
+
+        private Builder(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor) {
+            this.clientProvider = clientProvider;
+            this.symbolVisitor = symbolVisitor;
+        }
+
+        public Builder clusterService(ClusterService clusterService) {
+            this.clusterService = clusterService;
+            return this;
+        }
+
+        public Builder normalizer(EvaluatingNormalizer normalizer) {
+            this.normalizer = normalizer;
+            return this;
+        }
+
+        public Builder bigArrays(BigArrays bigArrays) {
+            this.bigArrays = bigArrays;
+            return this;
+        }
+
+        public Builder groupByMemory(GroupByMemory groupByMemory) {
+            this.groupByMemory = groupByMemory;
+            return this;
+        }
+
+        public Builder s3Uploads(S3Uploads s3Uploads) {
+            this.s3Uploads = s3Uploads;
+            return this;
+        }
+
+        public ProjectionToProjectorVisitor build() {
+            EvaluatingNormalizer normalizer = this.normalizer;
+            if (normalizer == null) {
+                normalizer = new EvaluatingNormalizer(
+                        symbolVisitor.functions(), symbolVisitor.rowGranularity(), symbolVisitor.referenceResolver());
+            }
+            return new ProjectionToProjectorVisitor(clientProvider, clusterService, symbolVisitor, normalizer,
+                    bigArrays, groupByMemory, s3Uploads);
+        }
+    }
+
+    public ProjectionToProjectorVisitor(Provider<Client> clientProvider, @Nullable ClusterService clusterService,
+            ImplementationSymbolVisitor symbolVisitor, EvaluatingNormalizer normalizer, BigArrays bigArrays,
+            GroupByMemory groupByMemory, @Nullable S3Uploads s3Uploads) {
         this.clientProvider = clientProvider;
+        this.clusterService = clusterService;
         this.symbolVisitor = symbolVisitor;
         this.normalizer = normalizer;
+        this.bigArrays = bigArrays;
+        this.groupByMemory = groupByMemory;
+        this.s3Uploads = s3Uploads;
     }
 
-    public ProjectionToProjectorVisitor(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor) {
-        this(clientProvider, symbolVisitor, new EvaluatingNormalizer(
-                symbolVisitor.functions(), symbolVisitor.rowGranularity(), symbolVisitor.referenceResolver()));
+    public GroupByMemory groupByMemory() {
+        return groupByMemory;
+    }
+
+    /**
+     * @return a visitor creating the same projectors as this one,
+     * whose grouping projectors account their memory on the given <code>groupByMemory</code>
+     */
+    public ProjectionToProjectorVisitor withGroupByMemory(GroupByMemory groupByMemory) {
+        return new ProjectionToProjectorVisitor(clientProvider, clusterService, symbolVisitor, normalizer,
+                bigArrays, groupByMemory, s3Uploads);
     }
 
     @Override
@@ -114,14 +196,73 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
         for (Aggregation aggregation : projection.values()) {
             symbolVisitor.process(aggregation, symbolContext);
         }
+        // shard level projectors are fed by a single shard collector
+        boolean shardLevel = projection.requiredGranularity() == RowGranularity.SHARD;
         Projector groupProjector = new GroupingProjector(
                 keyInputs,
                 ImmutableList.copyOf(symbolContext.collectExpressions()),
-                symbolContext.aggregations()
+                symbolContext.aggregations(),
+                bigArrays,
+                groupByMemory,
+                !shardLevel,
+                shardLevel ? ordinalKeyColumns(projection) : null
         );
         return groupProjector;
     }
 
+    /**
+     * keys which are plain input columns may be grouped by their ordinals
+     * if no aggregation and no other key reads the same column.
+     */
+    private static int[] ordinalKeyColumns(GroupProjection projection) {
+        Set<Integer> usedColumns = new HashSet<>();
+        for (Symbol key : projection.keys()) {
+            if (!(key instanceof InputColumn)) {
+                InputColumnCollector.INSTANCE.process(key, usedColumns);
+            }
+        }
+        for (Aggregation aggregation : projection.values()) {
+            InputColumnCollector.INSTANCE.process(aggregation, usedColumns);
+        }
+        int[] ordinalKeyColumns = new int[projection.keys().size()];
+        for (int i = 0; i < ordinalKeyColumns.length; i++) {
+            Symbol key = projection.keys().get(i);
+            if (key instanceof InputColumn && !usedColumns.contains(((InputColumn) key).index())) {
+                ordinalKeyColumns[i] = ((InputColumn) key).index();
+            } else {
+                ordinalKeyColumns[i] = -1;
+            }
+        }
+        return ordinalKeyColumns;
+    }
+
+    private static class InputColumnCollector extends SymbolVisitor<Set<Integer>, Void> {
+
+        static final InputColumnCollector INSTANCE = new InputColumnCollector();
+
+        @Override
+        public Void visitInputColumn(InputColumn inputColumn, Set<Integer> context) {
+            context.add(inputColumn.index());
+            return null;
+        }
+
+        @Override
+        public Void visitFunction(Function symbol, Set<Integer> context) {
+            for (Symbol argument : symbol.arguments()) {
+                process(argument, context);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitAggregation(Aggregation symbol, Set<Integer> context) {
+            for (Symbol input : symbol.inputs()) {
+                process(input, context);
+            }
+            return null;
+        }
+    }
+
     @Override
     public Projector visitAggregationProjection(AggregationProjection projection, Void context) {
         ImplementationSymbolVisitor.Context symbolContext = new ImplementationSymbolVisitor.Context();
@@ -147,18 +288,24 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
         }
 
         projection = projection.normalize(normalizer);
-        String uri = StringValueSymbolVisitor.INSTANCE.process(projection.uri());
+        String uri = substituteUriPlaceholders(StringValueSymbolVisitor.INSTANCE.process(projection.uri()));
         if (projection.isDirectoryUri()) {
             StringBuilder sb = new StringBuilder(uri);
             Symbol resolvedFileName = normalizer.normalize(WriterProjection.DIRECTORY_TO_FILENAME);
             assert resolvedFileName instanceof StringLiteral;
             String fileName = StringValueSymbolVisitor.INSTANCE.process(resolvedFileName);
+            FileReadingCollector.FileFormat format =
+                    FileReadingCollector.FileFormat.of(projection.settings().get("format", null));
+            if (format != FileReadingCollector.FileFormat.JSON && fileName.endsWith(".json")) {
+                fileName = fileName.substring(0, fileName.length() - ".json".length()) + "." + format.extension();
+            }
             if (!uri.endsWith("/")) {
                 sb.append("/");
             }
             sb.append(fileName);
-            if (projection.settings().get("compression", "").equalsIgnoreCase("gzip")) {
-                sb.append(".gz");
+            Compression compression = Compression.of(projection.settings().get("compression", null));
+            if (compression != null) {
+                sb.append(".").append(compression.extension());
             }
             uri = sb.toString();
         }
@@ -166,11 +313,55 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
                 uri,
                 projection.settings(),
                 inputs,
-                symbolContext.collectExpressions()
+                symbolContext.collectExpressions(),
+                projection.outputNames(),
+                projection.inputTypes(),
+                s3Uploads
         );
     }
 
-    public Projector visitIndexWriterProjection(IndexWriterProjection projection, Void context) {
+    /**
+     * replace the shard, table and node placeholders of the uri,
+     * so that every shard on every node writes its own file
+     */
+    private String substituteUriPlaceholders(String uri) {
+        if (uri.indexOf('{') < 0) {
+            return uri;
+        }
+        if (uri.contains(WriterProjection.SHARD_ID_PLACEHOLDER)) {
+            uri = uri.replace(WriterProjection.SHARD_ID_PLACEHOLDER,
+                    StringValueSymbolVisitor.INSTANCE.process(normalizer.normalize(WriterProjection.SHARD_ID_REF)));
+        }
+        if (uri.contains(WriterProjection.TABLE_PLACEHOLDER)) {
+            uri = uri.replace(WriterProjection.TABLE_PLACEHOLDER,
+                    StringValueSymbolVisitor.INSTANCE.process(normalizer.normalize(WriterProjection.TABLE_NAME_REF)));
+        }
+        if (clusterService != null && uri.contains(WriterProjection.NODE_PLACEHOLDER)) {
+            uri = uri.replace(WriterProjection.NODE_PLACEHOLDER, clusterService.localNode().id());
+        }
+        return uri;
+    }
+
+    public Projector visitIndexWriterProjection(final IndexWriterProjection projection, Void context) {
+        return new IndexWriterProjector(
+                clientProvider.get(),
+                clusterService,
+                projection.tableName(),
+                projection.primaryKeys(),
+                new IndexWriterProjector.RowInputs.Factory() {
+                    @Override
+                    public IndexWriterProjector.RowInputs create() {
+                        return rowInputs(projection);
+                    }
+                },
+                projection.bulkActions(),
+                projection.concurrency(),
+                projection.includes(),
+                projection.excludes()
+        );
+    }
+
+    private IndexWriterProjector.RowInputs rowInputs(IndexWriterProjection projection) {
         ImplementationSymbolVisitor.Context symbolContext = new ImplementationSymbolVisitor.Context();
         List<Input<?>> idInputs = new ArrayList<>(projection.ids().size());
         for (Symbol idSymbol : projection.ids()) {
@@ -182,19 +373,12 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
         }
         Input<?> sourceInput = symbolVisitor.process(projection.rawSource(), symbolContext);
         Input<?> clusteredBy = symbolVisitor.process(projection.clusteredBy(), symbolContext);
-        return new IndexWriterProjector(
-                clientProvider.get(),
-                projection.tableName(),
-                projection.primaryKeys(),
+        return new IndexWriterProjector.RowInputs(
                 idInputs,
                 partitionedByInputs,
                 clusteredBy,
                 sourceInput,
-                symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()]),
-                projection.bulkActions(),
-                projection.concurrency(),
-                projection.includes(),
-                projection.excludes()
+                symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()])
         );
     }
 }
@@ -0,0 +1,276 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.rest.RestStatus;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk processor which buffers index requests per target shard and sends a bulk request
+ * once the buffer of a shard is full, so every bulk request goes to a single primary.
+ *
+ * Requests are added without a global lock. The number of concurrent bulk requests
+ * starts at the given concurrency and is adapted to the observed bulk latency and rejections.
+ * If the limit is reached the thread which fills up a buffer waits until a bulk request
+ * finished. This is the back-pressure on the upstreams, which would otherwise buffer
+ * more requests than the cluster can index. Waiting threads are released by {@link #kill()}.
+ *
+ * If no {@link ClusterService} is given or the target index doesn't exist yet
+ * (e.g. a new partition) the requests are buffered per index.
+ */
+public class ShardingBulkProcessor {
+
+    private final Client client;
+    private final ClusterService clusterService;
+    private final BulkProcessor.Listener listener;
+    private final int bulkSize;
+    private final ConcurrencyLimiter limiter;
+    private final ConcurrentMap<Object, ShardBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong executionIdGen = new AtomicLong();
+    private volatile boolean killed = false;
+
+    public ShardingBulkProcessor(Client client,
+                                 @Nullable ClusterService clusterService,
+                                 int bulkSize,
+                                 int concurrency,
+                                 BulkProcessor.Listener listener) {
+        this.client = client;
+        this.clusterService = clusterService;
+        this.bulkSize = bulkSize;
+        this.listener = listener;
+        this.limiter = new ConcurrencyLimiter(Math.max(1, concurrency));
+    }
+
+    public void add(IndexRequest request) {
+        if (killed) {
+            return;
+        }
+        Object key = shardKey(request);
+        ShardBuffer buffer = buffers.get(key);
+        if (buffer == null) {
+            buffer = new ShardBuffer();
+            ShardBuffer existing = buffers.putIfAbsent(key, buffer);
+            if (existing != null) {
+                buffer = existing;
+            }
+        }
+        buffer.add(request);
+    }
+
+    /**
+     * send all buffered requests, doesn't wait for the responses.
+     */
+    public void close() {
+        for (ShardBuffer buffer : buffers.values()) {
+            buffer.flush(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * drop all buffered requests and release the threads waiting to send a bulk request.
+     * Requests which are added afterwards are dropped as well, bulk requests in flight are
+     * still reported to the listener.
+     */
+    public void kill() {
+        killed = true;
+        limiter.kill();
+    }
+
+    /**
+     * the number of bulk requests which may currently be executed concurrently
+     */
+    public int concurrency() {
+        return limiter.limit();
+    }
+
+    private Object shardKey(IndexRequest request) {
+        if (clusterService != null) {
+            try {
+                return clusterService.operationRouting().indexShards(
+                        clusterService.state(),
+                        request.index(),
+                        request.type(),
+                        request.id(),
+                        request.routing()).shardId();
+            } catch (IndexMissingException e) {
+                // index is created by the bulk action
+            }
+        }
+        return request.index();
+    }
+
+    private void execute(final BulkRequest bulkRequest) {
+        final long executionId = executionIdGen.incrementAndGet();
+        try {
+            if (!limiter.acquire()) {
+                // killed, the requests are dropped
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.beforeBulk(executionId, bulkRequest);
+            listener.afterBulk(executionId, bulkRequest, e);
+            return;
+        }
+        listener.beforeBulk(executionId, bulkRequest);
+        final long started = System.nanoTime();
+        try {
+            client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    limiter.release(System.nanoTime() - started, isRejected(response));
+                    listener.afterBulk(executionId, bulkRequest, response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    limiter.release(System.nanoTime() - started,
+                            ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException);
+                    listener.afterBulk(executionId, bulkRequest, e);
+                }
+            });
+        } catch (Throwable t) {
+            limiter.release(System.nanoTime() - started, false);
+            listener.afterBulk(executionId, bulkRequest, t);
+        }
+    }
+
+    static boolean isRejected(BulkResponse response) {
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private class ShardBuffer {
+
+        private final ConcurrentLinkedQueue<IndexRequest> requests = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        void add(IndexRequest request) {
+            requests.add(request);
+            if (size.incrementAndGet() >= bulkSize) {
+                flush(bulkSize);
+            }
+        }
+
+        void flush(int maxRequests) {
+            while (true) {
+                BulkRequest bulkRequest = new BulkRequest();
+                IndexRequest request;
+                int numRequests = 0;
+                while (numRequests < Math.min(maxRequests, bulkSize) && (request = requests.poll()) != null) {
+                    bulkRequest.add(request);
+                    numRequests++;
+                }
+                if (numRequests == 0 || killed) {
+                    return;
+                }
+                size.addAndGet(-numRequests);
+                execute(bulkRequest);
+                if (numRequests >= maxRequests) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Limits the number of concurrent bulk requests.
+     * The limit is halved if a bulk request was rejected, decreased if the latency of a request
+     * exceeds twice the average latency and otherwise increased up to the configured concurrency.
+     */
+    static class ConcurrencyLimiter {
+
+        private final int maxLimit;
+        private int limit;
+        private int inFlight = 0;
+        private double avgLatency = 0;
+        private boolean killed = false;
+
+        ConcurrencyLimiter(int maxLimit) {
+            this.maxLimit = maxLimit;
+            this.limit = maxLimit;
+        }
+
+        /**
+         * waits until another bulk request may be sent.
+         *
+         * @return false if the limiter was killed while or before waiting
+         * @throws InterruptedException if the waiting thread is interrupted
+         */
+        synchronized boolean acquire() throws InterruptedException {
+            while (inFlight >= limit && !killed) {
+                wait();
+            }
+            if (killed) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized void kill() {
+            killed = true;
+            notifyAll();
+        }
+
+        synchronized void release(long latencyNanos, boolean rejected) {
+            inFlight--;
+            if (rejected) {
+                limit = Math.max(1, limit / 2);
+            } else if (avgLatency > 0 && latencyNanos > 2 * avgLatency) {
+                limit = Math.max(1, limit - 1);
+            } else if (limit < maxLimit) {
+                limit++;
+            }
+            avgLatency = avgLatency == 0 ? latencyNanos : avgLatency * 0.8 + latencyNanos * 0.2;
+            notifyAll();
+        }
+
+        synchronized int limit() {
+            return limit;
+        }
+    }
+}
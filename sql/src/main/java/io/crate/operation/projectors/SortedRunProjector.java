@@ -0,0 +1,44 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+/**
+ * a {@link Projector} which can consume a run of rows which is already sorted,
+ * for example the result of a top-n of a single shard or node.
+ *
+ * Upstreams sending a sorted result should check for this interface and
+ * fall back to {@link #setNextRow(Object...)} for other projectors.
+ */
+public interface SortedRunProjector extends Projector {
+
+    /**
+     * feed this projector with a run of rows.
+     * The rows are expected to be in the order of the projector but implementations
+     * must not rely on it.
+     *
+     * This method must be thread safe.
+     *
+     * @return false if this projection does not need any more rows, true otherwise.
+     */
+    public boolean setNextRun(Object[][] rows);
+}
@@ -22,25 +22,39 @@
 package io.crate.operation.projectors;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Ordering;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.Constants;
 import io.crate.core.collections.ArrayIterator;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
+import io.crate.operation.batch.RowBatch;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
 import org.apache.lucene.util.PriorityQueue;
 
-import javax.annotation.Nullable;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class SortingTopNProjector implements Projector, ResultProvider {
-
+/**
+ * gathers the top n rows of all upstreams.
+ * <p/>
+ * Rows are evaluated into a spare array which is only replaced if the queue kept it.
+ * Runs of rows which are already sorted, like the result of a top-n of a single shard,
+ * are merged into one run as soon as they arrive, only its first <code>offset + limit</code> rows are kept.
+ * The merged run is merged with the queue once all upstreams finished.
+ * <p/>
+ * If the inputs are plain columns of the incoming rows, rows of a batch are compared against
+ * the top of the full queue reading the column vectors directly and only rows which enter the queue are materialized.
+ * <p/>
+ * If a downstream is set the result is sent to it as one sorted run.
+ */
+public class SortingTopNProjector implements BatchProjector, SortedRunProjector, ResultProvider {
 
     class RowPriorityQueue extends PriorityQueue<Object[]> {
 
@@ -48,57 +62,31 @@ public class SortingTopNProjector implements Projector, ResultProvider {
             super(maxSize);
         }
 
+        /**
+         * the top of the queue is the row which is dropped first
+         */
         @Override
         protected boolean lessThan(Object[] a, Object[] b) {
-            for (Comparator c : comparators) {
-                int compared = c.compare(a, b);
-                if (compared < 0) return true;
-                if (compared == 0) continue;
-                if (compared > 0) return false;
-            }
-            return false;
-        }
-
-        public Object[] result() {
-            return getHeapArray();
+            return compareRows(a, b) > 0;
         }
     }
 
-    class ColOrdering extends Ordering<Object[]> {
-
-        private final int col;
-        private final Ordering<Comparable> ordering;
-
-        ColOrdering(int col, boolean reverse) {
-            this.col = col;
-
-            // note, that we are reverse for the queue so this conditional is by intent
-            if (reverse) {
-                ordering = Ordering.natural().nullsLast();
-            } else {
-                ordering = Ordering.natural().reverse().nullsFirst();
-            }
-        }
-
-        @Override
-        public int compare(@Nullable Object[] left, @Nullable Object[] right) {
-            Comparable l = left != null ? (Comparable) left[col] : null;
-            Comparable r = right != null ? (Comparable) right[col] : null;
-            return ordering.compare(l, r);
-        }
-    }
-
-
     private final int offset;
     private final int maxSize;
     private final int numOutputs;
+    private final int[] orderBy;
+    private final boolean[] reverseFlags;
 
     private RowPriorityQueue pq;
-    private final Comparator[] comparators;
+    private Object[][] mergedRuns = new Object[0][];
     private final Input<?>[] inputs;
     private final CollectExpression<?>[] collectExpressions;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final SettableFuture<Object[][]> result = SettableFuture.create();
+    private Projector downstream;
+    private final int[] inputColumns;
+    private Object[] batchRow;
+    private Object[] spare;
 
     /**
      * @param inputs             contains output {@link io.crate.operation.Input}s and orderBy {@link io.crate.operation.Input}s
@@ -116,21 +104,86 @@ public class SortingTopNProjector implements Projector, ResultProvider {
                                 int limit, int offset) {
         Preconditions.checkArgument(limit >= TopN.NO_LIMIT, "invalid limit");
         Preconditions.checkArgument(offset >= 0, "invalid offset");
+        Preconditions.checkArgument(orderBy.length == reverseFlags.length,
+                "reverse flags length does not match orderBy items count");
         this.inputs = inputs;
         this.numOutputs = numOutputs;
         this.collectExpressions = collectExpressions;
         this.offset = offset;
+        this.orderBy = orderBy;
+        this.reverseFlags = reverseFlags;
 
         if (limit == TopN.NO_LIMIT) {
             limit = Constants.DEFAULT_SELECT_LIMIT;
         }
         this.maxSize = this.offset + limit;
-        comparators = new Comparator[orderBy.length];
+        this.inputColumns = inputColumns(inputs);
+    }
+
+    /**
+     * @return the columns of the incoming rows the inputs read or null if an input isn't a plain column
+     */
+    private static int[] inputColumns(Input<?>[] inputs) {
+        int[] inputColumns = new int[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            if (!(inputs[i] instanceof InputCollectExpression)) {
+                return null;
+            }
+            inputColumns[i] = ((InputCollectExpression) inputs[i]).position();
+        }
+        return inputColumns;
+    }
+
+    /**
+     * compares a row of a batch with an evaluated row like {@link #compareRows(Object[], Object[])},
+     * primitive values are compared without boxing. Only used if {@link #inputColumns} is set.
+     */
+    @SuppressWarnings("unchecked")
+    private int compareRow(RowBatch batch, int row, Object[] evaluatedRow) {
         for (int i = 0; i < orderBy.length; i++) {
-            int col = orderBy[i];
-            boolean reverse = reverseFlags[i];
-            comparators[i] = new ColOrdering(col, reverse);
+            ColumnVector column = batch.column(inputColumns[orderBy[i]]);
+            Object right = evaluatedRow[orderBy[i]];
+            int compared;
+            if (column.isNull(row)) {
+                compared = right == null ? 0 : 1;
+            } else if (right == null) {
+                compared = -1;
+            } else if (column instanceof LongColumnVector) {
+                compared = Long.compare(((LongColumnVector) column).getLong(row), ((Number) right).longValue());
+            } else if (column instanceof DoubleColumnVector) {
+                compared = Double.compare(((DoubleColumnVector) column).getDouble(row), ((Number) right).doubleValue());
+            } else {
+                compared = ((Comparable) column.value(row)).compareTo(right);
+            }
+            if (compared != 0) {
+                return reverseFlags[i] ? -compared : compared;
+            }
         }
+        return 0;
+    }
+
+    /**
+     * compares two evaluated rows in the order of the result.
+     * Nulls are sorted last in ascending and first in descending order.
+     */
+    @SuppressWarnings("unchecked")
+    int compareRows(Object[] a, Object[] b) {
+        for (int i = 0; i < orderBy.length; i++) {
+            Comparable left = (Comparable) a[orderBy[i]];
+            Comparable right = (Comparable) b[orderBy[i]];
+            int compared;
+            if (left == null) {
+                compared = right == null ? 0 : 1;
+            } else if (right == null) {
+                compared = -1;
+            } else {
+                compared = left.compareTo(right);
+            }
+            if (compared != 0) {
+                return reverseFlags[i] ? -compared : compared;
+            }
+        }
+        return 0;
     }
 
     @Override
@@ -138,27 +191,100 @@ public class SortingTopNProjector implements Projector, ResultProvider {
         pq = new RowPriorityQueue(maxSize);
         if (remainingUpstreams.get() <= 0) {
             upstreamFinished();
-            return;
         }
     }
 
     @Override
     public synchronized boolean setNextRow(Object... row) {
-        Object[] evaluatedRow = evaluateRow(row);
-        pq.insertWithOverflow(evaluatedRow);
+        if (spare == null) {
+            spare = new Object[inputs.length];
+        }
+        evaluateRow(row, spare);
+        // returns the row which dropped out of the queue or null if nothing dropped out
+        spare = pq.insertWithOverflow(spare);
         return true;
     }
 
+    @Override
+    public synchronized boolean setNextBatch(RowBatch batch) {
+        if (inputColumns == null) {
+            if (batchRow == null || batchRow.length != batch.numColumns()) {
+                batchRow = new Object[batch.numColumns()];
+            }
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                if (spare == null) {
+                    spare = new Object[inputs.length];
+                }
+                evaluateRow(batch.row(i, batchRow), spare);
+                spare = pq.insertWithOverflow(spare);
+            }
+            return true;
+        }
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            // a row sorting after the top of a full queue would drop out immediately
+            if (pq.size() > 0 && pq.size() == maxSize && compareRow(batch, i, pq.top()) > 0) {
+                continue;
+            }
+            if (spare == null) {
+                spare = new Object[inputs.length];
+            }
+            for (int c = 0; c < inputColumns.length; c++) {
+                spare[c] = batch.column(inputColumns[c]).value(i);
+            }
+            spare = pq.insertWithOverflow(spare);
+        }
+        return true;
+    }
+
+    /**
+     * merges the run with the previous runs if it is sorted,
+     * otherwise its rows are added to the queue.
+     */
+    @Override
+    public synchronized boolean setNextRun(Object[][] rows) {
+        if (rows.length == 0) {
+            return true;
+        }
+        if (rows.length > maxSize) {
+            for (Object[] row : rows) {
+                setNextRow(row);
+            }
+            return true;
+        }
+        Object[][] run = new Object[rows.length][];
+        boolean sorted = true;
+        for (int i = 0; i < rows.length; i++) {
+            run[i] = evaluateRow(rows[i], new Object[inputs.length]);
+            if (sorted && i > 0 && compareRows(run[i - 1], run[i]) > 0) {
+                sorted = false;
+            }
+        }
+        if (sorted) {
+            mergedRuns = mergeRuns(mergedRuns, run);
+        } else {
+            for (Object[] evaluatedRow : run) {
+                pq.insertWithOverflow(evaluatedRow);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the number of rows of the sorted runs which are kept for the final merge
+     */
+    synchronized int mergedRunSize() {
+        return mergedRuns.length;
+    }
+
     @Override
     public void registerUpstream(ProjectorUpstream upstream) {
         remainingUpstreams.incrementAndGet();
     }
 
-    private Object[] evaluateRow(Object[] row) {
+    private Object[] evaluateRow(Object[] row, Object[] evaluatedRow) {
         for (CollectExpression<?> collectExpression : collectExpressions) {
             collectExpression.setNextRow(row);
         }
-        Object[] evaluatedRow = new Object[inputs.length];
         int i = 0;
         for (Input<?> input : inputs) {
             evaluatedRow[i++] = input.value();
@@ -169,7 +295,12 @@ public class SortingTopNProjector implements Projector, ResultProvider {
     @Override
     public void upstreamFinished() {
         if (remainingUpstreams.decrementAndGet() <= 0) {
-            generateResult();
+            Object[][] rows;
+            synchronized (this) {
+                rows = generateResult();
+            }
+            result.set(rows);
+            sendToDownstream(rows);
         }
     }
 
@@ -177,17 +308,63 @@ public class SortingTopNProjector implements Projector, ResultProvider {
     public void upstreamFailed(Throwable throwable) {
         if (remainingUpstreams.decrementAndGet() <= 0) {
             result.setException(throwable);
+            if (downstream != null) {
+                downstream.upstreamFailed(throwable);
+            }
         }
     }
 
-    private void generateResult() {
-        final int resultSize = Math.max(pq.size() - offset, 0);
-        Object[][] rows = new Object[resultSize][];
-        for (int i = resultSize - 1; i >= 0; i--) {
-            rows[i] = Arrays.copyOfRange(pq.pop(), 0, numOutputs); // strip order by inputs
+    /**
+     * merges the sorted queue with the merged runs, only the first <code>offset + limit</code> rows are kept
+     */
+    private Object[][] generateResult() {
+        Object[][] queued = new Object[pq.size()][];
+        for (int i = queued.length - 1; i >= 0; i--) {
+            queued[i] = pq.pop();
         }
-        result.set(rows);
         pq.clear();
+        Object[][] merged = mergeRuns(mergedRuns, queued);
+        mergedRuns = new Object[0][];
+
+        final int resultSize = Math.max(merged.length - offset, 0);
+        Object[][] rows = new Object[resultSize][];
+        for (int i = 0; i < resultSize; i++) {
+            rows[i] = Arrays.copyOfRange(merged[offset + i], 0, numOutputs); // strip order by inputs
+        }
+        return rows;
+    }
+
+    /**
+     * merges two sorted runs, only the first <code>offset + limit</code> rows are kept
+     */
+    private Object[][] mergeRuns(Object[][] a, Object[][] b) {
+        Object[][] merged = new Object[Math.min(a.length + b.length, maxSize)][];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            if (j >= b.length || (i < a.length && compareRows(a[i], b[j]) <= 0)) {
+                merged[k] = a[i++];
+            } else {
+                merged[k] = b[j++];
+            }
+        }
+        return merged;
+    }
+
+    private void sendToDownstream(Object[][] rows) {
+        if (downstream == null) {
+            return;
+        }
+        if (downstream instanceof SortedRunProjector) {
+            ((SortedRunProjector) downstream).setNextRun(rows);
+        } else {
+            for (Object[] row : rows) {
+                if (!downstream.setNextRow(row)) {
+                    break;
+                }
+            }
+        }
+        downstream.upstreamFinished();
     }
 
     @Override
@@ -209,12 +386,12 @@ public class SortingTopNProjector implements Projector, ResultProvider {
 
     @Override
     public void downstream(Projector downstream) {
-        throw new UnsupportedOperationException(
-                "SortingTopNProjector is a ResultProvider. Doesn't support downstreams");
+        this.downstream = downstream;
+        downstream.registerUpstream(this);
     }
 
     @Override
     public Projector downstream() {
-        return null;
+        return downstream;
     }
 }
@@ -21,14 +21,19 @@
 
 package io.crate.operation.projectors;
 
+import io.crate.DataType;
 import io.crate.exceptions.CrateException;
 import io.crate.exceptions.UnsupportedFeatureException;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.files.FileReadingCollector;
+import io.crate.operation.fileformat.BinaryRowFormat;
+import io.crate.operation.fileformat.CsvFormat;
 import io.crate.operation.projectors.writer.Output;
 import io.crate.operation.projectors.writer.OutputFile;
 import io.crate.operation.projectors.writer.OutputS3;
+import io.crate.operation.projectors.writer.S3Uploads;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -39,6 +44,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -52,6 +59,9 @@ public class WriterProjector implements Projector {
     private final URI uri;
     private final Set<CollectExpression<?>> collectExpressions;
     private final List<Input<?>> inputs;
+    private final FileReadingCollector.FileFormat format;
+    private final List<String> outputNames;
+    private final List<DataType> outputTypes;
     private Output output;
 
     protected final AtomicInteger remainingUpstreams = new AtomicInteger();
@@ -73,8 +83,30 @@ public class WriterProjector implements Projector {
                            Settings settings,
                            @Nullable List<Input<?>> inputs,
                            Set<CollectExpression<?>> collectExpressions) {
+        this(uri, settings, inputs, collectExpressions, null, null, null);
+    }
+
+    /**
+     * @param outputNames the column names of the inputs, written as header of CSV and binary files
+     * @param outputTypes the types of the inputs, used to write binary files
+     * @param s3Uploads the node wide upload resources, required to write to S3
+     */
+    public WriterProjector(String uri,
+                           Settings settings,
+                           @Nullable List<Input<?>> inputs,
+                           Set<CollectExpression<?>> collectExpressions,
+                           @Nullable List<String> outputNames,
+                           @Nullable List<DataType> outputTypes,
+                           @Nullable S3Uploads s3Uploads) {
         this.collectExpressions = collectExpressions;
         this.inputs = inputs;
+        this.format = FileReadingCollector.FileFormat.of(settings.get("format", null));
+        if (format != FileReadingCollector.FileFormat.JSON && (inputs == null || inputs.isEmpty())) {
+            throw new IllegalArgumentException(
+                    String.format("Columns are required to write the %s format", format.name().toLowerCase()));
+        }
+        this.outputNames = outputNames;
+        this.outputTypes = outputTypes;
         try {
             this.uri = new URI(uri);
         } catch (URISyntaxException e) {
@@ -83,7 +115,10 @@ public class WriterProjector implements Projector {
         if (this.uri.getScheme() == null || this.uri.getScheme().equals("file")) {
             this.output = new OutputFile(this.uri, settings);
         } else if (this.uri.getScheme().equalsIgnoreCase("s3")) {
-            this.output = new OutputS3(this.uri, settings);
+            if (s3Uploads == null) {
+                throw new UnsupportedFeatureException("Writing to S3 is not supported on this node");
+            }
+            this.output = new OutputS3(this.uri, settings, s3Uploads);
         } else {
             throw new UnsupportedFeatureException(String.format("Unknown scheme '%s'", this.uri.getScheme()));
         }
@@ -94,7 +129,13 @@ public class WriterProjector implements Projector {
         counter.set(0);
         try {
             output.open();
-            if (inputs != null && !inputs.isEmpty()) {
+            if (format == FileReadingCollector.FileFormat.CSV) {
+                rowWriter = new CsvRowWriter(output.getOutputStream(), collectExpressions, inputs,
+                        columnNames(), failure);
+            } else if (format == FileReadingCollector.FileFormat.BINARY) {
+                rowWriter = new BinaryRowWriter(output.getOutputStream(), collectExpressions, inputs,
+                        columnNames(), columnTypes(), failure);
+            } else if (inputs != null && !inputs.isEmpty()) {
                 rowWriter = new ColumnRowWriter(output.getOutputStream(), collectExpressions, inputs, failure);
             } else {
                 rowWriter = new RawRowWriter(output.getOutputStream(), failure);
@@ -104,6 +145,29 @@ public class WriterProjector implements Projector {
         }
     }
 
+    private List<String> columnNames() {
+        if (outputNames != null && outputNames.size() == inputs.size()) {
+            return outputNames;
+        }
+        List<String> names = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            names.add("col" + i);
+        }
+        return names;
+    }
+
+    private List<DataType> columnTypes() {
+        if (outputTypes != null && outputTypes.size() == inputs.size()) {
+            return outputTypes;
+        }
+        // written as generic values
+        List<DataType> types = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            types.add(null);
+        }
+        return types;
+    }
+
     private void endProjection() {
         try {
             if (rowWriter != null) {
@@ -235,4 +299,94 @@ public class WriterProjector implements Projector {
             builder.close();
         }
     }
+
+    class CsvRowWriter implements RowWriter {
+        private final Set<CollectExpression<?>> collectExpressions;
+        private final List<Input<?>> inputs;
+        private final AtomicReference<Throwable> failure;
+        private final OutputStream outputStream;
+        private final StringBuilder sb = new StringBuilder();
+        private final Object[] values;
+
+        CsvRowWriter(OutputStream outputStream,
+                     Set<CollectExpression<?>> collectExpressions,
+                     List<Input<?>> inputs,
+                     List<String> columnNames,
+                     AtomicReference<Throwable> failure) throws IOException {
+            this.outputStream = outputStream;
+            this.collectExpressions = collectExpressions;
+            this.inputs = inputs;
+            this.failure = failure;
+            this.values = new Object[inputs.size()];
+            writeRecord(columnNames.toArray());
+        }
+
+        public void write(Object[] row) {
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = inputs.get(i).value();
+            }
+            try {
+                writeRecord(values);
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+
+        private void writeRecord(Object[] record) throws IOException {
+            sb.setLength(0);
+            CsvFormat.appendRecord(sb, record);
+            outputStream.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    class BinaryRowWriter implements RowWriter {
+        private final Set<CollectExpression<?>> collectExpressions;
+        private final List<Input<?>> inputs;
+        private final AtomicReference<Throwable> failure;
+        private final BinaryRowFormat.Writer writer;
+        private final Object[] values;
+
+        BinaryRowWriter(OutputStream outputStream,
+                        Set<CollectExpression<?>> collectExpressions,
+                        List<Input<?>> inputs,
+                        List<String> columnNames,
+                        List<DataType> columnTypes,
+                        AtomicReference<Throwable> failure) throws IOException {
+            this.collectExpressions = collectExpressions;
+            this.inputs = inputs;
+            this.failure = failure;
+            this.values = new Object[inputs.size()];
+            this.writer = new BinaryRowFormat.Writer(outputStream, columnNames, columnTypes);
+        }
+
+        public void write(Object[] row) {
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = inputs.get(i).value();
+            }
+            try {
+                writer.write(values);
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.finish();
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.core.MurmurHash3;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+
+/**
+ * open addressing hash table (linear probing) which maps byte sequences to dense ids.
+ *
+ * The bytes of all keys are appended to one shared arena, so adding a key never allocates
+ * an object per key. ids are assigned in insertion order starting with 0.
+ * All arrays are allocated by {@link BigArrays}.
+ */
+public class BytesRefKeyHash implements Releasable {
+
+    private final BigArrays bigArrays;
+
+    // key bytes of all ids, back to back
+    private ByteArray arena;
+    // id -> start offset in the arena, the key of id ends at the start offset of id + 1
+    private LongArray offsets;
+    // id -> hash of the key
+    private IntArray hashes;
+    // slot -> id + 1, 0 marks an empty slot
+    private LongArray slots;
+    private long mask;
+    private long maxEntries;
+    private long entries;
+    private long size;
+
+    private final BytesRef spare = new BytesRef();
+
+    public BytesRefKeyHash(long expectedSize, BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        long numSlots = LongKeyHash.numSlots(expectedSize);
+        this.slots = bigArrays.newLongArray(numSlots);
+        this.offsets = bigArrays.newLongArray(Math.max(expectedSize, 1) + 1, false);
+        this.offsets.set(0, 0);
+        this.hashes = bigArrays.newIntArray(Math.max(expectedSize, 1), false);
+        this.arena = bigArrays.newByteArray(Math.max(expectedSize, 1) * 8, false);
+        this.mask = numSlots - 1;
+        this.maxEntries = (long) (numSlots * LongKeyHash.MAX_LOAD_FACTOR);
+    }
+
+    public static int hash(BytesRef key) {
+        return StringHelper.murmurhash3_x86_32(key, 0);
+    }
+
+    public long add(BytesRef key) {
+        return add(key, hash(key));
+    }
+
+    /**
+     * add a key to the hash
+     *
+     * @param key the key, its bytes are copied into the arena if the key is new
+     * @param hash the hash of the key as computed by {@link #hash(org.apache.lucene.util.BytesRef)}
+     * @return the id of the key if it was added, <code>-1 - id</code> if the key already existed
+     */
+    public long add(BytesRef key, int hash) {
+        long slot = MurmurHash3.fmix64(hash) & mask;
+        while (true) {
+            long slotValue = slots.get(slot);
+            if (slotValue == 0) {
+                long id = append(key);
+                hashes.set(id, hash);
+                slots.set(slot, id + 1);
+                entries++;
+                if (entries > maxEntries) {
+                    rehash();
+                }
+                return id;
+            }
+            long id = slotValue - 1;
+            if (hashes.get(id) == hash && get(id, spare).bytesEquals(key)) {
+                return -1 - id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * reserve an id which is not associated with any key.
+     * Used for keys which can't be represented as bytes, like <code>null</code>.
+     */
+    public long reserveId() {
+        return append(null);
+    }
+
+    /**
+     * read the key of the given id.
+     *
+     * @param dest the BytesRef to fill, it might point into the arena afterwards
+     *             so it must be copied before being handed out.
+     */
+    public BytesRef get(long id, BytesRef dest) {
+        assert id >= 0 && id < size : "invalid id";
+        long start = offsets.get(id);
+        arena.get(start, (int) (offsets.get(id + 1) - start), dest);
+        return dest;
+    }
+
+    /**
+     * @return the number of ids handed out, including reserved ids.
+     */
+    public long size() {
+        return size;
+    }
+
+    private long append(BytesRef key) {
+        long id = size++;
+        long start = offsets.get(id);
+        long end = start;
+        if (key != null) {
+            end += key.length;
+            arena = bigArrays.grow(arena, end);
+            arena.set(start, key.bytes, key.offset, key.length);
+        }
+        offsets = bigArrays.grow(offsets, size + 1);
+        offsets.set(size, end);
+        hashes = bigArrays.grow(hashes, size);
+        return id;
+    }
+
+    private void rehash() {
+        long numSlots = (mask + 1) << 1;
+        LongArray newSlots = bigArrays.newLongArray(numSlots);
+        long newMask = numSlots - 1;
+        for (long i = 0; i <= mask; i++) {
+            long slotValue = slots.get(i);
+            if (slotValue == 0) {
+                continue;
+            }
+            long slot = MurmurHash3.fmix64(hashes.get(slotValue - 1)) & newMask;
+            while (newSlots.get(slot) != 0) {
+                slot = (slot + 1) & newMask;
+            }
+            newSlots.set(slot, slotValue);
+        }
+        slots.release();
+        slots = newSlots;
+        mask = newMask;
+        maxEntries = (long) (numSlots * LongKeyHash.MAX_LOAD_FACTOR);
+    }
+
+    @Override
+    public boolean release() throws ElasticsearchException {
+        try {
+            slots.release();
+            hashes.release();
+            offsets.release();
+        } finally {
+            arena.release();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.operation.batch.RowBatch;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.util.BigArrays;
+
+/**
+ * {@link GroupKeyTable} for a single string (or ip) key column.
+ */
+public class BytesRefKeyTable implements GroupKeyTable {
+
+    private final BytesRefKeyHash hash;
+    private final BytesRef spare = new BytesRef();
+    private long nullId = -1;
+
+    BytesRefKeyTable(long expectedSize, BigArrays bigArrays) {
+        this.hash = new BytesRefKeyHash(expectedSize, bigArrays);
+    }
+
+    @Override
+    public long add(Object[] key) {
+        return add(key[0]);
+    }
+
+    @Override
+    public long add(RowBatch batch, int[] keyColumns, int row) {
+        return add(GroupKeyTables.keyValue(batch.column(keyColumns[0]), row));
+    }
+
+    private long add(Object value) {
+        if (value == null) {
+            if (nullId < 0) {
+                nullId = hash.reserveId();
+                return nullId;
+            }
+            return -1 - nullId;
+        }
+        if (!(value instanceof BytesRef)) {
+            return UNSUPPORTED_KEY;
+        }
+        return hash.add((BytesRef) value);
+    }
+
+    @Override
+    public long size() {
+        return hash.size();
+    }
+
+    @Override
+    public void readKey(long id, Object[] row) {
+        if (id == nullId) {
+            row[0] = null;
+        } else {
+            row[0] = BytesRef.deepCopyOf(hash.get(id, spare));
+        }
+    }
+
+    @Override
+    public boolean release() throws ElasticsearchException {
+        return hash.release();
+    }
+}
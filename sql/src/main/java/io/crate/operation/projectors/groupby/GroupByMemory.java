@@ -0,0 +1,141 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.fielddata.breaker.CircuitBreakerService;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * memory accounting of the grouping projectors of a node.
+ *
+ * The grouping projectors of a query on a node share one instance created by {@link #newQuery()}
+ * and may use up to <code>crate.group_by.memory_budget</code> bytes together
+ * before they spill their groups to files in <code>crate.group_by.spill_path</code>.
+ * Additionally the memory is accounted on the circuit breaker of the node, if the breaker
+ * would trip the groups are spilled too, or the query fails if its groups can't be spilled.
+ */
+public class GroupByMemory {
+
+    public static final String SETTING_MEMORY_BUDGET = "crate.group_by.memory_budget";
+    public static final String SETTING_SPILL_PATH = "crate.group_by.spill_path";
+
+    /**
+     * no budget, no circuit breaker and no spilling
+     */
+    public static final GroupByMemory UNLIMITED = new GroupByMemory(Long.MAX_VALUE, null, null);
+
+    private final long budgetBytes;
+    private final File spillPath;
+    private final MemoryCircuitBreaker breaker;
+    private final AtomicLong usedBytes = new AtomicLong(0);
+
+    @Inject
+    public GroupByMemory(Settings settings, CircuitBreakerService circuitBreakerService) {
+        this(
+                settings.getAsBytesSize(SETTING_MEMORY_BUDGET,
+                        new ByteSizeValue(Runtime.getRuntime().maxMemory() / 10)).bytes(),
+                new File(settings.get(SETTING_SPILL_PATH, System.getProperty("java.io.tmpdir"))),
+                circuitBreakerService.getBreaker()
+        );
+    }
+
+    public GroupByMemory(long budgetBytes, @Nullable File spillPath, @Nullable MemoryCircuitBreaker breaker) {
+        this.budgetBytes = budgetBytes;
+        this.spillPath = spillPath;
+        this.breaker = breaker;
+    }
+
+    /**
+     * @return the memory accounting of a new query, sharing the budget, spill path and circuit breaker
+     * of this instance but accounting the used bytes of the query on its own
+     */
+    public GroupByMemory newQuery() {
+        return new GroupByMemory(budgetBytes, spillPath, breaker);
+    }
+
+    public long budgetBytes() {
+        return budgetBytes;
+    }
+
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    public boolean canSpill() {
+        return spillPath != null;
+    }
+
+    /**
+     * @return false if the memory can't be reserved without exceeding the budget or tripping the circuit breaker
+     */
+    public boolean tryReserve(long bytes) {
+        if (bytes > budgetBytes - usedBytes.get()) {
+            return false;
+        }
+        try {
+            reserve(bytes);
+            return true;
+        } catch (CircuitBreakingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * reserve the memory regardless of the budget
+     *
+     * @throws CircuitBreakingException if reserving the memory would trip the circuit breaker
+     */
+    public void reserve(long bytes) throws CircuitBreakingException {
+        if (breaker != null) {
+            breaker.addEstimateBytesAndMaybeBreak(bytes);
+        }
+        usedBytes.addAndGet(bytes);
+    }
+
+    public void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        usedBytes.addAndGet(-bytes);
+        if (breaker != null) {
+            breaker.addWithoutBreaking(-bytes);
+        }
+    }
+
+    public File newSpillFile() throws IOException {
+        assert spillPath != null : "spilling is disabled";
+        if (!spillPath.exists() && !spillPath.mkdirs()) {
+            throw new IOException("could not create spill path " + spillPath.getAbsolutePath());
+        }
+        return File.createTempFile("group-by-", ".spill", spillPath);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.operation.batch.RowBatch;
+import org.elasticsearch.common.lease.Releasable;
+
+/**
+ * maps group keys to dense group ids, which are assigned in insertion order starting with 0.
+ *
+ * Implementations are not thread safe.
+ */
+public interface GroupKeyTable extends Releasable {
+
+    /**
+     * returned by {@link #add(Object[])} if the key can't be stored in this table.
+     * The caller should switch to a more general table, see {@link GroupKeyTables#toObjectKeyTable(GroupKeyTable, int)}
+     */
+    public static final long UNSUPPORTED_KEY = Long.MIN_VALUE;
+
+    /**
+     * add a key to the table
+     *
+     * @param key the values of the key columns, the array may be reused by the caller
+     * @return the id of the group if the key is new, <code>-1 - id</code> if it already existed or
+     *         {@link #UNSUPPORTED_KEY}
+     */
+    public long add(Object[] key);
+
+    /**
+     * add the key of a row of a batch, reading the key values from the column vectors without boxing
+     * primitive values where possible. Ordinal columns contribute their ordinal,
+     * see {@link GroupKeyTables#keyValue(io.crate.operation.batch.ColumnVector, int)}.
+     *
+     * @param keyColumns the columns of the batch holding the key values
+     * @return the same as {@link #add(Object[])}
+     */
+    public long add(RowBatch batch, int[] keyColumns, int row);
+
+    /**
+     * @return the number of groups
+     */
+    public long size();
+
+    /**
+     * write the key values of a group into the first columns of a row
+     */
+    public void readKey(long id, Object[] row);
+}
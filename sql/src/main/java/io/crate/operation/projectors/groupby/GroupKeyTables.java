@@ -0,0 +1,100 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
+import io.crate.operation.batch.RowBatch;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+
+/**
+ * creates the {@link GroupKeyTable} fitting best for a group key.
+ *
+ * The projections don't carry the types of the key columns, so the table is chosen
+ * by looking at the first key. If a later key doesn't fit into the chosen table
+ * it is converted with {@link #toObjectKeyTable(GroupKeyTable, int)}.
+ */
+public class GroupKeyTables {
+
+    public static final long DEFAULT_EXPECTED_SIZE = 256;
+
+    public static GroupKeyTable forKey(Object[] firstKey, BigArrays bigArrays) {
+        if (firstKey.length == 1) {
+            Object value = firstKey[0];
+            if (value instanceof BytesRef) {
+                return new BytesRefKeyTable(DEFAULT_EXPECTED_SIZE, bigArrays);
+            }
+            if (value != null) {
+                LongKeyTable.Codec codec = LongKeyTable.Codec.forValue(value);
+                if (codec != null) {
+                    return new LongKeyTable(codec, DEFAULT_EXPECTED_SIZE, bigArrays);
+                }
+                return new ObjectKeyTable(1);
+            }
+        }
+        return new PackedKeyTable(firstKey.length, DEFAULT_EXPECTED_SIZE, bigArrays);
+    }
+
+    /**
+     * @return the key value of a row of a column vector, the ordinal for {@link OrdinalColumnVector}s
+     */
+    public static Object keyValue(ColumnVector column, int row) {
+        if (column.isNull(row)) {
+            return null;
+        }
+        if (column instanceof OrdinalColumnVector) {
+            return ((OrdinalColumnVector) column).getOrd(row);
+        }
+        return column.value(row);
+    }
+
+    /**
+     * read the key values of a row of a batch into <code>key</code>
+     */
+    public static Object[] readKey(RowBatch batch, int[] keyColumns, int row, Object[] key) {
+        for (int i = 0; i < keyColumns.length; i++) {
+            key[i] = keyValue(batch.column(keyColumns[i]), row);
+        }
+        return key;
+    }
+
+    /**
+     * copy all keys of <code>table</code> into a new {@link ObjectKeyTable} and release <code>table</code>.
+     * The group ids are kept.
+     */
+    public static GroupKeyTable toObjectKeyTable(GroupKeyTable table, int numKeys) {
+        ObjectKeyTable objectKeyTable = new ObjectKeyTable(numKeys);
+        Object[] key = new Object[numKeys];
+        try {
+            for (long id = 0; id < table.size(); id++) {
+                table.readKey(id, key);
+                long newId = objectKeyTable.add(key);
+                assert newId == id : "group id changed";
+            }
+        } finally {
+            table.release();
+        }
+        return objectKeyTable;
+    }
+}
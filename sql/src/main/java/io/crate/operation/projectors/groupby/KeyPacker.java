@@ -0,0 +1,258 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.DataType;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
+import io.crate.operation.batch.RowBatch;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * packs the values of a key into one byte sequence.
+ *
+ * Every value is prefixed with a type tag, so the packed key can be unpacked
+ * without knowing the column types upfront. Two keys are equal if their packed keys are equal.
+ */
+class KeyPacker {
+
+    private static final byte NULL = 0;
+    private static final byte BYTE = 1;
+    private static final byte SHORT = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte BYTES_REF = 8;
+
+    private final BytesRef packed = new BytesRef(64);
+
+    /**
+     * @return the packed key which is only valid until the next call
+     *         or null if the key contains a value which can't be packed
+     */
+    @Nullable
+    BytesRef pack(Object[] key, int numKeys) {
+        packed.length = 0;
+        for (int i = 0; i < numKeys; i++) {
+            if (!pack(key[i])) {
+                return null;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * pack the key of a row of a batch, primitive column vectors are read without boxing.
+     * The result is equal to packing the boxed values of the row.
+     *
+     * @return the packed key which is only valid until the next call
+     *         or null if the key contains a value which can't be packed
+     */
+    @Nullable
+    BytesRef pack(RowBatch batch, int[] keyColumns, int row) {
+        packed.length = 0;
+        for (int keyColumn : keyColumns) {
+            ColumnVector column = batch.column(keyColumn);
+            if (column.isNull(row)) {
+                ensureCapacity(1);
+                packed.bytes[packed.length++] = NULL;
+            } else if (column instanceof OrdinalColumnVector) {
+                writeLong(LONG, ((OrdinalColumnVector) column).getOrd(row));
+            } else if (column instanceof LongColumnVector) {
+                LongColumnVector longColumn = (LongColumnVector) column;
+                long value = longColumn.getLong(row);
+                switch (longColumn.type()) {
+                    case BYTE:
+                        ensureCapacity(2);
+                        packed.bytes[packed.length++] = BYTE;
+                        packed.bytes[packed.length++] = (byte) value;
+                        break;
+                    case SHORT:
+                        writeInt(SHORT, (short) value);
+                        break;
+                    case INTEGER:
+                        writeInt(INTEGER, (int) value);
+                        break;
+                    default:
+                        writeLong(LONG, value);
+                }
+            } else if (column instanceof DoubleColumnVector) {
+                DoubleColumnVector doubleColumn = (DoubleColumnVector) column;
+                double value = doubleColumn.getDouble(row);
+                if (doubleColumn.type() == DataType.FLOAT) {
+                    writeInt(FLOAT, Float.floatToIntBits((float) value));
+                } else {
+                    writeLong(DOUBLE, Double.doubleToLongBits(value));
+                }
+            } else if (!pack(column.value(row))) {
+                return null;
+            }
+        }
+        return packed;
+    }
+
+    private boolean pack(Object value) {
+        if (value == null) {
+            ensureCapacity(1);
+            packed.bytes[packed.length++] = NULL;
+        } else if (value instanceof BytesRef) {
+            BytesRef bytesRef = (BytesRef) value;
+            ensureCapacity(5 + bytesRef.length);
+            packed.bytes[packed.length++] = BYTES_REF;
+            writeVInt(bytesRef.length);
+            System.arraycopy(bytesRef.bytes, bytesRef.offset, packed.bytes, packed.length, bytesRef.length);
+            packed.length += bytesRef.length;
+        } else if (value instanceof Long) {
+            writeLong(LONG, (Long) value);
+        } else if (value instanceof Integer) {
+            writeInt(INTEGER, (Integer) value);
+        } else if (value instanceof Double) {
+            writeLong(DOUBLE, Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            writeInt(FLOAT, Float.floatToIntBits((Float) value));
+        } else if (value instanceof Short) {
+            writeInt(SHORT, (Short) value);
+        } else if (value instanceof Byte) {
+            ensureCapacity(2);
+            packed.bytes[packed.length++] = BYTE;
+            packed.bytes[packed.length++] = (Byte) value;
+        } else if (value instanceof Boolean) {
+            ensureCapacity(2);
+            packed.bytes[packed.length++] = BOOLEAN;
+            packed.bytes[packed.length++] = (byte) ((Boolean) value ? 1 : 0);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (packed.bytes.length < packed.length + additional) {
+            packed.bytes = ArrayUtil.grow(packed.bytes, packed.length + additional);
+        }
+    }
+
+    private void writeVInt(int i) {
+        while ((i & ~0x7F) != 0) {
+            packed.bytes[packed.length++] = (byte) ((i & 0x7f) | 0x80);
+            i >>>= 7;
+        }
+        packed.bytes[packed.length++] = (byte) i;
+    }
+
+    private void writeInt(byte tag, int i) {
+        ensureCapacity(5);
+        byte[] bytes = packed.bytes;
+        int pos = packed.length;
+        bytes[pos] = tag;
+        bytes[pos + 1] = (byte) (i >> 24);
+        bytes[pos + 2] = (byte) (i >> 16);
+        bytes[pos + 3] = (byte) (i >> 8);
+        bytes[pos + 4] = (byte) i;
+        packed.length += 5;
+    }
+
+    private void writeLong(byte tag, long l) {
+        ensureCapacity(9);
+        byte[] bytes = packed.bytes;
+        int pos = packed.length;
+        bytes[pos] = tag;
+        for (int shift = 56, i = 1; shift >= 0; shift -= 8, i++) {
+            bytes[pos + i] = (byte) (l >> shift);
+        }
+        packed.length += 9;
+    }
+
+    /**
+     * write the values of a packed key into <code>row</code>
+     */
+    static void unpack(BytesRef key, Object[] row, int numKeys) {
+        byte[] bytes = key.bytes;
+        int pos = key.offset;
+        for (int i = 0; i < numKeys; i++) {
+            byte tag = bytes[pos++];
+            switch (tag) {
+                case NULL:
+                    row[i] = null;
+                    break;
+                case BYTE:
+                    row[i] = bytes[pos++];
+                    break;
+                case BOOLEAN:
+                    row[i] = bytes[pos++] == 1;
+                    break;
+                case SHORT:
+                    row[i] = (short) readInt(bytes, pos);
+                    pos += 4;
+                    break;
+                case INTEGER:
+                    row[i] = readInt(bytes, pos);
+                    pos += 4;
+                    break;
+                case FLOAT:
+                    row[i] = Float.intBitsToFloat(readInt(bytes, pos));
+                    pos += 4;
+                    break;
+                case LONG:
+                    row[i] = readLong(bytes, pos);
+                    pos += 8;
+                    break;
+                case DOUBLE:
+                    row[i] = Double.longBitsToDouble(readLong(bytes, pos));
+                    pos += 8;
+                    break;
+                case BYTES_REF:
+                    int length = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = bytes[pos++];
+                        length |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+                    row[i] = new BytesRef(Arrays.copyOfRange(bytes, pos, pos + length));
+                    pos += length;
+                    break;
+                default:
+                    throw new IllegalStateException("invalid packed key");
+            }
+        }
+    }
+
+    private static int readInt(byte[] bytes, int pos) {
+        return ((bytes[pos] & 0xFF) << 24) | ((bytes[pos + 1] & 0xFF) << 16)
+                | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] bytes, int pos) {
+        return ((long) readInt(bytes, pos) << 32) | (readInt(bytes, pos + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.core.MurmurHash3;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongArray;
+
+/**
+ * open addressing hash table (linear probing) which maps long keys to dense ids.
+ *
+ * ids are assigned in insertion order starting with 0.
+ * Keys and the slot table are stored in pages allocated by {@link BigArrays} so no object is
+ * allocated per key.
+ */
+public class LongKeyHash implements Releasable {
+
+    static final float MAX_LOAD_FACTOR = 0.6f;
+    static final long MIN_SLOTS = 16;
+
+    private final BigArrays bigArrays;
+
+    // id -> key
+    private LongArray keys;
+    // slot -> id + 1, 0 marks an empty slot
+    private LongArray slots;
+    private long mask;
+    private long maxEntries;
+    private long entries;
+    private long size;
+
+    public LongKeyHash(long expectedSize, BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        long numSlots = numSlots(expectedSize);
+        this.slots = bigArrays.newLongArray(numSlots);
+        this.keys = bigArrays.newLongArray(Math.max(expectedSize, 1), false);
+        this.mask = numSlots - 1;
+        this.maxEntries = (long) (numSlots * MAX_LOAD_FACTOR);
+    }
+
+    static long numSlots(long expectedSize) {
+        long numSlots = MIN_SLOTS;
+        while (numSlots * MAX_LOAD_FACTOR < expectedSize) {
+            numSlots <<= 1;
+        }
+        return numSlots;
+    }
+
+    private static long hash(long key) {
+        return MurmurHash3.fmix64(key);
+    }
+
+    /**
+     * add a key to the hash
+     *
+     * @return the id of the key if it was added, <code>-1 - id</code> if the key already existed
+     */
+    public long add(long key) {
+        long slot = hash(key) & mask;
+        while (true) {
+            long slotValue = slots.get(slot);
+            if (slotValue == 0) {
+                long id = nextId();
+                keys.set(id, key);
+                slots.set(slot, id + 1);
+                entries++;
+                if (entries > maxEntries) {
+                    rehash();
+                }
+                return id;
+            }
+            long id = slotValue - 1;
+            if (keys.get(id) == key) {
+                return -1 - id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * reserve an id which is not associated with any key.
+     * Used for keys which can't be represented as long, like <code>null</code>.
+     */
+    public long reserveId() {
+        return nextId();
+    }
+
+    public long key(long id) {
+        assert id >= 0 && id < size : "invalid id";
+        return keys.get(id);
+    }
+
+    /**
+     * @return the number of ids handed out, including reserved ids.
+     */
+    public long size() {
+        return size;
+    }
+
+    private long nextId() {
+        long id = size++;
+        keys = bigArrays.grow(keys, size);
+        return id;
+    }
+
+    private void rehash() {
+        long numSlots = (mask + 1) << 1;
+        LongArray newSlots = bigArrays.newLongArray(numSlots);
+        long newMask = numSlots - 1;
+        for (long i = 0; i <= mask; i++) {
+            long slotValue = slots.get(i);
+            if (slotValue == 0) {
+                continue;
+            }
+            long slot = hash(keys.get(slotValue - 1)) & newMask;
+            while (newSlots.get(slot) != 0) {
+                slot = (slot + 1) & newMask;
+            }
+            newSlots.set(slot, slotValue);
+        }
+        slots.release();
+        slots = newSlots;
+        mask = newMask;
+        maxEntries = (long) (numSlots * MAX_LOAD_FACTOR);
+    }
+
+    @Override
+    public boolean release() throws ElasticsearchException {
+        try {
+            slots.release();
+        } finally {
+            keys.release();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.DataType;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
+import io.crate.operation.batch.RowBatch;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.util.BigArrays;
+
+/**
+ * {@link GroupKeyTable} for a single numeric or boolean key column
+ * whose values are stored as long in a {@link LongKeyHash}.
+ */
+public class LongKeyTable implements GroupKeyTable {
+
+    enum Codec {
+        LONG(Long.class) {
+            @Override
+            long encode(Object value) {
+                return (Long) value;
+            }
+
+            @Override
+            Object decode(long value) {
+                return value;
+            }
+        },
+        INTEGER(Integer.class) {
+            @Override
+            long encode(Object value) {
+                return (Integer) value;
+            }
+
+            @Override
+            Object decode(long value) {
+                return (int) value;
+            }
+        },
+        SHORT(Short.class) {
+            @Override
+            long encode(Object value) {
+                return (Short) value;
+            }
+
+            @Override
+            Object decode(long value) {
+                return (short) value;
+            }
+        },
+        BYTE(Byte.class) {
+            @Override
+            long encode(Object value) {
+                return (Byte) value;
+            }
+
+            @Override
+            Object decode(long value) {
+                return (byte) value;
+            }
+        },
+        DOUBLE(Double.class) {
+            @Override
+            long encode(Object value) {
+                return Double.doubleToLongBits((Double) value);
+            }
+
+            @Override
+            Object decode(long value) {
+                return Double.longBitsToDouble(value);
+            }
+        },
+        FLOAT(Float.class) {
+            @Override
+            long encode(Object value) {
+                return Float.floatToIntBits((Float) value);
+            }
+
+            @Override
+            Object decode(long value) {
+                return Float.intBitsToFloat((int) value);
+            }
+        },
+        BOOLEAN(Boolean.class) {
+            @Override
+            long encode(Object value) {
+                return (Boolean) value ? 1L : 0L;
+            }
+
+            @Override
+            Object decode(long value) {
+                return value == 1L;
+            }
+        };
+
+        private final Class<?> type;
+
+        Codec(Class<?> type) {
+            this.type = type;
+        }
+
+        abstract long encode(Object value);
+        abstract Object decode(long value);
+
+        /**
+         * @return the codec of the values of a primitive column vector of the given type
+         */
+        static Codec forType(DataType type) {
+            switch (type) {
+                case BYTE:
+                    return BYTE;
+                case SHORT:
+                    return SHORT;
+                case INTEGER:
+                    return INTEGER;
+                case LONG:
+                case TIMESTAMP:
+                    return LONG;
+                case FLOAT:
+                    return FLOAT;
+                case DOUBLE:
+                    return DOUBLE;
+                default:
+                    return null;
+            }
+        }
+
+        static Codec forValue(Object value) {
+            for (Codec codec : values()) {
+                if (codec.type == value.getClass()) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Codec codec;
+    private final LongKeyHash hash;
+    private long nullId = -1;
+
+    LongKeyTable(Codec codec, long expectedSize, BigArrays bigArrays) {
+        this.codec = codec;
+        this.hash = new LongKeyHash(expectedSize, bigArrays);
+    }
+
+    @Override
+    public long add(Object[] key) {
+        return add(key[0]);
+    }
+
+    /**
+     * primitive vectors of the type of this table are added without boxing,
+     * the integer codecs encode a value as the long itself.
+     */
+    @Override
+    public long add(RowBatch batch, int[] keyColumns, int row) {
+        ColumnVector column = batch.column(keyColumns[0]);
+        if (column.isNull(row)) {
+            return addNull();
+        }
+        if (column instanceof OrdinalColumnVector) {
+            if (codec != Codec.LONG) {
+                return UNSUPPORTED_KEY;
+            }
+            return hash.add(((OrdinalColumnVector) column).getOrd(row));
+        } else if (column instanceof LongColumnVector) {
+            LongColumnVector longColumn = (LongColumnVector) column;
+            if (Codec.forType(longColumn.type()) == codec) {
+                return hash.add(longColumn.getLong(row));
+            }
+        } else if (column instanceof DoubleColumnVector) {
+            DoubleColumnVector doubleColumn = (DoubleColumnVector) column;
+            if (Codec.forType(doubleColumn.type()) == codec) {
+                double value = doubleColumn.getDouble(row);
+                if (codec == Codec.FLOAT) {
+                    return hash.add(Float.floatToIntBits((float) value));
+                }
+                return hash.add(Double.doubleToLongBits(value));
+            }
+        }
+        return add(GroupKeyTables.keyValue(column, row));
+    }
+
+    private long add(Object value) {
+        if (value == null) {
+            return addNull();
+        }
+        if (value.getClass() != codec.type) {
+            return UNSUPPORTED_KEY;
+        }
+        return hash.add(codec.encode(value));
+    }
+
+    private long addNull() {
+        if (nullId < 0) {
+            nullId = hash.reserveId();
+            return nullId;
+        }
+        return -1 - nullId;
+    }
+
+    @Override
+    public long size() {
+        return hash.size();
+    }
+
+    @Override
+    public void readKey(long id, Object[] row) {
+        if (id == nullId) {
+            row[0] = null;
+        } else {
+            row[0] = codec.decode(hash.key(id));
+        }
+    }
+
+    @Override
+    public boolean release() throws ElasticsearchException {
+        return hash.release();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.operation.batch.RowBatch;
+import org.elasticsearch.ElasticsearchException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link GroupKeyTable} based on a {@link HashMap}, supports keys of any type.
+ *
+ * Used for keys which the specialized tables can't store, like objects or arrays.
+ */
+public class ObjectKeyTable implements GroupKeyTable {
+
+    private final int numKeys;
+    private final Map<Object, Long> ids = new HashMap<>();
+    private final List<Object> keys = new ArrayList<>();
+    private final Object[] spareKey;
+
+    ObjectKeyTable(int numKeys) {
+        this.numKeys = numKeys;
+        this.spareKey = new Object[numKeys];
+    }
+
+    @Override
+    public long add(RowBatch batch, int[] keyColumns, int row) {
+        return add(GroupKeyTables.readKey(batch, keyColumns, row, spareKey));
+    }
+
+    @Override
+    public long add(Object[] key) {
+        Object mapKey;
+        if (numKeys == 1) {
+            mapKey = key[0];
+        } else {
+            mapKey = Arrays.asList(Arrays.copyOf(key, numKeys));
+        }
+        Long id = ids.get(mapKey);
+        if (id != null) {
+            return -1 - id;
+        }
+        long newId = keys.size();
+        ids.put(mapKey, newId);
+        keys.add(mapKey);
+        return newId;
+    }
+
+    @Override
+    public long size() {
+        return keys.size();
+    }
+
+    @Override
+    public void readKey(long id, Object[] row) {
+        Object key = keys.get((int) id);
+        if (numKeys == 1) {
+            row[0] = key;
+        } else {
+            List<?> values = (List<?>) key;
+            for (int i = 0; i < numKeys; i++) {
+                row[i] = values.get(i);
+            }
+        }
+    }
+
+    @Override
+    public boolean release() throws ElasticsearchException {
+        ids.clear();
+        keys.clear();
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.operation.batch.RowBatch;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.util.BigArrays;
+
+/**
+ * {@link GroupKeyTable} for keys consisting of many columns.
+ *
+ * All key values of a row are packed into one byte sequence by a {@link KeyPacker}
+ * which is stored in a {@link BytesRefKeyHash}.
+ */
+public class PackedKeyTable implements GroupKeyTable {
+
+    private final int numKeys;
+    private final BytesRefKeyHash hash;
+    private final KeyPacker packer = new KeyPacker();
+    private final BytesRef spare = new BytesRef();
+
+    PackedKeyTable(int numKeys, long expectedSize, BigArrays bigArrays) {
+        this.numKeys = numKeys;
+        this.hash = new BytesRefKeyHash(expectedSize, bigArrays);
+    }
+
+    @Override
+    public long add(Object[] key) {
+        BytesRef packed = packer.pack(key, numKeys);
+        if (packed == null) {
+            return UNSUPPORTED_KEY;
+        }
+        return hash.add(packed);
+    }
+
+    @Override
+    public long add(RowBatch batch, int[] keyColumns, int row) {
+        BytesRef packed = packer.pack(batch, keyColumns, row);
+        if (packed == null) {
+            return UNSUPPORTED_KEY;
+        }
+        return hash.add(packed);
+    }
+
+    @Override
+    public long size() {
+        return hash.size();
+    }
+
+    @Override
+    public void readKey(long id, Object[] row) {
+        KeyPacker.unpack(hash.get(id, spare), row, numKeys);
+    }
+
+    @Override
+    public boolean release() throws ElasticsearchException {
+        return hash.release();
+    }
+}
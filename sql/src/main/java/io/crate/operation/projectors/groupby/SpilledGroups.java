@@ -0,0 +1,374 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import io.crate.Streamer;
+import io.crate.operation.aggregation.AggregationState;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntroSorter;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ByteArray;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.ObjectArray;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * groups which have been spilled to disk by a grouping projector.
+ *
+ * Every call to {@link #spill(GroupKeyTable, ObjectArray, int)} writes all groups of a table
+ * sorted by their packed key into a new file (a run). The packed keys are sorted in {@link BigArrays}
+ * by sorting the group ids, so spilling doesn't allocate an object per group.
+ *
+ * {@link #merge(GroupConsumer)} merges at most <code>maxFanIn</code> runs at once, if there are more runs
+ * they are merged into bigger runs first. Equal keys are reduced while merging, so every group is consumed once.
+ *
+ * The aggregation states are written and read with the {@link Streamer}s of the aggregations.
+ * Groups of an {@link ObjectKeyTable} can't be spilled, as their keys can't be packed.
+ */
+public class SpilledGroups implements Closeable {
+
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+
+    public interface GroupConsumer {
+
+        /**
+         * @param key the key of the group, the array is reused for the next group
+         * @return false if no more groups are needed
+         */
+        public boolean accept(Object[] key, AggregationState[] states);
+    }
+
+    private interface PackedGroupConsumer {
+
+        boolean accept(BytesRef packedKey, AggregationState[] states) throws IOException;
+    }
+
+    private static final ESLogger logger = Loggers.getLogger(SpilledGroups.class);
+
+    private final GroupByMemory memory;
+    private final BigArrays bigArrays;
+    private final Streamer<?>[] stateStreamers;
+    private final int numKeys;
+    private final int maxFanIn;
+    private final KeyPacker packer = new KeyPacker();
+    private final List<File> runs = new ArrayList<>();
+
+    public SpilledGroups(GroupByMemory memory, BigArrays bigArrays, Streamer<?>[] stateStreamers, int numKeys) {
+        this(memory, bigArrays, stateStreamers, numKeys, DEFAULT_MAX_FAN_IN);
+    }
+
+    SpilledGroups(GroupByMemory memory, BigArrays bigArrays, Streamer<?>[] stateStreamers, int numKeys, int maxFanIn) {
+        assert maxFanIn > 1 : "at least two runs must be merged at once";
+        this.memory = memory;
+        this.bigArrays = bigArrays;
+        this.stateStreamers = stateStreamers;
+        this.numKeys = numKeys;
+        this.maxFanIn = maxFanIn;
+    }
+
+    /**
+     * only the keys of tables which pack their keys can be spilled
+     */
+    public static boolean canSpill(GroupKeyTable table) {
+        return !(table instanceof ObjectKeyTable);
+    }
+
+    public int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * write the groups of the table as a new run.
+     *
+     * @param states the states of the groups, indexed by <code>groupId * numAggregations + i</code>
+     */
+    public void spill(GroupKeyTable table, ObjectArray<AggregationState> states, int numAggregations) throws IOException {
+        if (!canSpill(table)) {
+            throw new IllegalArgumentException("keys of table can't be spilled");
+        }
+        assert table.size() <= Integer.MAX_VALUE : "too many groups to spill at once";
+        final int size = (int) table.size();
+        ByteArray packedKeys = bigArrays.newByteArray(Math.max(size, 1) * 8, false);
+        LongArray offsets = bigArrays.newLongArray(size + 1, false);
+        IntArray order = bigArrays.newIntArray(Math.max(size, 1), false);
+        try {
+            Object[] key = new Object[numKeys];
+            long end = 0;
+            offsets.set(0, 0);
+            for (int id = 0; id < size; id++) {
+                table.readKey(id, key);
+                BytesRef packed = packer.pack(key, numKeys);
+                assert packed != null : "key of a packable table can't be packed";
+                packedKeys = bigArrays.grow(packedKeys, end + packed.length);
+                packedKeys.set(end, packed.bytes, packed.offset, packed.length);
+                end += packed.length;
+                offsets.set(id + 1, end);
+                order.set(id, id);
+            }
+            new KeySorter(packedKeys, offsets, order).sort(0, size);
+
+            File file = memory.newSpillFile();
+            runs.add(file);
+            BytesRef packed = new BytesRef();
+            try (RunWriter writer = new RunWriter(file)) {
+                AggregationState[] groupStates = new AggregationState[numAggregations];
+                for (int i = 0; i < size; i++) {
+                    int id = order.get(i);
+                    long offset = (long) id * numAggregations;
+                    for (int j = 0; j < numAggregations; j++) {
+                        groupStates[j] = states.get(offset + j);
+                    }
+                    writer.accept(packedKey(packedKeys, offsets, id, packed), groupStates);
+                }
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("spilled {} groups to {}", size, file.getAbsolutePath());
+            }
+        } finally {
+            try {
+                packedKeys.release();
+                offsets.release();
+            } finally {
+                order.release();
+            }
+        }
+    }
+
+    private static BytesRef packedKey(ByteArray packedKeys, LongArray offsets, int id, BytesRef dest) {
+        long start = offsets.get(id);
+        packedKeys.get(start, (int) (offsets.get(id + 1) - start), dest);
+        return dest;
+    }
+
+    /**
+     * sorts the group ids by their packed keys
+     */
+    private static class KeySorter extends IntroSorter {
+
+        private final ByteArray packedKeys;
+        private final LongArray offsets;
+        private final IntArray order;
+        private final BytesRef left = new BytesRef();
+        private final BytesRef right = new BytesRef();
+        private final BytesRef pivot = new BytesRef();
+
+        KeySorter(ByteArray packedKeys, LongArray offsets, IntArray order) {
+            this.packedKeys = packedKeys;
+            this.offsets = offsets;
+            this.order = order;
+        }
+
+        @Override
+        protected void swap(int i, int j) {
+            order.set(i, order.set(j, order.get(i)));
+        }
+
+        @Override
+        protected int compare(int i, int j) {
+            return packedKey(packedKeys, offsets, order.get(i), left)
+                    .compareTo(packedKey(packedKeys, offsets, order.get(j), right));
+        }
+
+        @Override
+        protected void setPivot(int i) {
+            packedKey(packedKeys, offsets, order.get(i), pivot);
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+            return pivot.compareTo(packedKey(packedKeys, offsets, order.get(j), right));
+        }
+    }
+
+    /**
+     * writes the groups of a run, every group is preceded by <code>true</code>, the run ends with <code>false</code>
+     */
+    private class RunWriter implements PackedGroupConsumer, Closeable {
+
+        private final StreamOutput out;
+
+        RunWriter(File file) throws IOException {
+            out = new OutputStreamStreamOutput(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        @Override
+        public boolean accept(BytesRef packedKey, AggregationState[] states) throws IOException {
+            out.writeBoolean(true);
+            out.writeBytesRef(packedKey);
+            for (int i = 0; i < states.length; i++) {
+                stateStreamers[i].writeTo(out, states[i]);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.writeBoolean(false);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private class Run implements Closeable {
+
+        private final StreamInput in;
+        private BytesRef key;
+        private AggregationState[] states;
+
+        Run(File file) throws IOException {
+            in = new InputStreamStreamInput(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        boolean next() throws IOException {
+            if (!in.readBoolean()) {
+                return false;
+            }
+            key = in.readBytesRef();
+            states = new AggregationState[stateStreamers.length];
+            for (int i = 0; i < stateStreamers.length; i++) {
+                states[i] = (AggregationState) stateStreamers[i].readFrom(in);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static class RunQueue extends PriorityQueue<Run> {
+
+        RunQueue(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected boolean lessThan(Run a, Run b) {
+            return a.key.compareTo(b.key) < 0;
+        }
+    }
+
+    /**
+     * read all runs and pass every group with its reduced states to the consumer, ordered by the packed key.
+     * If there are more than <code>maxFanIn</code> runs, the oldest runs are merged into a new run
+     * until the remaining runs can be merged at once.
+     */
+    public void merge(final GroupConsumer consumer) throws IOException {
+        while (runs.size() > maxFanIn) {
+            List<File> merging = new ArrayList<>(runs.subList(0, maxFanIn));
+            File merged = memory.newSpillFile();
+            runs.add(merged);
+            try (RunWriter writer = new RunWriter(merged)) {
+                mergeRuns(merging, writer);
+            }
+            runs.subList(0, maxFanIn).clear();
+            delete(merging);
+            if (logger.isDebugEnabled()) {
+                logger.debug("merged {} runs into {}, {} runs left", maxFanIn, merged.getAbsolutePath(), runs.size());
+            }
+        }
+        final Object[] key = new Object[numKeys];
+        mergeRuns(runs, new PackedGroupConsumer() {
+            @Override
+            public boolean accept(BytesRef packedKey, AggregationState[] states) {
+                KeyPacker.unpack(packedKey, key, numKeys);
+                return consumer.accept(key, states);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void mergeRuns(List<File> files, PackedGroupConsumer consumer) throws IOException {
+        RunQueue queue = new RunQueue(Math.max(files.size(), 1));
+        try {
+            for (File file : files) {
+                Run run = new Run(file);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            while (queue.size() > 0) {
+                Run run = queue.top();
+                BytesRef currentKey = run.key;
+                AggregationState[] states = run.states;
+                advance(queue, run);
+                while (queue.size() > 0 && queue.top().key.equals(currentKey)) {
+                    run = queue.top();
+                    for (int i = 0; i < states.length; i++) {
+                        states[i].reduce(run.states[i]);
+                    }
+                    advance(queue, run);
+                }
+                if (!consumer.accept(currentKey, states)) {
+                    break;
+                }
+            }
+        } finally {
+            while (queue.size() > 0) {
+                queue.pop().close();
+            }
+        }
+    }
+
+    private static void advance(RunQueue queue, Run run) throws IOException {
+        if (run.next()) {
+            queue.updateTop();
+        } else {
+            queue.pop();
+            run.close();
+        }
+    }
+
+    private static void delete(List<File> files) {
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.warn("could not delete spilled groups {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * delete all runs
+     */
+    @Override
+    public void close() {
+        delete(runs);
+        runs.clear();
+    }
+}
@@ -21,9 +21,10 @@
 
 package io.crate.operation.projectors.writer;
 
-import com.google.common.base.Preconditions;
+import io.crate.operation.fileformat.Compression;
 import org.elasticsearch.common.settings.Settings;
 
+import javax.annotation.Nullable;
 import java.io.OutputStream;
 
 public abstract class Output {
@@ -34,14 +35,8 @@ public abstract class Output {
 
     public abstract OutputStream getOutputStream();
 
-    protected boolean parseCompression(Settings settings) {
-        String compressionType = settings.get("compression");
-        if (compressionType != null) {
-            Preconditions.checkArgument(compressionType.equals("gzip"),
-                    String.format("Unsupported compression type: '%s'", compressionType));
-            return true;
-        }
-
-        return false;
+    @Nullable
+    protected Compression parseCompression(Settings settings) {
+        return Compression.of(settings.get("compression"));
     }
 }
@@ -21,6 +21,7 @@
 
 package io.crate.operation.projectors.writer;
 
+import io.crate.operation.fileformat.Compression;
 import org.elasticsearch.common.Preconditions;
 import org.elasticsearch.common.settings.Settings;
 
@@ -29,14 +30,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
-import java.util.zip.GZIPOutputStream;
 
 public class OutputFile extends Output {
 
     private final String path;
     private OutputStream os;
     private final boolean overwrite;
-    private final boolean compression;
+    private final Compression compression;
 
     public OutputFile(URI uri, Settings settings) {
         Preconditions.checkArgument(uri.getHost() == null);
@@ -57,8 +57,8 @@ public class OutputFile extends Output {
             }
         }
         os = new FileOutputStream(outFile);
-        if (compression) {
-            os = new GZIPOutputStream(os);
+        if (compression != null) {
+            os = compression.wrap(os);
         }
     }
 
@@ -26,40 +26,57 @@ import com.amazonaws.services.s3.model.*;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import io.crate.external.S3ClientHelper;
+import io.crate.operation.fileformat.Compression;
 import org.elasticsearch.common.settings.Settings;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Writes to S3 using a multipart upload.
+ *
+ * The parts are uploaded by the thread pool of the given {@link S3Uploads}.
+ * If all outputs of the node together buffer the maximum number of parts which are waiting for or
+ * in the process of being uploaded, writing blocks until one of them has been uploaded.
+ */
 @NotThreadSafe
 public class OutputS3 extends Output {
 
+    static final int PART_SIZE = 5 * 1024 * 1024;
+
     private final URI uri;
-    private final boolean compression;
+    private final Compression compression;
+    private final S3ClientHelper s3ClientHelper;
+    private final S3Uploads uploads;
     private OutputStream outputStream;
 
-    public OutputS3(URI uri, Settings settings) {
+    public OutputS3(URI uri, Settings settings, S3Uploads uploads) {
+        this(uri, settings, new S3ClientHelper(), uploads);
+    }
+
+    OutputS3(URI uri, Settings settings, S3ClientHelper s3ClientHelper, S3Uploads uploads) {
         this.uri = uri;
+        this.s3ClientHelper = s3ClientHelper;
+        this.uploads = uploads;
         compression = parseCompression(settings);
     }
 
     @Override
     public void open() throws IOException {
-        outputStream = new S3OutputStream(uri, new S3ClientHelper());
-        if (compression) {
-            outputStream = new GZIPOutputStream(outputStream);
+        outputStream = new S3OutputStream(uri, s3ClientHelper, uploads);
+        if (compression != null) {
+            outputStream = compression.wrap(outputStream);
         }
     }
 
@@ -79,111 +96,168 @@ public class OutputS3 extends Output {
 
     private static class S3OutputStream extends OutputStream {
 
-        private final static int PART_SIZE = 5 * 1024 * 1024;
-
         private final AmazonS3 client;
         private final InitiateMultipartUploadResult multipartUpload;
         private final String bucketName;
         private final String key;
         private final ListeningExecutorService executorService;
+        private final Semaphore bufferedParts;
+        private final AtomicReference<Throwable> uploadFailure = new AtomicReference<>();
         final private List<PartETag> etags = Collections.<PartETag>synchronizedList(new ArrayList<PartETag>());
         final private List<ListenableFuture<?>> pendingUploads = new ArrayList<>();
 
-        private ByteArrayOutputStream outputStream;
-        long currentPartBytes = 0;
-        long bytesWritten = 0;
-        int partNumber = 1;
+        private byte[] buffer = new byte[PART_SIZE];
+        private int bufferPos = 0;
+        private int partNumber = 1;
+        private boolean closed = false;
 
-        private S3OutputStream(URI uri, S3ClientHelper s3ClientHelper) throws IOException {
+        private S3OutputStream(URI uri,
+                               S3ClientHelper s3ClientHelper,
+                               S3Uploads uploads) throws IOException {
             bucketName = uri.getHost();
             key = uri.getPath().substring(1);
-            outputStream = new ByteArrayOutputStream();
             client = s3ClientHelper.client(uri);
-            executorService = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+            this.executorService = uploads.executor();
+            this.bufferedParts = uploads.bufferedParts();
             multipartUpload = client.initiateMultipartUpload(
                     new InitiateMultipartUploadRequest(bucketName, key));
         }
 
         @Override
         public void write(byte[] b) throws IOException {
-            outputStream.write(b);
-            bytesWritten += b.length;
-            currentPartBytes += b.length;
-            doUploadIfNeeded();
+            write(b, 0, b.length);
         }
 
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
-            outputStream.write(b, off, len);
-            bytesWritten += len;
-            currentPartBytes += len;
-            doUploadIfNeeded();
+            while (len > 0) {
+                int toCopy = Math.min(len, buffer.length - bufferPos);
+                System.arraycopy(b, off, buffer, bufferPos, toCopy);
+                bufferPos += toCopy;
+                off += toCopy;
+                len -= toCopy;
+                doUploadIfNeeded();
+            }
         }
 
         @Override
         public void write(int b) throws IOException {
-            outputStream.write(b);
-            currentPartBytes++;
-            bytesWritten++;
+            buffer[bufferPos++] = (byte) b;
             doUploadIfNeeded();
         }
 
         private void doUploadIfNeeded() throws IOException {
-            if (currentPartBytes >= PART_SIZE) {
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-                final int currentPart = partNumber;
-                final long offset = bytesWritten;
-                final long currentPartSize = currentPartBytes;
-
-                outputStream.close();
-                outputStream = new ByteArrayOutputStream();
-                partNumber++;
-                ListenableFuture<?> future = executorService.submit(new Runnable() {
+            if (bufferPos == buffer.length) {
+                uploadPart();
+                buffer = new byte[PART_SIZE];
+                bufferPos = 0;
+            }
+        }
+
+        private void uploadPart() throws IOException {
+            checkUploadFailure();
+            try {
+                bufferedParts.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            final byte[] part = buffer;
+            final int partSize = bufferPos;
+            final int currentPart = partNumber++;
+            ListenableFuture<?> future;
+            try {
+                future = executorService.submit(new Runnable() {
                     @Override
                     public void run() {
-                        UploadPartRequest uploadPartRequest = new UploadPartRequest()
-                                .withBucketName(bucketName)
-                                .withKey(key)
-                                .withPartNumber(currentPart)
-                                .withPartSize(currentPartSize)
-                                .withFileOffset(offset)
-                                .withUploadId(multipartUpload.getUploadId())
-                                .withInputStream(inputStream);
-                        UploadPartResult uploadPartResult = client.uploadPart(uploadPartRequest);
-                        etags.add(uploadPartResult.getPartETag());
+                        try {
+                            etags.add(doUploadPart(part, partSize, currentPart));
+                        } catch (Throwable t) {
+                            uploadFailure.compareAndSet(null, t);
+                            throw t;
+                        } finally {
+                            bufferedParts.release();
+                        }
                     }
                 });
-                pendingUploads.add(future);
-                currentPartBytes = 0;
+            } catch (RuntimeException e) {
+                bufferedParts.release();
+                throw new IOException(e);
             }
+            pendingUploads.add(future);
         }
 
-        @Override
-        public void close() throws IOException {
+        private PartETag doUploadPart(byte[] part, int partSize, int currentPart) {
             UploadPartRequest uploadPartRequest = new UploadPartRequest()
                     .withBucketName(bucketName)
                     .withKey(key)
-                    .withPartNumber(partNumber)
-                    .withPartSize(outputStream.size())
-                    .withFileOffset(bytesWritten)
+                    .withPartNumber(currentPart)
+                    .withPartSize(partSize)
                     .withUploadId(multipartUpload.getUploadId())
-                    .withInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
-            UploadPartResult uploadPartResult = client.uploadPart(uploadPartRequest);
-            etags.add(uploadPartResult.getPartETag());
-            ListenableFuture<List<Object>> future = Futures.allAsList(pendingUploads);
+                    .withInputStream(new ByteArrayInputStream(part, 0, partSize));
+            return client.uploadPart(uploadPartRequest).getPartETag();
+        }
+
+        private void checkUploadFailure() throws IOException {
+            Throwable failure = uploadFailure.get();
+            if (failure != null) {
+                throw new IOException("Failed to upload part", failure);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
             try {
-                future.get();
-            } catch (InterruptedException | ExecutionException e) {
-                throw new IOException(e);
+                if (bufferPos > 0 || partNumber == 1) {
+                    // the last part may be smaller than the minimum part size
+                    etags.add(doUploadPart(buffer, bufferPos, partNumber));
+                }
+                buffer = null;
+                ListenableFuture<List<Object>> future = Futures.allAsList(pendingUploads);
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to upload part", e.getCause());
+                }
+                client.completeMultipartUpload(
+                        new CompleteMultipartUploadRequest(
+                                bucketName,
+                                key,
+                                multipartUpload.getUploadId(),
+                                sortedETags())
+                );
+            } catch (IOException | RuntimeException e) {
+                abort();
+                throw e;
             }
-            client.completeMultipartUpload(
-                    new CompleteMultipartUploadRequest(
-                            bucketName,
-                            key,
-                            multipartUpload.getUploadId(),
-                            etags)
-            );
             super.close();
         }
+
+        private List<PartETag> sortedETags() {
+            List<PartETag> sorted = new ArrayList<>(etags);
+            Collections.sort(sorted, new Comparator<PartETag>() {
+                @Override
+                public int compare(PartETag o1, PartETag o2) {
+                    return Integer.compare(o1.getPartNumber(), o2.getPartNumber());
+                }
+            });
+            return sorted;
+        }
+
+        private void abort() {
+            try {
+                client.abortMultipartUpload(
+                        new AbortMultipartUploadRequest(bucketName, key, multipartUpload.getUploadId()));
+            } catch (RuntimeException e) {
+                // ignore, the failure that caused the abort is more interesting
+            }
+        }
     }
 }
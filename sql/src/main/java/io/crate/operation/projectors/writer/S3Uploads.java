@@ -0,0 +1,80 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.writer;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * node wide resources of the {@link OutputS3} outputs.
+ *
+ * The parts are uploaded by the {@link #THREAD_POOL_NAME} thread pool of the node and all outputs
+ * of the node together buffer at most {@link #MAX_BUFFERED_PARTS} parts which are waiting for or in the
+ * process of being uploaded, so the memory used by concurrent COPY TO statements is bounded.
+ */
+public class S3Uploads {
+
+    public static final String THREAD_POOL_NAME = "s3_upload";
+    static final int MAX_BUFFERED_PARTS = 16;
+
+    private final ListeningExecutorService executor;
+    private final Semaphore bufferedParts;
+
+    @Inject
+    public S3Uploads(ThreadPool threadPool) {
+        this(MoreExecutors.listeningDecorator(threadPool.executor(THREAD_POOL_NAME)), MAX_BUFFERED_PARTS);
+    }
+
+    S3Uploads(ListeningExecutorService executor, int maxBufferedParts) {
+        this.executor = executor;
+        this.bufferedParts = new Semaphore(maxBufferedParts);
+    }
+
+    /**
+     * the settings of the upload thread pool, registered by the plugin
+     */
+    public static Settings threadPoolSettings() {
+        return ImmutableSettings.settingsBuilder()
+                .put("threadpool." + THREAD_POOL_NAME + ".type", "fixed")
+                .put("threadpool." + THREAD_POOL_NAME + ".size",
+                        Math.max(2, Runtime.getRuntime().availableProcessors()))
+                .build();
+    }
+
+    ListeningExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * the permits of the parts buffered by all outputs of this node
+     */
+    Semaphore bufferedParts() {
+        return bufferedParts;
+    }
+}
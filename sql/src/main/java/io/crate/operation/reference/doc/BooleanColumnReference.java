@@ -45,7 +45,10 @@ public class BooleanColumnReference extends FieldCacheExpression<IndexFieldData,
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getBytesValues(false);
+        values = DocValuesReaders.bytesValues(context.reader(), fieldName);
+        if (values == null) {
+            values = indexFieldData.load(context).getBytesValues(false);
+        }
     }
 
     @Override
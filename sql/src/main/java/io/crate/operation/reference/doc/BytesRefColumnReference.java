@@ -26,12 +26,20 @@ import org.apache.lucene.util.BytesRef;
 import io.crate.DataType;
 import io.crate.exceptions.CrateException;
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
 import org.elasticsearch.index.fielddata.BytesValues;
 import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.search.internal.SearchContext;
+
+import javax.annotation.Nullable;
 
 public class BytesRefColumnReference extends FieldCacheExpression<IndexFieldData, BytesRef> {
 
     private BytesValues values;
+    private SearchContext searchContext;
+    private GlobalOrdinals globalOrdinals;
+    private int segment;
 
     public BytesRefColumnReference(String columnName) {
         super(columnName);
@@ -50,10 +58,60 @@ public class BytesRefColumnReference extends FieldCacheExpression<IndexFieldData
         }
     }
 
+    /**
+     * write the global ordinal of the value if the vector is an {@link OrdinalColumnVector}
+     * created with the {@link #globalOrdinals(GlobalOrdinalsCache)} of this column.
+     */
+    @Override
+    public void writeTo(ColumnVector vector, int row) {
+        if (!(vector instanceof OrdinalColumnVector)) {
+            super.writeTo(vector, row);
+            return;
+        }
+        assert ((OrdinalColumnVector) vector).lookup() == globalOrdinals : "vector doesn't use the ordinals of this column";
+        switch (values.setDocument(docId)) {
+            case 0:
+                vector.setNull(row);
+                break;
+            case 1:
+                long ord = ((DocValuesReaders.OrdinalsBytesValues) values).nextOrd();
+                ((OrdinalColumnVector) vector).setOrd(row, globalOrdinals.globalOrd(segment, ord));
+                break;
+            default:
+                throw new GroupByOnArrayUnsupportedException(columnName());
+        }
+    }
+
+    @Override
+    public void startCollect(CollectorContext context) {
+        super.startCollect(context);
+        searchContext = context.searchContext();
+        globalOrdinals = null;
+    }
+
+    /**
+     * load the global ordinals of this column for all segments of the collected shard.
+     * Must be called after {@link #startCollect(CollectorContext)}.
+     *
+     * @return null if a segment has no sorted doc values for this column
+     * or if there is not enough memory for the ordinals
+     */
+    @Nullable
+    public GlobalOrdinals globalOrdinals(GlobalOrdinalsCache cache) {
+        if (globalOrdinals == null) {
+            globalOrdinals = cache.globalOrdinals(searchContext.searcher().getIndexReader(), fieldName);
+        }
+        return globalOrdinals;
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
-        values = indexFieldData.load(context).getBytesValues(true);
+        segment = context.ord;
+        values = DocValuesReaders.bytesValues(context.reader(), fieldName);
+        if (values == null) {
+            values = indexFieldData.load(context).getBytesValues(true);
+        }
     }
 
     @Override
@@ -0,0 +1,182 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.doc;
+
+import io.crate.exceptions.CrateException;
+import org.apache.lucene.index.*;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.fielddata.BytesValues;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Column readers which read string values directly from the SORTED and SORTED_SET
+ * doc values of a segment.
+ *
+ * <p>
+ * Numeric doc values aren't read here: Elasticsearch stores them as BINARY doc values
+ * in its own encoding, numeric columns therefore go through
+ * {@link org.elasticsearch.index.fielddata.IndexNumericFieldData} which is itself backed
+ * by doc values if the mapping enables them.
+ * </p>
+ * <p>
+ * {@link #bytesValues(AtomicReader, String)} returns <code>null</code> if the segment
+ * doesn't have sorted doc values for the given field, the caller then has to fall back
+ * to field data.
+ * </p>
+ */
+public final class DocValuesReaders {
+
+    private DocValuesReaders() {
+    }
+
+    @Nullable
+    public static FieldInfo.DocValuesType docValuesType(AtomicReader reader, String field) {
+        FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+            return null;
+        }
+        return fieldInfo.getDocValuesType();
+    }
+
+    @Nullable
+    public static OrdinalsBytesValues bytesValues(AtomicReader reader, String field) {
+        FieldInfo.DocValuesType type = docValuesType(reader, field);
+        if (type == null) {
+            return null;
+        }
+        try {
+            switch (type) {
+                case SORTED:
+                    return new SortedBytesValues(reader.getSortedDocValues(field));
+                case SORTED_SET:
+                    return new SortedSetBytesValues(reader.getSortedSetDocValues(field));
+                default:
+                    return null;
+            }
+        } catch (IOException e) {
+            throw new CrateException(e);
+        }
+    }
+
+    /**
+     * {@link BytesValues} backed by sorted doc values which also expose the segment ordinals
+     * of the values of a document.
+     */
+    public static abstract class OrdinalsBytesValues extends BytesValues {
+
+        protected OrdinalsBytesValues(boolean multiValued) {
+            super(multiValued);
+        }
+
+        /**
+         * @return the segment ordinal of the next value of the current document
+         */
+        public abstract long nextOrd();
+
+        public abstract void lookupOrd(long ord, BytesRef result);
+
+        public abstract TermsEnum termsEnum();
+
+        @Override
+        public BytesRef nextValue() {
+            lookupOrd(nextOrd(), scratch);
+            return scratch;
+        }
+    }
+
+    static class SortedBytesValues extends OrdinalsBytesValues {
+
+        private final SortedDocValues values;
+        private int ord;
+
+        SortedBytesValues(SortedDocValues values) {
+            super(false);
+            this.values = values;
+        }
+
+        @Override
+        public int setDocument(int docId) {
+            this.docId = docId;
+            ord = values.getOrd(docId);
+            return ord < 0 ? 0 : 1;
+        }
+
+        @Override
+        public long nextOrd() {
+            return ord;
+        }
+
+        @Override
+        public void lookupOrd(long ord, BytesRef result) {
+            values.lookupOrd((int) ord, result);
+        }
+
+        @Override
+        public TermsEnum termsEnum() {
+            return values.termsEnum();
+        }
+    }
+
+    static class SortedSetBytesValues extends OrdinalsBytesValues {
+
+        private final SortedSetDocValues values;
+        private long[] ords = new long[1];
+        private int numOrds;
+        private int pos;
+
+        SortedSetBytesValues(SortedSetDocValues values) {
+            super(true);
+            this.values = values;
+        }
+
+        @Override
+        public int setDocument(int docId) {
+            this.docId = docId;
+            values.setDocument(docId);
+            numOrds = 0;
+            pos = 0;
+            for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+                ords = ArrayUtil.grow(ords, numOrds + 1);
+                ords[numOrds++] = ord;
+            }
+            return numOrds;
+        }
+
+        @Override
+        public long nextOrd() {
+            return ords[pos++];
+        }
+
+        @Override
+        public void lookupOrd(long ord, BytesRef result) {
+            values.lookupOrd(ord, result);
+        }
+
+        @Override
+        public TermsEnum termsEnum() {
+            return values.termsEnum();
+        }
+    }
+}
@@ -23,10 +23,26 @@ package io.crate.operation.reference.doc;
 
 import org.apache.lucene.index.AtomicReaderContext;
 import io.crate.Constants;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.DoubleColumnVector;
+import io.crate.operation.batch.LongColumnVector;
+import org.elasticsearch.index.fielddata.DoubleValues;
 import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.LongValues;
 import org.elasticsearch.index.mapper.FieldMapper;
 
 
+/**
+ * Base class for expressions reading column values of a segment.
+ *
+ * <p>
+ * String columns read from the on-disk doc values of a segment if they are present
+ * (see {@link DocValuesReaders}) and fall back to the field data cache otherwise.
+ * Numeric columns always use the field data of the mapping, which reads the
+ * doc values itself if the column is mapped with <code>doc_values: true</code>.
+ * </p>
+ */
 public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnType> extends
         ColumnReferenceCollectorExpression<ReturnType> {
 
@@ -34,6 +50,7 @@ public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnTyp
             Constants.DEFAULT_MAPPING_TYPE};
 
     protected IFD indexFieldData;
+    protected String fieldName;
     protected int docId;
 
     public FieldCacheExpression(String columnName) {
@@ -43,6 +60,7 @@ public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnTyp
     public void startCollect(CollectorContext context){
         FieldMapper mapper = context.searchContext().mapperService().smartNameFieldMapper
                 (columnName, DEFAULT_MAPPING_TYPES);
+        fieldName = mapper.names().indexName();
         indexFieldData = (IFD) context.searchContext().fieldData().getForField(mapper);
     }
 
@@ -56,4 +74,46 @@ public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnTyp
         this.docId = docId;
     }
 
+    /**
+     * write the value of the current document to a {@link LongColumnVector} without boxing,
+     * other vectors are written using {@link #value()}
+     */
+    protected void writeTo(LongValues values, ColumnVector vector, int row) {
+        if (!(vector instanceof LongColumnVector)) {
+            super.writeTo(vector, row);
+            return;
+        }
+        switch (values.setDocument(docId)) {
+            case 0:
+                vector.setNull(row);
+                break;
+            case 1:
+                ((LongColumnVector) vector).setLong(row, values.nextValue());
+                break;
+            default:
+                throw new GroupByOnArrayUnsupportedException(columnName());
+        }
+    }
+
+    /**
+     * write the value of the current document to a {@link DoubleColumnVector} without boxing,
+     * other vectors are written using {@link #value()}
+     */
+    protected void writeTo(DoubleValues values, ColumnVector vector, int row) {
+        if (!(vector instanceof DoubleColumnVector)) {
+            super.writeTo(vector, row);
+            return;
+        }
+        switch (values.setDocument(docId)) {
+            case 0:
+                vector.setNull(row);
+                break;
+            case 1:
+                ((DoubleColumnVector) vector).setDouble(row, values.nextValue());
+                break;
+            default:
+                throw new GroupByOnArrayUnsupportedException(columnName());
+        }
+    }
+
 }
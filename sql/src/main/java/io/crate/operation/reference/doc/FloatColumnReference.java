@@ -24,6 +24,7 @@ package io.crate.operation.reference.doc;
 import org.apache.lucene.index.AtomicReaderContext;
 import io.crate.DataType;
 import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.batch.ColumnVector;
 import org.elasticsearch.index.fielddata.DoubleValues;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 
@@ -47,6 +48,11 @@ public class FloatColumnReference extends FieldCacheExpression<IndexNumericField
         }
     }
 
+    @Override
+    public void writeTo(ColumnVector vector, int row) {
+        writeTo(values, vector, row);
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
@@ -0,0 +1,148 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.doc;
+
+import io.crate.exceptions.CrateException;
+import io.crate.operation.batch.OrdinalLookup;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * ordinals of a string column which are unique over all segments of a shard.
+ *
+ * The segment ordinals of the sorted doc values are mapped to global ordinals using a
+ * {@link MultiDocValues.OrdinalMap}, so grouping on them doesn't have to copy or hash
+ * the values. The values are only resolved with {@link #lookupOrd(long)} when needed.
+ * Shards with a single segment use the segment ordinals as they are.
+ *
+ * Global ordinals are only valid as long as the searcher they were built from is open.
+ * The ordinal maps are cached per reader by the {@link GlobalOrdinalsCache}.
+ */
+public class GlobalOrdinals implements OrdinalLookup {
+
+    private final DocValuesReaders.OrdinalsBytesValues[] segmentValues;
+    private final MultiDocValues.OrdinalMap ordinalMap;
+    private final BytesRef scratch = new BytesRef();
+
+    GlobalOrdinals(DocValuesReaders.OrdinalsBytesValues[] segmentValues,
+                   @Nullable MultiDocValues.OrdinalMap ordinalMap) {
+        assert ordinalMap != null || segmentValues.length <= 1 : "ordinal map required for multiple segments";
+        this.segmentValues = segmentValues;
+        this.ordinalMap = ordinalMap;
+    }
+
+    /**
+     * build the global ordinals of the field without caching the ordinal map
+     *
+     * @return the global ordinals of the field or null if a segment contains the field without sorted doc values
+     */
+    @Nullable
+    public static GlobalOrdinals build(List<AtomicReaderContext> leaves, String field) {
+        DocValuesReaders.OrdinalsBytesValues[] segmentValues = segmentValues(leaves, field);
+        if (segmentValues == null) {
+            return null;
+        }
+        return new GlobalOrdinals(segmentValues, ordinalMap(field, segmentValues));
+    }
+
+    /**
+     * @return the sorted doc values of every segment, <code>null</code> entries for segments
+     * without the field or null if a segment contains the field without sorted doc values
+     */
+    @Nullable
+    static DocValuesReaders.OrdinalsBytesValues[] segmentValues(List<AtomicReaderContext> leaves, String field) {
+        DocValuesReaders.OrdinalsBytesValues[] segmentValues = new DocValuesReaders.OrdinalsBytesValues[leaves.size()];
+        for (AtomicReaderContext leaf : leaves) {
+            AtomicReader reader = leaf.reader();
+            DocValuesReaders.OrdinalsBytesValues values = DocValuesReaders.bytesValues(reader, field);
+            if (values == null && reader.getFieldInfos().fieldInfo(field) != null) {
+                return null;
+            }
+            segmentValues[leaf.ord] = values;
+        }
+        return segmentValues;
+    }
+
+    /**
+     * @return the map from segment to global ordinals or null if there is only one segment
+     */
+    @Nullable
+    static MultiDocValues.OrdinalMap ordinalMap(String field, DocValuesReaders.OrdinalsBytesValues[] segmentValues) {
+        if (segmentValues.length <= 1) {
+            // segment ordinals are already unique
+            return null;
+        }
+        TermsEnum[] termsEnums = new TermsEnum[segmentValues.length];
+        for (int i = 0; i < segmentValues.length; i++) {
+            termsEnums[i] = segmentValues[i] == null ? TermsEnum.EMPTY : segmentValues[i].termsEnum();
+        }
+        try {
+            return new MultiDocValues.OrdinalMap(field, termsEnums);
+        } catch (IOException e) {
+            throw new CrateException(e);
+        }
+    }
+
+    public long globalOrd(int segment, long segmentOrd) {
+        if (ordinalMap == null) {
+            return segmentOrd;
+        }
+        return ordinalMap.getGlobalOrd(segment, segmentOrd);
+    }
+
+    @Override
+    public BytesRef lookupOrd(long ord) {
+        if (ordinalMap == null) {
+            segmentValues[0].lookupOrd(ord, scratch);
+        } else {
+            int segment = ordinalMap.getFirstSegmentNumber(ord);
+            segmentValues[segment].lookupOrd(ordinalMap.getFirstSegmentOrd(ord), scratch);
+        }
+        return scratch;
+    }
+
+    @Override
+    public long lookupTerm(BytesRef value) {
+        for (int segment = 0; segment < segmentValues.length; segment++) {
+            if (segmentValues[segment] == null) {
+                continue;
+            }
+            TermsEnum termsEnum = segmentValues[segment].termsEnum();
+            try {
+                if (termsEnum.seekExact(value)) {
+                    return globalOrd(segment, termsEnum.ord());
+                }
+            } catch (IOException e) {
+                throw new CrateException(e);
+            }
+        }
+        return -1L;
+    }
+}
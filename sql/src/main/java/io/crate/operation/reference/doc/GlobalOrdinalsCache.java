@@ -0,0 +1,147 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.doc;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiDocValues;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.indices.fielddata.breaker.CircuitBreakerService;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * node wide cache of the ordinal maps used by {@link GlobalOrdinals}.
+ *
+ * An ordinal map is built once per top level reader of a shard and column, and released
+ * together with the reader. Its memory is accounted on the field data circuit breaker;
+ * if the breaker trips, no global ordinals are returned and the values of the column
+ * are read directly.
+ */
+public class GlobalOrdinalsCache {
+
+    private static final ESLogger logger = Loggers.getLogger(GlobalOrdinalsCache.class);
+
+    private final MemoryCircuitBreaker breaker;
+    private final ConcurrentMap<IndexReader, ConcurrentMap<String, MultiDocValues.OrdinalMap>> cache =
+            ConcurrentCollections.newConcurrentMap();
+
+    @Inject
+    public GlobalOrdinalsCache(CircuitBreakerService circuitBreakerService) {
+        this(circuitBreakerService.getBreaker());
+    }
+
+    public GlobalOrdinalsCache(@Nullable MemoryCircuitBreaker breaker) {
+        this.breaker = breaker;
+    }
+
+    /**
+     * @return the global ordinals of the field for the given reader, null if a segment contains the field
+     * without sorted doc values or if the ordinal map would trip the circuit breaker
+     */
+    @Nullable
+    public GlobalOrdinals globalOrdinals(IndexReader reader, String field) {
+        List<AtomicReaderContext> leaves = reader.leaves();
+        DocValuesReaders.OrdinalsBytesValues[] segmentValues = GlobalOrdinals.segmentValues(leaves, field);
+        if (segmentValues == null) {
+            return null;
+        }
+        if (segmentValues.length <= 1) {
+            return new GlobalOrdinals(segmentValues, null);
+        }
+        ConcurrentMap<String, MultiDocValues.OrdinalMap> readerMaps = readerMaps(reader);
+        MultiDocValues.OrdinalMap ordinalMap = readerMaps.get(field);
+        if (ordinalMap == null) {
+            ordinalMap = GlobalOrdinals.ordinalMap(field, segmentValues);
+            long bytes = ordinalMap.ramBytesUsed();
+            if (breaker != null) {
+                try {
+                    breaker.addEstimateBytesAndMaybeBreak(bytes);
+                } catch (CircuitBreakingException e) {
+                    logger.debug("not using global ordinals of column {}: {}", field, e.getMessage());
+                    return null;
+                }
+            }
+            MultiDocValues.OrdinalMap existing = readerMaps.putIfAbsent(field, ordinalMap);
+            if (existing != null) {
+                release(bytes);
+                ordinalMap = existing;
+            }
+        }
+        return new GlobalOrdinals(segmentValues, ordinalMap);
+    }
+
+    private ConcurrentMap<String, MultiDocValues.OrdinalMap> readerMaps(final IndexReader reader) {
+        ConcurrentMap<String, MultiDocValues.OrdinalMap> readerMaps = cache.get(reader);
+        if (readerMaps == null) {
+            readerMaps = ConcurrentCollections.newConcurrentMap();
+            ConcurrentMap<String, MultiDocValues.OrdinalMap> existing = cache.putIfAbsent(reader, readerMaps);
+            if (existing != null) {
+                return existing;
+            }
+            reader.addReaderClosedListener(new IndexReader.ReaderClosedListener() {
+                @Override
+                public void onClose(IndexReader reader) {
+                    evict(reader);
+                }
+            });
+        }
+        return readerMaps;
+    }
+
+    void evict(IndexReader reader) {
+        ConcurrentMap<String, MultiDocValues.OrdinalMap> readerMaps = cache.remove(reader);
+        if (readerMaps == null) {
+            return;
+        }
+        for (MultiDocValues.OrdinalMap ordinalMap : readerMaps.values()) {
+            release(ordinalMap.ramBytesUsed());
+        }
+    }
+
+    private void release(long bytes) {
+        if (breaker != null) {
+            breaker.addWithoutBreaking(-bytes);
+        }
+    }
+
+    /**
+     * @return the bytes used by all cached ordinal maps
+     */
+    public long ramBytesUsed() {
+        long bytes = 0;
+        for (ConcurrentMap<String, MultiDocValues.OrdinalMap> readerMaps : cache.values()) {
+            for (MultiDocValues.OrdinalMap ordinalMap : readerMaps.values()) {
+                bytes += ordinalMap.ramBytesUsed();
+            }
+        }
+        return bytes;
+    }
+}
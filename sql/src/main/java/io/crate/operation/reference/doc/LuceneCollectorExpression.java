@@ -22,6 +22,7 @@
 package io.crate.operation.reference.doc;
 
 import io.crate.operation.Input;
+import io.crate.operation.batch.ColumnVector;
 import org.apache.lucene.index.AtomicReaderContext;
 import io.crate.DataType;
 
@@ -40,5 +41,13 @@ public abstract class LuceneCollectorExpression<ReturnType> implements Input<Ret
     public void setNextReader(AtomicReaderContext context){
     }
 
+    /**
+     * write the value of the current document into a column vector.
+     * Expressions reading primitive values should override this to avoid boxing.
+     */
+    public void writeTo(ColumnVector vector, int row) {
+        vector.setValue(row, value());
+    }
+
     public abstract DataType returnType();
 }
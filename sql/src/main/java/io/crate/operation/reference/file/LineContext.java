@@ -24,9 +24,14 @@ package io.crate.operation.reference.file;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.collect.files.CollectorContext;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 
@@ -41,8 +46,21 @@ public class LineContext {
     private byte[] rawSource;
     private Map<String, Object> parsedSource;
 
+    private ColumnNode prefetchRoot;
+    private final Map<ColumnIdent, Object> prefetchedValues = new HashMap<>();
+    private boolean prefetched = false;
+    private int remainingColumns;
+
     @Nullable
     public BytesRef sourceAsBytesRef() {
+        if (rawSource == null && parsedSource != null) {
+            // source was read from a format other than JSON
+            try {
+                rawSource = XContentFactory.jsonBuilder().map(parsedSource).bytes().toBytes();
+            } catch (IOException e) {
+                throw new ElasticsearchParseException("Failed to convert source to JSON", e);
+            }
+        }
         if (rawSource != null) {
             return new BytesRef(rawSource);
         }
@@ -62,13 +80,18 @@ public class LineContext {
 
     public Object get(ColumnIdent columnIdent) {
         if (parsedSource == null) {
-            // TODO: optimize if collectorContext has prefetchColumns
-
-            try {
-                parsedSource = XContentHelper.convertToMap(rawSource, false).v2();
-            } catch (NullPointerException e) {
+            if (rawSource == null) {
                 return null;
             }
+            if (collectorContext.prefetchColumns().contains(columnIdent)) {
+                // extract all prefetch columns in one pass over the raw source
+                // instead of building the whole source map
+                if (!prefetched) {
+                    prefetchColumns();
+                }
+                return prefetchedValues.get(columnIdent);
+            }
+            parsedSource = XContentHelper.convertToMap(rawSource, false).v2();
         }
 
         LinkedList<String> path = new LinkedList<>(columnIdent.path());
@@ -90,5 +113,136 @@ public class LineContext {
     public void rawSource(byte[] bytes) {
         this.rawSource = bytes;
         this.parsedSource = null;
+        this.prefetched = false;
+        this.prefetchedValues.clear();
+    }
+
+    /**
+     * set the source of the current line as map, used if the line isn't JSON
+     */
+    public void source(Map<String, Object> source) {
+        this.rawSource = null;
+        this.parsedSource = source;
+        this.prefetched = false;
+        this.prefetchedValues.clear();
+    }
+
+    private void prefetchColumns() {
+        if (prefetchRoot == null) {
+            prefetchRoot = new ColumnNode(null);
+            for (ColumnIdent columnIdent : collectorContext.prefetchColumns()) {
+                prefetchRoot.add(columnIdent);
+            }
+        }
+        prefetched = true;
+        remainingColumns = collectorContext.prefetchColumns().size();
+        try (XContentParser parser = XContentFactory.xContent(rawSource).createParser(rawSource)) {
+            if (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                extractObject(parser, prefetchRoot);
+            }
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("Failed to parse content to map", e);
+        }
+    }
+
+    /**
+     * read the fields of the object the parser is positioned on, descending only into
+     * objects which contain prefetch columns and stopping once all of them were found.
+     */
+    private void extractObject(XContentParser parser, ColumnNode node) throws IOException {
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            ColumnNode child = node.children.get(parser.currentName());
+            XContentParser.Token token = parser.nextToken();
+            if (child == null) {
+                parser.skipChildren();
+            } else if (child.columnIdent != null) {
+                putValue(child, readValue(parser, token));
+            } else if (token == XContentParser.Token.START_OBJECT) {
+                extractObject(parser, child);
+            } else {
+                parser.skipChildren();
+            }
+            if (remainingColumns == 0) {
+                return;
+            }
+        }
+    }
+
+    private void putValue(ColumnNode node, @Nullable Object value) {
+        if (node.columnIdent != null) {
+            // a duplicate key must not count the column as found twice
+            if (!prefetchedValues.containsKey(node.columnIdent)) {
+                remainingColumns--;
+            }
+            prefetchedValues.put(node.columnIdent, value);
+        }
+        for (Map.Entry<String, ColumnNode> entry : node.children.entrySet()) {
+            Object childValue = null;
+            if (value instanceof Map) {
+                childValue = ((Map) value).get(entry.getKey());
+            }
+            putValue(entry.getValue(), childValue);
+        }
+    }
+
+    /**
+     * same conversion as used by {@link XContentParser#map()} to keep
+     * the value types equal to the ones of {@link #sourceAsMap()}
+     */
+    @Nullable
+    private static Object readValue(XContentParser parser, XContentParser.Token token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.text();
+            case VALUE_NUMBER:
+                switch (parser.numberType()) {
+                    case INT:
+                        return parser.intValue();
+                    case LONG:
+                        return parser.longValue();
+                    case FLOAT:
+                        return parser.floatValue();
+                    default:
+                        return parser.doubleValue();
+                }
+            case VALUE_BOOLEAN:
+                return parser.booleanValue();
+            case START_OBJECT:
+                return parser.map();
+            case START_ARRAY:
+                return parser.list();
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.binaryValue();
+            default:
+                return null;
+        }
+    }
+
+    private static class ColumnNode {
+
+        @Nullable
+        private ColumnIdent columnIdent;
+        private final Map<String, ColumnNode> children = new HashMap<>();
+
+        private ColumnNode(@Nullable ColumnIdent columnIdent) {
+            this.columnIdent = columnIdent;
+        }
+
+        private void add(ColumnIdent columnIdent) {
+            ColumnNode node = child(columnIdent.name());
+            for (String part : columnIdent.path()) {
+                node = node.child(part);
+            }
+            node.columnIdent = columnIdent;
+        }
+
+        private ColumnNode child(String name) {
+            ColumnNode child = children.get(name);
+            if (child == null) {
+                child = new ColumnNode(null);
+                children.put(name, child);
+            }
+            return child;
+        }
     }
 }
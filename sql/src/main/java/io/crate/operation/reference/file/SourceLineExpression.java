@@ -36,10 +36,6 @@ public class SourceLineExpression extends LineCollectorExpression<BytesRef> {
         return context.sourceAsBytesRef();
     }
 
-    @Override
-    public void setNextLine(String line) {
-    }
-
     @Override
     public void startCollect(CollectorContext context) {
         this.context = context.lineContext();
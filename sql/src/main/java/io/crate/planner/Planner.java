@@ -28,6 +28,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import io.crate.Constants;
@@ -38,8 +39,11 @@ import io.crate.exceptions.CrateException;
 import io.crate.metadata.*;
 import io.crate.metadata.doc.DocSchemaInfo;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.table.TableInfo;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.aggregation.impl.SumAggregation;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.projectors.TopN;
 import io.crate.planner.node.ddl.*;
 import io.crate.planner.node.dml.ESDeleteByQueryNode;
@@ -156,15 +160,40 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
             projection.isDirectoryUri(analysis.directoryUri());
             projection.settings(analysis.settings());
 
+            List<Symbol> outputSymbols = analysis.outputSymbols();
+            FileReadingCollector.FileFormat format =
+                    FileReadingCollector.FileFormat.of(analysis.settings().get("format", null));
+            if (format != FileReadingCollector.FileFormat.JSON && (outputSymbols == null || outputSymbols.isEmpty())) {
+                // only JSON can be written from the raw source, other formats need the columns
+                outputSymbols = new ArrayList<>(analysis.table().columns().size());
+                for (ReferenceInfo referenceInfo : analysis.table().columns()) {
+                    ColumnIdent columnIdent = referenceInfo.ident().columnIdent();
+                    if (columnIdent.isColumn() && !columnIdent.isSystemColumn()) {
+                        outputSymbols.add(new Reference(referenceInfo));
+                    }
+                }
+            }
+
             PlannerContextBuilder contextBuilder = new PlannerContextBuilder();
-            if (analysis.outputSymbols() != null && !analysis.outputSymbols().isEmpty()) {
+            if (outputSymbols != null && !outputSymbols.isEmpty()) {
                 // TODO: rewrite to lookup from DocReference (to avoid fieldcache)
-                List<Symbol> columns = new ArrayList<>(analysis.outputSymbols().size());
-                for (Symbol symbol : analysis.outputSymbols()) {
+                List<Symbol> columns = new ArrayList<>(outputSymbols.size());
+                List<String> outputNames = new ArrayList<>(outputSymbols.size());
+                List<DataType> inputTypes = new ArrayList<>(outputSymbols.size());
+                for (Symbol symbol : outputSymbols) {
                     columns.add(DocReferenceBuildingVisitor.INSTANCE.process(symbol, null));
+                    inputTypes.add(symbol instanceof ValueSymbol
+                            ? ((ValueSymbol) symbol).valueType() : DataType.NOT_SUPPORTED);
+                    if (symbol instanceof Reference) {
+                        outputNames.add(((Reference) symbol).info().ident().columnIdent().fqn());
+                    } else {
+                        outputNames.add(SymbolFormatter.format(symbol));
+                    }
                 }
                 contextBuilder = contextBuilder.output(columns);
                 projection.inputs(contextBuilder.outputs());
+                projection.outputNames(outputNames);
+                projection.inputTypes(inputTypes);
             } else {
                 Reference rawReference = new Reference(analysis.table().getColumnInfo(DocSysColumns.RAW));
                 contextBuilder = contextBuilder.output(ImmutableList.<Symbol>of(rawReference));
@@ -239,6 +268,18 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
             toCollect.add(new Reference(analysis.table().getColumnInfo(DocSysColumns.RAW)));
         }
 
+        String format = analysis.settings().get("format", null);
+        Map<String, DataType> columnTypes = ImmutableMap.of();
+        if (FileReadingCollector.FileFormat.of(format) == FileReadingCollector.FileFormat.CSV) {
+            columnTypes = new HashMap<>();
+            for (ReferenceInfo referenceInfo : analysis.table().columns()) {
+                ColumnIdent columnIdent = referenceInfo.ident().columnIdent();
+                if (columnIdent.isColumn() && !columnIdent.isSystemColumn()) {
+                    columnTypes.put(columnIdent.name(), referenceInfo.type());
+                }
+            }
+        }
+
         DiscoveryNodes allNodes = clusterService.state().nodes();
         FileUriCollectNode collectNode = new FileUriCollectNode(
                 "copyFrom",
@@ -247,7 +288,9 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
                 toCollect,
                 projections,
                 analysis.settings().get("compression", null),
-                analysis.settings().getAsBoolean("shared", null)
+                analysis.settings().getAsBoolean("shared", null),
+                format,
+                columnTypes
         );
         PlanNodeBuilder.setOutputTypes(collectNode);
         plan.add(collectNode);
@@ -460,6 +503,13 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
         plan.add(PlanNodeBuilder.localMerge(ImmutableList.<Projection>of(tnp), collectNode));
     }
 
+    private static Set<ColumnIdent> docValuesColumns(TableInfo tableInfo) {
+        if (tableInfo instanceof DocTableInfo) {
+            return ((DocTableInfo) tableInfo).docValuesColumns();
+        }
+        return ImmutableSet.of();
+    }
+
     private void ESSearch(SelectAnalysis analysis, Plan plan) {
         // this is an es query
         // this only supports INFOS as order by
@@ -503,7 +553,8 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
                 analysis.limit(),
                 analysis.offset(),
                 analysis.whereClause(),
-                analysis.table().partitionedByColumns()
+                analysis.table().partitionedByColumns(),
+                docValuesColumns(analysis.table())
         );
         node.outputTypes(extractDataTypes(searchSymbols));
         plan.add(node);
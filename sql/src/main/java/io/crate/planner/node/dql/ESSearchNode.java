@@ -25,8 +25,10 @@ package io.crate.planner.node.dql;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import io.crate.Constants;
 import io.crate.analyze.WhereClause;
+import io.crate.metadata.ColumnIdent;
 import io.crate.metadata.ReferenceInfo;
 import io.crate.planner.node.PlanVisitor;
 import io.crate.planner.symbol.Reference;
@@ -35,17 +37,20 @@ import org.elasticsearch.common.Nullable;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 public class ESSearchNode extends ESDQLPlanNode {
 
     private final List<Reference> orderBy;
     private final int limit;
+    private final boolean hasLimit;
     private final int offset;
     private final boolean[] reverseFlags;
     private final WhereClause whereClause;
     private final String[] indices;
 
     private final List<ReferenceInfo> partitionBy;
+    private final Set<ColumnIdent> docValuesColumns;
 
     /**
      *
@@ -68,6 +73,23 @@ public class ESSearchNode extends ESDQLPlanNode {
                         WhereClause whereClause,
                         @Nullable List<ReferenceInfo> partitionBy
                         ) {
+        this(indices, outputs, orderBy, reverseFlags, limit, offset, whereClause, partitionBy, null);
+    }
+
+    /**
+     * @param docValuesColumns columns of the queried table which are mapped with doc values,
+     *                         only these are read from the field data instead of the source
+     */
+    public ESSearchNode(String[] indices,
+                        List<Symbol> outputs,
+                        @Nullable List<Reference> orderBy,
+                        @Nullable boolean[] reverseFlags,
+                        @Nullable Integer limit,
+                        @Nullable Integer offset,
+                        WhereClause whereClause,
+                        @Nullable List<ReferenceInfo> partitionBy,
+                        @Nullable Set<ColumnIdent> docValuesColumns
+                        ) {
         assert indices != null && indices.length > 0;
         assert outputs != null;
         assert whereClause != null;
@@ -82,9 +104,11 @@ public class ESSearchNode extends ESDQLPlanNode {
 
         // TODO: move constant to some other location?
         this.limit = Objects.firstNonNull(limit, Constants.DEFAULT_SELECT_LIMIT);
+        this.hasLimit = limit != null;
         this.offset = Objects.firstNonNull(offset, 0);
 
         this.partitionBy = Objects.firstNonNull(partitionBy, ImmutableList.<ReferenceInfo>of());
+        this.docValuesColumns = Objects.firstNonNull(docValuesColumns, ImmutableSet.<ColumnIdent>of());
     }
 
     public String[] indices(){
@@ -100,6 +124,14 @@ public class ESSearchNode extends ESDQLPlanNode {
         return limit;
     }
 
+    /**
+     * @return true if the query has a limit, otherwise {@link #limit()} is the default limit
+     * which doesn't apply if the result is fetched in pages
+     */
+    public boolean hasLimit() {
+        return hasLimit;
+    }
+
     public int offset() {
         return offset;
     }
@@ -116,6 +148,10 @@ public class ESSearchNode extends ESDQLPlanNode {
         return partitionBy;
     }
 
+    public Set<ColumnIdent> docValuesColumns() {
+        return docValuesColumns;
+    }
+
     public WhereClause whereClause() {
         return whereClause;
     }
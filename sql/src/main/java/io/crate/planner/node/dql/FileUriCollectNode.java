@@ -22,6 +22,8 @@
 package io.crate.planner.node.dql;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.analyze.WhereClause;
 import io.crate.metadata.Routing;
@@ -33,13 +35,17 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FileUriCollectNode extends CollectNode {
 
     private Symbol targetUri;
     private String compression;
     private Boolean sharedStorage;
+    private String format;
+    private Map<String, DataType> columnTypes = ImmutableMap.of();
 
     public FileUriCollectNode() {
 
@@ -52,10 +58,29 @@ public class FileUriCollectNode extends CollectNode {
                               List<Projection> projections,
                               String compression,
                               Boolean sharedStorage) {
+        this(id, routing, targetUri, toCollect, projections, compression, sharedStorage,
+                null, ImmutableMap.<String, DataType>of());
+    }
+
+    /**
+     * @param format the name of the {@link FileReadingCollector.FileFormat}, JSON if null
+     * @param columnTypes the types of the top level columns of the table, used to convert CSV values
+     */
+    public FileUriCollectNode(String id,
+                              Routing routing,
+                              Symbol targetUri,
+                              List<Symbol> toCollect,
+                              List<Projection> projections,
+                              String compression,
+                              Boolean sharedStorage,
+                              @Nullable String format,
+                              Map<String, DataType> columnTypes) {
         super(id, routing, toCollect, projections);
         this.targetUri = targetUri;
         this.compression = compression;
         this.sharedStorage = sharedStorage;
+        this.format = format;
+        this.columnTypes = columnTypes;
     }
 
     public Symbol targetUri() {
@@ -63,7 +88,11 @@ public class FileUriCollectNode extends CollectNode {
     }
 
     public FileReadingCollector.FileFormat fileFormat() {
-        return FileReadingCollector.FileFormat.JSON;
+        return FileReadingCollector.FileFormat.of(format);
+    }
+
+    public Map<String, DataType> columnTypes() {
+        return columnTypes;
     }
 
     @Override
@@ -85,7 +114,9 @@ public class FileUriCollectNode extends CollectNode {
                 normalizedToCollect,
                 projections(),
                 compression(),
-                sharedStorage());
+                sharedStorage(),
+                format,
+                columnTypes);
         result.downStreamNodes(downStreamNodes());
         result.maxRowGranularity(maxRowGranularity());
         result.whereClause(normalizedWhereClause);
@@ -106,6 +137,12 @@ public class FileUriCollectNode extends CollectNode {
         compression = in.readOptionalString();
         sharedStorage = in.readOptionalBoolean();
         targetUri = Symbol.fromStream(in);
+        format = in.readOptionalString();
+        int numColumnTypes = in.readVInt();
+        columnTypes = new HashMap<>(numColumnTypes);
+        for (int i = 0; i < numColumnTypes; i++) {
+            columnTypes.put(in.readString(), DataType.fromStream(in));
+        }
     }
 
     @Override
@@ -114,6 +151,12 @@ public class FileUriCollectNode extends CollectNode {
         out.writeOptionalString(compression);
         out.writeOptionalBoolean(sharedStorage);
         Symbol.toStream(targetUri, out);
+        out.writeOptionalString(format);
+        out.writeVInt(columnTypes.size());
+        for (Map.Entry<String, DataType> entry : columnTypes.entrySet()) {
+            out.writeString(entry.getKey());
+            DataType.toStream(entry.getValue(), out);
+        }
     }
 
     @Override
@@ -124,6 +167,7 @@ public class FileUriCollectNode extends CollectNode {
                 .add("projections", projections)
                 .add("outputTypes", outputTypes)
                 .add("compression", compression)
+                .add("format", format)
                 .add("sharedStorageDefault", sharedStorage)
                 .toString();
     }
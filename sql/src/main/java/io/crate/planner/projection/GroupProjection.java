@@ -21,6 +21,7 @@
 
 package io.crate.planner.projection;
 
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Symbol;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -36,6 +37,9 @@ public class GroupProjection extends Projection {
     List<Aggregation> values;
     List<Symbol> outputs;
 
+    // not streamed, only set on the node executing the projection
+    RowGranularity requiredGranularity = RowGranularity.CLUSTER;
+
     public static final ProjectionFactory<GroupProjection> FACTORY = new ProjectionFactory<GroupProjection>() {
         @Override
         public GroupProjection newInstance() {
@@ -67,6 +71,15 @@ public class GroupProjection extends Projection {
         this.values = values;
     }
 
+    @Override
+    public RowGranularity requiredGranularity() {
+        return requiredGranularity;
+    }
+
+    public void requiredGranularity(RowGranularity requiredGranularity) {
+        this.requiredGranularity = requiredGranularity;
+    }
+
     @Override
     public ProjectionType projectionType() {
         return ProjectionType.GROUP;
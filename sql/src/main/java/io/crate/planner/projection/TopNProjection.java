@@ -24,6 +24,7 @@ package io.crate.planner.projection;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Symbol;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -51,6 +52,8 @@ public class TopNProjection extends Projection {
     List<Symbol> orderBy;
     boolean[] reverseFlags;
 
+    RowGranularity requiredGranularity = RowGranularity.CLUSTER;
+
     public TopNProjection() {
         super();
     }
@@ -99,6 +102,15 @@ public class TopNProjection extends Projection {
         return reverseFlags != null && reverseFlags.length > 0;
     }
 
+    @Override
+    public RowGranularity requiredGranularity() {
+        return requiredGranularity;
+    }
+
+    public void requiredGranularity(RowGranularity requiredGranularity) {
+        this.requiredGranularity = requiredGranularity;
+    }
+
 
     @Override
     public ProjectionType projectionType() {
@@ -48,8 +48,15 @@ public class WriterProjection extends Projection {
             new Value(DataType.LONG) // number of lines written
     );
 
-    private final static Reference SHARD_ID_REF = new Reference(SysShardsTableInfo.INFOS.get(new ColumnIdent("id")));
-    private final static Reference TABLE_NAME_REF = new Reference(SysShardsTableInfo.INFOS.get(new ColumnIdent("table_name")));
+    public final static Reference SHARD_ID_REF = new Reference(SysShardsTableInfo.INFOS.get(new ColumnIdent("id")));
+    public final static Reference TABLE_NAME_REF = new Reference(SysShardsTableInfo.INFOS.get(new ColumnIdent("table_name")));
+
+    /**
+     * placeholders which may be used in the uri to write one file per shard
+     */
+    public static final String SHARD_ID_PLACEHOLDER = "{shard_id}";
+    public static final String TABLE_PLACEHOLDER = "{table}";
+    public static final String NODE_PLACEHOLDER = "{node}";
 
     public static final Symbol DIRECTORY_TO_FILENAME = new Function(new FunctionInfo(
             new FunctionIdent(FormatFunction.NAME, Arrays.asList(DataType.STRING, DataType.STRING, DataType.STRING)),
@@ -66,6 +73,8 @@ public class WriterProjection extends Projection {
     @Nullable
     private List<String> outputNames;
 
+    private List<DataType> inputTypes = ImmutableList.of();
+
     public static final ProjectionFactory<WriterProjection> FACTORY = new ProjectionFactory<WriterProjection>() {
         @Override
         public WriterProjection newInstance() {
@@ -87,6 +96,17 @@ public class WriterProjection extends Projection {
         return outputNames;
     }
 
+    /**
+     * the types of the inputs, used to write binary files
+     */
+    public void inputTypes(List<DataType> inputTypes) {
+        this.inputTypes = inputTypes;
+    }
+
+    public List<DataType> inputTypes() {
+        return inputTypes;
+    }
+
     public Symbol uri() {
         return uri;
     }
@@ -151,6 +171,11 @@ public class WriterProjection extends Projection {
             inputs.add(Symbol.fromStream(in));
         }
         settings = ImmutableSettings.readSettingsFromStream(in);
+        int numInputTypes = in.readVInt();
+        inputTypes = new ArrayList<>(numInputTypes);
+        for (int i = 0; i < numInputTypes; i++) {
+            inputTypes.add(DataType.fromStream(in));
+        }
     }
 
     @Override
@@ -170,6 +195,10 @@ public class WriterProjection extends Projection {
             Symbol.toStream(symbol, out);
         }
         ImmutableSettings.writeSettingsToStream(settings, out);
+        out.writeVInt(inputTypes.size());
+        for (DataType inputType : inputTypes) {
+            DataType.toStream(inputType, out);
+        }
     }
 
     @Override
@@ -215,6 +244,7 @@ public class WriterProjection extends Projection {
             WriterProjection p = new WriterProjection();
             p.uri = nUri;
             p.outputNames = outputNames;
+            p.inputTypes = inputTypes;
             p.settings = settings;
             return p;
         }
@@ -23,7 +23,11 @@ package io.crate.plugin;
 
 import io.crate.action.sql.DDLAnalysisDispatcher;
 import io.crate.action.sql.SQLAction;
+import io.crate.action.sql.SQLCursors;
+import io.crate.action.sql.SQLFetchAction;
+import io.crate.action.sql.StatementCache;
 import io.crate.action.sql.TransportSQLAction;
+import io.crate.action.sql.TransportSQLFetchAction;
 import io.crate.metadata.FulltextAnalyzerResolver;
 import org.elasticsearch.action.GenericAction;
 import org.elasticsearch.action.support.TransportAction;
@@ -36,15 +40,20 @@ public class SQLModule extends AbstractModule {
     @Override
     protected void configure() {
         bind(TransportSQLAction.class).asEagerSingleton();
+        bind(TransportSQLFetchAction.class).asEagerSingleton();
+        bind(SQLCursors.class).asEagerSingleton();
+        bind(StatementCache.class).asEagerSingleton();
         bind(DDLAnalysisDispatcher.class).asEagerSingleton();
         bind(FulltextAnalyzerResolver.class).asEagerSingleton();
         MapBinder<GenericAction, TransportAction> transportActionsBinder = MapBinder.newMapBinder(binder(), GenericAction.class,
                 TransportAction.class);
 
         transportActionsBinder.addBinding(SQLAction.INSTANCE).to(TransportSQLAction.class).asEagerSingleton();
+        transportActionsBinder.addBinding(SQLFetchAction.INSTANCE).to(TransportSQLFetchAction.class).asEagerSingleton();
 
         MapBinder<String, GenericAction> actionsBinder = MapBinder.newMapBinder(binder(), String.class, GenericAction.class);
         actionsBinder.addBinding(SQLAction.NAME).toInstance(SQLAction.INSTANCE);
+        actionsBinder.addBinding(SQLFetchAction.NAME).toInstance(SQLFetchAction.INSTANCE);
 
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.rest.action;
+
+import io.crate.action.sql.SQLFetchRequestBuilder;
+import io.crate.action.sql.SQLResponse;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import java.io.IOException;
+
+import static org.elasticsearch.rest.action.support.RestXContentBuilder.restContentBuilder;
+
+/**
+ * fetches the next page of a paged sql result (GET/POST) or closes its cursor (DELETE)
+ */
+public class RestSQLFetchAction extends BaseRestHandler {
+
+    @Inject
+    public RestSQLFetchAction(Settings settings, Client client, RestController controller) {
+        super(settings, client);
+
+        controller.registerHandler(RestRequest.Method.GET, "/_sql/cursor/{cursor}", this);
+        controller.registerHandler(RestRequest.Method.POST, "/_sql/cursor/{cursor}", this);
+        controller.registerHandler(RestRequest.Method.DELETE, "/_sql/cursor/{cursor}", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel) {
+        final boolean close = request.method() == RestRequest.Method.DELETE;
+        SQLFetchRequestBuilder requestBuilder = new SQLFetchRequestBuilder(client)
+                .cursorId(request.param("cursor"))
+                .close(close);
+        requestBuilder.execute(new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                try {
+                    if (close) {
+                        channel.sendResponse(new StringRestResponse(RestStatus.OK));
+                        return;
+                    }
+                    XContentBuilder builder = restContentBuilder(request);
+                    response.toXContent(builder, request);
+                    channel.sendResponse(new XContentRestResponse(request, RestStatus.OK, builder));
+                } catch (Exception e) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("failed to fetch from cursor (building response)", e);
+                    }
+                    onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                try {
+                    channel.sendResponse(new CrateThrowableRestResponse(request, e));
+                } catch (IOException e1) {
+                    logger.error("Failed to send failure response", e1);
+                }
+            }
+        });
+    }
+}
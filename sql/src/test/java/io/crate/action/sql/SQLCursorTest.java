@@ -0,0 +1,246 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.DataType;
+import io.crate.exceptions.CrateException;
+import io.crate.exceptions.CursorUnknownException;
+import io.crate.executor.Pageable;
+import io.crate.executor.RowsResponseBuilder;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SQLCursorTest {
+
+    private SQLCursors cursors;
+
+    @Before
+    public void prepare() {
+        cursors = mock(SQLCursors.class);
+    }
+
+    private SQLCursor cursor(Pageable pages) {
+        return new SQLCursor("n1:c1", cursors, new RowsResponseBuilder(true),
+                new DataType[]{DataType.INTEGER}, new String[]{"x"}, 2, 0L, pages,
+                TimeValue.timeValueMinutes(1));
+    }
+
+    private SQLCursor cursor(Object[][] rows) {
+        return cursor(new SQLCursor.ResultPages(Futures.immediateFuture(rows)));
+    }
+
+    private SQLResponse fetch(SQLCursor cursor) throws Exception {
+        PlainActionFuture<SQLResponse> future = PlainActionFuture.newFuture();
+        cursor.fetch(future);
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static Object[][] rows(int from, int to) {
+        Object[][] rows = new Object[Math.max(0, to - from)][];
+        for (int i = from; i < to; i++) {
+            rows[i - from] = new Object[]{i};
+        }
+        return rows;
+    }
+
+    /**
+     * produces the rows <code>0..numRows</code> and records the requested pages
+     */
+    private static class RecordingPages implements Pageable {
+
+        private final int numRows;
+        private final List<int[]> requests = new ArrayList<>();
+        private boolean closed = false;
+
+        RecordingPages(int numRows) {
+            this.numRows = numRows;
+        }
+
+        @Override
+        public ListenableFuture<Object[][]> fetch(int position, int size, TimeValue keepAlive) {
+            requests.add(new int[]{position, size});
+            return Futures.immediateFuture(rows(position, Math.min(numRows, position + size)));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testResultIsDeliveredInPages() throws Exception {
+        SQLCursor cursor = cursor(rows(1, 4));
+
+        SQLResponse response = fetch(cursor);
+        assertThat(response.rows().length, is(2));
+        assertThat(response.cursorId(), is("n1:c1"));
+
+        response = fetch(cursor);
+        assertThat(response.rows().length, is(1));
+        assertThat((Integer) response.rows()[0][0], is(3));
+        assertThat(response.cursorId(), nullValue());
+        verify(cursors).remove("n1:c1");
+    }
+
+    @Test
+    public void testEmptyResult() throws Exception {
+        SQLCursor cursor = cursor(new Object[0][]);
+        SQLResponse response = fetch(cursor);
+        assertThat(response.rows().length, is(0));
+        assertThat(response.cursorId(), nullValue());
+    }
+
+    @Test
+    public void testFullLastPageHasNoCursor() throws Exception {
+        SQLCursor cursor = cursor(rows(0, 4));
+        assertThat(fetch(cursor).cursorId(), is("n1:c1"));
+
+        SQLResponse response = fetch(cursor);
+        assertThat(response.rows().length, is(2));
+        assertThat(response.cursorId(), nullValue());
+    }
+
+    @Test
+    public void testPagesAreOnlyProducedWhenFetched() throws Exception {
+        RecordingPages pages = new RecordingPages(5);
+        SQLCursor cursor = cursor(pages);
+        assertThat(pages.requests.size(), is(0));
+
+        List<Object> values = new ArrayList<>();
+        SQLResponse response;
+        do {
+            response = fetch(cursor);
+            for (Object[] row : response.rows()) {
+                values.add(row[0]);
+            }
+        } while (response.cursorId() != null);
+
+        assertThat(values, contains((Object) 0, 1, 2, 3, 4));
+        assertThat(pages.requests.size(), is(3));
+        // one more row than the page is requested to detect the last page
+        assertThat(Arrays.toString(pages.requests.get(0)), is("[0, 3]"));
+        assertThat(Arrays.toString(pages.requests.get(1)), is("[2, 3]"));
+        assertThat(Arrays.toString(pages.requests.get(2)), is("[4, 3]"));
+    }
+
+    @Test
+    public void testPagesAreClosedWithTheCursor() throws Exception {
+        RecordingPages pages = new RecordingPages(5);
+        SQLCursor cursor = cursor(pages);
+        fetch(cursor);
+        assertThat(pages.closed, is(false));
+
+        // e.g. closed because it expired
+        cursor.close();
+        assertThat(pages.closed, is(true));
+    }
+
+    @Test
+    public void testPagesAreClosedAfterTheLastPage() throws Exception {
+        RecordingPages pages = new RecordingPages(1);
+        SQLCursor cursor = cursor(pages);
+        assertThat(fetch(cursor).cursorId(), nullValue());
+        assertThat(pages.closed, is(true));
+    }
+
+    @Test
+    public void testFetchFromClosedCursor() throws Exception {
+        RecordingPages pages = new RecordingPages(5);
+        SQLCursor cursor = cursor(pages);
+        cursor.close();
+        verify(cursors).remove("n1:c1");
+        try {
+            fetch(cursor);
+            fail("expected a CursorUnknownException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(CursorUnknownException.class));
+        }
+        assertThat(pages.requests.size(), is(0));
+    }
+
+    @Test
+    public void testConcurrentFetchFails() throws Exception {
+        final SettableFuture<Object[][]> page = SettableFuture.create();
+        SQLCursor cursor = cursor(new Pageable() {
+            @Override
+            public ListenableFuture<Object[][]> fetch(int position, int size, TimeValue keepAlive) {
+                return page;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        PlainActionFuture<SQLResponse> first = PlainActionFuture.newFuture();
+        cursor.fetch(first);
+        assertThat(cursor.expired(Long.MAX_VALUE, 0L), is(false));
+        try {
+            fetch(cursor);
+            fail("expected the pending fetch to fail the second one");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(CrateException.class));
+        }
+
+        page.set(rows(0, 1));
+        assertThat(first.get(5, TimeUnit.SECONDS).rows().length, is(1));
+    }
+
+    @Test
+    public void testFailureOfPageIsDelivered() throws Exception {
+        SQLCursor cursor = cursor(new SQLCursor.ResultPages(
+                Futures.<Object[][]>immediateFailedFuture(new IllegalStateException("dummy"))));
+        try {
+            fetch(cursor);
+            fail("expected the failure of the result");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), containsString("dummy"));
+        }
+        verify(cursors).remove("n1:c1");
+    }
+
+    @Test
+    public void testNothingIsRemovedBeforeTheLastPage() throws Exception {
+        SQLCursor cursor = cursor(rows(0, 3));
+        fetch(cursor);
+        verify(cursors, never()).remove("n1:c1");
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.sql.tree.Statement;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+
+public class StatementCacheTest {
+
+    @Test
+    public void testCachedStatementIsReused() throws Exception {
+        StatementCache cache = new StatementCache(ImmutableSettings.EMPTY);
+        Statement statement = cache.get("select name from sys.nodes");
+        assertThat(cache.get("select name from sys.nodes"), sameInstance(statement));
+        assertThat(cache.stats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void testLongStatementsAreNotCached() throws Exception {
+        StatementCache cache = new StatementCache(ImmutableSettings.builder()
+                .put(StatementCache.SETTING_MAX_STATEMENT_LENGTH, 20).build());
+        cache.get("select name from sys.nodes");
+        assertThat(cache.size(), is(0L));
+        cache.get("select * from t");
+        assertThat(cache.size(), is(1L));
+    }
+
+    @Test
+    public void testCacheIsBoundedByStatementLength() throws Exception {
+        StatementCache cache = new StatementCache(ImmutableSettings.builder()
+                .put(StatementCache.SETTING_MAX_LENGTH, 100).build());
+        for (int i = 0; i < 100; i++) {
+            cache.get("select " + i + " from sys.nodes");
+        }
+        // every statement has at least 22 characters
+        assertThat(cache.size(), lessThanOrEqualTo(5L));
+    }
+}
@@ -24,6 +24,7 @@ package io.crate.executor.task;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.DataType;
+import io.crate.executor.Pageable;
 import io.crate.metadata.*;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.aggregation.AggregationFunction;
@@ -42,6 +43,7 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Before;
 import org.junit.Test;
@@ -50,6 +52,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -144,4 +147,55 @@ public class LocalMergeTaskTest {
             assertThat((Double)result[2][1], is(5.0));
         }
     }
+
+    @Test
+    public void testPagesAreProjectedOneByOne() throws Exception {
+        // the limit of the projection applies to the whole result and must not cut a page
+        TopNProjection topNProjection = new TopNProjection(2, TopN.NO_OFFSET);
+        topNProjection.outputs(Arrays.<Symbol>asList(new InputColumn(1), new InputColumn(0)));
+        MergeNode mergeNode = new MergeNode("merge", 1);
+        mergeNode.projections(Arrays.<Projection>asList(topNProjection));
+
+        LocalMergeTask localMergeTask = new LocalMergeTask(
+                new ThreadPool(), injector.getProvider(Client.class), symbolVisitor, mergeNode);
+        assertThat(localMergeTask.canProjectPages(), is(true));
+
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        Pageable pages = localMergeTask.pages(new Pageable() {
+            @Override
+            public ListenableFuture<Object[][]> fetch(int position, int size, TimeValue keepAlive) {
+                Object[][] rows = new Object[size][];
+                for (int i = 0; i < size; i++) {
+                    rows[i] = new Object[]{position + i, "row" + (position + i)};
+                }
+                return Futures.immediateFuture(rows);
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+
+        Object[][] rows = pages.fetch(2, 3, TimeValue.timeValueMinutes(1)).get();
+        assertThat(rows.length, is(3));
+        assertThat((String) rows[0][0], is("row2"));
+        assertThat((Integer) rows[0][1], is(2));
+        assertThat((String) rows[2][0], is("row4"));
+        assertThat((Integer) rows[2][1], is(4));
+
+        assertThat(pages.fetch(5, 0, TimeValue.timeValueMinutes(1)).get().length, is(0));
+
+        pages.close();
+        assertThat(closed.get(), is(true));
+    }
+
+    @Test
+    public void testPagesOfGroupedMergeCannotBeProjected() throws Exception {
+        MergeNode mergeNode = new MergeNode("merge", 1);
+        mergeNode.projections(Arrays.<Projection>asList(groupProjection));
+        LocalMergeTask localMergeTask = new LocalMergeTask(
+                new ThreadPool(), injector.getProvider(Client.class), symbolVisitor, mergeNode);
+        assertThat(localMergeTask.canProjectPages(), is(false));
+    }
 }
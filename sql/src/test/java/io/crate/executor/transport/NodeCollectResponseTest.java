@@ -0,0 +1,110 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.crate.DataType;
+import io.crate.Streamer;
+import io.crate.executor.transport.task.RemoteCollectTask;
+import io.crate.metadata.Routing;
+import io.crate.operation.collect.HandlerSideDataCollectOperation;
+import io.crate.planner.node.dql.CollectNode;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class NodeCollectResponseTest {
+
+    private final Streamer<?>[] streamers = new Streamer[]{DataType.INTEGER.streamer()};
+
+    private NodeCollectResponse response(long... bucketRowCounts) {
+        NodeCollectResponse response = new NodeCollectResponse(streamers);
+        response.rows(new Object[0][]);
+        response.bucketRowCounts(bucketRowCounts);
+        return response;
+    }
+
+    @Test
+    public void testStreamingBucketRowCounts() throws Exception {
+        NodeCollectResponse response = response(3L, 0L, 42L);
+        response.rows(new Object[][]{{1}, {2}});
+        response.searchQueueSize(5);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        response.writeTo(out);
+        NodeCollectResponse streamed = new NodeCollectResponse(streamers);
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(streamed.bucketRowCounts(), is(new long[]{3L, 0L, 42L}));
+        assertThat(streamed.searchQueueSize(), is(5));
+        assertThat(streamed.rows(), is(new Object[][]{{1}, {2}}));
+    }
+
+    @Test
+    public void testRemoteCollectTaskSumsBucketRowCounts() throws Exception {
+        Map<String, Map<String, Set<Integer>>> locations = ImmutableMap.<String, Map<String, Set<Integer>>>of(
+                "n1", ImmutableMap.<String, Set<Integer>>of("t", ImmutableSet.of(0)),
+                "n2", ImmutableMap.<String, Set<Integer>>of("t", ImmutableSet.of(1)));
+        CollectNode collectNode = new CollectNode("collect", new Routing(locations));
+        collectNode.downStreamNodes(Arrays.asList("d1", "d2"));
+
+        TransportCollectNodeAction transportCollectNodeAction = mock(TransportCollectNodeAction.class);
+        doAnswer(new Answer() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                String nodeId = (String) invocation.getArguments()[0];
+                ActionListener<NodeCollectResponse> listener =
+                        (ActionListener<NodeCollectResponse>) invocation.getArguments()[2];
+                listener.onResponse(nodeId.equals("n1") ? response(10L, 2L) : response(1L, 7L));
+                return null;
+            }
+        }).when(transportCollectNodeAction).execute(anyString(), any(NodeCollectRequest.class), any(ActionListener.class));
+
+        RemoteCollectTask task = new RemoteCollectTask(
+                collectNode, transportCollectNodeAction, mock(HandlerSideDataCollectOperation.class));
+        task.start();
+
+        assertThat(task.bucketRowCounts(), is(new long[]{11L, 9L}));
+
+        Map<String, Long> rowsPerDownstreamNode = task.rowsPerDownstreamNode();
+        assertThat(rowsPerDownstreamNode.size(), is(2));
+        assertThat(rowsPerDownstreamNode.get("d1"), is(11L));
+        assertThat(rowsPerDownstreamNode.get("d2"), is(9L));
+    }
+}
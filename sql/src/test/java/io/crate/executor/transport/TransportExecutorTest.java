@@ -58,12 +58,14 @@ import org.elasticsearch.cluster.metadata.AliasMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.collect.MapBuilder;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.SearchHits;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.instanceOf;
@@ -80,6 +82,8 @@ public class TransportExecutorTest extends SQLTransportIntegrationTest {
     private ClusterService clusterService;
     private ClusterName clusterName;
     private TransportExecutor executor;
+
+    private static final TimeValue KEEP_ALIVE = TimeValue.timeValueMinutes(1);
     private String copyFilePath = getClass().getResource("/essetup/data/copy").getPath();
 
     TableIdent table = new TableIdent(null, "characters");
@@ -262,6 +266,114 @@ public class TransportExecutorTest extends SQLTransportIntegrationTest {
         assertThat((String) rows[2][1], is("Trillian"));
     }
 
+    @Test
+    public void testESSearchTaskFetchesPages() throws Exception {
+        insertCharacters();
+
+        ESSearchNode node = new ESSearchNode(
+                new String[]{"characters"},
+                Arrays.<Symbol>asList(id_ref, name_ref),
+                Arrays.<Reference>asList(name_ref),
+                new boolean[]{false},
+                2, 1, WhereClause.MATCH_ALL,
+                null
+        );
+        Plan plan = new Plan();
+        plan.add(node);
+        Job job = executor.newJob(plan);
+        ESSearchTask task = (ESSearchTask) job.tasks().get(0);
+
+        // offset 1 and limit 2 of the node apply to the pages
+        Object[][] rows = task.fetch(0, 1, KEEP_ALIVE).get();
+        assertThat(rows.length, is(1));
+        assertThat((String) rows[0][1], is("Ford"));
+
+        rows = task.fetch(1, 5, KEEP_ALIVE).get();
+        assertThat(rows.length, is(1));
+        assertThat((String) rows[0][1], is("Trillian"));
+
+        assertThat(task.fetch(2, 5, KEEP_ALIVE).get().length, is(0));
+        task.close();
+    }
+
+    private ESSearchTask searchTask(ESSearchNode node) {
+        Plan plan = new Plan();
+        plan.add(node);
+        Job job = executor.newJob(plan);
+        return (ESSearchTask) job.tasks().get(0);
+    }
+
+    @Test
+    public void testESSearchTaskScrollsSortedPages() throws Exception {
+        insertCharacters();
+
+        // no limit, the pages overlap by one row like the pages of a cursor
+        ESSearchTask task = searchTask(new ESSearchNode(
+                new String[]{"characters"},
+                Arrays.<Symbol>asList(id_ref, name_ref),
+                Arrays.<Reference>asList(name_ref),
+                new boolean[]{true},
+                null, null, WhereClause.MATCH_ALL,
+                null
+        ));
+        Object[][] rows = task.fetch(0, 2, KEEP_ALIVE).get();
+        assertThat(rows.length, is(2));
+        assertThat((String) rows[0][1], is("Trillian"));
+        assertThat((String) rows[1][1], is("Ford"));
+
+        rows = task.fetch(1, 2, KEEP_ALIVE).get();
+        assertThat(rows.length, is(2));
+        assertThat((String) rows[0][1], is("Ford"));
+        assertThat((String) rows[1][1], is("Arthur"));
+
+        rows = task.fetch(3, 2, KEEP_ALIVE).get();
+        assertThat(rows.length, is(0));
+        task.close();
+    }
+
+    @Test
+    public void testESSearchTaskScansUnsortedPages() throws Exception {
+        insertCharacters();
+
+        ESSearchTask task = searchTask(new ESSearchNode(
+                new String[]{"characters"},
+                Arrays.<Symbol>asList(id_ref, name_ref),
+                null,
+                null,
+                null, null, WhereClause.MATCH_ALL,
+                null
+        ));
+        Set<Object> ids = new HashSet<>();
+        int position = 0;
+        Object[][] rows;
+        do {
+            rows = task.fetch(position, 1, KEEP_ALIVE).get();
+            for (Object[] row : rows) {
+                ids.add(row[0]);
+            }
+            position += rows.length;
+        } while (rows.length > 0);
+        assertThat(ids, Matchers.<Object>containsInAnyOrder(1, 2, 3));
+        task.close();
+
+        try {
+            task.fetch(position, 1, KEEP_ALIVE).get();
+            fail("fetching from a closed search must fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void testESSearchNodeWithoutLimitHasNoLimitForPages() throws Exception {
+        ESSearchNode node = new ESSearchNode(
+                new String[]{"characters"},
+                Arrays.<Symbol>asList(id_ref, name_ref),
+                null, null, null, null, WhereClause.MATCH_ALL, null);
+        assertThat(node.hasLimit(), is(false));
+        assertThat(node.limit(), is(Constants.DEFAULT_SELECT_LIMIT));
+    }
+
     @Test
     public void testESSearchTaskWithFilter() throws Exception {
         insertCharacters();
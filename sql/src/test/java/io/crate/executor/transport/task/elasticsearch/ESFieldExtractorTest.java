@@ -23,13 +23,25 @@ package io.crate.executor.transport.task.elasticsearch;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.crate.DataType;
 import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.ReferenceIdent;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.TableIdent;
+import io.crate.planner.RowGranularity;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.internal.InternalSearchHitField;
 import org.junit.Test;
 
 import java.util.*;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ESFieldExtractorTest {
 
@@ -110,4 +122,41 @@ public class ESFieldExtractorTest {
         assertEquals(expected, ex.toValue(source));
     }
 
+    private ReferenceInfo info(ColumnIdent columnIdent, DataType type) {
+        return new ReferenceInfo(new ReferenceIdent(new TableIdent(null, "t"), columnIdent), RowGranularity.DOC, type);
+    }
+
+    @Test
+    public void testFieldDataSupports() throws Exception {
+        Set<ColumnIdent> docValues = ImmutableSet.of(new ColumnIdent("a"), new ColumnIdent("a", "b"));
+        assertTrue(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("a"), DataType.LONG), docValues));
+        assertTrue(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("a"), DataType.TIMESTAMP), docValues));
+        assertFalse(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("a"), DataType.STRING), docValues));
+        assertFalse(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("a"), DataType.LONG_ARRAY), docValues));
+        assertFalse(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("a", "b"), DataType.LONG), docValues));
+        assertFalse(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("_version"), DataType.LONG), docValues));
+
+        // no doc values, e.g. INDEX OFF or dynamically added
+        assertFalse(ESFieldExtractor.FieldData.supports(info(new ColumnIdent("c"), DataType.LONG), docValues));
+    }
+
+    @Test
+    public void testFieldDataExtract() throws Exception {
+        ESFieldExtractor.FieldData ex = new ESFieldExtractor.FieldData(
+                info(new ColumnIdent("a"), DataType.FLOAT));
+
+        SearchHit hit = mock(SearchHit.class);
+        when(hit.field("a")).thenReturn(
+                new InternalSearchHitField("a", Arrays.<Object>asList((double) 42.1f)));
+        assertEquals(42.1f, ex.extract(hit));
+
+        // no value in the document
+        when(hit.field("a")).thenReturn(new InternalSearchHitField("a", new ArrayList<Object>()));
+        assertNull(ex.extract(hit));
+
+        // field not mapped in the index
+        when(hit.field("a")).thenReturn(null);
+        assertNull(ex.extract(hit));
+    }
+
 }
@@ -27,6 +27,7 @@ import io.crate.DataType;
 import io.crate.PartitionName;
 import io.crate.analyze.WhereClause;
 import io.crate.metadata.*;
+import io.crate.operation.collect.WhereClauseQueryParser;
 import io.crate.operation.operator.*;
 import io.crate.operation.predicate.IsNullPredicate;
 import io.crate.operation.predicate.NotPredicate;
@@ -39,9 +40,11 @@ import io.crate.planner.node.dql.ESSearchNode;
 import io.crate.planner.symbol.*;
 import io.crate.testing.TestingHelpers;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.Base64;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.junit.Before;
@@ -286,6 +289,45 @@ public class ESQueryBuilderTest {
                 "{\"_source\":{\"include\":[\"name\"]},\"query\":{\"term\":{\"name\":\"Marvin\"}},\"from\":0,\"size\":10000}"));
     }
 
+    @Test
+    public void testConvertESSearchNodeWithFieldDataColumns() throws Exception {
+        ESSearchNode searchNode = new ESSearchNode(
+                new String[]{characters.name()},
+                ImmutableList.<Symbol>of(name_ref, age_ref, weight_ref),
+                null,
+                null,
+                null,
+                null,
+                WhereClause.MATCH_ALL,
+                null,
+                ImmutableSet.of(new ColumnIdent("name"), new ColumnIdent("age"), new ColumnIdent("weight")));
+
+        BytesReference reference = generator.convert(searchNode);
+        String actual = reference.toUtf8();
+        assertThat(actual, is(
+                "{\"_source\":{\"include\":[\"name\"]},\"fielddata_fields\":[\"age\",\"weight\"],\"query\":{\"match_all\":{}},\"from\":0,\"size\":10000}"));
+    }
+
+    @Test
+    public void testConvertESSearchNodeWithoutDocValues() throws Exception {
+        // weight has no doc values, e.g. it is a dynamic column or INDEX OFF
+        ESSearchNode searchNode = new ESSearchNode(
+                new String[]{characters.name()},
+                ImmutableList.<Symbol>of(age_ref, weight_ref),
+                null,
+                null,
+                null,
+                null,
+                WhereClause.MATCH_ALL,
+                null,
+                ImmutableSet.of(new ColumnIdent("age")));
+
+        BytesReference reference = generator.convert(searchNode);
+        String actual = reference.toUtf8();
+        assertThat(actual, is(
+                "{\"_source\":{\"include\":[\"weight\"]},\"fielddata_fields\":[\"age\"],\"query\":{\"match_all\":{}},\"from\":0,\"size\":10000}"));
+    }
+
     @Test (expected = UnsupportedOperationException.class)
     public void testQueryWith_Version() throws Exception {
         FunctionImplementation eqImpl = functions.get(new FunctionIdent(EqOperator.NAME, typeX2(DataType.STRING)));
@@ -310,6 +352,40 @@ public class ESQueryBuilderTest {
         assertThat(actual, is("{\"query\":{\"term\":{\"name\":\"Marvin\"}}}"));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConvertESDeleteByQueryNodeToLuceneQuery() throws Exception {
+        FunctionImplementation eqImpl = functions.get(new FunctionIdent(EqOperator.NAME, typeX2(DataType.STRING)));
+        Function whereClause = new Function(eqImpl.info(), Arrays.<Symbol>asList(name_ref, new StringLiteral("Marvin")));
+
+        ESDeleteByQueryNode deleteByQueryNode = new ESDeleteByQueryNode(
+                new String[]{characters.name()},
+                new WhereClause(whereClause));
+
+        BytesReference reference = new ESQueryBuilder(true).convert(deleteByQueryNode);
+        Map<String, Object> source = XContentHelper.convertToMap(reference, false).v2();
+        Map<String, Object> query = (Map<String, Object>) source.get("query");
+        Map<String, Object> crateWhere = (Map<String, Object>) query.get(WhereClauseQueryParser.NAME);
+        byte[] where = Base64.decode((String) crateWhere.get(WhereClauseQueryParser.WHERE_FIELD));
+        assertThat(Symbol.fromStream(new BytesStreamInput(where, false)), is((Symbol) whereClause));
+    }
+
+    @Test
+    public void testUnsupportedWhereClauseIsNotConvertedToLuceneQuery() throws Exception {
+        Reference minScore_ref = new Reference(
+                new ReferenceInfo(new ReferenceIdent(null, "_score"), RowGranularity.DOC, DataType.DOUBLE));
+        Function whereClause = new Function(new FunctionInfo(
+                new FunctionIdent(EqOperator.NAME, Arrays.asList(DataType.DOUBLE, DataType.DOUBLE)),
+                DataType.BOOLEAN),
+                Arrays.<Symbol>asList(minScore_ref, new DoubleLiteral(0.4))
+        );
+        ESSearchNode node = new ESSearchNode(new String[]{"something"},
+                ImmutableList.<Symbol>of(), null, null, null, null, new WhereClause(whereClause), null);
+
+        assertThat(new ESQueryBuilder(true).convert(node).toUtf8(),
+                is("{\"_source\":false,\"query\":{\"match_all\":{}},\"min_score\":0.4,\"from\":0,\"size\":10000}"));
+    }
+
     @Test
     public void testSelect_OnlyVersion() throws Exception {
         Reference version_ref = TestingHelpers.createReference("_version", DataType.INTEGER);
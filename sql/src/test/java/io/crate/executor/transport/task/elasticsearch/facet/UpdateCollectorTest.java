@@ -0,0 +1,197 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport.task.elasticsearch.facet;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.exceptions.CrateException;
+import io.crate.exceptions.VersionConflictException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.TransportBulkAction;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.internal.SearchContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class UpdateCollectorTest {
+
+    private TransportBulkAction bulkAction;
+    private SearchContext searchContext;
+
+    /**
+     * ids of the documents whose update fails with the given status
+     */
+    private final Set<String> failingIds = new HashSet<>();
+    private RestStatus failureStatus = RestStatus.CONFLICT;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void prepare() throws Exception {
+        IndexShard indexShard = mock(IndexShard.class);
+        when(indexShard.shardId()).thenReturn(new ShardId("characters", 0));
+        searchContext = mock(SearchContext.class);
+        when(searchContext.indexShard()).thenReturn(indexShard);
+
+        bulkAction = mock(TransportBulkAction.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                BulkRequest request = (BulkRequest) invocation.getArguments()[0];
+                ActionListener<BulkResponse> listener = (ActionListener<BulkResponse>) invocation.getArguments()[1];
+                listener.onResponse(respond(request));
+                return null;
+            }
+        }).when(bulkAction).execute(any(BulkRequest.class), any(ActionListener.class));
+    }
+
+    private BulkResponse respond(BulkRequest request) {
+        List<ActionRequest> requests = request.requests();
+        BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+        for (int i = 0; i < items.length; i++) {
+            UpdateRequest updateRequest = (UpdateRequest) requests.get(i);
+            if (failingIds.contains(updateRequest.id())) {
+                items[i] = new BulkItemResponse(i, "update", new BulkItemResponse.Failure(
+                        updateRequest.index(), updateRequest.type(), updateRequest.id(),
+                        "update of " + updateRequest.id() + " failed", failureStatus));
+            } else {
+                items[i] = new BulkItemResponse(i, "update", new UpdateResponse(
+                        updateRequest.index(), updateRequest.type(), updateRequest.id(), 2L, false));
+            }
+        }
+        return new BulkResponse(items, 1L);
+    }
+
+    private UpdateCollector collect(@Nullable Long requiredVersion, int numDocs) {
+        UpdateCollector collector = new UpdateCollector(
+                ImmutableMap.<String, Object>of("name", "Arthur"), requiredVersion, bulkAction, searchContext);
+        for (int i = 0; i < numDocs; i++) {
+            collector.collect(new Uid("default", String.valueOf(i)), null);
+        }
+        collector.postCollection();
+        return collector;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BulkRequest> executedBulks() {
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(bulkAction, atLeast(0)).execute(captor.capture(), any(ActionListener.class));
+        return captor.getAllValues();
+    }
+
+    @Test
+    public void testUpdatesAreSentInBulks() throws Exception {
+        int numDocs = 2 * UpdateCollector.BULK_SIZE + 1;
+        UpdateCollector collector = collect(null, numDocs);
+
+        assertThat(collector.rowCount(), is((long) numDocs));
+        List<BulkRequest> bulks = executedBulks();
+        assertThat(bulks.size(), is(3));
+        assertThat(bulks.get(0).numberOfActions(), is(UpdateCollector.BULK_SIZE));
+        assertThat(bulks.get(1).numberOfActions(), is(UpdateCollector.BULK_SIZE));
+        assertThat(bulks.get(2).numberOfActions(), is(1));
+
+        // the last document of the first bulk and the first of the second one
+        UpdateRequest last = (UpdateRequest) bulks.get(0).requests().get(UpdateCollector.BULK_SIZE - 1);
+        UpdateRequest first = (UpdateRequest) bulks.get(1).requests().get(0);
+        assertThat(last.id(), is(String.valueOf(UpdateCollector.BULK_SIZE - 1)));
+        assertThat(first.id(), is(String.valueOf(UpdateCollector.BULK_SIZE)));
+    }
+
+    @Test
+    public void testExactlyOneBulk() throws Exception {
+        UpdateCollector collector = collect(null, UpdateCollector.BULK_SIZE);
+
+        assertThat(collector.rowCount(), is((long) UpdateCollector.BULK_SIZE));
+        assertThat(executedBulks().size(), is(1));
+    }
+
+    @Test
+    public void testConflictingVersionIsSkipped() throws Exception {
+        // one conflict in each bulk
+        failingIds.addAll(Arrays.asList("3", String.valueOf(UpdateCollector.BULK_SIZE + 3)));
+        int numDocs = UpdateCollector.BULK_SIZE + 10;
+        UpdateCollector collector = collect(1L, numDocs);
+
+        assertThat(collector.rowCount(), is((long) numDocs - 2));
+        for (BulkRequest bulk : executedBulks()) {
+            for (ActionRequest request : bulk.requests()) {
+                assertThat(((UpdateRequest) request).version(), is(1L));
+            }
+        }
+    }
+
+    @Test
+    public void testConflictWithoutRequiredVersionFails() throws Exception {
+        failingIds.add("3");
+        try {
+            collect(null, 10);
+            fail("expected the conflict to fail the update");
+        } catch (VersionConflictException e) {
+            assertThat(e.getMessage(), is("update of 3 failed"));
+            assertThat(e.status(), is(RestStatus.CONFLICT));
+        }
+    }
+
+    @Test
+    public void testFailedItemFailsUpdate() throws Exception {
+        failureStatus = RestStatus.BAD_REQUEST;
+        failingIds.add(String.valueOf(UpdateCollector.BULK_SIZE + 5));
+        UpdateCollector collector = new UpdateCollector(
+                ImmutableMap.<String, Object>of("name", "Arthur"), 1L, bulkAction, searchContext);
+        try {
+            for (int i = 0; i < 3 * UpdateCollector.BULK_SIZE; i++) {
+                collector.collect(new Uid("default", String.valueOf(i)), null);
+            }
+            collector.postCollection();
+            fail("expected the failed item to fail the update");
+        } catch (CrateException e) {
+            assertThat(e.getMessage(), is("update of " + (UpdateCollector.BULK_SIZE + 5) + " failed"));
+            assertThat(e instanceof VersionConflictException, is(false));
+        }
+        // the failure of the second bulk stops sending the third one
+        assertThat(executedBulks().size(), is(2));
+    }
+}
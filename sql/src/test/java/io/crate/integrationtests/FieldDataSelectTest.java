@@ -0,0 +1,106 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.integrationtests;
+
+import com.google.common.base.Predicate;
+import io.crate.action.sql.SQLResponse;
+import io.crate.metadata.ColumnIdent;
+import io.crate.metadata.ReferenceInfos;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.test.integration.CrateIntegrationTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+
+import static org.hamcrest.core.Is.is;
+
+/**
+ * selecting columns with and without doc values,
+ * only columns mapped with doc values are read from the field data
+ */
+@CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.GLOBAL)
+public class FieldDataSelectTest extends SQLTransportIntegrationTest {
+
+    private static final TableIdent TABLE = new TableIdent(null, "measures");
+
+    private ReferenceInfos referenceInfos;
+
+    @Before
+    public void prepare() throws Exception {
+        referenceInfos = cluster().getInstance(ReferenceInfos.class);
+        execute("create table measures (id integer, raw integer index off, value double) " +
+                "with (number_of_replicas=0)");
+        ensureGreen();
+    }
+
+    private DocTableInfo tableInfo() {
+        return (DocTableInfo) referenceInfos.getTableInfo(TABLE);
+    }
+
+    @Test
+    public void testDocValuesColumns() throws Exception {
+        DocTableInfo tableInfo = tableInfo();
+        assertTrue(tableInfo.docValuesColumns().contains(new ColumnIdent("id")));
+        assertTrue(tableInfo.docValuesColumns().contains(new ColumnIdent("value")));
+        assertFalse(tableInfo.docValuesColumns().contains(new ColumnIdent("raw")));
+    }
+
+    @Test
+    public void testSelectIndexOffColumn() throws Exception {
+        execute("insert into measures (id, raw, value) values (?, ?, ?), (?, ?, ?)", new Object[]{
+                1, 10, 1.5,
+                2, 20, 2.5
+        });
+        refresh();
+
+        SQLResponse response = execute("select id, raw, value from measures order by id");
+        assertThat(response.rowCount(), is(2L));
+        assertEquals(1, response.rows()[0][0]);
+        assertEquals(10, response.rows()[0][1]);
+        assertEquals(1.5, response.rows()[0][2]);
+        assertEquals(2, response.rows()[1][0]);
+        assertEquals(20, response.rows()[1][1]);
+        assertEquals(2.5, response.rows()[1][2]);
+    }
+
+    @Test
+    public void testSelectDynamicColumn() throws Exception {
+        execute("insert into measures (id, value, added) values (?, ?, ?)", new Object[]{1, 1.5, 42});
+        refresh();
+        assertTrue(awaitBusy(new Predicate<Object>() {
+            @Override
+            public boolean apply(@Nullable Object input) {
+                return tableInfo().getColumnInfo(new ColumnIdent("added")) != null;
+            }
+        }));
+        assertFalse(tableInfo().docValuesColumns().contains(new ColumnIdent("added")));
+
+        SQLResponse response = execute("select id, added, value from measures");
+        assertThat(response.rowCount(), is(1L));
+        assertEquals(1, response.rows()[0][0]);
+        assertEquals(42L, ((Number) response.rows()[0][1]).longValue());
+        assertEquals(1.5, response.rows()[0][2]);
+    }
+}
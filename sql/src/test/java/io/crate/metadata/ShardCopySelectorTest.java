@@ -0,0 +1,93 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata;
+
+import org.elasticsearch.cluster.routing.*;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ShardCopySelectorTest {
+
+    private static ShardIterator copies(int shardId, String... nodes) {
+        ShardRouting[] routings = new ShardRouting[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            routings[i] = new ImmutableShardRouting("t1", shardId, nodes[i], i == 0, ShardRoutingState.STARTED, 1L);
+        }
+        return new PlainShardIterator(new ShardId("t1", shardId), Arrays.asList(routings));
+    }
+
+    @Test
+    public void testSpreadShardsWithoutStats() throws Exception {
+        ShardCopySelector selector = new ShardCopySelector();
+        Map<String, Integer> assignedShards = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            selector.select(copies(i, "n1", "n2"), assignedShards);
+        }
+        assertThat(assignedShards.get("n1"), is(2));
+        assertThat(assignedShards.get("n2"), is(2));
+    }
+
+    @Test
+    public void testPreferNodeWithLowerLatency() throws Exception {
+        ShardCopySelector selector = new ShardCopySelector();
+        selector.requestStarted("n1");
+        selector.requestFinished("n1", TimeUnit.MILLISECONDS.toNanos(100), 0);
+        selector.requestStarted("n2");
+        selector.requestFinished("n2", TimeUnit.MILLISECONDS.toNanos(10), 0);
+
+        ShardRouting selected = selector.select(copies(0, "n1", "n2"), new HashMap<String, Integer>());
+        assertThat(selected.currentNodeId(), is("n2"));
+    }
+
+    @Test
+    public void testPreferNodeWithLessPendingRequests() throws Exception {
+        ShardCopySelector selector = new ShardCopySelector();
+        selector.requestStarted("n1");
+        selector.requestFinished("n1", TimeUnit.MILLISECONDS.toNanos(10), 0);
+        selector.requestStarted("n2");
+        selector.requestFinished("n2", TimeUnit.MILLISECONDS.toNanos(10), 0);
+        selector.requestStarted("n2");
+        selector.requestStarted("n2");
+
+        ShardRouting selected = selector.select(copies(0, "n2", "n1"), new HashMap<String, Integer>());
+        assertThat(selected.currentNodeId(), is("n1"));
+    }
+
+    @Test
+    public void testSkipInactiveCopies() throws Exception {
+        ShardCopySelector selector = new ShardCopySelector();
+        ShardIterator shardIterator = new PlainShardIterator(new ShardId("t1", 0), Arrays.<ShardRouting>asList(
+                new ImmutableShardRouting("t1", 0, "n1", true, ShardRoutingState.INITIALIZING, 1L),
+                new ImmutableShardRouting("t1", 0, "n2", false, ShardRoutingState.STARTED, 1L)
+        ));
+        assertThat(selector.select(shardIterator, new HashMap<String, Integer>()).currentNodeId(), is("n2"));
+    }
+}
@@ -296,6 +296,36 @@ public class DocIndexMetaDataTest {
         assertThat(md.partitionedByColumns().get(0).ident().columnIdent().fqn(), is("datum"));
     }
 
+    @Test
+    public void testDocValuesColumns() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder()
+                .startObject()
+                .startObject("properties")
+                    .startObject("id")
+                        .field("type", "integer")
+                        .field("index", "not_analyzed")
+                        .field("doc_values", true)
+                    .endObject()
+                    .startObject("raw")
+                        .field("type", "integer")
+                        .field("index", "no")
+                    .endObject()
+                    .startObject("tags")
+                        .field("type", "string")
+                        .field("index", "not_analyzed")
+                        .field("doc_values", false)
+                    .endObject()
+                    .startObject("dynamic_col")
+                        .field("type", "long")
+                    .endObject()
+                .endObject()
+                .endObject();
+        IndexMetaData metaData = getIndexMetaData("test1", builder);
+        DocIndexMetaData md = newMeta(metaData, "test1");
+
+        assertThat(md.docValuesColumns(), contains(new ColumnIdent("id")));
+    }
+
     private Map<String, Object> sortProperties(Map<String, Object> mappingSource) {
         return sortProperties(mappingSource, false);
     }
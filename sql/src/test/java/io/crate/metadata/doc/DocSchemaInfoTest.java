@@ -0,0 +1,118 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata.doc;
+
+import io.crate.Constants;
+import io.crate.metadata.ShardCopySelector;
+import io.crate.metadata.TableIdent;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DocSchemaInfoTest {
+
+    private ClusterService clusterService;
+    private DocSchemaInfo schemaInfo;
+
+    @Before
+    public void prepare() throws Exception {
+        clusterService = mock(ClusterService.class);
+        schemaInfo = new DocSchemaInfo(clusterService, null, new ShardCopySelector());
+    }
+
+    private IndexMetaData indexMetaData(String name, long version) throws IOException {
+        byte[] mapping = XContentFactory.jsonBuilder()
+                .startObject()
+                    .startObject("properties")
+                        .startObject("name")
+                            .field("type", "string")
+                            .field("index", "not_analyzed")
+                        .endObject()
+                    .endObject()
+                .endObject().bytes().toBytes();
+        Map<String, Object> mappingSource = XContentHelper.convertToMap(mapping, true).v2();
+        return IndexMetaData.builder(name)
+                .settings(ImmutableSettings.builder()
+                        .put("index.number_of_shards", 1)
+                        .put("index.number_of_replicas", 0))
+                .putMapping(new MappingMetaData(Constants.DEFAULT_MAPPING_TYPE, mappingSource))
+                .version(version)
+                .build();
+    }
+
+    private ClusterState clusterState(IndexMetaData... indices) {
+        MetaData.Builder builder = MetaData.builder();
+        for (IndexMetaData indexMetaData : indices) {
+            builder.put(indexMetaData, false);
+        }
+        ClusterState state = mock(ClusterState.class);
+        when(state.metaData()).thenReturn(builder.build());
+        return state;
+    }
+
+    @Test
+    public void testClusterChangedInvalidatesChangedTablesOnly() throws Exception {
+        IndexMetaData t1 = indexMetaData("t1", 1L);
+        ClusterState previousState = clusterState(t1, indexMetaData("t2", 1L));
+        when(clusterService.state()).thenReturn(previousState);
+
+        DocTableInfo t1Info = schemaInfo.getTableInfo("t1");
+        DocTableInfo t2Info = schemaInfo.getTableInfo("t2");
+
+        ClusterState state = clusterState(t1, indexMetaData("t2", 2L));
+        when(clusterService.state()).thenReturn(state);
+        schemaInfo.clusterChanged(new ClusterChangedEvent("test", state, previousState));
+
+        assertThat(schemaInfo.getTableInfo("t1"), sameInstance(t1Info));
+        assertThat(schemaInfo.getTableInfo("t2"), not(sameInstance(t2Info)));
+    }
+
+    @Test
+    public void testUnchangedIndexMetaDataIsReused() throws Exception {
+        DocIndexMetaDataCache cache = new DocIndexMetaDataCache();
+        IndexMetaData t1 = indexMetaData("t1", 1L);
+        TableIdent ident = new TableIdent(null, "t1");
+
+        DocIndexMetaData docIndexMetaData = cache.get(t1, ident);
+        assertThat(cache.get(t1, ident), sameInstance(docIndexMetaData));
+        assertThat(cache.get(indexMetaData("t1", 1L), ident), sameInstance(docIndexMetaData));
+        assertThat(cache.get(indexMetaData("t1", 2L), ident), not(sameInstance(docIndexMetaData)));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.module.sql.benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationCollector;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.projectors.CollectingProjector;
+import io.crate.operation.projectors.GroupingProjector;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * compares the {@link GroupingProjector} with grouping into a {@link HashMap} of boxed keys,
+ * which is how the GroupingProjector used to work.
+ */
+@AxisRange(min = 0)
+@BenchmarkMethodChart(filePrefix = "benchmark-grouping-projector")
+public class GroupingProjectorBenchmark {
+
+    public static final int NUM_ROWS = 2000000;
+    public static final int NUM_GROUPS = 500000;
+    public static final int BENCHMARK_ROUNDS = 20;
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private AggregationContext countAggregation;
+    private Object[] longKeys;
+    private Object[] stringKeys;
+
+    @Before
+    public void prepare() {
+        FunctionInfo countInfo = new FunctionInfo(
+                new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        countAggregation = new AggregationContext(
+                (AggregationFunction) functions.get(countInfo.ident()),
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.PARTIAL));
+
+        Random random = new Random(42);
+        longKeys = new Object[NUM_ROWS];
+        stringKeys = new Object[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            long key = random.nextInt(NUM_GROUPS);
+            longKeys[i] = key;
+            stringKeys[i] = new BytesRef("group_" + key);
+        }
+    }
+
+    private Object[][] groupWithProjector(Object[] keys) throws Exception {
+        KeyInput keyInput = new KeyInput(keys);
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(keyInput),
+                ImmutableList.<CollectExpression<?>>of(),
+                new AggregationContext[]{countAggregation},
+                BigArrays.NON_RECYCLING_INSTANCE
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+        projector.startProjection();
+        for (int i = 0; i < keys.length; i++) {
+            projector.setNextRow();
+        }
+        projector.upstreamFinished();
+        return collectingProjector.result().get();
+    }
+
+    private Object[][] groupWithHashMap(Object[] keys) {
+        KeyInput keyInput = new KeyInput(keys);
+        AggregationCollector collector = new AggregationCollector(
+                countAggregation.symbol(), countAggregation.function(), countAggregation.inputs());
+        Map<Object, AggregationState[]> result = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            Object key = keyInput.value();
+            AggregationState[] states = result.get(key);
+            if (states == null) {
+                collector.startCollect();
+                collector.processRow();
+                result.put(key, new AggregationState[]{collector.state()});
+            } else {
+                collector.state(states[0]);
+                collector.processRow();
+            }
+        }
+        Object[][] rows = new Object[result.size()][];
+        int r = 0;
+        for (Map.Entry<Object, AggregationState[]> entry : result.entrySet()) {
+            collector.state(entry.getValue()[0]);
+            rows[r++] = new Object[]{entry.getKey(), collector.finishCollect()};
+        }
+        return rows;
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testGroupByLongProjector() throws Exception {
+        groupWithProjector(longKeys);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testGroupByLongHashMap() throws Exception {
+        groupWithHashMap(longKeys);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testGroupByStringProjector() throws Exception {
+        groupWithProjector(stringKeys);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testGroupByStringHashMap() throws Exception {
+        groupWithHashMap(stringKeys);
+    }
+
+    private static class KeyInput implements Input<Object> {
+
+        private final Object[] keys;
+        private int idx = 0;
+
+        KeyInput(Object[] keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Object value() {
+            return keys[idx++];
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.module.sql.benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import io.crate.operation.operator.LikeMatcher;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * matches the common shapes of LIKE patterns against {@link #NUM_ROWS} values
+ * using a {@link LikeMatcher} compiled once and using a regular expression compiled per row,
+ * which is how the LikeOperator used to work.
+ */
+@AxisRange(min = 0)
+@BenchmarkMethodChart(filePrefix = "benchmark-like")
+public class LikeBenchmark {
+
+    public static final int NUM_ROWS = 200000;
+    public static final int BENCHMARK_ROUNDS = 20;
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private BytesRef[] values;
+
+    @Before
+    public void prepare() {
+        Random random = new Random(42);
+        values = new BytesRef[NUM_ROWS];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            values[i] = new BytesRef("name_" + random.nextInt(NUM_ROWS) + "_suffix");
+        }
+    }
+
+    private int matchCompiled(String pattern) {
+        LikeMatcher matcher = LikeMatcher.compile(pattern);
+        int matches = 0;
+        for (BytesRef value : values) {
+            if (matcher.matches(value)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private int matchRegex(String regex) {
+        int matches = 0;
+        for (BytesRef value : values) {
+            if (Pattern.matches(regex, value.utf8ToString())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testPrefixCompiled() throws Exception {
+        matchCompiled("name_1%");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testPrefixRegex() throws Exception {
+        matchRegex("^name_1.*$");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testSuffixCompiled() throws Exception {
+        matchCompiled("%7_suffix");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testSuffixRegex() throws Exception {
+        matchRegex("^.*7.suffix$");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testContainsCompiled() throws Exception {
+        matchCompiled("%123%");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testContainsRegex() throws Exception {
+        matchRegex("^.*123.*$");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testGeneralCompiled() throws Exception {
+        matchCompiled("name__2%suf%");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 3)
+    @Test
+    public void testGeneralRegex() throws Exception {
+        matchRegex("^name..2.*suf.*$");
+    }
+}
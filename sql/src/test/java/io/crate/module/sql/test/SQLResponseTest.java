@@ -21,6 +21,7 @@
 
 package io.crate.module.sql.test;
 
+import io.crate.DataType;
 import io.crate.action.sql.SQLResponse;
 import junit.framework.TestCase;
 import org.elasticsearch.common.io.stream.*;
@@ -32,6 +33,8 @@ import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 
@@ -140,4 +143,53 @@ public class SQLResponseTest extends TestCase {
         assertEquals(r1.rowCount(), r2.rowCount());
     }
 
+    public void testResponseStreamableColumnar() throws Exception {
+        Map<String, Object> obj = new HashMap<>();
+        obj.put("x", 1);
+        SQLResponse r1 = new SQLResponse(
+                new String[]{"b", "s", "i", "l", "f", "d", "bool", "str", "dict", "ts", "obj", "mixed", "nulls"},
+                new DataType[]{DataType.BYTE, DataType.SHORT, DataType.INTEGER, DataType.LONG, DataType.FLOAT,
+                        DataType.DOUBLE, DataType.BOOLEAN, DataType.STRING, DataType.STRING, DataType.TIMESTAMP,
+                        DataType.OBJECT, DataType.LONG, DataType.IP},
+                new Object[][]{
+                        new Object[]{(byte) 1, (short) 2, 3, 4L, 5.5f, 6.6d, true, "a", "x", 1400000000000L, obj, 1, null},
+                        new Object[]{null, null, null, null, null, null, null, null, null, null, null, 2L, null},
+                        new Object[]{(byte) -1, (short) -2, -3, -4L, -5.5f, -6.6d, false, "b", "x", 0L, null, null, null},
+                        new Object[]{(byte) 0, (short) 0, 0, 0L, 0f, 0d, true, "c", "x", null, obj, 3, null},
+                },
+                4L,
+                0L);
+
+        BytesStreamOutput o = new BytesStreamOutput();
+        r1.writeTo(o);
+        SQLResponse r2 = new SQLResponse();
+        r2.readFrom(new BytesStreamInput(o.bytes()));
+
+        assertArrayEquals(r1.cols(), r2.cols());
+        assertArrayEquals(r1.colTypes(), r2.colTypes());
+        assertArrayEquals(r1.rows(), r2.rows());
+        assertEquals(r1.rowCount(), r2.rowCount());
+    }
+
+    public void testResponseStreamableColumnarSmaller() throws Exception {
+        Object[][] rows = new Object[1000][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{(long) i, i % 3 == 0 ? null : "value" + (i % 10), i % 2 == 0};
+        }
+        String[] cols = new String[]{"id", "name", "flag"};
+        SQLResponse columnar = new SQLResponse(
+                cols, new DataType[]{DataType.LONG, DataType.STRING, DataType.BOOLEAN}, rows, 1000L, 0L);
+        SQLResponse generic = new SQLResponse(cols, rows, 1000L, 0L);
+
+        BytesStreamOutput columnarOut = new BytesStreamOutput();
+        columnar.writeTo(columnarOut);
+        BytesStreamOutput genericOut = new BytesStreamOutput();
+        generic.writeTo(genericOut);
+        assertTrue(columnarOut.size() < genericOut.size());
+
+        SQLResponse r2 = new SQLResponse();
+        r2.readFrom(new BytesStreamInput(columnarOut.bytes()));
+        assertArrayEquals(rows, r2.rows());
+    }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.batch;
+
+import io.crate.DataType;
+import io.crate.operation.projectors.BatchProjector;
+import io.crate.operation.projectors.Projector;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.*;
+
+public class RowBatchTest {
+
+    private RowBatch batch() {
+        return RowBatch.forTypes(new DataType[]{DataType.INTEGER, DataType.FLOAT, DataType.STRING, null}, 4);
+    }
+
+    @Test
+    public void testForTypes() throws Exception {
+        RowBatch batch = batch();
+        assertThat(batch.numColumns(), is(4));
+        assertThat(batch.capacity(), is(4));
+        assertThat(batch.column(0), instanceOf(LongColumnVector.class));
+        assertThat(batch.column(1), instanceOf(DoubleColumnVector.class));
+        assertThat(batch.column(2), instanceOf(ObjectColumnVector.class));
+        assertThat(batch.column(3), instanceOf(ObjectColumnVector.class));
+    }
+
+    @Test
+    public void testRowsKeepTheirTypes() throws Exception {
+        RowBatch batch = batch();
+        int row = batch.addRow();
+        ((LongColumnVector) batch.column(0)).setLong(row, 42L);
+        ((DoubleColumnVector) batch.column(1)).setDouble(row, 1.5d);
+        batch.column(2).setValue(row, "foo");
+        batch.column(3).setNull(row);
+
+        Object[] values = batch.row(row, new Object[4]);
+        assertThat((Integer) values[0], is(42));
+        assertThat((Float) values[1], is(1.5f));
+        assertThat((String) values[2], is("foo"));
+        assertThat(values[3] == null, is(true));
+    }
+
+    @Test
+    public void testClearResetsNulls() throws Exception {
+        RowBatch batch = batch();
+        int row = batch.addRow();
+        batch.column(0).setNull(row);
+        assertThat(batch.column(0).isNull(row), is(true));
+        batch.clear();
+        assertThat(batch.size(), is(0));
+
+        row = batch.addRow();
+        batch.column(0).setValue(row, 1);
+        assertThat(batch.column(0).isNull(row), is(false));
+        assertThat((Integer) batch.column(0).value(row), is(1));
+    }
+
+    @Test
+    public void testIsFull() throws Exception {
+        RowBatch batch = batch();
+        for (int i = 0; i < 4; i++) {
+            assertThat(batch.isFull(), is(false));
+            batch.addRow();
+        }
+        assertThat(batch.isFull(), is(true));
+    }
+
+    @Test
+    public void testSendToBatchProjector() throws Exception {
+        RowBatch batch = batch();
+        batch.addRow();
+        BatchProjector projector = mock(BatchProjector.class);
+        when(projector.setNextBatch(batch)).thenReturn(true);
+
+        assertThat(batch.sendTo(projector), is(true));
+        verify(projector).setNextBatch(batch);
+        verify(projector, never()).setNextRow(any(Object[].class));
+    }
+
+    @Test
+    public void testSendToRowProjectorStopsIfFinished() throws Exception {
+        RowBatch batch = batch();
+        for (int i = 0; i < 3; i++) {
+            int row = batch.addRow();
+            batch.column(0).setValue(row, i);
+        }
+        Projector projector = mock(Projector.class);
+        when(projector.setNextRow(any(Object[].class))).thenReturn(true, false);
+
+        assertThat(batch.sendTo(projector), is(false));
+        verify(projector, times(2)).setNextRow(any(Object[].class));
+    }
+}
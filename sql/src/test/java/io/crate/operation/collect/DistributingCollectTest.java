@@ -26,6 +26,7 @@ import io.crate.Constants;
 import io.crate.action.SQLXContentQueryParser;
 import io.crate.analyze.WhereClause;
 import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
 import io.crate.executor.transport.merge.TransportMergeNodeAction;
 import io.crate.metadata.*;
 import io.crate.metadata.shard.ShardReferenceImplementation;
@@ -35,6 +36,9 @@ import io.crate.metadata.sys.SysShardsTableInfo;
 import io.crate.operation.operator.AndOperator;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.operation.reference.sys.shard.ShardIdExpression;
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.writer.S3Uploads;
+import io.crate.operation.reference.doc.GlobalOrdinalsCache;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import io.crate.planner.symbol.BooleanLiteral;
@@ -61,6 +65,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.fielddata.breaker.DummyCircuitBreakerService;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportRequest;
@@ -138,6 +143,9 @@ public class DistributingCollectTest {
             when(indicesService.indexServiceSafe(TEST_TABLE_NAME)).thenReturn(indexService);
 
             bind(Settings.class).toInstance(ImmutableSettings.EMPTY);
+            bind(GroupByMemory.class).toInstance(GroupByMemory.UNLIMITED);
+            bind(GlobalOrdinalsCache.class).toInstance(new GlobalOrdinalsCache(new DummyCircuitBreakerService()));
+            bind(S3Uploads.class).toInstance(mock(S3Uploads.class));
 
             MapBinder.newMapBinder(binder(), ReferenceIdent.class, ReferenceImplementation.class);
             bind(ReferenceResolver.class).to(GlobalReferenceResolver.class);
@@ -154,6 +162,7 @@ public class DistributingCollectTest {
                             ((DiscoveryNode) args[0]).id(),
                             ((DistributedResultRequest) args[2]).rows()
                     );
+                    ((TransportResponseHandler) args[3]).handleResponse(new DistributedResultResponse());
                     return null;
                 }
             }).when(transportService).submitRequest(any(DiscoveryNode.class), Matchers.same(TransportMergeNodeAction.mergeRowsAction),
@@ -0,0 +1,294 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.Constants;
+import io.crate.DataType;
+import io.crate.Streamer;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DistributingProjectorTest {
+
+    private final List<DistributedResultRequest> requests = new ArrayList<>();
+    private final List<TransportResponseHandler> handlers = new ArrayList<>();
+    private TransportService transportService;
+    private DiscoveryNode node;
+
+    @Before
+    public void prepare() {
+        node = mock(DiscoveryNode.class);
+        when(node.id()).thenReturn("n1");
+        transportService = mock(TransportService.class);
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Object[] args = invocation.getArguments();
+                requests.add((DistributedResultRequest) args[2]);
+                handlers.add((TransportResponseHandler) args[3]);
+                return null;
+            }
+        }).when(transportService).submitRequest(any(DiscoveryNode.class), Matchers.same(TransportMergeNodeAction.mergeRowsAction),
+                Matchers.<TransportRequest>any(),
+                any(TransportResponseHandler.class));
+    }
+
+    private DistributingProjector projector(int pageSize) {
+        return new DistributingProjector(
+                UUID.randomUUID(),
+                Arrays.asList(node),
+                transportService,
+                new Streamer[]{DataType.INTEGER.streamer()},
+                new Murmur3RowPartitioner(1),
+                pageSize
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private void ack(int request) {
+        handlers.get(request).handleResponse(new DistributedResultResponse());
+    }
+
+    @Test
+    public void testSendsPagesWhileCollecting() throws Exception {
+        DistributingProjector projector = projector(2);
+        projector.startProjection();
+
+        projector.setNextRow(1);
+        assertThat(requests.size(), is(0));
+        projector.setNextRow(2);
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0).last(), is(false));
+        assertThat(requests.get(0).rows().length, is(2));
+        ack(0);
+
+        projector.setNextRow(3);
+        projector.finish();
+        assertThat(requests.size(), is(2));
+        assertThat(requests.get(1).last(), is(true));
+        assertThat(requests.get(1).rows(), is(new Object[][]{{3}}));
+        assertThat(projector.result().isDone(), is(false));
+
+        ack(1);
+        assertThat(projector.result().get(), is(Constants.EMPTY_RESULT));
+        assertThat(projector.rowCounts(), is(new long[]{3L}));
+    }
+
+    @Test
+    public void testLastPageIsSentAfterPendingPagesAreAcknowledged() throws Exception {
+        DistributingProjector projector = projector(1);
+        projector.startProjection();
+
+        projector.setNextRow(1);
+        projector.setNextRow(2);
+        projector.finish();
+        assertThat(requests.size(), is(2));
+
+        ack(1);
+        assertThat(requests.size(), is(2));
+        ack(0);
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).last(), is(true));
+        assertThat(requests.get(2).rows().length, is(0));
+    }
+
+    @Test
+    public void testFailureReplacesLastPage() throws Exception {
+        DistributingProjector projector = projector(10);
+        projector.startProjection();
+
+        projector.setNextRow(1);
+        projector.fail(new IllegalStateException("dummy"));
+        assertThat(projector.setNextRow(2), is(false));
+
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0).failure(), is(true));
+        ack(0);
+        assertThat(projector.result().isDone(), is(true));
+    }
+
+    @Test
+    public void testPagesAreQueuedWhileTooManyArePending() throws Exception {
+        DistributingProjector projector = projector(1);
+        projector.startProjection();
+
+        for (int i = 0; i < DistributingProjector.MAX_PENDING_PAGES + 2; i++) {
+            assertThat(projector.setNextRow(i), is(true));
+        }
+        // the exceeding pages are queued instead of blocking the upstream
+        assertThat(requests.size(), is(DistributingProjector.MAX_PENDING_PAGES));
+        projector.finish();
+        assertThat(requests.size(), is(DistributingProjector.MAX_PENDING_PAGES));
+
+        ack(0);
+        assertThat(requests.size(), is(DistributingProjector.MAX_PENDING_PAGES + 1));
+        assertThat(requests.get(DistributingProjector.MAX_PENDING_PAGES).rows(),
+                is(new Object[][]{{DistributingProjector.MAX_PENDING_PAGES}}));
+        ack(1);
+        ack(2);
+        ack(3);
+        assertThat(requests.size(), is(DistributingProjector.MAX_PENDING_PAGES + 3));
+        assertThat(requests.get(requests.size() - 1).last(), is(true));
+        ack(requests.size() - 1);
+        assertThat(projector.result().get(), is(Constants.EMPTY_RESULT));
+        assertThat(projector.rowCounts(), is(new long[]{DistributingProjector.MAX_PENDING_PAGES + 2}));
+    }
+
+    /**
+     * calls {@link DistributingProjector#setNextRow(Object...)} in another thread,
+     * its result is set to <code>accepted</code>
+     */
+    private Thread setNextRowAsync(final DistributingProjector projector,
+                                   final int value,
+                                   final AtomicReference<Boolean> accepted) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accepted.set(projector.setNextRow(value));
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private int fillQueue(DistributingProjector projector) {
+        int maxBuffered = DistributingProjector.MAX_PENDING_PAGES + DistributingProjector.MAX_QUEUED_PAGES;
+        for (int i = 0; i < maxBuffered; i++) {
+            assertThat(projector.setNextRow(i), is(true));
+        }
+        return maxBuffered;
+    }
+
+    @Test
+    public void testUpstreamIsThrottledIfTooManyPagesAreQueued() throws Exception {
+        DistributingProjector projector = projector(1);
+        projector.startProjection();
+        int maxBuffered = fillQueue(projector);
+
+        AtomicReference<Boolean> accepted = new AtomicReference<>();
+        Thread upstream = setNextRowAsync(projector, maxBuffered, accepted);
+        upstream.join(100);
+        assertThat(upstream.isAlive(), is(true));
+
+        // a slow downstream node doesn't fail the distribution
+        ack(0);
+        upstream.join(5000);
+        assertThat(upstream.isAlive(), is(false));
+        assertThat(accepted.get(), is(true));
+
+        projector.finish();
+        for (int i = 1; i < requests.size(); i++) {
+            ack(i);
+        }
+        assertThat(requests.size(), is(maxBuffered + 2));
+        assertThat(requests.get(requests.size() - 1).last(), is(true));
+        assertThat(projector.result().get(), is(Constants.EMPTY_RESULT));
+        assertThat(projector.rowCounts(), is(new long[]{maxBuffered + 1}));
+    }
+
+    @Test
+    public void testThrottledUpstreamIsReleasedOnFailure() throws Exception {
+        DistributingProjector projector = projector(1);
+        projector.startProjection();
+        int maxBuffered = fillQueue(projector);
+
+        AtomicReference<Boolean> accepted = new AtomicReference<>();
+        Thread upstream = setNextRowAsync(projector, maxBuffered, accepted);
+        upstream.join(100);
+        assertThat(upstream.isAlive(), is(true));
+
+        projector.fail(new IllegalStateException("killed"));
+        upstream.join(5000);
+        assertThat(upstream.isAlive(), is(false));
+        assertThat(accepted.get(), is(false));
+
+        // the queued pages are dropped, the failure is sent once the pending pages are acknowledged
+        for (int i = 0; i < DistributingProjector.MAX_PENDING_PAGES; i++) {
+            ack(i);
+        }
+        assertThat(requests.size(), is(DistributingProjector.MAX_PENDING_PAGES + 1));
+        assertThat(requests.get(requests.size() - 1).failure(), is(true));
+        ack(requests.size() - 1);
+        try {
+            projector.result().get();
+            fail("result must fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test
+    public void testInterruptingThrottledUpstreamFailsDistribution() throws Exception {
+        DistributingProjector projector = projector(1);
+        projector.startProjection();
+        int maxBuffered = fillQueue(projector);
+
+        AtomicReference<Boolean> accepted = new AtomicReference<>();
+        Thread upstream = setNextRowAsync(projector, maxBuffered, accepted);
+        upstream.join(100);
+        assertThat(upstream.isAlive(), is(true));
+
+        upstream.interrupt();
+        upstream.join(5000);
+        assertThat(upstream.isAlive(), is(false));
+        assertThat(accepted.get(), is(false));
+
+        for (int i = 0; i < DistributingProjector.MAX_PENDING_PAGES; i++) {
+            ack(i);
+        }
+        assertThat(requests.get(requests.size() - 1).failure(), is(true));
+        ack(requests.size() - 1);
+        try {
+            projector.result().get();
+            fail("result must fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(InterruptedException.class));
+        }
+    }
+}
@@ -38,6 +38,9 @@ import io.crate.operation.operator.AndOperator;
 import io.crate.operation.operator.EqOperator;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.operation.reference.sys.shard.SysShardExpression;
+import io.crate.operation.projectors.groupby.GroupByMemory;
+import io.crate.operation.projectors.writer.S3Uploads;
+import io.crate.operation.reference.doc.GlobalOrdinalsCache;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import io.crate.planner.symbol.*;
@@ -58,6 +61,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.fielddata.breaker.DummyCircuitBreakerService;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Before;
@@ -190,6 +194,9 @@ public class LocalDataCollectTest {
             IndicesService indicesService = mock(IndicesService.class);
             bind(IndicesService.class).toInstance(indicesService);
             bind(Settings.class).toInstance(ImmutableSettings.EMPTY);
+            bind(GroupByMemory.class).toInstance(GroupByMemory.UNLIMITED);
+            bind(GlobalOrdinalsCache.class).toInstance(new GlobalOrdinalsCache(new DummyCircuitBreakerService()));
+            bind(S3Uploads.class).toInstance(mock(S3Uploads.class));
 
             bind(ReferenceResolver.class).to(GlobalReferenceResolver.class);
             MapBinder<ReferenceIdent, ReferenceImplementation> binder = MapBinder
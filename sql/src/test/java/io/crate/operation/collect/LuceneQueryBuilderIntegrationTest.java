@@ -0,0 +1,173 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.DataType;
+import io.crate.analyze.WhereClause;
+import io.crate.executor.transport.task.elasticsearch.ESQueryBuilder;
+import io.crate.integrationtests.SQLTransportIntegrationTest;
+import io.crate.metadata.*;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.*;
+import io.crate.test.integration.CrateIntegrationTest;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.indices.IndicesService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * checks that the queries of the {@link LuceneQueryBuilder} match the same documents
+ * as the queries elasticsearch parses from the query DSL of the {@link ESQueryBuilder}.
+ */
+@CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.GLOBAL)
+public class LuceneQueryBuilderIntegrationTest extends SQLTransportIntegrationTest {
+
+    private static final TableIdent characters = new TableIdent(null, "characters");
+
+    private Functions functions;
+
+    @Before
+    public void prepare() throws Exception {
+        functions = cluster().getInstance(Functions.class);
+        execute("create table characters (name string, age integer, weight double, born timestamp, good boolean) " +
+                "clustered into 2 shards with (number_of_replicas=0)");
+        ensureGreen();
+        execute("insert into characters (name, age, weight, born, good) values " +
+                "(?, ?, ?, ?, ?), (?, ?, ?, ?, ?), (?, ?, ?, ?, ?), (?, ?, ?, ?, ?)", new Object[]{
+                "Arthur", 38, 79.5, 1401235200000L, true,
+                "Trillian", 33, 54.3, 1370000000000L, true,
+                "Marvin", 10000, 120.0, 0L, false,
+                "Zaphod", 42, 82.1, 1390000000000L, false
+        });
+        refresh();
+    }
+
+    private static Reference ref(String name, DataType type) {
+        return new Reference(new ReferenceInfo(new ReferenceIdent(characters, name), RowGranularity.DOC, type));
+    }
+
+    private Function function(String name, List<DataType> argumentTypes, Symbol... arguments) {
+        FunctionImplementation impl = functions.get(new FunctionIdent(name, argumentTypes));
+        return new Function(impl.info(), Arrays.asList(arguments));
+    }
+
+    private Function cmp(String name, DataType type, String column, Literal value) {
+        return function(name, Arrays.asList(type, type), ref(column, type), value);
+    }
+
+    /**
+     * @return the number of documents matched by the query of the where clause
+     */
+    private int assertParity(Function query) throws Exception {
+        WhereClause whereClause = new WhereClause(query);
+        BytesReference querySource = new ESQueryBuilder().convert(whereClause);
+        int matched = 0;
+        for (IndicesService indicesService : cluster().getInstances(IndicesService.class)) {
+            IndexService indexService = indicesService.indexService(characters.name());
+            if (indexService == null) {
+                continue;
+            }
+            Query parsedQuery = indexService.queryParserService().parseQuery(querySource).query();
+            Query luceneQuery = new LuceneQueryBuilder().convert(whereClause, indexService.mapperService());
+            assertThat(luceneQuery != null, is(true));
+            for (IndexShard indexShard : indexService) {
+                Engine.Searcher searcher = indexShard.acquireSearcher("test");
+                try {
+                    Set<Integer> expected = matches(searcher.searcher(), parsedQuery);
+                    assertThat(matches(searcher.searcher(), luceneQuery), is(expected));
+                    matched += expected.size();
+                } finally {
+                    searcher.release();
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static Set<Integer> matches(IndexSearcher searcher, Query query) throws IOException {
+        Set<Integer> docs = new HashSet<>();
+        for (ScoreDoc scoreDoc : searcher.search(query, 100).scoreDocs) {
+            docs.add(scoreDoc.doc);
+        }
+        return docs;
+    }
+
+    @Test
+    public void testEq() throws Exception {
+        assertThat(assertParity(cmp(EqOperator.NAME, DataType.STRING, "name", new StringLiteral("Arthur"))), is(1));
+        assertThat(assertParity(cmp(EqOperator.NAME, DataType.INTEGER, "age", new IntegerLiteral(42))), is(1));
+        assertThat(assertParity(cmp(EqOperator.NAME, DataType.BOOLEAN, "good", new BooleanLiteral(true))), is(2));
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        assertThat(assertParity(cmp(GtOperator.NAME, DataType.INTEGER, "age", new IntegerLiteral(38))), is(2));
+        assertThat(assertParity(cmp(LteOperator.NAME, DataType.DOUBLE, "weight", new DoubleLiteral(79.5))), is(2));
+        assertThat(assertParity(
+                cmp(GteOperator.NAME, DataType.TIMESTAMP, "born", new LongLiteral(1390000000000L))), is(2));
+        assertThat(assertParity(cmp(LtOperator.NAME, DataType.STRING, "name", new StringLiteral("Trillian"))), is(2));
+    }
+
+    @Test
+    public void testLikeAndIn() throws Exception {
+        assertThat(assertParity(cmp(LikeOperator.NAME, DataType.STRING, "name", new StringLiteral("%r%"))),
+                greaterThan(0));
+        Set<Integer> ages = new HashSet<>(Arrays.asList(33, 42, 7));
+        assertThat(assertParity(function(InOperator.NAME, Arrays.asList(DataType.INTEGER, DataType.INTEGER_SET),
+                ref("age", DataType.INTEGER), new SetLiteral(DataType.INTEGER, ages))), is(2));
+        Set<BytesRef> names = new HashSet<>(Arrays.asList(new BytesRef("Marvin"), new BytesRef("Ford")));
+        assertThat(assertParity(function(InOperator.NAME, Arrays.asList(DataType.STRING, DataType.STRING_SET),
+                ref("name", DataType.STRING), new SetLiteral(DataType.STRING, names))), is(1));
+    }
+
+    @Test
+    public void testAndOrNot() throws Exception {
+        Function good = cmp(EqOperator.NAME, DataType.BOOLEAN, "good", new BooleanLiteral(true));
+        Function old = cmp(GtOperator.NAME, DataType.INTEGER, "age", new IntegerLiteral(35));
+        Function heavy = cmp(GtOperator.NAME, DataType.DOUBLE, "weight", new DoubleLiteral(100.0));
+        List<DataType> booleans = Arrays.asList(DataType.BOOLEAN, DataType.BOOLEAN);
+
+        assertThat(assertParity(function(AndOperator.NAME, booleans, good, old)), is(1));
+        assertThat(assertParity(function(OrOperator.NAME, booleans, good, heavy)), is(3));
+        assertThat(assertParity(function(NotPredicate.NAME, Arrays.asList(DataType.BOOLEAN),
+                function(OrOperator.NAME, booleans, good, heavy))), is(1));
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableSet;
+import io.crate.Constants;
+import io.crate.DataType;
+import io.crate.analyze.WhereClause;
+import io.crate.metadata.*;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.IsNullPredicate;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.*;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.analysis.AnalysisService;
+import org.elasticsearch.index.codec.docvaluesformat.DocValuesFormatService;
+import org.elasticsearch.index.codec.postingsformat.PostingsFormatService;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.DocumentMapperParser;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.similarity.SimilarityLookupService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LuceneQueryBuilderTest {
+
+    static TableIdent characters = new TableIdent(null, "characters");
+    static Reference name_ref = new Reference(new ReferenceInfo(
+            new ReferenceIdent(characters, "name"), RowGranularity.DOC, DataType.STRING));
+    static Reference age_ref = new Reference(new ReferenceInfo(
+            new ReferenceIdent(characters, "age"), RowGranularity.DOC, DataType.INTEGER));
+    static Reference weight_ref = new Reference(new ReferenceInfo(
+            new ReferenceIdent(characters, "weight"), RowGranularity.DOC, DataType.DOUBLE));
+    static Reference score_ref = new Reference(new ReferenceInfo(
+            new ReferenceIdent(characters, "_score"), RowGranularity.DOC, DataType.DOUBLE));
+    static Reference born_ref = new Reference(new ReferenceInfo(
+            new ReferenceIdent(characters, "born"), RowGranularity.DOC, DataType.TIMESTAMP));
+    static Reference good_ref = new Reference(new ReferenceInfo(
+            new ReferenceIdent(characters, "good"), RowGranularity.DOC, DataType.BOOLEAN));
+
+    private Functions functions;
+    private LuceneQueryBuilder builder;
+
+    private List<DataType> typeX2(DataType type) {
+        return Arrays.asList(type, type);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        functions = new ModulesBuilder()
+                .add(new OperatorModule())
+                .add(new PredicateModule())
+                .add(new ScalarFunctionModule())
+                .createInjector().getInstance(Functions.class);
+        builder = new LuceneQueryBuilder();
+    }
+
+    private Function function(String name, List<DataType> argumentTypes, Symbol... arguments) {
+        FunctionImplementation impl = functions.get(new FunctionIdent(name, argumentTypes));
+        return new Function(impl.info(), Arrays.asList(arguments));
+    }
+
+    private Query convert(Symbol query) {
+        return builder.convert(new WhereClause(query), null);
+    }
+
+    /**
+     * a mapper service which returns the field mappers of the characters mapping
+     */
+    private MapperService mapperService() throws Exception {
+        Index index = new Index(characters.name());
+        DocumentMapperParser parser = new DocumentMapperParser(index,
+                ImmutableSettings.Builder.EMPTY_SETTINGS,
+                new AnalysisService(index),
+                new PostingsFormatService(index),
+                new DocValuesFormatService(index),
+                new SimilarityLookupService(index));
+        XContentBuilder mapping = XContentFactory.jsonBuilder()
+                .startObject()
+                    .startObject(Constants.DEFAULT_MAPPING_TYPE)
+                        .startObject("properties")
+                            .startObject("name").field("type", "string").field("index", "not_analyzed").endObject()
+                            .startObject("age").field("type", "integer").endObject()
+                            .startObject("weight").field("type", "double").endObject()
+                            .startObject("born").field("type", "date").endObject()
+                            .startObject("good").field("type", "boolean").endObject()
+                        .endObject()
+                    .endObject()
+                .endObject();
+        final DocumentMapper documentMapper = parser.parse(mapping.string());
+        MapperService mapperService = mock(MapperService.class);
+        when(mapperService.smartNameFieldMapper(anyString())).thenAnswer(new Answer<FieldMapper>() {
+            @Override
+            public FieldMapper answer(InvocationOnMock invocation) throws Throwable {
+                return documentMapper.mappers().smartNameFieldMapper((String) invocation.getArguments()[0]);
+            }
+        });
+        return mapperService;
+    }
+
+    private Query convertMapped(Symbol query) throws Exception {
+        return builder.convert(new WhereClause(query), mapperService());
+    }
+
+    @Test
+    public void testNoQuery() throws Exception {
+        Query query = builder.convert(WhereClause.MATCH_ALL, null);
+        assertThat(query, instanceOf(MatchAllDocsQuery.class));
+    }
+
+    @Test
+    public void testEqStringLiteral() throws Exception {
+        Query query = convert(function(EqOperator.NAME, typeX2(DataType.STRING),
+                name_ref, new StringLiteral("Marvin")));
+        assertThat(query, instanceOf(TermQuery.class));
+        assertThat(((TermQuery) query).getTerm(), is(new Term("name", "Marvin")));
+    }
+
+    @Test
+    public void testNestedAndOr() throws Exception {
+        Function eqName = function(EqOperator.NAME, typeX2(DataType.STRING),
+                name_ref, new StringLiteral("Marvin"));
+        Function eqAge = function(EqOperator.NAME, typeX2(DataType.INTEGER),
+                age_ref, new IntegerLiteral(84));
+        Function or = function(OrOperator.NAME, typeX2(DataType.BOOLEAN), eqName, eqAge);
+        Function and = function(AndOperator.NAME, typeX2(DataType.BOOLEAN), eqName, or);
+
+        Query query = convert(and);
+        assertThat(query, instanceOf(BooleanQuery.class));
+        BooleanClause[] clauses = ((BooleanQuery) query).getClauses();
+        assertThat(clauses.length, is(2));
+        assertThat(clauses[0].getOccur(), is(BooleanClause.Occur.MUST));
+        assertThat(clauses[1].getOccur(), is(BooleanClause.Occur.MUST));
+
+        BooleanQuery orQuery = (BooleanQuery) clauses[1].getQuery();
+        assertThat(orQuery.getMinimumNumberShouldMatch(), is(1));
+        assertThat(orQuery.getClauses()[0].getOccur(), is(BooleanClause.Occur.SHOULD));
+        assertThat(((TermQuery) orQuery.getClauses()[1].getQuery()).getTerm(), is(new Term("age", "84")));
+    }
+
+    @Test
+    public void testLtAndGte() throws Exception {
+        TermRangeQuery lt = (TermRangeQuery) convert(function(LtOperator.NAME, typeX2(DataType.DOUBLE),
+                weight_ref, new DoubleLiteral(54.3)));
+        assertThat(lt.getLowerTerm(), nullValue());
+        assertThat(lt.getUpperTerm(), is(new BytesRef("54.3")));
+        assertThat(lt.includesUpper(), is(false));
+
+        TermRangeQuery gte = (TermRangeQuery) convert(function(GteOperator.NAME, typeX2(DataType.DOUBLE),
+                weight_ref, new DoubleLiteral(54.3)));
+        assertThat(gte.getLowerTerm(), is(new BytesRef("54.3")));
+        assertThat(gte.getUpperTerm(), nullValue());
+        assertThat(gte.includesLower(), is(true));
+    }
+
+    @Test
+    public void testNotLike() throws Exception {
+        Function like = function(LikeOperator.NAME, typeX2(DataType.STRING),
+                name_ref, new StringLiteral("%thu%"));
+        Query query = convert(function(NotPredicate.NAME, Arrays.asList(DataType.BOOLEAN), like));
+
+        BooleanClause[] clauses = ((BooleanQuery) query).getClauses();
+        assertThat(clauses[0].getOccur(), is(BooleanClause.Occur.MUST_NOT));
+        assertThat(((WildcardQuery) clauses[0].getQuery()).getTerm(), is(new Term("name", "*thu*")));
+        assertThat(clauses[1].getQuery(), instanceOf(MatchAllDocsQuery.class));
+    }
+
+    @Test
+    public void testInStringSet() throws Exception {
+        Set<BytesRef> values = ImmutableSet.of(new BytesRef("alpha"), new BytesRef("bravo"));
+        Query query = convert(function(InOperator.NAME, Arrays.asList(DataType.STRING, DataType.STRING_SET),
+                name_ref, new SetLiteral(DataType.STRING, values)));
+
+        Set<Term> terms = new HashSet<>();
+        for (BooleanClause clause : ((BooleanQuery) query).getClauses()) {
+            assertThat(clause.getOccur(), is(BooleanClause.Occur.SHOULD));
+            terms.add(((TermQuery) clause.getQuery()).getTerm());
+        }
+        assertThat(terms, containsInAnyOrder(new Term("name", "alpha"), new Term("name", "bravo")));
+    }
+
+    @Test
+    public void testUnsupportedFunctionsAreNotConverted() throws Exception {
+        Function isNull = function(IsNullPredicate.NAME, Arrays.asList(DataType.STRING), name_ref);
+        assertThat(convert(isNull), nullValue());
+
+        Function eqName = function(EqOperator.NAME, typeX2(DataType.STRING),
+                name_ref, new StringLiteral("Marvin"));
+        assertThat(convert(function(AndOperator.NAME, typeX2(DataType.BOOLEAN), eqName, isNull)), nullValue());
+
+        Function scoreGte = function(GteOperator.NAME, typeX2(DataType.DOUBLE),
+                score_ref, new DoubleLiteral(0.4));
+        assertThat(convert(scoreGte), nullValue());
+    }
+
+    @Test
+    public void testInSetWithNull() throws Exception {
+        Set<BytesRef> values = new HashSet<>(Arrays.asList(new BytesRef("alpha"), null));
+        Query query = convert(function(InOperator.NAME, Arrays.asList(DataType.STRING, DataType.STRING_SET),
+                name_ref, new SetLiteral(DataType.STRING, values)));
+
+        BooleanClause[] clauses = ((BooleanQuery) query).getClauses();
+        assertThat(clauses.length, is(1));
+        assertThat(((TermQuery) clauses[0].getQuery()).getTerm(), is(new Term("name", "alpha")));
+    }
+
+    @Test
+    public void testMappedNumericEqAndRange() throws Exception {
+        NumericRangeQuery eq = (NumericRangeQuery) convertMapped(function(EqOperator.NAME, typeX2(DataType.INTEGER),
+                age_ref, new IntegerLiteral(84)));
+        assertThat(eq.getField(), is("age"));
+        assertThat(eq.getMin(), is((Number) 84));
+        assertThat(eq.getMax(), is((Number) 84));
+
+        NumericRangeQuery gt = (NumericRangeQuery) convertMapped(function(GtOperator.NAME, typeX2(DataType.DOUBLE),
+                weight_ref, new DoubleLiteral(54.3)));
+        assertThat(gt.getField(), is("weight"));
+        assertThat(gt.getMin(), is((Number) 54.3));
+        assertThat(gt.getMax(), nullValue());
+        assertThat(gt.includesMin(), is(false));
+    }
+
+    @Test
+    public void testMappedDateRange() throws Exception {
+        NumericRangeQuery lte = (NumericRangeQuery) convertMapped(function(LteOperator.NAME, typeX2(DataType.TIMESTAMP),
+                born_ref, new LongLiteral(1401235200000L)));
+        assertThat(lte.getField(), is("born"));
+        assertThat(lte.getMin(), nullValue());
+        assertThat(lte.getMax(), is((Number) 1401235200000L));
+        assertThat(lte.includesMax(), is(true));
+    }
+
+    @Test
+    public void testMappedBoolean() throws Exception {
+        TermQuery eq = (TermQuery) convertMapped(function(EqOperator.NAME, typeX2(DataType.BOOLEAN),
+                good_ref, new BooleanLiteral(true)));
+        assertThat(eq.getTerm(), is(new Term("good", "T")));
+    }
+
+    @Test
+    public void testMappedString() throws Exception {
+        TermQuery eq = (TermQuery) convertMapped(function(EqOperator.NAME, typeX2(DataType.STRING),
+                name_ref, new StringLiteral("Marvin")));
+        assertThat(eq.getTerm(), is(new Term("name", "Marvin")));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+
+public class Murmur3RowPartitionerTest {
+
+    @Test
+    public void testSkewedFirstKeyColumn() throws Exception {
+        RowPartitioner partitioner = new Murmur3RowPartitioner(2);
+        int numBuckets = 4;
+        int numRows = 10000;
+        int[] counts = new int[numBuckets];
+        for (int i = 0; i < numRows; i++) {
+            counts[partitioner.bucket(new Object[]{new BytesRef("AT"), (long) i, 1L}, numBuckets)]++;
+        }
+        for (int count : counts) {
+            assertThat(count, greaterThan(numRows / numBuckets * 9 / 10));
+            assertThat(count, lessThan(numRows / numBuckets * 11 / 10));
+        }
+    }
+
+    @Test
+    public void testOnlyKeyColumnsAreHashed() throws Exception {
+        RowPartitioner partitioner = new Murmur3RowPartitioner(1);
+        for (int i = 0; i < 100; i++) {
+            assertThat(partitioner.bucket(new Object[]{(long) i, 1L}, 7),
+                    is(partitioner.bucket(new Object[]{(long) i, 2L}, 7)));
+        }
+    }
+
+    @Test
+    public void testStringAndBytesRefAreInTheSameBucket() throws Exception {
+        RowPartitioner partitioner = new Murmur3RowPartitioner(1);
+        for (int i = 0; i < 100; i++) {
+            assertThat(partitioner.bucket(new Object[]{"foo" + i}, 5),
+                    is(partitioner.bucket(new Object[]{new BytesRef("foo" + i)}, 5)));
+        }
+    }
+
+    @Test
+    public void testBucketInRange() throws Exception {
+        RowPartitioner partitioner = new Murmur3RowPartitioner(3);
+        Object[][] rows = new Object[][]{
+                null,
+                new Object[0],
+                new Object[]{null, null, null},
+                new Object[]{Long.MIN_VALUE, Double.NaN, true},
+                new Object[]{-0.0f, (short) -1, new BytesRef()},
+        };
+        for (Object[] row : rows) {
+            int bucket = partitioner.bucket(row, 3);
+            assertThat(bucket, greaterThan(-1));
+            assertThat(bucket, lessThan(3));
+        }
+        assertThat(partitioner.bucket(new Object[]{1L}, 1), is(0));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.*;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.projectors.CollectingProjector;
+import io.crate.operation.projectors.GroupingProjector;
+import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.SortingTopNProjector;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ShardProjectorChainTest {
+
+    private ProjectionToProjectorVisitor visitor;
+    private FunctionInfo countInfo;
+
+    @Before
+    public void prepare() {
+        ReferenceResolver referenceResolver = new GlobalReferenceResolver(new HashMap<ReferenceIdent, ReferenceImplementation>());
+        Injector injector = new ModulesBuilder()
+                .add(new AggregationImplModule())
+                .add(new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(Client.class).toInstance(mock(Client.class));
+                    }
+                })
+                .createInjector();
+        Functions functions = injector.getInstance(Functions.class);
+        ImplementationSymbolVisitor symbolVisitor =
+                new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.NODE);
+        visitor = ProjectionToProjectorVisitor.builder(injector.getProvider(Client.class), symbolVisitor).build();
+        countInfo = new FunctionInfo(
+                new FunctionIdent(CountAggregation.NAME, Arrays.asList(DataType.STRING)), DataType.LONG);
+    }
+
+    @Test
+    public void testGroupProjectionIsExecutedPerShard() throws Exception {
+        GroupProjection projection = new GroupProjection(
+                Arrays.<Symbol>asList(new InputColumn(0)),
+                Arrays.asList(new Aggregation(countInfo, Arrays.<Symbol>asList(new InputColumn(0)),
+                        Aggregation.Step.ITER, Aggregation.Step.FINAL))
+        );
+        ShardProjectorChain chain = new ShardProjectorChain(2, ImmutableList.<Projection>of(projection), visitor);
+
+        Projector shard1 = chain.newShardDownstreamProjector(visitor);
+        Projector shard2 = chain.newShardDownstreamProjector(visitor);
+        assertThat(shard1, instanceOf(GroupingProjector.class));
+        assertThat(shard1, not(sameInstance(shard2)));
+        shard1.registerUpstream(null);
+        shard2.registerUpstream(null);
+
+        chain.startProjections();
+        shard1.setNextRow("a");
+        shard1.setNextRow("b");
+        shard2.setNextRow("a");
+        shard2.setNextRow("a");
+        shard1.upstreamFinished();
+        shard2.upstreamFinished();
+
+        Object[][] rows = chain.result().get();
+        assertThat(rows.length, is(2));
+        Map<Object, Object> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put(row[0], row[1]);
+        }
+        assertThat((Long) counts.get("a"), is(3L));
+        assertThat((Long) counts.get("b"), is(1L));
+    }
+
+    @Test
+    public void testGroupProjectionIsNotSplitForOneShard() throws Exception {
+        GroupProjection projection = new GroupProjection(
+                Arrays.<Symbol>asList(new InputColumn(0)),
+                Arrays.asList(new Aggregation(countInfo, Arrays.<Symbol>asList(new InputColumn(0)),
+                        Aggregation.Step.ITER, Aggregation.Step.FINAL))
+        );
+        ShardProjectorChain chain = new ShardProjectorChain(1, ImmutableList.<Projection>of(projection), visitor);
+        assertThat(chain.newShardDownstreamProjector(visitor), sameInstance(chain.newShardDownstreamProjector(visitor)));
+    }
+
+    @Test
+    public void testPartialGroupsAreMergedPerNodeBeforeTheFinalProjector() throws Exception {
+        GroupProjection projection = new GroupProjection(
+                Arrays.<Symbol>asList(new InputColumn(0)),
+                Arrays.asList(new Aggregation(countInfo, Arrays.<Symbol>asList(new InputColumn(0)),
+                        Aggregation.Step.ITER, Aggregation.Step.PARTIAL))
+        );
+        CollectingProjector finalProjector = new CollectingProjector();
+        ShardProjectorChain chain = new ShardProjectorChain(
+                2, ImmutableList.<Projection>of(projection), visitor, finalProjector);
+
+        Projector shard1 = chain.newShardDownstreamProjector(visitor);
+        Projector shard2 = chain.newShardDownstreamProjector(visitor);
+        assertThat(shard1, not(sameInstance(shard2)));
+        shard1.registerUpstream(null);
+        shard2.registerUpstream(null);
+
+        chain.startProjections();
+        shard1.setNextRow("a");
+        shard1.setNextRow("b");
+        shard2.setNextRow("a");
+        shard1.upstreamFinished();
+        shard2.upstreamFinished();
+
+        // every group is sent once per node, not once per shard
+        Object[][] rows = finalProjector.result().get();
+        assertThat(rows.length, is(2));
+        Map<Object, Object> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put(row[0], ((CountAggregation.CountAggState) row[1]).value());
+        }
+        assertThat((Long) counts.get("a"), is(2L));
+        assertThat((Long) counts.get("b"), is(1L));
+    }
+
+    @Test
+    public void testOrderedTopNProjectionIsExecutedPerShard() throws Exception {
+        TopNProjection projection = new TopNProjection(3, 1,
+                Arrays.<Symbol>asList(new InputColumn(1)), new boolean[]{false});
+        projection.outputs(Arrays.<Symbol>asList(new InputColumn(0)));
+        ShardProjectorChain chain = new ShardProjectorChain(2, ImmutableList.<Projection>of(projection), visitor);
+
+        Projector shard1 = chain.newShardDownstreamProjector(visitor);
+        Projector shard2 = chain.newShardDownstreamProjector(visitor);
+        assertThat(shard1, instanceOf(SortingTopNProjector.class));
+        assertThat(shard1, not(sameInstance(shard2)));
+        shard1.registerUpstream(null);
+        shard2.registerUpstream(null);
+
+        chain.startProjections();
+        shard1.setNextRow("e", 5);
+        shard1.setNextRow("a", 1);
+        shard1.setNextRow("c", 3);
+        shard2.setNextRow("d", 4);
+        shard2.setNextRow("b", 2);
+        shard2.setNextRow("f", 6);
+        shard1.upstreamFinished();
+        shard2.upstreamFinished();
+
+        Object[][] rows = chain.result().get();
+        assertThat(rows.length, is(3));
+        assertThat(rows[0].length, is(1));
+        assertThat((String) rows[0][0], is("b"));
+        assertThat((String) rows[1][0], is("c"));
+        assertThat((String) rows[2][0], is("d"));
+    }
+}
@@ -27,6 +27,8 @@ import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
 import io.crate.DataType;
 import io.crate.external.S3ClientHelper;
@@ -37,20 +39,30 @@ import io.crate.metadata.Functions;
 import io.crate.operation.projectors.CollectingProjector;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.*;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.GZIPOutputStream;
 
 import static io.crate.testing.TestingHelpers.createReference;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -141,6 +153,168 @@ public class FileReadingCollectorTest {
         assertCorrectResult(projector.result().get());
     }
 
+    @Test
+    public void testCollectSplitFileInParallel() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".json");
+        Set<String> lines = new HashSet<>();
+        try (FileWriter writer = new FileWriter(file)) {
+            for (int i = 0; i < 1000; i++) {
+                String line = "{\"id\": " + i + ", \"name\": \"" + Integer.toHexString(i * 7919) + "\"}";
+                lines.add(line);
+                writer.write(line);
+                writer.write(i % 2 == 0 ? "\n" : "\r\n");
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            CollectingProjector projector = new CollectingProjector();
+            FileReadingCollector collector = new FileReadingCollector(
+                    file.getAbsolutePath(),
+                    new Supplier<FileCollectInputSymbolVisitor.Context>() {
+                        @Override
+                        public FileCollectInputSymbolVisitor.Context get() {
+                            return inputSymbolVisitor.process(createReference("_raw", DataType.STRING));
+                        }
+                    },
+                    projector,
+                    FileReadingCollector.FileFormat.JSON,
+                    ImmutableMap.<String, DataType>of(),
+                    null,
+                    ImmutableMap.<String, FileInputFactory>of(),
+                    false,
+                    1,
+                    0,
+                    executor,
+                    4,
+                    // ranges end inside of lines
+                    1000
+            );
+            projector.startProjection();
+            collector.doCollect();
+
+            Object[][] rows = projector.result().get();
+            assertThat(rows.length, is(1000));
+            Set<String> collected = new HashSet<>();
+            for (Object[] row : rows) {
+                collected.add(((BytesRef) row[0]).utf8ToString());
+            }
+            assertThat(collected, is(lines));
+        } finally {
+            executor.shutdown();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCollectCsvFileWithMultiLineValuesIsNotSplit() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".csv");
+        Set<Map<String, Object>> expected = new HashSet<>();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("id,name,details.age\n");
+            for (int i = 0; i < 200; i++) {
+                // quoted line breaks would be taken as record starts if the file was split
+                writer.write(i + ",\"Arthur,\n" + i + ",\n\"," + (i % 50) + "\n");
+                // only top level columns are converted
+                expected.add(ImmutableMap.<String, Object>of(
+                        "id", i,
+                        "name", "Arthur,\n" + i + ",\n",
+                        "details", ImmutableMap.of("age", String.valueOf(i % 50))));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CollectingProjector projector = new CollectingProjector();
+            FileReadingCollector collector = new FileReadingCollector(
+                    file.getAbsolutePath(),
+                    new Supplier<FileCollectInputSymbolVisitor.Context>() {
+                        @Override
+                        public FileCollectInputSymbolVisitor.Context get() {
+                            return inputSymbolVisitor.process(createReference("_raw", DataType.STRING));
+                        }
+                    },
+                    projector,
+                    FileReadingCollector.FileFormat.CSV,
+                    ImmutableMap.of("id", DataType.INTEGER),
+                    null,
+                    ImmutableMap.<String, FileInputFactory>of(),
+                    false,
+                    1,
+                    0,
+                    executor,
+                    3,
+                    500
+            );
+            projector.startProjection();
+            collector.doCollect();
+
+            Object[][] rows = projector.result().get();
+            assertThat(rows.length, is(200));
+            Set<Map<String, Object>> collected = new HashSet<>();
+            for (Object[] row : rows) {
+                collected.add(XContentHelper.convertToMap(((BytesRef) row[0]).bytes, false).v2());
+            }
+            assertThat(collected, is(expected));
+        } finally {
+            executor.shutdown();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testStreamIsClosedIfReaderCannotBeCreated() throws Throwable {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final InputStream inputStream = new ByteArrayInputStream("not a binary row file".getBytes("UTF-8")) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+        CollectingProjector projector = new CollectingProjector();
+        FileCollectInputSymbolVisitor.Context context =
+                inputSymbolVisitor.process(createReference("_raw", DataType.STRING));
+        FileReadingCollector collector = new FileReadingCollector(
+                "test://bucket/rows",
+                context.topLevelInputs(),
+                context.expressions(),
+                projector,
+                FileReadingCollector.FileFormat.BINARY,
+                null,
+                ImmutableMap.<String, FileInputFactory>of("test", new FileInputFactory() {
+                    @Override
+                    public FileInput create() throws IOException {
+                        return new FileInput() {
+                            @Override
+                            public List<URI> listUris(URI fileUri, Predicate<URI> uriPredicate) throws IOException {
+                                return Arrays.asList(fileUri);
+                            }
+
+                            @Override
+                            public InputStream getStream(URI uri) throws IOException {
+                                return inputStream;
+                            }
+
+                            @Override
+                            public boolean sharedStorageDefault() {
+                                return false;
+                            }
+                        };
+                    }
+                }),
+                false,
+                1,
+                0
+        );
+        projector.startProjection();
+        try {
+            collector.doCollect();
+            fail("expected the header of the binary file to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("Input is not in the binary row format"));
+        }
+        assertThat(closed.get(), is(true));
+    }
+
     private void assertCorrectResult(Object[][] rows) throws Throwable {
         assertThat(((BytesRef)rows[0][0]).utf8ToString(), is(
                 "{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}"));
@@ -0,0 +1,71 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class LineReaderTest {
+
+    private static LineReader reader(String content, int bufferSize) {
+        return new LineReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), 0, bufferSize);
+    }
+
+    private static String string(byte[] line) {
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReadLines() throws Exception {
+        // small buffer so that lines span several buffers
+        LineReader reader = reader("{\"a\": 1}\r\n\n{\"b\": \"ü\"}\nlast", 3);
+        assertThat(string(reader.readLine()), is("{\"a\": 1}"));
+        assertThat(reader.position(), is(10L));
+        assertThat(string(reader.readLine()), is(""));
+        assertThat(string(reader.readLine()), is("{\"b\": \"ü\"}"));
+        assertThat(string(reader.readLine()), is("last"));
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testNoEmptyLineAfterLastTerminator() throws Exception {
+        LineReader reader = reader("a\nb\n", 64);
+        assertThat(string(reader.readLine()), is("a"));
+        assertThat(string(reader.readLine()), is("b"));
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testSkipLine() throws Exception {
+        LineReader reader = reader("partial\nnext\n", 4);
+        assertTrue(reader.skipLine());
+        assertThat(reader.position(), is(8L));
+        assertThat(string(reader.readLine()), is("next"));
+        assertFalse(reader.skipLine());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fileformat;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BinaryRowFormatTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRowFormat.Writer writer = new BinaryRowFormat.Writer(out,
+                Arrays.asList("id", "name", "created", "tags", "details"),
+                Arrays.asList(DataType.INTEGER, DataType.STRING, DataType.TIMESTAMP, DataType.STRING_ARRAY, null));
+        writer.write(new Object[]{1, new BytesRef("Arthur"), 1401356800000L,
+                new Object[]{new BytesRef("a"), new BytesRef("b")}, ImmutableMap.of("age", 42)});
+        writer.write(new Object[]{2, "Trillian", null, null, null});
+        writer.finish();
+
+        BinaryRowFormat.Reader reader = new BinaryRowFormat.Reader(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(reader.names(), is(new String[]{"id", "name", "created", "tags", "details"}));
+
+        Map<String, Object> row = reader.next();
+        assertThat((Integer) row.get("id"), is(1));
+        assertThat((String) row.get("name"), is("Arthur"));
+        assertThat((Long) row.get("created"), is(1401356800000L));
+        assertThat(row.get("tags"), is((Object) Arrays.asList("a", "b")));
+        assertThat(row.get("details"), is((Object) ImmutableMap.of("age", 42)));
+
+        row = reader.next();
+        assertThat((Integer) row.get("id"), is(2));
+        assertThat((String) row.get("name"), is("Trillian"));
+        assertThat(row.get("created"), is(nullValue()));
+        assertThat(row.get("tags"), is(nullValue()));
+
+        assertThat(reader.next(), is(nullValue()));
+        assertThat(reader.next(), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadInvalidHeader() throws Exception {
+        new BinaryRowFormat.Reader(new ByteArrayInputStream("{\"id\": 1}\n".getBytes()));
+    }
+}
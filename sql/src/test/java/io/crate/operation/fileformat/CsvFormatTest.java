@@ -0,0 +1,87 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.fileformat;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CsvFormatTest {
+
+    @Test
+    public void testParseRecord() throws Exception {
+        assertThat(CsvFormat.parseRecord("1,foo,,\"\",\"a,\"\"b\"\"\""),
+                contains("1", "foo", null, "", "a,\"b\""));
+        assertThat(CsvFormat.parseRecord(""), contains((String) null));
+    }
+
+    @Test
+    public void testParseRecordEndsInQuotes() throws Exception {
+        assertThat(CsvFormat.parseRecord("1,\"multi"), is(nullValue()));
+        assertThat(CsvFormat.parseRecord("1,\"multi\nline\""), contains("1", "multi\nline"));
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        assertThat((Integer) CsvFormat.convert(" 42", DataType.INTEGER), is(42));
+        assertThat((Long) CsvFormat.convert("42", DataType.LONG), is(42L));
+        assertThat((Double) CsvFormat.convert("4.2", DataType.DOUBLE), is(4.2));
+        assertThat((Boolean) CsvFormat.convert("true", DataType.BOOLEAN), is(true));
+        assertThat((Boolean) CsvFormat.convert(" FALSE", DataType.BOOLEAN), is(false));
+        assertThat((Long) CsvFormat.convert("1401356800000", DataType.TIMESTAMP), is(1401356800000L));
+        assertThat((String) CsvFormat.convert("2014-05-29", DataType.TIMESTAMP), is("2014-05-29"));
+        assertThat(CsvFormat.convert("{\"a\": 1}", DataType.OBJECT), is((Object) ImmutableMap.of("a", 1)));
+        assertThat(CsvFormat.convert("[1, 2]", DataType.LONG_ARRAY), is((Object) Arrays.asList(1, 2)));
+        assertThat((String) CsvFormat.convert("foo", null), is("foo"));
+        assertThat(CsvFormat.convert(null, DataType.INTEGER), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertInvalidNumber() throws Exception {
+        CsvFormat.convert("foo", DataType.INTEGER);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertInvalidBoolean() throws Exception {
+        CsvFormat.convert("yes", DataType.BOOLEAN);
+    }
+
+    @Test
+    public void testAppendRecord() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        CsvFormat.appendRecord(sb, new Object[]{
+                1, new BytesRef("a,b"), null, "", ImmutableMap.of("x", new BytesRef("y")), "line\nbreak"
+        });
+        assertThat(sb.toString(), is("1,\"a,b\",,\"\",\"{\"\"x\"\":\"\"y\"\"}\",\"line\nbreak\"\n"));
+        assertThat(CsvFormat.parseRecord(sb.toString().trim()),
+                contains("1", "a,b", null, "", "{\"x\":\"y\"}", "line\nbreak"));
+    }
+}
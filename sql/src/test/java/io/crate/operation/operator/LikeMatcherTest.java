@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.operator;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LikeMatcherTest {
+
+    private static boolean matches(String pattern, String value) {
+        return LikeMatcher.compile(pattern).matches(new BytesRef(value));
+    }
+
+    @Test
+    public void testFastPaths() throws Exception {
+        assertThat(LikeMatcher.compile("foo"), instanceOf(LikeMatcher.ExactMatcher.class));
+        assertThat(LikeMatcher.compile("foo%"), instanceOf(LikeMatcher.PrefixMatcher.class));
+        assertThat(LikeMatcher.compile("%%foo"), instanceOf(LikeMatcher.SuffixMatcher.class));
+        assertThat(LikeMatcher.compile("%foo%"), instanceOf(LikeMatcher.ContainsMatcher.class));
+        assertThat(LikeMatcher.compile("%"), instanceOf(LikeMatcher.AnyMatcher.class));
+        assertThat(LikeMatcher.compile("fo\\%o%"), instanceOf(LikeMatcher.PrefixMatcher.class));
+        assertThat(LikeMatcher.compile("f_o%"), instanceOf(LikeMatcher.AutomatonMatcher.class));
+        assertThat(LikeMatcher.compile("f%o"), instanceOf(LikeMatcher.AutomatonMatcher.class));
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        assertTrue(matches("foo", "foo"));
+        assertFalse(matches("foo", "fooo"));
+        assertTrue(matches("foo%", "foobar"));
+        assertFalse(matches("foo%", "fo"));
+        assertTrue(matches("%bar", "foobar"));
+        assertFalse(matches("%bar", "ar"));
+        assertTrue(matches("%oob%", "foobar"));
+        assertFalse(matches("%obo%", "foobar"));
+        assertTrue(matches("%", ""));
+        assertTrue(matches("", ""));
+        assertTrue(matches("fo\\%%", "fo%bar"));
+        assertFalse(matches("fo\\%%", "foobar"));
+        assertTrue(matches("fo\\_", "fo_"));
+        assertFalse(matches("fo\\_", "foo"));
+    }
+
+    @Test
+    public void testMatchesOnUtf8() throws Exception {
+        assertTrue(matches("_ber", "über"));
+        assertFalse(matches("__ber", "über"));
+        assertTrue(matches("%ü%", "grün"));
+        assertTrue(matches("gr%n", "grün"));
+        assertTrue(matches("%€", "10 €"));
+        assertTrue(matches("line%", "line\nbreak"));
+    }
+
+    @Test
+    public void testMatchesWithOffset() throws Exception {
+        BytesRef value = new BytesRef("xxfoobarxx");
+        value.offset = 2;
+        value.length = 6;
+        assertTrue(LikeMatcher.compile("foo%").matches(value));
+        assertTrue(LikeMatcher.compile("%bar").matches(value));
+        assertFalse(LikeMatcher.compile("%barx%").matches(value));
+        assertTrue(LikeMatcher.compile("f_o%r").matches(value));
+    }
+}
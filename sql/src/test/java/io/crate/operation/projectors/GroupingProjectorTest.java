@@ -6,24 +6,46 @@ import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Functions;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.batch.ColumnVector;
+import io.crate.operation.batch.OrdinalColumnVector;
+import io.crate.operation.batch.OrdinalLookup;
+import io.crate.operation.batch.RowBatch;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.AggregationContext;
+import io.crate.operation.projectors.groupby.GroupByMemory;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Symbol;
 import io.crate.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
 import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.concurrent.ExecutionException;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 
 public class GroupingProjectorTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * NOTE:
      *
@@ -34,7 +56,7 @@ public class GroupingProjectorTest {
     public void testAggregationToPartial() throws ExecutionException, InterruptedException {
 
         ImmutableList<Input<?>> keys = ImmutableList.<Input<?>>of(
-                new DummyInput("one", "one", "three"));
+                new DummyInput<>("one", "one", "three"));
 
 
         FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
@@ -68,18 +90,242 @@ public class GroupingProjectorTest {
         assertThat(rows[0][1], instanceOf(CountAggregation.CountAggState.class));
     }
 
-    class DummyInput implements Input<String> {
+    private Object[][] groupCounts(GroupByMemory memory, String... keyValues) throws Exception {
+        BytesRef[] values = new BytesRef[keyValues.length];
+        for (int i = 0; i < keyValues.length; i++) {
+            values[i] = new BytesRef(keyValues[i]);
+        }
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction)functions.get(countInfo.ident()),
+                countAggregation);
+
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(new DummyInput<>(values)),
+                ImmutableList.<CollectExpression<?>>of(),
+                new AggregationContext[] { aggregationContext },
+                BigArrays.NON_RECYCLING_INSTANCE,
+                memory,
+                true
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+        projector.startProjection();
+        for (int i = 0; i < values.length; i++) {
+            projector.setNextRow();
+        }
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        Arrays.sort(rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return ((BytesRef) o1[0]).compareTo((BytesRef) o2[0]);
+            }
+        });
+        return rows;
+    }
+
+    private void assertGroupCounts(Object[][] rows) {
+        assertThat(rows.length, is(3));
+        assertThat(rows[0][0], is((Object) new BytesRef("a")));
+        assertThat((Long) rows[0][1], is(3L));
+        assertThat(rows[1][0], is((Object) new BytesRef("b")));
+        assertThat((Long) rows[1][1], is(2L));
+        assertThat(rows[2][0], is((Object) new BytesRef("c")));
+        assertThat((Long) rows[2][1], is(1L));
+    }
+
+    @Test
+    public void testSpillWhenBudgetIsExceeded() throws Exception {
+        File spillPath = folder.newFolder();
+        // every new group exceeds the budget and is spilled
+        GroupByMemory memory = new GroupByMemory(1L, spillPath, null);
+
+        assertGroupCounts(groupCounts(memory, "a", "b", "a", "c", "b", "a"));
+        assertThat(spillPath.list().length, is(0));
+    }
+
+    @Test
+    public void testSpillWhenCircuitBreakerTrips() throws Exception {
+        File spillPath = folder.newFolder();
+        MemoryCircuitBreaker breaker = mock(MemoryCircuitBreaker.class);
+        doThrow(new CircuitBreakingException("dummy")).when(breaker).addEstimateBytesAndMaybeBreak(anyLong());
+        GroupByMemory memory = new GroupByMemory(Long.MAX_VALUE, spillPath, breaker);
+
+        assertGroupCounts(groupCounts(memory, "a", "b", "a", "c", "b", "a"));
+        assertThat(spillPath.list().length, is(0));
+    }
+
+    @Test(expected = CircuitBreakingException.class)
+    public void testCircuitBreakerTripsIfSpillingIsDisabled() throws Exception {
+        MemoryCircuitBreaker breaker = mock(MemoryCircuitBreaker.class);
+        doThrow(new CircuitBreakingException("dummy")).when(breaker).addEstimateBytesAndMaybeBreak(anyLong());
+        GroupByMemory memory = new GroupByMemory(Long.MAX_VALUE, null, breaker);
+
+        groupCounts(memory, "a", "b");
+    }
+
+    private Object[][] groupOrdinalCounts(GroupByMemory memory, long... ords) throws Exception {
+        final BytesRef[] dictionary = new BytesRef[] { new BytesRef("a"), new BytesRef("b"), new BytesRef("c") };
+        OrdinalLookup lookup = new OrdinalLookup() {
+            @Override
+            public BytesRef lookupOrd(long ord) {
+                return dictionary[(int) ord];
+            }
+
+            @Override
+            public long lookupTerm(BytesRef value) {
+                return Arrays.asList(dictionary).indexOf(value);
+            }
+        };
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction)functions.get(countInfo.ident()),
+                countAggregation);
+
+        InputCollectExpression<Object> keyInput = new InputCollectExpression<>(0);
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(keyInput),
+                ImmutableList.<CollectExpression<?>>of(keyInput),
+                new AggregationContext[] { aggregationContext },
+                BigArrays.NON_RECYCLING_INSTANCE,
+                memory,
+                false,
+                new int[] { 0 }
+        );
+        assertThat(projector.acceptsOrdinals(0), is(true));
+        assertThat(projector.acceptsOrdinals(1), is(false));
+
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+        projector.startProjection();
+
+        OrdinalColumnVector vector = new OrdinalColumnVector(ords.length, lookup);
+        RowBatch batch = new RowBatch(new ColumnVector[] { vector }, ords.length);
+        for (long ord : ords) {
+            vector.setOrd(batch.addRow(), ord);
+        }
+        projector.setNextBatch(batch);
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        Arrays.sort(rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return ((BytesRef) o1[0]).compareTo((BytesRef) o2[0]);
+            }
+        });
+        return rows;
+    }
+
+    @Test
+    public void testGroupByOrdinals() throws Exception {
+        assertGroupCounts(groupOrdinalCounts(GroupByMemory.UNLIMITED, 0, 1, 0, 2, 1, 0));
+    }
+
+    @Test
+    public void testSpillGroupedOrdinals() throws Exception {
+        File spillPath = folder.newFolder();
+        GroupByMemory memory = new GroupByMemory(1L, spillPath, null);
+
+        assertGroupCounts(groupOrdinalCounts(memory, 0, 1, 0, 2, 1, 0));
+        assertThat(spillPath.list().length, is(0));
+    }
+
+    @Test
+    public void testConcurrentProjectorDoesNotAcceptOrdinals() throws Exception {
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(new InputCollectExpression<>(0)),
+                ImmutableList.<CollectExpression<?>>of(),
+                new AggregationContext[0],
+                BigArrays.NON_RECYCLING_INSTANCE,
+                GroupByMemory.UNLIMITED,
+                true,
+                new int[] { 0 }
+        );
+        assertThat(projector.acceptsOrdinals(0), is(false));
+    }
+
+    @Test
+    public void testGroupBatchFromColumnVectors() throws Exception {
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        FunctionInfo sumInfo = new FunctionInfo(
+                new FunctionIdent("sum", ImmutableList.of(DataType.DOUBLE)), DataType.DOUBLE);
+        Aggregation sumAggregation =
+                new Aggregation(sumInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        AggregationContext sumContext = new AggregationContext(
+                (AggregationFunction)functions.get(sumInfo.ident()), sumAggregation);
+        InputCollectExpression<Object> valueInput = new InputCollectExpression<>(1);
+        sumContext.addInput(valueInput);
+
+        InputCollectExpression<Object> keyInput = new InputCollectExpression<>(0);
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(keyInput),
+                ImmutableList.<CollectExpression<?>>of(keyInput, valueInput),
+                new AggregationContext[] { sumContext }
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+        projector.startProjection();
+
+        RowBatch batch = RowBatch.forTypes(new DataType[] { DataType.LONG, DataType.DOUBLE }, 5);
+        Object[][] rows = new Object[][] {
+                { 1L, 1.5d }, { 2L, 2.0d }, { 1L, 0.5d }, { null, 4.0d }, { 2L, null }
+        };
+        for (Object[] row : rows) {
+            int idx = batch.addRow();
+            batch.column(0).setValue(idx, row[0]);
+            batch.column(1).setValue(idx, row[1]);
+        }
+        projector.setNextBatch(batch);
+        // a row added by value must end up in the group of the batch rows
+        projector.setNextRow(1L, 1.0d);
+        projector.upstreamFinished();
+
+        Object[][] result = collectingProjector.result().get();
+        Arrays.sort(result, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                if (o1[0] == null) {
+                    return o2[0] == null ? 0 : 1;
+                }
+                return o2[0] == null ? -1 : ((Long) o1[0]).compareTo((Long) o2[0]);
+            }
+        });
+        assertThat(result.length, is(3));
+        assertThat((Long) result[0][0], is(1L));
+        assertThat((Double) result[0][1], is(3.0d));
+        assertThat((Long) result[1][0], is(2L));
+        assertThat((Double) result[1][1], is(2.0d));
+        assertThat(result[2][0], nullValue());
+        assertThat((Double) result[2][1], is(4.0d));
+    }
+
+    class DummyInput<T> implements Input<T> {
 
-        private final String[] values;
+        private final T[] values;
         private int idx;
 
-        DummyInput(String... values)  {
+        DummyInput(T... values)  {
             this.values = values;
             this.idx = 0;
         }
 
         @Override
-        public String value() {
+        public T value() {
             return values[idx++];
         }
     }
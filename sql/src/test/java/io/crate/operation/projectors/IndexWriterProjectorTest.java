@@ -21,11 +21,7 @@
 
 package io.crate.operation.projectors;
 
-import com.google.common.collect.ImmutableList;
 import io.crate.integrationtests.SQLTransportIntegrationTest;
-import io.crate.operation.Input;
-import io.crate.operation.collect.CollectExpression;
-import io.crate.operation.collect.InputCollectExpression;
 import io.crate.test.integration.CrateIntegrationTest;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.client.Client;
@@ -44,23 +40,18 @@ public class IndexWriterProjectorTest extends SQLTransportIntegrationTest {
         ensureGreen();
 
         CollectingProjector collectingProjector = new CollectingProjector();
-        InputCollectExpression<Object> idInput = new InputCollectExpression<>(0);
-        InputCollectExpression<Object> sourceInput = new InputCollectExpression<>(1);
-        CollectExpression[] collectExpressions = new CollectExpression[]{ idInput, sourceInput };
 
         final IndexWriterProjector indexWriter = new IndexWriterProjector(
                 cluster().getInstance(Client.class),
                 "bulk_import",
                 Arrays.asList("id"),
-                Arrays.<Input<?>>asList(idInput),
-                ImmutableList.<Input<?>>of(),
-                idInput,
-                sourceInput,
-                collectExpressions,
+                IndexWriterProjectorUnitTest.inputsFactory(),
                 20,
                 2,
                 null, null
         );
+        // two upstreams feeding concurrently, each with its own inputs
+        indexWriter.registerUpstream(null);
         indexWriter.registerUpstream(null);
         indexWriter.startProjection();
         indexWriter.downstream(collectingProjector);
@@ -89,6 +80,7 @@ public class IndexWriterProjectorTest extends SQLTransportIntegrationTest {
         t1.join();
         t2.join();
         indexWriter.upstreamFinished();
+        indexWriter.upstreamFinished();
         Object[][] objects = collectingProjector.result().get();
         assertThat((Long)objects[0][0], is(200L));
 
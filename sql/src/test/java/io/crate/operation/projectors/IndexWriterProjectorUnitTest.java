@@ -31,27 +31,40 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
 
 public class IndexWriterProjectorUnitTest {
 
+    static IndexWriterProjector.RowInputs.Factory inputsFactory() {
+        return new IndexWriterProjector.RowInputs.Factory() {
+            @Override
+            public IndexWriterProjector.RowInputs create() {
+                InputCollectExpression<Object> idInput = new InputCollectExpression<>(0);
+                InputCollectExpression<Object> sourceInput = new InputCollectExpression<>(1);
+                return new IndexWriterProjector.RowInputs(
+                        Arrays.<Input<?>>asList(idInput),
+                        ImmutableList.<Input<?>>of(),
+                        idInput,
+                        sourceInput,
+                        new CollectExpression[]{ idInput, sourceInput }
+                );
+            }
+        };
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testExceptionBubbling() throws Throwable {
         CollectingProjector collectingProjector = new CollectingProjector();
-        InputCollectExpression<Object> idInput = new InputCollectExpression<>(0);
-        InputCollectExpression<Object> sourceInput = new InputCollectExpression<>(1);
-        CollectExpression[] collectExpressions = new CollectExpression[]{ idInput, sourceInput };
 
         final IndexWriterProjector indexWriter = new IndexWriterProjector(
                 null,
                 "bulk_import",
                 Arrays.<String>asList("id"),
-                Arrays.<Input<?>>asList(idInput),
-                ImmutableList.<Input<?>>of(),
-                null,
-                sourceInput,
-                collectExpressions,
+                inputsFactory(),
                 20,
                 2,
                 null, null
@@ -71,19 +84,11 @@ public class IndexWriterProjectorUnitTest {
     public void testNullPKValue() throws Throwable {
         // this test jus verifies that the idInput which returns a null value doesn't cause a NullPointerException
         CollectingProjector collectingProjector = new CollectingProjector();
-        InputCollectExpression<Object> idInput = new InputCollectExpression<>(0);
-        InputCollectExpression<Object> sourceInput = new InputCollectExpression<>(1);
-        InputCollectExpression<Object> routingInput = new InputCollectExpression<>(0);
-        CollectExpression[] collectExpressions = new CollectExpression[]{ idInput, sourceInput, routingInput };
         final IndexWriterProjector indexWriter = new IndexWriterProjector(
                 mock(Client.class),
                 "bulk_import",
                 Arrays.<String>asList("id"),
-                Arrays.<Input<?>>asList(idInput),
-                ImmutableList.<Input<?>>of(),
-                routingInput,
-                sourceInput,
-                collectExpressions,
+                inputsFactory(),
                 20,
                 2,
                 null, null
@@ -93,4 +98,36 @@ public class IndexWriterProjectorUnitTest {
         indexWriter.setNextRow(null, new BytesRef("{\"y\": \"x\"}"));
         indexWriter.upstreamFinished();
     }
+
+    @Test
+    public void testEveryUpstreamHasItsOwnInputs() throws Throwable {
+        final AtomicInteger created = new AtomicInteger(0);
+        final IndexWriterProjector.RowInputs.Factory factory = inputsFactory();
+        final IndexWriterProjector indexWriter = new IndexWriterProjector(
+                mock(Client.class),
+                "bulk_import",
+                Arrays.<String>asList("id"),
+                new IndexWriterProjector.RowInputs.Factory() {
+                    @Override
+                    public IndexWriterProjector.RowInputs create() {
+                        created.incrementAndGet();
+                        return factory.create();
+                    }
+                },
+                20,
+                2,
+                null, null
+        );
+        indexWriter.downstream(new CollectingProjector());
+        indexWriter.registerUpstream(null);
+        indexWriter.registerUpstream(null);
+        assertThat(created.get(), is(2));
+
+        indexWriter.setNextRow(1, new BytesRef("{\"id\": 1}"));
+        indexWriter.setNextRow(2, new BytesRef("{\"id\": 2}"));
+        // the inputs are reused for the following rows
+        assertThat(created.get(), is(2));
+        indexWriter.upstreamFinished();
+        indexWriter.upstreamFinished();
+    }
 }
@@ -21,6 +21,7 @@
 
 package io.crate.operation.projectors;
 
+import com.google.common.collect.ComparisonChain;
 import io.crate.DataType;
 import io.crate.metadata.*;
 import io.crate.operation.ImplementationSymbolVisitor;
@@ -45,6 +46,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.concurrent.ExecutionException;
 
@@ -77,7 +79,7 @@ public class ProjectionToProjectorVisitorTest {
         Provider<Client> clientProvider = injector.getProvider(Client.class);
         ImplementationSymbolVisitor symbolvisitor =
                 new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.NODE);
-        visitor = new ProjectionToProjectorVisitor(clientProvider, symbolvisitor);
+        visitor = ProjectionToProjectorVisitor.builder(clientProvider, symbolvisitor).build();
 
         countInfo = new FunctionInfo(new FunctionIdent(CountAggregation.NAME, Arrays.asList(DataType.STRING)), DataType.LONG);
         avgInfo = new FunctionInfo(new FunctionIdent(AverageAggregation.NAME, Arrays.asList(DataType.INTEGER)), DataType.DOUBLE);
@@ -194,6 +196,16 @@ public class ProjectionToProjectorVisitorTest {
 
         Object[][] rows = collectingProjector.result().get();
         assertThat(rows.length, is(3));
+        // the order of the groups is not defined
+        Arrays.sort(rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return ComparisonChain.start()
+                        .compare((String) o1[0], (String) o2[0])
+                        .compare((String) o1[1], (String) o2[1])
+                        .result();
+            }
+        });
         assertThat((String)rows[0][0], is("human"));
         assertThat((String)rows[0][1], is("female"));
         assertThat((Double)rows[0][2], is(22.0));
@@ -0,0 +1,177 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class ShardingBulkProcessorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRequestsAreGroupedByTarget() throws Exception {
+        Client client = mock(Client.class);
+        BulkProcessor.Listener listener = mock(BulkProcessor.Listener.class);
+        ShardingBulkProcessor processor = new ShardingBulkProcessor(client, null, 2, 10, listener);
+
+        processor.add(new IndexRequest("t1", "default", "1"));
+        processor.add(new IndexRequest("t2", "default", "2"));
+        processor.add(new IndexRequest("t1", "default", "3"));
+        processor.add(new IndexRequest("t2", "default", "4"));
+        processor.add(new IndexRequest("t1", "default", "5"));
+
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(client, times(2)).bulk(captor.capture(), any(ActionListener.class));
+        for (BulkRequest bulkRequest : captor.getAllValues()) {
+            assertSingleIndex(bulkRequest.requests(), 2);
+        }
+
+        processor.close();
+        verify(client, times(3)).bulk(captor.capture(), any(ActionListener.class));
+        BulkRequest last = captor.getValue();
+        assertSingleIndex(last.requests(), 1);
+        assertThat(((IndexRequest) last.requests().get(0)).id(), is("5"));
+        verify(listener, times(3)).beforeBulk(anyLong(), any(BulkRequest.class));
+    }
+
+    private static void assertSingleIndex(List<ActionRequest> requests, int size) {
+        assertThat(requests.size(), is(size));
+        String index = ((IndexRequest) requests.get(0)).index();
+        for (ActionRequest request : requests) {
+            assertThat(((IndexRequest) request).index(), is(index));
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimiterAdaptsToRejectionsAndLatency() throws Exception {
+        ShardingBulkProcessor.ConcurrencyLimiter limiter = new ShardingBulkProcessor.ConcurrencyLimiter(8);
+        assertThat(limiter.limit(), is(8));
+
+        limiter.acquire();
+        limiter.release(100, true);
+        assertThat(limiter.limit(), is(4));
+
+        limiter.acquire();
+        limiter.release(100, false);
+        assertThat(limiter.limit(), is(5));
+
+        // much slower than the average
+        limiter.acquire();
+        limiter.release(1000, false);
+        assertThat(limiter.limit(), is(4));
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+            limiter.release(1, true);
+        }
+        assertThat(limiter.limit(), is(1));
+    }
+
+    @Test
+    public void testRejectionIsDetectedByStatus() throws Exception {
+        BulkItemResponse conflict = new BulkItemResponse(0, "index", new BulkItemResponse.Failure(
+                "t1", "default", "1", "VersionConflictEngineException[EsRejectedExecutionException]",
+                RestStatus.CONFLICT));
+        BulkItemResponse rejected = new BulkItemResponse(1, "index", new BulkItemResponse.Failure(
+                "t1", "default", "2", "rejected", RestStatus.TOO_MANY_REQUESTS));
+
+        assertThat(ShardingBulkProcessor.isRejected(
+                new BulkResponse(new BulkItemResponse[]{conflict}, 1L)), is(false));
+        assertThat(ShardingBulkProcessor.isRejected(
+                new BulkResponse(new BulkItemResponse[]{conflict, rejected}, 1L)), is(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testKillReleasesWaitingThreads() throws Exception {
+        Client client = mock(Client.class);
+        BulkProcessor.Listener listener = mock(BulkProcessor.Listener.class);
+        // the client never responds, so the second bulk request has to wait for the first one
+        final ShardingBulkProcessor processor = new ShardingBulkProcessor(client, null, 1, 1, listener);
+        processor.add(new IndexRequest("t1", "default", "1"));
+
+        final CountDownLatch added = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processor.add(new IndexRequest("t1", "default", "2"));
+                added.countDown();
+            }
+        });
+        thread.start();
+        assertThat(added.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        processor.kill();
+        assertThat(added.await(5, TimeUnit.SECONDS), is(true));
+        thread.join();
+
+        processor.add(new IndexRequest("t1", "default", "3"));
+        processor.close();
+        verify(client, times(1)).bulk(any(BulkRequest.class), any(ActionListener.class));
+        verify(listener, times(1)).beforeBulk(anyLong(), any(BulkRequest.class));
+    }
+
+    @Test
+    public void testConcurrencyLimiterIsInterruptible() throws Exception {
+        final ShardingBulkProcessor.ConcurrencyLimiter limiter = new ShardingBulkProcessor.ConcurrencyLimiter(1);
+        assertThat(limiter.acquire(), is(true));
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire();
+                } catch (InterruptedException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        thread.start();
+        thread.interrupt();
+        thread.join(5000);
+        assertThat(failure.get() instanceof InterruptedException, is(true));
+
+        limiter.kill();
+        assertThat(limiter.acquire(), is(false));
+    }
+}
@@ -21,7 +21,9 @@
 
 package io.crate.operation.projectors;
 
+import io.crate.DataType;
 import io.crate.operation.Input;
+import io.crate.operation.batch.RowBatch;
 import io.crate.operation.collect.InputCollectExpression;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.planner.symbol.BooleanLiteral;
@@ -29,6 +31,7 @@ import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
 
 public class SortingTopNProjectorTest {
@@ -253,4 +256,173 @@ public class SortingTopNProjectorTest {
         assertThat(iterateLength, is(20));
 
     }
+
+    @Test
+    public void testOrderByWithBatches() throws Exception {
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{INPUT, TRUE_LITERAL},
+                new CollectExpression[]{(CollectExpression<?>)INPUT},
+                2,
+                new int[]{0},
+                new boolean[]{false},
+                3,
+                1);
+        projector.registerUpstream(null);
+        projector.startProjection();
+        RowBatch batch = RowBatch.forTypes(new DataType[]{DataType.INTEGER}, 4);
+        for (int i = 10; i > 0; i--) {   // 10 --> 1
+            batch.column(0).setValue(batch.addRow(), i);
+            if (batch.isFull()) {
+                assertThat(projector.setNextBatch(batch), is(true));
+                batch.clear();
+            }
+        }
+        projector.setNextBatch(batch);
+        projector.upstreamFinished();
+
+        Object[][] rows = projector.result().get();
+        assertThat(rows.length, is(3));
+        for (int j = 0; j < 3; j++) {
+            assertThat((Integer) rows[j][0], is(j + 2));
+            assertThat((Boolean) rows[j][1], is(true));
+        }
+    }
+
+    @Test
+    public void testOrderByColumnsWithBatches() throws Exception {
+        // all inputs are columns, so rows are compared against the queue using the column vectors
+        Input<?> value = new InputCollectExpression<>(1);
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{INPUT, value},
+                new CollectExpression[]{(CollectExpression<?>)INPUT, (CollectExpression<?>) value},
+                2,
+                new int[]{1, 0},
+                new boolean[]{true, false},
+                3,
+                0);
+        projector.registerUpstream(null);
+        projector.startProjection();
+        RowBatch batch = RowBatch.forTypes(new DataType[]{DataType.INTEGER, DataType.DOUBLE}, 4);
+        for (int i = 0; i < 10; i++) {
+            int row = batch.addRow();
+            batch.column(0).setValue(row, i);
+            batch.column(1).setValue(row, i == 7 ? null : (double) (i % 3));
+            if (batch.isFull()) {
+                assertThat(projector.setNextBatch(batch), is(true));
+                batch.clear();
+            }
+        }
+        projector.setNextBatch(batch);
+        projector.upstreamFinished();
+
+        // nulls first in descending order, then 2.0 ordered by the first column
+        Object[][] rows = projector.result().get();
+        assertThat(rows.length, is(3));
+        assertThat((Integer) rows[0][0], is(7));
+        assertThat(rows[0][1], nullValue());
+        assertThat((Integer) rows[1][0], is(2));
+        assertThat((Double) rows[1][1], is(2.0d));
+        assertThat((Integer) rows[2][0], is(5));
+        assertThat((Double) rows[2][1], is(2.0d));
+    }
+
+    @Test
+    public void testMergeSortedRuns() throws Exception {
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{INPUT, TRUE_LITERAL},
+                new CollectExpression[]{(CollectExpression<?>)INPUT},
+                2,
+                new int[]{0},
+                new boolean[]{false},
+                4,
+                1);
+        projector.registerUpstream(null);
+        projector.registerUpstream(null);
+        projector.registerUpstream(null);
+        projector.startProjection();
+
+        projector.setNextRun(new Object[][]{new Object[]{1}, new Object[]{4}, new Object[]{7}});
+        projector.upstreamFinished();
+        // not sorted, added to the queue
+        projector.setNextRun(new Object[][]{new Object[]{6}, new Object[]{2}});
+        projector.upstreamFinished();
+        projector.setNextRow(3);
+        projector.setNextRow(8);
+        projector.upstreamFinished();
+
+        Object[][] rows = projector.result().get();
+        int[] expected = new int[]{2, 3, 4, 6};
+        assertThat(rows.length, is(expected.length));
+        for (int j = 0; j < expected.length; j++) {
+            assertThat((Integer) rows[j][0], is(expected[j]));
+        }
+    }
+
+    @Test
+    public void testSortedRunsAreMergedEagerly() throws Exception {
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{INPUT, TRUE_LITERAL},
+                new CollectExpression[]{(CollectExpression<?>)INPUT},
+                2,
+                new int[]{0},
+                new boolean[]{false},
+                2,
+                1);
+        int numRuns = 10;
+        for (int i = 0; i < numRuns; i++) {
+            projector.registerUpstream(null);
+        }
+        projector.startProjection();
+
+        for (int i = numRuns - 1; i >= 0; i--) {
+            projector.setNextRun(new Object[][]{new Object[]{i}, new Object[]{i + 10}, new Object[]{i + 20}});
+            // only offset + limit rows are kept
+            assertThat(projector.mergedRunSize(), is(3));
+            projector.upstreamFinished();
+        }
+
+        Object[][] rows = projector.result().get();
+        assertThat(rows.length, is(2));
+        assertThat((Integer) rows[0][0], is(1));
+        assertThat((Integer) rows[1][0], is(2));
+    }
+
+    @Test
+    public void testResultIsSentToDownstreamAsRun() throws Exception {
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{INPUT, TRUE_LITERAL},
+                new CollectExpression[]{(CollectExpression<?>)INPUT},
+                2,
+                new int[]{0},
+                new boolean[]{true},
+                2,
+                TopN.NO_OFFSET);
+        SortingTopNProjector downstream = new SortingTopNProjector(
+                new Input<?>[]{INPUT},
+                new CollectExpression[]{(CollectExpression<?>)INPUT},
+                1,
+                new int[]{0},
+                new boolean[]{true},
+                1,
+                TopN.NO_OFFSET);
+        projector.downstream(downstream);
+        projector.registerUpstream(null);
+        downstream.startProjection();
+        projector.startProjection();
+
+        projector.setNextRow(1);
+        projector.setNextRow(new Object[]{null});
+        projector.setNextRow(3);
+        projector.upstreamFinished();
+
+        // nulls first in descending order
+        Object[][] rows = projector.result().get();
+        assertThat(rows.length, is(2));
+        assertThat(rows[0][0], nullValue());
+        assertThat((Integer) rows[1][0], is(3));
+
+        rows = downstream.result().get();
+        assertThat(rows.length, is(1));
+        assertThat(rows[0][0], nullValue());
+    }
 }
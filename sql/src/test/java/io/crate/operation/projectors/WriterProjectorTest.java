@@ -22,15 +22,26 @@
 package io.crate.operation.projectors;
 
 import com.google.common.collect.ImmutableSet;
+import io.crate.DataType;
+import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.fileformat.Compression;
 import io.crate.testing.TestingHelpers;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 public class WriterProjectorTest {
@@ -71,4 +82,69 @@ public class WriterProjectorTest {
                 "input line 03\n" +
                 "input line 04\n", TestingHelpers.readFile(uri));
     }
+
+    @Test
+    public void testWriteCsvToFile() throws Exception {
+        String uri = folder.newFile("out.csv").getAbsolutePath();
+        Settings settings = ImmutableSettings.builder().put("format", "csv").build();
+        InputCollectExpression<Object> id = new InputCollectExpression<>(0);
+        InputCollectExpression<Object> name = new InputCollectExpression<>(1);
+        WriterProjector projector = new WriterProjector(
+                uri,
+                settings,
+                Arrays.<Input<?>>asList(id, name),
+                ImmutableSet.<CollectExpression<?>>of(id, name),
+                Arrays.asList("id", "name"),
+                Arrays.asList(DataType.INTEGER, DataType.STRING)
+        );
+        Projector downstream = new CollectingProjector();
+        projector.downstream(downstream);
+
+        projector.startProjection();
+
+        projector.registerUpstream(null);
+        projector.setNextRow(1, new BytesRef("Arthur"));
+        projector.setNextRow(2, new BytesRef("Ford, \"Prefect\""));
+        projector.setNextRow(3, null);
+        projector.upstreamFinished();
+
+        Object[][] rows = ((ResultProvider) downstream).result().get();
+        assertEquals(3L, rows[0][0]);
+
+        assertEquals("id,name\n" +
+                "1,Arthur\n" +
+                "2,\"Ford, \"\"Prefect\"\"\"\n" +
+                "3,\n", TestingHelpers.readFile(uri));
+    }
+
+    @Test
+    public void testWriteLzfCompressedToFile() throws Exception {
+        String uri = folder.newFile("out.json.lzf").getAbsolutePath();
+        Settings settings = ImmutableSettings.builder().put("compression", "lzf").build();
+        WriterProjector projector = new WriterProjector(
+                uri,
+                settings,
+                null,
+                ImmutableSet.<CollectExpression<?>>of()
+        );
+        Projector downstream = new CollectingProjector();
+        projector.downstream(downstream);
+
+        projector.startProjection();
+
+        projector.registerUpstream(null);
+        for (int i = 0; i < 3; i++) {
+            projector.setNextRow(new BytesRef(String.format("input line %02d", i)));
+        }
+        projector.upstreamFinished();
+
+        Object[][] rows = ((ResultProvider) downstream).result().get();
+        assertEquals(3L, rows[0][0]);
+
+        try (InputStream in = Compression.LZF.wrap(new FileInputStream(uri))) {
+            assertEquals("input line 00\n" +
+                    "input line 01\n" +
+                    "input line 02\n", Streams.copyToString(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class GroupByMemoryTest {
+
+    @Test
+    public void testBudgetIsSharedPerQuery() throws Exception {
+        GroupByMemory nodeMemory = new GroupByMemory(100L, new File("."), null);
+        GroupByMemory query1 = nodeMemory.newQuery();
+        GroupByMemory query2 = nodeMemory.newQuery();
+
+        // two projectors of the same query
+        assertThat(query1.tryReserve(60L), is(true));
+        assertThat(query1.tryReserve(60L), is(false));
+        assertThat(query1.usedBytes(), is(60L));
+
+        // other queries have their own budget
+        assertThat(query2.tryReserve(60L), is(true));
+
+        query1.release(60L);
+        assertThat(query1.usedBytes(), is(0L));
+        assertThat(query1.tryReserve(100L), is(true));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
+import io.crate.operation.batch.RowBatch;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class GroupKeyTablesTest {
+
+    private final BigArrays bigArrays = BigArrays.NON_RECYCLING_INSTANCE;
+
+    @Test
+    public void testTableSelection() throws Exception {
+        assertThat(GroupKeyTables.forKey(new Object[]{1L}, bigArrays), instanceOf(LongKeyTable.class));
+        assertThat(GroupKeyTables.forKey(new Object[]{1.5d}, bigArrays), instanceOf(LongKeyTable.class));
+        assertThat(GroupKeyTables.forKey(new Object[]{new BytesRef("a")}, bigArrays), instanceOf(BytesRefKeyTable.class));
+        assertThat(GroupKeyTables.forKey(new Object[]{"a"}, bigArrays), instanceOf(ObjectKeyTable.class));
+        assertThat(GroupKeyTables.forKey(new Object[]{null}, bigArrays), instanceOf(PackedKeyTable.class));
+        assertThat(GroupKeyTables.forKey(new Object[]{1, new BytesRef("a")}, bigArrays), instanceOf(PackedKeyTable.class));
+    }
+
+    @Test
+    public void testLongKeyTable() throws Exception {
+        GroupKeyTable table = GroupKeyTables.forKey(new Object[]{1}, bigArrays);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.add(new Object[]{i}), is((long) i));
+        }
+        assertThat(table.add(new Object[]{null}), is(1000L));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.add(new Object[]{i}), is(-1L - i));
+        }
+        assertThat(table.add(new Object[]{null}), is(-1001L));
+        assertThat(table.size(), is(1001L));
+
+        Object[] row = new Object[1];
+        table.readKey(42, row);
+        assertThat((Integer) row[0], is(42));
+        table.readKey(1000, row);
+        assertThat(row[0], nullValue());
+
+        assertThat(table.add(new Object[]{42L}), is(GroupKeyTable.UNSUPPORTED_KEY));
+        table.release();
+    }
+
+    @Test
+    public void testBytesRefKeyTable() throws Exception {
+        GroupKeyTable table = GroupKeyTables.forKey(new Object[]{new BytesRef("a")}, bigArrays);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.add(new Object[]{new BytesRef("key" + i)}), is((long) i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertThat(table.add(new Object[]{new BytesRef("key" + i)}), is(-1L - i));
+        }
+        Object[] row = new Object[1];
+        table.readKey(999, row);
+        assertThat((BytesRef) row[0], is(new BytesRef("key999")));
+        table.release();
+    }
+
+    @Test
+    public void testPackedKeyTable() throws Exception {
+        Object[] first = new Object[]{new BytesRef("a"), 1L, null};
+        GroupKeyTable table = GroupKeyTables.forKey(first, bigArrays);
+        assertThat(table.add(first), is(0L));
+        assertThat(table.add(new Object[]{new BytesRef("a"), 1, null}), is(1L));
+        assertThat(table.add(new Object[]{new BytesRef("a"), 1L, 2.0d}), is(2L));
+        assertThat(table.add(new Object[]{new BytesRef("a"), 1L, null}), is(-1L));
+
+        Object[] row = new Object[3];
+        table.readKey(1, row);
+        assertThat((BytesRef) row[0], is(new BytesRef("a")));
+        assertThat((Integer) row[1], is(1));
+        assertThat(row[2], nullValue());
+        table.readKey(2, row);
+        assertThat((Double) row[2], is(2.0d));
+        table.release();
+    }
+
+    @Test
+    public void testConvertToObjectKeyTable() throws Exception {
+        GroupKeyTable table = GroupKeyTables.forKey(new Object[]{new BytesRef("a"), true}, bigArrays);
+        table.add(new Object[]{new BytesRef("a"), true});
+        table.add(new Object[]{new BytesRef("b"), false});
+        Object[] unsupported = new Object[]{ImmutableMap.of("x", 1), true};
+        assertThat(table.add(unsupported), is(GroupKeyTable.UNSUPPORTED_KEY));
+
+        table = GroupKeyTables.toObjectKeyTable(table, 2);
+        assertThat(table.add(new Object[]{new BytesRef("b"), false}), is(-2L));
+        assertThat(table.add(unsupported), is(2L));
+
+        Object[] row = new Object[2];
+        table.readKey(0, row);
+        assertThat((BytesRef) row[0], is(new BytesRef("a")));
+        assertThat((Boolean) row[1], is(true));
+        table.release();
+    }
+
+    private RowBatch batch(DataType[] types, Object[]... rows) {
+        RowBatch batch = RowBatch.forTypes(types, rows.length);
+        for (Object[] row : rows) {
+            int idx = batch.addRow();
+            for (int i = 0; i < row.length; i++) {
+                batch.column(i).setValue(idx, row[i]);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * keys added from the column vectors of a batch must match the same keys added as values
+     */
+    private void assertBatchKeysMatchValues(DataType[] types, Object[]... rows) {
+        GroupKeyTable table = GroupKeyTables.forKey(rows[0], bigArrays);
+        for (int i = 0; i < rows.length; i++) {
+            assertThat(table.add(rows[i]), is((long) i));
+        }
+        RowBatch batch = batch(types, rows);
+        int[] keyColumns = new int[types.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColumns[i] = i;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            assertThat(table.add(batch, keyColumns, i), is(-1L - i));
+        }
+        assertThat(table.size(), is((long) rows.length));
+        table.release();
+    }
+
+    @Test
+    public void testAddLongKeysFromBatch() throws Exception {
+        assertBatchKeysMatchValues(new DataType[]{DataType.INTEGER},
+                new Object[]{1}, new Object[]{-5}, new Object[]{null});
+        assertBatchKeysMatchValues(new DataType[]{DataType.LONG},
+                new Object[]{1L}, new Object[]{Long.MIN_VALUE}, new Object[]{null});
+        assertBatchKeysMatchValues(new DataType[]{DataType.FLOAT},
+                new Object[]{1.5f}, new Object[]{-0.25f}, new Object[]{null});
+        assertBatchKeysMatchValues(new DataType[]{DataType.DOUBLE},
+                new Object[]{1.5d}, new Object[]{-0.25d}, new Object[]{null});
+    }
+
+    @Test
+    public void testAddBytesRefKeysFromBatch() throws Exception {
+        assertBatchKeysMatchValues(new DataType[]{DataType.STRING},
+                new Object[]{new BytesRef("a")}, new Object[]{new BytesRef("b")}, new Object[]{null});
+    }
+
+    @Test
+    public void testAddPackedKeysFromBatch() throws Exception {
+        assertBatchKeysMatchValues(new DataType[]{DataType.SHORT, DataType.TIMESTAMP, DataType.FLOAT, DataType.STRING},
+                new Object[]{(short) 1, 10L, 1.5f, new BytesRef("a")},
+                new Object[]{(short) 1, 10L, null, new BytesRef("a")},
+                new Object[]{null, 11L, 1.5f, null});
+        assertBatchKeysMatchValues(new DataType[]{DataType.BYTE, DataType.DOUBLE},
+                new Object[]{(byte) 1, 2.0d}, new Object[]{(byte) -1, 2.0d});
+    }
+
+    @Test
+    public void testAddObjectKeysFromBatch() throws Exception {
+        GroupKeyTable table = GroupKeyTables.toObjectKeyTable(
+                GroupKeyTables.forKey(new Object[]{1L, new BytesRef("a")}, bigArrays), 2);
+        RowBatch batch = batch(new DataType[]{DataType.LONG, DataType.STRING},
+                new Object[]{1L, new BytesRef("a")}, new Object[]{1L, new BytesRef("a")});
+        assertThat(table.add(batch, new int[]{0, 1}, 0), is(0L));
+        assertThat(table.add(batch, new int[]{0, 1}, 1), is(-1L));
+        assertThat(table.add(new Object[]{1L, new BytesRef("a")}), is(-1L));
+        table.release();
+    }
+}
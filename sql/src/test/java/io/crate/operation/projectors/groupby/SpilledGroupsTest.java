@@ -0,0 +1,140 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.groupby;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.Streamer;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.Functions;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.planner.node.AggregationStateStreamer;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ObjectArray;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SpilledGroupsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BigArrays bigArrays = BigArrays.NON_RECYCLING_INSTANCE;
+    private AggregationFunction countFunction;
+    private File spillPath;
+    private GroupByMemory memory;
+
+    @Before
+    public void prepare() throws Exception {
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        countFunction = (AggregationFunction) functions.get(
+                new FunctionIdent(CountAggregation.NAME, ImmutableList.<DataType>of()));
+        spillPath = folder.newFolder();
+        memory = new GroupByMemory(1L, spillPath, null);
+    }
+
+    /**
+     * spill a run with a count of 1 for each of the given keys
+     */
+    @SuppressWarnings("unchecked")
+    private void spill(SpilledGroups spilledGroups, long... keys) throws Exception {
+        GroupKeyTable table = GroupKeyTables.forKey(new Object[]{keys[0]}, bigArrays);
+        ObjectArray<AggregationState> states = bigArrays.newObjectArray(keys.length);
+        for (long key : keys) {
+            long id = table.add(new Object[]{key});
+            CountAggregation.CountAggState state = (CountAggregation.CountAggState) countFunction.newState();
+            state.value = 1;
+            states.set(id, state);
+        }
+        spilledGroups.spill(table, states, 1);
+        table.release();
+        states.release();
+    }
+
+    private Map<Object, Long> merge(SpilledGroups spilledGroups) throws Exception {
+        final Map<Object, Long> counts = new LinkedHashMap<>();
+        spilledGroups.merge(new SpilledGroups.GroupConsumer() {
+            @Override
+            public boolean accept(Object[] key, AggregationState[] states) {
+                counts.put(key[0], (Long) states[0].value());
+                return true;
+            }
+        });
+        return counts;
+    }
+
+    @Test
+    public void testMergeReducesEqualKeys() throws Exception {
+        SpilledGroups spilledGroups = new SpilledGroups(
+                memory, bigArrays, new Streamer[]{new AggregationStateStreamer(countFunction)}, 1);
+        spill(spilledGroups, 3L, 1L, 2L);
+        spill(spilledGroups, 2L, 4L);
+
+        Map<Object, Long> counts = merge(spilledGroups);
+        assertThat(counts.size(), is(4));
+        assertThat(counts.get(1L), is(1L));
+        assertThat(counts.get(2L), is(2L));
+        assertThat(counts.get(3L), is(1L));
+        assertThat(counts.get(4L), is(1L));
+
+        spilledGroups.close();
+        assertThat(spillPath.list().length, is(0));
+    }
+
+    @Test
+    public void testMergeWithBoundedFanIn() throws Exception {
+        SpilledGroups spilledGroups = new SpilledGroups(
+                memory, bigArrays, new Streamer[]{new AggregationStateStreamer(countFunction)}, 1, 2);
+        for (int i = 0; i < 5; i++) {
+            spill(spilledGroups, 1L, 10L + i);
+        }
+        assertThat(spilledGroups.numRuns(), is(5));
+
+        Map<Object, Long> counts = merge(spilledGroups);
+        // the runs were merged in passes of two until only two runs were left
+        assertThat(spilledGroups.numRuns(), is(2));
+        assertThat(spillPath.list().length, is(2));
+        assertThat(counts.size(), is(6));
+        assertThat(counts.get(1L), is(5L));
+        for (int i = 0; i < 5; i++) {
+            assertThat(counts.get(10L + i), is(1L));
+        }
+
+        spilledGroups.close();
+        assertThat(spillPath.list().length, is(0));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.writer;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.crate.external.S3ClientHelper;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class OutputS3Test {
+
+    private AmazonS3 client;
+    private OutputS3 output;
+
+    @Before
+    public void prepare() throws Exception {
+        client = mock(AmazonS3.class);
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("upload-1");
+        when(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiateResult);
+
+        S3ClientHelper clientHelper = new S3ClientHelper() {
+            @Override
+            protected AmazonS3 initClient(String accessKey, String secretKey) throws IOException {
+                return client;
+            }
+        };
+        output = new OutputS3(new URI("s3://bucket/path/to/file.json"), ImmutableSettings.EMPTY,
+                clientHelper, new S3Uploads(MoreExecutors.sameThreadExecutor(), S3Uploads.MAX_BUFFERED_PARTS));
+    }
+
+    @Test
+    public void testUploadParts() throws Exception {
+        when(client.uploadPart(any(UploadPartRequest.class))).thenAnswer(new Answer<UploadPartResult>() {
+            @Override
+            public UploadPartResult answer(InvocationOnMock invocation) throws Throwable {
+                UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag-" + request.getPartNumber());
+                return result;
+            }
+        });
+
+        output.open();
+        OutputStream outputStream = output.getOutputStream();
+        byte[] chunk = new byte[1024 * 1024 + 7];
+        long written = 0;
+        while (written < 2L * OutputS3.PART_SIZE + 10) {
+            outputStream.write(chunk);
+            written += chunk.length;
+        }
+        output.close();
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(3)).uploadPart(parts.capture());
+        long uploaded = 0;
+        for (UploadPartRequest part : parts.getAllValues()) {
+            uploaded += part.getPartSize();
+        }
+        assertThat(uploaded, is(written));
+        assertThat(parts.getAllValues().get(0).getPartSize(), is((long) OutputS3.PART_SIZE));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        List<PartETag> etags = complete.getValue().getPartETags();
+        assertThat(etags.size(), is(3));
+        for (int i = 0; i < etags.size(); i++) {
+            assertThat(etags.get(i).getPartNumber(), is(i + 1));
+        }
+    }
+
+    @Test
+    public void testAbortOnFailedUpload() throws Exception {
+        when(client.uploadPart(any(UploadPartRequest.class))).thenThrow(new IllegalStateException("upload failed"));
+
+        output.open();
+        OutputStream outputStream = output.getOutputStream();
+        outputStream.write(new byte[OutputS3.PART_SIZE]);
+        try {
+            output.close();
+            fail("expected the failed upload to be rethrown");
+        } catch (IOException e) {
+            assertThat(e.getCause().getMessage(), is("upload failed"));
+        }
+        verify(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.doc;
+
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.fielddata.FieldDataType;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+public class BytesRefDocValuesColumnReferenceTest extends DocLevelExpressionsTest {
+
+    @Override
+    protected void insertValues(IndexWriter writer) throws Exception {
+        // values are only written as doc values, loading field data would return nothing
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("_id", Integer.toString(i), Field.Store.NO));
+            if (i % 3 != 0) {
+                doc.add(new SortedSetDocValuesField(fieldName().name(), new BytesRef("v" + i)));
+            }
+            writer.addDocument(doc);
+        }
+        Document doc = new Document();
+        doc.add(new StringField("_id", "10", Field.Store.NO));
+        doc.add(new SortedSetDocValuesField(fieldName().name(), new BytesRef("a")));
+        doc.add(new SortedSetDocValuesField(fieldName().name(), new BytesRef("b")));
+        writer.addDocument(doc);
+    }
+
+    @Override
+    protected FieldMapper.Names fieldName() {
+        return new FieldMapper.Names("dv");
+    }
+
+    @Override
+    protected FieldDataType fieldType() {
+        return new FieldDataType("string");
+    }
+
+    @Test
+    public void testReadFromDocValues() throws Exception {
+        BytesRefColumnReference column = new BytesRefColumnReference(fieldName().name());
+        column.startCollect(ctx);
+        column.setNextReader(readerContext);
+        IndexSearcher searcher = new IndexSearcher(readerContext.reader());
+        TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), 10);
+        int i = 0;
+        for (ScoreDoc doc : topDocs.scoreDocs) {
+            column.setNextDocId(doc.doc);
+            if (i % 3 == 0) {
+                assertThat(column.value(), nullValue());
+            } else {
+                assertThat(column.value().utf8ToString(), is("v" + i));
+            }
+            i++;
+        }
+        assertThat(i, is(10));
+    }
+
+    @Test(expected = GroupByOnArrayUnsupportedException.class)
+    public void testMultiValuedDocValues() throws Exception {
+        BytesRefColumnReference column = new BytesRefColumnReference(fieldName().name());
+        column.startCollect(ctx);
+        column.setNextReader(readerContext);
+        column.setNextDocId(10);
+        column.value();
+    }
+}
@@ -60,9 +60,7 @@ public abstract class DocLevelExpressionsTest {
         ifd.setIndexService(indexService);
 
         MapperService mapperService = mock(MapperService.class);
-        FieldMapper fieldMapper = mock(FieldMapper.class);
-        when(fieldMapper.names()).thenReturn(fieldName());
-        when(fieldMapper.fieldDataType()).thenReturn(fieldType());
+        FieldMapper fieldMapper = fieldMapper();
         when(mapperService.smartNameFieldMapper(anyString(), Matchers.<String[]>any())).thenReturn(fieldMapper);
 
 
@@ -92,6 +90,17 @@ public abstract class DocLevelExpressionsTest {
         ifd.clear();
     }
 
+    /**
+     * the mapper of the column under test, by default a mock using
+     * {@link #fieldName()} and {@link #fieldType()}
+     */
+    protected FieldMapper fieldMapper() throws Exception {
+        FieldMapper fieldMapper = mock(FieldMapper.class);
+        when(fieldMapper.names()).thenReturn(fieldName());
+        when(fieldMapper.fieldDataType()).thenReturn(fieldType());
+        return fieldMapper;
+    }
+
     protected abstract void insertValues(IndexWriter writer) throws Exception;
 
     protected abstract FieldMapper.Names fieldName();
@@ -0,0 +1,232 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.doc;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import io.crate.operation.batch.OrdinalColumnVector;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.lucene.Lucene;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class GlobalOrdinalsTest {
+
+    private RAMDirectory directory;
+    private IndexWriter writer;
+
+    @Before
+    public void prepare() throws Exception {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory,
+                new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION))
+                        .setMergePolicy(NoMergePolicy.COMPOUND_FILES));
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        writer.close();
+        directory.close();
+    }
+
+    private void addDocument(String field, String value, boolean docValues) throws Exception {
+        Document doc = new Document();
+        if (docValues) {
+            doc.add(new SortedDocValuesField(field, new BytesRef(value)));
+        } else {
+            doc.add(new StringField(field, value, Field.Store.NO));
+        }
+        writer.addDocument(doc);
+    }
+
+    private long globalOrd(GlobalOrdinals ordinals, AtomicReaderContext leaf, int doc) {
+        DocValuesReaders.OrdinalsBytesValues values = DocValuesReaders.bytesValues(leaf.reader(), "name");
+        assertThat(values.setDocument(doc), is(1));
+        return ordinals.globalOrd(leaf.ord, values.nextOrd());
+    }
+
+    @Test
+    public void testGlobalOrdinalsOverSegments() throws Exception {
+        addDocument("name", "b", true);
+        addDocument("name", "a", true);
+        writer.commit();
+        addDocument("name", "c", true);
+        addDocument("name", "a", true);
+        addDocument("other", "x", false);
+        writer.commit();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertThat(reader.leaves().size(), is(2));
+            GlobalOrdinals ordinals = GlobalOrdinals.build(reader.leaves(), "name");
+            AtomicReaderContext first = reader.leaves().get(0);
+            AtomicReaderContext second = reader.leaves().get(1);
+
+            assertThat(globalOrd(ordinals, first, 1), is(globalOrd(ordinals, second, 1)));
+            assertThat(ordinals.lookupOrd(globalOrd(ordinals, first, 0)).utf8ToString(), is("b"));
+            assertThat(ordinals.lookupOrd(globalOrd(ordinals, second, 0)).utf8ToString(), is("c"));
+            assertThat(ordinals.lookupOrd(globalOrd(ordinals, second, 1)).utf8ToString(), is("a"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testNoGlobalOrdinalsWithoutDocValues() throws Exception {
+        addDocument("name", "a", true);
+        writer.commit();
+        addDocument("name", "b", false);
+        writer.commit();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertThat(GlobalOrdinals.build(reader.leaves(), "name"), nullValue());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testSingleSegmentUsesSegmentOrdinals() throws Exception {
+        addDocument("name", "b", true);
+        addDocument("name", "a", true);
+        writer.commit();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertThat(reader.leaves().size(), is(1));
+            MemoryCircuitBreaker breaker = mock(MemoryCircuitBreaker.class);
+            GlobalOrdinalsCache cache = new GlobalOrdinalsCache(breaker);
+            GlobalOrdinals ordinals = cache.globalOrdinals(reader, "name");
+            AtomicReaderContext leaf = reader.leaves().get(0);
+
+            assertThat(globalOrd(ordinals, leaf, 0), is(1L));
+            assertThat(ordinals.lookupOrd(globalOrd(ordinals, leaf, 0)).utf8ToString(), is("b"));
+            assertThat(ordinals.lookupTerm(new BytesRef("a")), is(0L));
+            assertThat(cache.ramBytesUsed(), is(0L));
+            verifyZeroInteractions(breaker);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testOrdinalMapIsCachedPerReaderAndAccounted() throws Exception {
+        addDocument("name", "b", true);
+        writer.commit();
+        addDocument("name", "a", true);
+        writer.commit();
+
+        MemoryCircuitBreaker breaker = mock(MemoryCircuitBreaker.class);
+        GlobalOrdinalsCache cache = new GlobalOrdinalsCache(breaker);
+        DirectoryReader reader = DirectoryReader.open(directory);
+        long bytes;
+        try {
+            GlobalOrdinals first = cache.globalOrdinals(reader, "name");
+            bytes = cache.ramBytesUsed();
+            assertThat(bytes, greaterThan(0L));
+            GlobalOrdinals second = cache.globalOrdinals(reader, "name");
+
+            assertThat(second, is(not(sameInstance(first))));
+            assertThat(cache.ramBytesUsed(), is(bytes));
+            verify(breaker, times(1)).addEstimateBytesAndMaybeBreak(bytes);
+            assertThat(second.lookupOrd(first.lookupTerm(new BytesRef("b"))).utf8ToString(), is("b"));
+        } finally {
+            reader.close();
+        }
+        assertThat(cache.ramBytesUsed(), is(0L));
+        verify(breaker).addWithoutBreaking(-bytes);
+    }
+
+    @Test
+    public void testNoGlobalOrdinalsIfBreakerTrips() throws Exception {
+        addDocument("name", "b", true);
+        writer.commit();
+        addDocument("name", "a", true);
+        writer.commit();
+
+        MemoryCircuitBreaker breaker = mock(MemoryCircuitBreaker.class);
+        doThrow(new CircuitBreakingException("dummy")).when(breaker).addEstimateBytesAndMaybeBreak(anyLong());
+        GlobalOrdinalsCache cache = new GlobalOrdinalsCache(breaker);
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertThat(cache.globalOrdinals(reader, "name"), nullValue());
+            assertThat(cache.ramBytesUsed(), is(0L));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testSetValueOfOrdinalColumnVector() throws Exception {
+        addDocument("name", "b", true);
+        writer.commit();
+        addDocument("name", "a", true);
+        writer.commit();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            GlobalOrdinals ordinals = GlobalOrdinals.build(reader.leaves(), "name");
+            OrdinalColumnVector vector = new OrdinalColumnVector(2, ordinals);
+            vector.setValue(0, new BytesRef("b"));
+            vector.setValue(1, null);
+
+            assertThat(vector.getOrd(0), is(1L));
+            assertThat((BytesRef) vector.value(0), is(new BytesRef("b")));
+            assertThat(vector.isNull(1), is(true));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetUnknownValueOfOrdinalColumnVector() throws Exception {
+        addDocument("name", "a", true);
+        writer.commit();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            OrdinalColumnVector vector = new OrdinalColumnVector(1, GlobalOrdinals.build(reader.leaves(), "name"));
+            vector.setValue(0, new BytesRef("x"));
+        } finally {
+            reader.close();
+        }
+    }
+}
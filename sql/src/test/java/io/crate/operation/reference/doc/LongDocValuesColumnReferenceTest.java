@@ -0,0 +1,142 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.doc;
+
+import io.crate.Constants;
+import io.crate.DataType;
+import io.crate.operation.batch.LongColumnVector;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.analysis.AnalysisService;
+import org.elasticsearch.index.codec.docvaluesformat.DocValuesFormatService;
+import org.elasticsearch.index.codec.postingsformat.PostingsFormatService;
+import org.elasticsearch.index.fielddata.FieldDataType;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.DocumentMapperParser;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.similarity.SimilarityLookupService;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * reads a long column which is mapped with <code>doc_values: true</code>,
+ * the documents are created by the document mapper so the doc values are stored
+ * in the same (BINARY) format Elasticsearch uses.
+ */
+public class LongDocValuesColumnReferenceTest extends DocLevelExpressionsTest {
+
+    private DocumentMapper documentMapper;
+
+    private DocumentMapper documentMapper() throws Exception {
+        if (documentMapper == null) {
+            Index index = new Index("test");
+            DocumentMapperParser parser = new DocumentMapperParser(index,
+                    ImmutableSettings.Builder.EMPTY_SETTINGS,
+                    new AnalysisService(index),
+                    new PostingsFormatService(index),
+                    new DocValuesFormatService(index),
+                    new SimilarityLookupService(index));
+            XContentBuilder mapping = XContentFactory.jsonBuilder()
+                    .startObject()
+                        .startObject(Constants.DEFAULT_MAPPING_TYPE)
+                            .startObject("properties")
+                                .startObject(fieldName().name())
+                                    .field("type", "long")
+                                    .field("doc_values", true)
+                                .endObject()
+                            .endObject()
+                        .endObject()
+                    .endObject();
+            documentMapper = parser.parse(mapping.string());
+        }
+        return documentMapper;
+    }
+
+    @Override
+    protected FieldMapper fieldMapper() throws Exception {
+        return documentMapper().mappers().smartNameFieldMapper(fieldName().name());
+    }
+
+    @Override
+    protected void insertValues(IndexWriter writer) throws Exception {
+        for (long l = 0; l < 10; l++) {
+            XContentBuilder source = XContentFactory.jsonBuilder().startObject();
+            if (l % 2 == 0) {
+                source.field(fieldName().name(), l * 100);
+            }
+            source.endObject();
+            writer.addDocument(documentMapper().parse(
+                    Constants.DEFAULT_MAPPING_TYPE, Long.toString(l), source.bytes()).rootDoc());
+        }
+    }
+
+    @Override
+    protected FieldMapper.Names fieldName() {
+        return new FieldMapper.Names("ndv");
+    }
+
+    @Override
+    protected FieldDataType fieldType() {
+        return new FieldDataType("long");
+    }
+
+    @Test
+    public void testFieldDataOfMappingUsesDocValues() throws Exception {
+        assertThat(fieldMapper().hasDocValues(), is(true));
+        assertThat(fieldMapper().fieldDataType().getFormat(ImmutableSettings.Builder.EMPTY_SETTINGS),
+                is("doc_values"));
+    }
+
+    @Test
+    public void testReadFromDocValues() throws Exception {
+        LongColumnReference column = new LongColumnReference(fieldName().name());
+        column.startCollect(ctx);
+        column.setNextReader(readerContext);
+        IndexSearcher searcher = new IndexSearcher(readerContext.reader());
+        TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), 10);
+        LongColumnVector vector = new LongColumnVector(10, DataType.LONG);
+        long l = 0;
+        for (ScoreDoc doc : topDocs.scoreDocs) {
+            column.setNextDocId(doc.doc);
+            column.writeTo(vector, (int) l);
+            if (l % 2 == 0) {
+                assertThat(column.value(), is(l * 100));
+            } else {
+                assertThat(column.value(), nullValue());
+            }
+            l++;
+        }
+        assertThat(vector.getLong(4), is(400L));
+        assertThat(vector.isNull(5), is(true));
+    }
+}
@@ -21,10 +21,13 @@
 
 package io.crate.operation.reference.file;
 
+import com.google.common.collect.ImmutableMap;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.collect.files.CollectorContext;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -40,4 +43,51 @@ public class LineContextTest {
         assertNull(context.get(new ColumnIdent("details", "invalid")));
         assertEquals(43, context.get(new ColumnIdent("details", "age")));
     }
+
+    @Test
+    public void testGetPrefetchColumns() throws Exception {
+        CollectorContext collectorContext = new CollectorContext();
+        ColumnIdent id = new ColumnIdent("id");
+        ColumnIdent age = new ColumnIdent("details", "age");
+        ColumnIdent details = new ColumnIdent("details");
+        ColumnIdent street = new ColumnIdent("details", Arrays.asList("address", "street"));
+        ColumnIdent missing = new ColumnIdent("details", "missing");
+        ColumnIdent noObject = new ColumnIdent("name", "invalid");
+        for (ColumnIdent columnIdent : Arrays.asList(id, age, details, street, missing, noObject)) {
+            collectorContext.addPrefetchColumn(columnIdent);
+        }
+        LineContext context = collectorContext.lineContext();
+
+        String source = "{\"name\": \"foo\", \"tags\": [1, {\"a\": 2}], " +
+                "\"details\": {\"age\": 43, \"address\": {\"street\": \"main\"}}, \"id\": 3000000000}";
+        context.rawSource(source.getBytes());
+
+        assertEquals(3000000000L, context.get(id));
+        assertEquals(43, context.get(age));
+        assertEquals("main", context.get(street));
+        assertEquals(ImmutableMap.of("age", 43, "address", ImmutableMap.of("street", "main")), context.get(details));
+        assertNull(context.get(missing));
+        assertNull(context.get(noObject));
+
+        // values of the previous line must not leak into the next one
+        context.rawSource("{\"id\": 1}".getBytes());
+        assertEquals(1, context.get(id));
+        assertNull(context.get(age));
+        assertNull(context.get(details));
+    }
+
+    @Test
+    public void testPrefetchColumnsWithDuplicateKey() throws Exception {
+        CollectorContext collectorContext = new CollectorContext();
+        ColumnIdent id = new ColumnIdent("id");
+        ColumnIdent name = new ColumnIdent("name");
+        collectorContext.addPrefetchColumn(id);
+        collectorContext.addPrefetchColumn(name);
+        LineContext context = collectorContext.lineContext();
+
+        // the duplicate id must not stop the extraction before name was read
+        context.rawSource("{"id": 1, "id": 2, "name": "foo"}".getBytes());
+        assertEquals(2, context.get(id));
+        assertEquals("foo", context.get(name));
+    }
 }
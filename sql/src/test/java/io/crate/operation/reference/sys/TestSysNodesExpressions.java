@@ -20,6 +20,7 @@
  */
 package io.crate.operation.reference.sys;
 
+import io.crate.action.sql.StatementCache;
 import io.crate.metadata.GlobalReferenceResolver;
 import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.ReferenceResolver;
@@ -162,6 +163,11 @@ public class TestSysNodesExpressions {
             when(jvmService.stats()).thenReturn(jvmStats);
             bind(JvmService.class).toInstance(jvmService);
 
+            StatementCache statementCache = new StatementCache(ImmutableSettings.EMPTY);
+            statementCache.get("select name from sys.nodes");
+            statementCache.get("select name from sys.nodes");
+            bind(StatementCache.class).toInstance(statementCache);
+
             bind(ReferenceResolver.class).to(GlobalReferenceResolver.class).asEagerSingleton();
         }
     }
@@ -286,4 +292,17 @@ public class TestSysNodesExpressions {
         assertEquals(70.84604449344218, v.get("used_percent"));
     }
 
+    @Test
+    public void testStatementCache() throws Exception {
+
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "statement_cache");
+        SysObjectReference<Object> statementCache = (SysObjectReference<Object>) resolver.getImplementation(ident);
+
+        Map<String, Object> v = statementCache.value();
+
+        assertEquals(1L, v.get("hits"));
+        assertEquals(1L, v.get("misses"));
+        assertEquals(1L, v.get("size"));
+    }
+
 }
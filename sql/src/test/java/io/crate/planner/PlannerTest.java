@@ -21,6 +21,7 @@ import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
 import io.crate.metadata.table.TestingTableInfo;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.planner.node.PlanNode;
@@ -805,6 +806,30 @@ public class PlannerTest {
         assertThat(nameRef.info().ident().columnIdent().path().get(0), is("name"));
     }
 
+    @Test
+    public void testCopyFromCsvPlan() throws Exception {
+        Plan plan = plan("copy users from '/path/to/file.csv' with (format='csv')");
+        FileUriCollectNode collectNode = (FileUriCollectNode) plan.iterator().next();
+        assertThat(collectNode.fileFormat(), is(FileReadingCollector.FileFormat.CSV));
+        assertThat(collectNode.columnTypes().get("id"), is(DataType.LONG));
+        assertThat(collectNode.columnTypes().get("name"), is(DataType.STRING));
+        assertThat(collectNode.columnTypes().containsKey("_raw"), is(false));
+    }
+
+    @Test
+    public void testCopyToCsvPlanUsesAllColumns() throws Exception {
+        Plan plan = plan("copy users to '/file.csv' with (format='csv')");
+        CollectNode collectNode = (CollectNode) plan.iterator().next();
+        WriterProjection projection = (WriterProjection) collectNode.projections().get(0);
+        assertThat(projection.outputNames(), contains("name", "id"));
+        assertThat(projection.inputTypes(), contains(DataType.STRING, DataType.LONG));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testCopyWithUnknownFormat() throws Exception {
+        plan("copy users from '/path/to/file.ext' with (format='xml')");
+    }
+
     @Test (expected = IllegalArgumentException.class)
     public void testCopyFromPlanWithInvalidParameters() throws Exception {
         plan("copy users from '/path/to/file.ext' with (concurrency=-28)");